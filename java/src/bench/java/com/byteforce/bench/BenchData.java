@@ -0,0 +1,63 @@
+package com.byteforce.bench;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.models.Table;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/** Shared fixtures: a scratch data directory and an {@code items} table of a given size. */
+final class BenchData {
+  static final String ITEMS_DDL =
+      "CREATE TABLE items (id INTEGER PRIMARY KEY, code INTEGER, name TEXT, price FLOAT)";
+
+  private BenchData() {}
+
+  static Path tempDir() {
+    try {
+      return Files.createTempDirectory("byteforce-bench");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Creates {@code items} with ids 1..rows; {@code code} equals the id but has no index. Rows go
+   * straight into the table and are persisted once, so setup stays fast at millions of rows.
+   */
+  static Table populateItems(ByteForceDB db, int rows) {
+    db.execute(ITEMS_DDL);
+    Table table = db.getStorage().getTable("items");
+    for (int i = 1; i <= rows; i++) {
+      table.addRow(item(i));
+    }
+    try {
+      db.getStorage().saveTable("items");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return table;
+  }
+
+  static Map<String, Object> item(int id) {
+    Map<String, Object> row = new HashMap<>();
+    row.put("id", id);
+    row.put("code", id);
+    row.put("name", "item-" + id);
+    row.put("price", (id % 1000) / 10.0);
+    return row;
+  }
+
+  static void delete(Path dir) {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
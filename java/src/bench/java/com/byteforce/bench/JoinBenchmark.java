@@ -0,0 +1,70 @@
+package com.byteforce.bench;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.ExecutionResult;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Inner and LEFT joins of {@code orders} (rows) against {@code customers} (rows / 10). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JoinBenchmark {
+  @Param({"1000", "10000", "50000"})
+  public int rows;
+
+  private Path dir;
+  private ByteForceDB db;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    dir = BenchData.tempDir();
+    db = new ByteForceDB(dir.toString());
+    db.execute("CREATE TABLE customers (cid INTEGER PRIMARY KEY, name TEXT)");
+    db.execute("CREATE TABLE orders (oid INTEGER PRIMARY KEY, customer_id INTEGER, amount FLOAT)");
+
+    int customers = Math.max(1, rows / 10);
+    List<List<Object>> batch = new ArrayList<>();
+    for (int i = 1; i <= customers; i++) {
+      batch.add(Arrays.asList(i, "customer-" + i));
+    }
+    db.executeBatch("INSERT INTO customers VALUES (?, ?)", batch);
+
+    batch.clear();
+    for (int i = 1; i <= rows; i++) {
+      // Every 20th order points at a missing customer so LEFT JOIN pads some rows
+      int customer = i % 20 == 0 ? customers + 1 : i % customers + 1;
+      batch.add(Arrays.asList(i, customer, (i % 500) / 10.0));
+    }
+    db.executeBatch("INSERT INTO orders VALUES (?, ?, ?)", batch);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    db.close();
+    BenchData.delete(dir);
+  }
+
+  @Benchmark
+  public ExecutionResult innerJoin() {
+    return db.execute("SELECT name, amount FROM orders JOIN customers ON customer_id = cid");
+  }
+
+  @Benchmark
+  public ExecutionResult leftJoin() {
+    return db.execute("SELECT * FROM orders LEFT JOIN customers ON customer_id = cid");
+  }
+
+  @Benchmark
+  public ExecutionResult joinWithFilter() {
+    return db.execute(
+        "SELECT name, amount FROM orders JOIN customers ON customer_id = cid WHERE amount > 45");
+  }
+}
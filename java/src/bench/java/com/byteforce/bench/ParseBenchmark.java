@@ -0,0 +1,52 @@
+package com.byteforce.bench;
+
+import com.byteforce.core.PlanCache;
+import com.byteforce.core.SQLParser;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of turning SQL into a plan with the ANTLR parser, against a plan cache hit. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+  private static final String SELECT = "SELECT id, name FROM items WHERE price > 10";
+  private static final String JOIN =
+      "SELECT name, amount FROM orders LEFT JOIN customers ON customer_id = cid WHERE amount > 45";
+  private static final String INSERT =
+      "INSERT INTO items (id, code, name, price) VALUES (1, 1, 'a', 0.1), (2, 2, 'b', 0.2)";
+
+  private SQLParser parser;
+  private PlanCache cache;
+
+  @Setup
+  public void setup() {
+    parser = new SQLParser();
+    cache = new PlanCache(16);
+    cache.put(SELECT, parser.parse(SELECT));
+  }
+
+  @Benchmark
+  public Map<String, Object> parseSelect() {
+    return parser.parse(SELECT);
+  }
+
+  @Benchmark
+  public Map<String, Object> parseJoin() {
+    return parser.parse(JOIN);
+  }
+
+  @Benchmark
+  public Map<String, Object> parseInsert() {
+    return parser.parse(INSERT);
+  }
+
+  @Benchmark
+  public Map<String, Object> planCacheHit() {
+    return cache.get(SELECT);
+  }
+}
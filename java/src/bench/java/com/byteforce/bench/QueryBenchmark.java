@@ -0,0 +1,78 @@
+package com.byteforce.bench;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.Cursor;
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.PreparedQuery;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Single-table reads: point lookups through the primary key index and through a full scan, a 1%
+ * range scan, and a full scan streamed through a cursor. Run 10M rows with {@code -p rows=10000000}
+ * and a large heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+  @Param({"1000", "100000", "1000000"})
+  public int rows;
+
+  private Path dir;
+  private ByteForceDB db;
+  private PreparedQuery byId;
+  private PreparedQuery byCode;
+  private PreparedQuery range;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    dir = BenchData.tempDir();
+    db = new ByteForceDB(dir.toString());
+    BenchData.populateItems(db, rows);
+    byId = db.prepare("SELECT * FROM items WHERE id = ?");
+    byCode = db.prepare("SELECT * FROM items WHERE code = ?");
+    range = db.prepare("SELECT * FROM items WHERE id < ?");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    db.close();
+    BenchData.delete(dir);
+  }
+
+  private int randomKey() {
+    return ThreadLocalRandom.current().nextInt(rows) + 1;
+  }
+
+  @Benchmark
+  public ExecutionResult pointLookupIndexed() {
+    return byId.execute(randomKey());
+  }
+
+  @Benchmark
+  public ExecutionResult pointLookupFullScan() {
+    return byCode.execute(randomKey());
+  }
+
+  @Benchmark
+  public ExecutionResult rangeScanOnePercent() {
+    return range.execute(rows / 100 + 1);
+  }
+
+  @Benchmark
+  public long fullScanCursor() {
+    long sum = 0;
+    try (Cursor cursor = db.query("SELECT id FROM items")) {
+      while (cursor.next()) {
+        sum += cursor.getInt(0);
+      }
+    }
+    return sum;
+  }
+}
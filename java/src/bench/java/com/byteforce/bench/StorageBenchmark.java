@@ -0,0 +1,48 @@
+package com.byteforce.bench;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.StorageEngine;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Persisting a whole table and loading the data directory again, as on a cold start. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageBenchmark {
+  @Param({"1000", "100000", "1000000"})
+  public int rows;
+
+  private Path dir;
+  private ByteForceDB db;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    dir = BenchData.tempDir();
+    db = new ByteForceDB(dir.toString());
+    BenchData.populateItems(db, rows);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    db.close();
+    BenchData.delete(dir);
+  }
+
+  @Benchmark
+  public void saveTable() throws IOException {
+    db.getStorage().saveTable("items");
+  }
+
+  @Benchmark
+  public StorageEngine coldStart() {
+    StorageEngine storage = new StorageEngine(dir.toString());
+    storage.loadAllTables();
+    return storage;
+  }
+}
@@ -0,0 +1,75 @@
+package com.byteforce.bench;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.PreparedQuery;
+import com.byteforce.core.models.Table;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Insert paths from most to least overhead: one autocommitted INSERT (a persist per row), a batch
+ * of 1000 rows (one persist per batch) and {@link Table#addRow} with no SQL or persistence at all.
+ * Scores are per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+  private static final int BATCH = 1000;
+
+  private Path dir;
+  private ByteForceDB db;
+  private Table table;
+  private PreparedQuery insert;
+  private int nextId;
+
+  // A fresh table per iteration keeps persistence cost from growing with the table
+  @Setup(Level.Iteration)
+  public void setup() {
+    dir = BenchData.tempDir();
+    db = new ByteForceDB(dir.toString());
+    db.execute(BenchData.ITEMS_DDL);
+    table = db.getStorage().getTable("items");
+    insert = db.prepare("INSERT INTO items VALUES (?, ?, ?, ?)");
+    nextId = 1;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    db.close();
+    BenchData.delete(dir);
+  }
+
+  private List<Object> params(int id) {
+    return Arrays.asList(id, id, "item-" + id, (id % 1000) / 10.0);
+  }
+
+  @Benchmark
+  public ExecutionResult insertAutocommit() {
+    return insert.execute(params(nextId++));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public ExecutionResult insertBatch() {
+    List<List<Object>> batch = new ArrayList<>(BATCH);
+    for (int i = 0; i < BATCH; i++) {
+      batch.add(params(nextId++));
+    }
+    return db.executeBatch("INSERT INTO items VALUES (?, ?, ?, ?)", batch);
+  }
+
+  @Benchmark
+  public Table addRowInMemory() {
+    table.addRow(BenchData.item(nextId++));
+    return table;
+  }
+}
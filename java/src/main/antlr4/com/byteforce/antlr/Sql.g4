@@ -7,22 +7,37 @@ parse
 statement
     : createTableStmt
     | createIndexStmt
+    | createViewStmt
     | insertStmt
     | updateStmt
     | deleteStmt
     | selectStmt
+    | beginStmt
+    | commitStmt
+    | rollbackStmt
+    | copyStmt
+    | explainStmt
     ;
 
 // --- DDL ---
 
 createTableStmt
-    : K_CREATE K_TABLE table_name=identifier '(' colDef (',' colDef)* ')'
+    : K_CREATE K_TABLE table_name=identifier '(' colDef (',' colDef)* ')' partitionClause?
+    ;
+
+partitionClause
+    : K_PARTITION K_BY K_HASH '(' column_name=identifier ')' (K_PARTITIONS count=INTEGER_LITERAL)?
+    | K_PARTITION K_BY K_RANGE '(' column_name=identifier ')' '(' valueList ')'
     ;
 
 createIndexStmt
     : K_CREATE K_INDEX index_name=identifier K_ON table_name=identifier '(' column_name=identifier ')'
     ;
 
+createViewStmt
+    : K_CREATE K_MATERIALIZED K_VIEW view_name=identifier K_AS selectStmt
+    ;
+
 colDef
     : col_name=identifier typeName constraint*
     ;
@@ -43,7 +58,11 @@ constraint
 // --- DML ---
 
 insertStmt
-    : K_INSERT K_INTO table_name=identifier ('(' columnList ')')? K_VALUES '(' valueList ')'
+    : K_INSERT K_INTO table_name=identifier ('(' columnList ')')? K_VALUES valueTuple (',' valueTuple)*
+    ;
+
+valueTuple
+    : '(' valueList ')'
     ;
 
 valueList
@@ -62,6 +81,14 @@ deleteStmt
     : K_DELETE K_FROM table_name=identifier whereClause?
     ;
 
+copyStmt
+    : K_COPY table_name=identifier K_FROM file_path=STRING_LITERAL
+    ;
+
+explainStmt
+    : K_EXPLAIN K_ANALYZE (selectStmt | insertStmt | updateStmt | deleteStmt | copyStmt)
+    ;
+
 // --- DQL ---
 
 selectStmt
@@ -111,6 +138,20 @@ identifier
     : ID
     ;
 
+// --- Transactions ---
+
+beginStmt
+    : K_BEGIN K_TRANSACTION?
+    ;
+
+commitStmt
+    : K_COMMIT
+    ;
+
+rollbackStmt
+    : K_ROLLBACK
+    ;
+
 // --- Lexer Rules ---
 
 K_CREATE:   'CREATE';
@@ -140,6 +181,21 @@ K_WHERE:    'WHERE';
 K_LIMIT:    'LIMIT';
 K_TRUE:     'TRUE';
 K_FALSE:    'FALSE';
+K_BEGIN:    'BEGIN';
+K_TRANSACTION: 'TRANSACTION';
+K_COMMIT:   'COMMIT';
+K_ROLLBACK: 'ROLLBACK';
+K_COPY:     'COPY';
+K_MATERIALIZED: 'MATERIALIZED';
+K_VIEW:     'VIEW';
+K_AS:       'AS';
+K_EXPLAIN:  'EXPLAIN';
+K_ANALYZE:  'ANALYZE';
+K_PARTITION: 'PARTITION';
+K_PARTITIONS: 'PARTITIONS';
+K_BY:       'BY';
+K_HASH:     'HASH';
+K_RANGE:    'RANGE';
 K_ASTERISK: '*';
 
 EQ:   '=';
@@ -0,0 +1,262 @@
+package com.byteforce.cli;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.Cursor;
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.LatencyHistogram;
+import com.byteforce.core.PreparedQuery;
+import com.byteforce.core.models.Column;
+import com.byteforce.core.models.DataType;
+import com.byteforce.core.models.Table;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a mixed workload against one table from many threads: point reads ({@code SELECT ... WHERE
+ * key = ?}) and single-row updates on its INTEGER primary key, with keys drawn uniformly or from a
+ * zipfian distribution so a few hot keys take most of the traffic. Every operation's latency goes
+ * into a histogram, so the report shows the tail as well as throughput.
+ */
+public class Workload {
+  public static final class Options {
+    int threads = 8;
+    boolean virtualThreads;
+    int seconds = 10;
+    int readPercent = 90;
+    boolean zipfian;
+    double theta = 0.99;
+
+    /** Parses {@code key=value} settings: threads, virtual, seconds, reads, dist and theta. */
+    public static Options parse(String[] settings) {
+      Options options = new Options();
+      for (String setting : settings) {
+        String[] kv = setting.split("=", 2);
+        if (kv.length != 2) throw new IllegalArgumentException("Expected key=value: " + setting);
+        switch (kv[0]) {
+          case "threads":
+            options.threads = Integer.parseInt(kv[1]);
+            break;
+          case "virtual":
+            options.virtualThreads = Boolean.parseBoolean(kv[1]);
+            break;
+          case "seconds":
+            options.seconds = Integer.parseInt(kv[1]);
+            break;
+          case "reads":
+            options.readPercent = Integer.parseInt(kv[1]);
+            break;
+          case "dist":
+            if (!kv[1].equals("uniform") && !kv[1].equals("zipf")) {
+              throw new IllegalArgumentException("dist must be uniform or zipf");
+            }
+            options.zipfian = kv[1].equals("zipf");
+            break;
+          case "theta":
+            options.theta = Double.parseDouble(kv[1]);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown setting: " + kv[0]);
+        }
+      }
+      if (options.threads < 1 || options.seconds < 1) {
+        throw new IllegalArgumentException("threads and seconds must be positive");
+      }
+      if (options.readPercent < 0 || options.readPercent > 100) {
+        throw new IllegalArgumentException("reads must be a percentage");
+      }
+      if (options.theta <= 0 || options.theta == 1) {
+        throw new IllegalArgumentException("theta must be positive and not 1");
+      }
+      return options;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d %s thread(s), %ds, %d%% reads, %s keys",
+          threads,
+          virtualThreads ? "virtual" : "platform",
+          seconds,
+          readPercent,
+          zipfian ? "zipfian (theta " + theta + ")" : "uniform");
+    }
+  }
+
+  public static final class Result {
+    public final LatencyHistogram reads = new LatencyHistogram();
+    public final LatencyHistogram writes = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private long elapsedNanos;
+
+    public long getOperations() {
+      return reads.getCount() + writes.getCount();
+    }
+
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    public double getThroughput() {
+      return elapsedNanos == 0 ? 0 : getOperations() * 1e9 / elapsedNanos;
+    }
+  }
+
+  private final Options options;
+  private final Column updateColumn;
+  private final int minKey;
+  private final int keyCount;
+  private final PreparedQuery read;
+  private final PreparedQuery write;
+  private final Zipfian zipfian;
+
+  public Workload(ByteForceDB db, String tableName, Options options) {
+    this.options = options;
+    Table table = db.getStorage().getTable(tableName);
+    if (table == null) throw new IllegalArgumentException("Table " + tableName + " not found.");
+
+    Column key = null;
+    Column other = null;
+    for (Column col : table.getColumns().values()) {
+      if (key == null && col.isPrimaryKey() && col.getDataType() == DataType.INTEGER) {
+        key = col;
+      } else if (other == null && !col.isPrimaryKey() && !col.isUnique()) {
+        other = col;
+      }
+    }
+    if (key == null) {
+      throw new IllegalArgumentException("Table " + tableName + " needs an INTEGER PRIMARY KEY.");
+    }
+    if (other == null && options.readPercent < 100) {
+      throw new IllegalArgumentException("Table " + tableName + " has no column to update.");
+    }
+    this.updateColumn = other;
+
+    // Keys are drawn from the range the table currently holds
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    try (Cursor cursor = db.query("SELECT " + key.getName() + " FROM " + tableName)) {
+      while (cursor.next()) {
+        int value = cursor.getInt(0);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+    }
+    if (min > max) throw new IllegalArgumentException("Table " + tableName + " is empty.");
+    this.minKey = min;
+    this.keyCount = max - min + 1;
+
+    this.read = db.prepare("SELECT * FROM " + tableName + " WHERE " + key.getName() + " = ?");
+    this.write =
+        other == null
+            ? null
+            : db.prepare(
+                "UPDATE "
+                    + tableName
+                    + " SET "
+                    + other.getName()
+                    + " = ? WHERE "
+                    + key.getName()
+                    + " = ?");
+    this.zipfian = options.zipfian ? new Zipfian(keyCount, options.theta) : null;
+  }
+
+  public Result run() throws InterruptedException {
+    Result result = new Result();
+    ExecutorService pool =
+        options.virtualThreads
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(options.threads);
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.SECONDS.toNanos(options.seconds);
+    for (int i = 0; i < options.threads; i++) {
+      pool.execute(() -> work(result, deadline));
+    }
+    pool.shutdown();
+    pool.awaitTermination(options.seconds + 60L, TimeUnit.SECONDS);
+    result.elapsedNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  private void work(Result result, long deadline) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (System.nanoTime() < deadline) {
+      int key = minKey + (zipfian != null ? (int) zipfian.next(random) : random.nextInt(keyCount));
+      boolean isRead = random.nextInt(100) < options.readPercent;
+
+      long opStart = System.nanoTime();
+      ExecutionResult r =
+          isRead ? read.execute(key) : write.execute(randomValue(updateColumn, random), key);
+      long nanos = System.nanoTime() - opStart;
+
+      (isRead ? result.reads : result.writes).record(nanos);
+      if (r.isError()) {
+        result.errors.increment();
+      }
+    }
+  }
+
+  static Object randomValue(Column col, Random random) {
+    switch (col.getDataType()) {
+      case INTEGER:
+        return random.nextInt(10000) + 1;
+      case FLOAT:
+        return 10.0 + (500.0 - 10.0) * random.nextDouble();
+      case BOOLEAN:
+        return random.nextBoolean();
+      default:
+        return randomString(8, random);
+    }
+  }
+
+  static String randomString(int length, Random random) {
+    String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append(chars.charAt(random.nextInt(chars.length())));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Zipfian ranks in [0, items) after Gray et al., "Quickly Generating Billion-Record Synthetic
+   * Databases": rank 0 is the most popular and popularity falls off as 1 / rank^theta. Setup is
+   * linear in the number of items, each draw is constant time.
+   */
+  static final class Zipfian {
+    private final long items;
+    private final double theta;
+    private final double zetan;
+    private final double alpha;
+    private final double eta;
+
+    Zipfian(long items, double theta) {
+      this.items = items;
+      this.theta = theta;
+      this.zetan = zeta(items, theta);
+      this.alpha = 1.0 / (1.0 - theta);
+      this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+    }
+
+    private static double zeta(long n, double theta) {
+      double sum = 0;
+      for (long i = 1; i <= n; i++) {
+        sum += 1 / Math.pow(i, theta);
+      }
+      return sum;
+    }
+
+    long next(Random random) {
+      if (items < 2) return 0;
+      double u = random.nextDouble();
+      double uz = u * zetan;
+      if (uz < 1.0) return 0;
+      if (uz < 1.0 + Math.pow(0.5, theta)) return 1;
+      long rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+      return Math.min(rank, items - 1);
+    }
+  }
+}
@@ -1,38 +1,433 @@
 package com.byteforce.core;
 
+import com.byteforce.core.models.RowStorage;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ByteForceDB implements AutoCloseable {
+  public static final int DEFAULT_PLAN_CACHE_SIZE = 256;
+  private static final long VACUUM_INTERVAL_MS = 1000;
+  // Async statements queued beyond this are rejected rather than buffered without bound
+  private static final int ASYNC_QUEUE_SIZE = 1024;
 
-public class ByteForceDB {
   private final StorageEngine storage;
   private final ExecutionEngine executor;
   private final SQLParser parser;
+  private final PlanCache planCache;
+  private final ResultCache resultCache;
+  private final Metrics metrics;
+  private final MetricsBean metricsBean;
+  private final ScheduledExecutorService vacuum;
+  private ExecutorService asyncExecutor;
+  private ReplicationLog replicationLog;
+  private LogShipper logShipper;
+  private Replica replica;
+  private final ThreadLocal<Session> threadSession =
+      ThreadLocal.withInitial(() -> new Session(this));
 
   public ByteForceDB() {
     this("data");
   }
 
   public ByteForceDB(String dataDir) {
-    this.storage = new StorageEngine(dataDir);
+    this(dataDir, DEFAULT_PLAN_CACHE_SIZE);
+  }
+
+  public ByteForceDB(String dataDir, int planCacheSize) {
+    this(dataDir, planCacheSize, 0);
+  }
+
+  /**
+   * @param resultCacheBytes memory budget for cached SELECT results; 0 disables the result cache
+   */
+  public ByteForceDB(String dataDir, int planCacheSize, long resultCacheBytes) {
+    this(dataDir, planCacheSize, resultCacheBytes, RowStorage.HEAP);
+  }
+
+  /**
+   * @param rowStorage where tables keep their rows; off-heap and mapped storage keep large tables
+   *     out of the garbage collector's way
+   */
+  public ByteForceDB(
+      String dataDir, int planCacheSize, long resultCacheBytes, RowStorage rowStorage) {
+    this.storage = new StorageEngine(dataDir, rowStorage);
     this.storage.loadAllTables();
     this.parser = new SQLParser();
-    this.executor = new ExecutionEngine(this.storage);
+    this.metrics = new Metrics();
+    this.executor = new ExecutionEngine(this.storage, this.metrics);
+    this.planCache = new PlanCache(planCacheSize);
+    this.resultCache = new ResultCache(resultCacheBytes, this.executor);
+    this.metricsBean = new MetricsBean(this);
+    this.metricsBean.register(new File(dataDir).getAbsolutePath());
+
+    // Background GC for row versions left behind while long-running snapshots were open
+    this.vacuum =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "byteforce-vacuum");
+              t.setDaemon(true);
+              return t;
+            });
+    this.vacuum.scheduleWithFixedDelay(
+        () -> {
+          try {
+            storage.vacuum();
+          } catch (RuntimeException e) {
+            System.err.println("Vacuum failed: " + e.getMessage());
+          }
+        },
+        VACUUM_INTERVAL_MS,
+        VACUUM_INTERVAL_MS,
+        TimeUnit.MILLISECONDS);
   }
 
   public ExecutionResult execute(String sql) {
     return execute(sql, null);
   }
 
+  /**
+   * Runs {@code sql} on the calling thread's session, so BEGIN ... COMMIT issued from one thread
+   * form a single transaction. Use {@link #openSession()} when a transaction must not be tied to a
+   * thread.
+   */
   public ExecutionResult execute(String sql, List<Object> params) {
+    return currentSession().execute(sql, params);
+  }
+
+  public Cursor query(String sql) {
+    return query(sql, null);
+  }
+
+  /** Runs a SELECT and streams its rows through a cursor, which must be closed after use. */
+  public Cursor query(String sql, List<Object> params) {
+    return currentSession().query(sql, params);
+  }
+
+  public CompletableFuture<ExecutionResult> executeAsync(String sql) {
+    return executeAsync(sql, null);
+  }
+
+  /**
+   * Runs {@code sql} on the engine executor and completes the future with its result. Each call
+   * gets a session of its own, so it runs in its own implicit transaction; a BEGIN without COMMIT
+   * in the same statement is rolled back. When the executor's queue is full the future fails with
+   * {@link RejectedExecutionException}.
+   */
+  public CompletableFuture<ExecutionResult> executeAsync(String sql, List<Object> params) {
     try {
-      Map<String, Object> plan = parser.parse(sql);
-      return executor.execute(plan, params);
-    } catch (Exception e) {
-      return ExecutionResult.error("Error: " + e.getMessage());
+      return CompletableFuture.supplyAsync(
+          () -> {
+            try (Session session = openSession()) {
+              return session.execute(sql, params);
+            }
+          },
+          getAsyncExecutor());
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
     }
   }
 
+  public Flow.Publisher<Map<String, Object>> publish(String sql) {
+    return publish(sql, null);
+  }
+
+  /**
+   * Publishes the rows of a SELECT to subscribers, reading them from a cursor on the engine
+   * executor only as fast as each subscriber requests them. Every subscription runs the query
+   * afresh.
+   */
+  public Flow.Publisher<Map<String, Object>> publish(String sql, List<Object> params) {
+    Map<String, Object> plan = getPlan(sql);
+    if (!"select".equals(plan.get("type"))) {
+      throw new IllegalArgumentException("Only SELECT statements can be published");
+    }
+    return new RowPublisher(() -> executor.openCursor(sql, plan, params, null), getAsyncExecutor());
+  }
+
+  /** Threads that run async statements and publishers, one per core, started on first use. */
+  synchronized ExecutorService getAsyncExecutor() {
+    if (asyncExecutor == null) {
+      int threads = Runtime.getRuntime().availableProcessors();
+      AtomicInteger count = new AtomicInteger();
+      asyncExecutor =
+          new ThreadPoolExecutor(
+              threads,
+              threads,
+              0,
+              TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(ASYNC_QUEUE_SIZE),
+              r -> {
+                Thread t = new Thread(r, "byteforce-async-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+              });
+    }
+    return asyncExecutor;
+  }
+
+  /**
+   * Runs a parameterized INSERT, UPDATE or DELETE once per parameter set in a single transaction
+   * that is persisted once, instead of once per row.
+   */
+  public ExecutionResult executeBatch(String sql, List<List<Object>> params) {
+    return currentSession().executeBatch(sql, params);
+  }
+
+  /**
+   * Parses {@code sql} once (or reuses the cached plan) and returns a handle that skips parsing on
+   * every subsequent execution.
+   */
+  public PreparedQuery prepare(String sql) {
+    return new PreparedQuery(this, null, sql, getPlan(sql));
+  }
+
+  public Session openSession() {
+    return new Session(this);
+  }
+
+  Session currentSession() {
+    return threadSession.get();
+  }
+
+  Map<String, Object> getPlan(String sql) {
+    Map<String, Object> plan = planCache.get(sql);
+    if (plan == null) {
+      long start = System.nanoTime();
+      try {
+        plan = parser.parse(sql);
+        // The parser reports syntax errors and hands back an empty plan
+        if (plan.get("type") == null) {
+          throw new IllegalArgumentException("Syntax error in '" + sql + "'");
+        }
+      } catch (RuntimeException e) {
+        metrics.recordError();
+        throw e;
+      }
+      metrics.recordPhase(Metrics.Phase.PARSE, System.nanoTime() - start);
+      planCache.put(sql, plan);
+    }
+    return plan;
+  }
+
+  ExecutionEngine getExecutor() {
+    return executor;
+  }
+
   public StorageEngine getStorage() {
     return storage;
   }
+
+  public PlanCache getPlanCache() {
+    return planCache;
+  }
+
+  public ResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /**
+   * SELECT plans compiled into a fused scan-filter-project loop. A plan from the plan cache or a
+   * {@link PreparedQuery} is compiled on its 16th execution.
+   */
+  public int getCompiledPlanCount() {
+    return executor.getCompiledPlanCount();
+  }
+
+  /** Statement latencies, phase timings and row counters; also published over JMX. */
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Logs every statement that takes longer than {@code thresholdMillis} to {@code path}, replacing
+   * the current slow query log if there is one. The log is written by a background thread.
+   */
+  public void enableSlowQueryLog(String path, long thresholdMillis) throws IOException {
+    SlowQueryLog previous = executor.getSlowQueryLog();
+    executor.setSlowQueryLog(new SlowQueryLog(path, thresholdMillis));
+    if (previous != null) {
+      previous.close();
+    }
+  }
+
+  public void disableSlowQueryLog() {
+    SlowQueryLog previous = executor.getSlowQueryLog();
+    executor.setSlowQueryLog(null);
+    if (previous != null) {
+      previous.close();
+    }
+  }
+
+  /**
+   * Caps the estimated memory one statement's hash join may hold; beyond it the join spills rows to
+   * temp files under the data directory. Defaults to the {@code byteforce.queryMemory} system
+   * property, or 64 MB.
+   */
+  public void setQueryMemoryLimit(long bytes) {
+    executor.setQueryMemoryLimit(bytes);
+  }
+
+  public long getQueryMemoryLimit() {
+    return executor.getQueryMemoryLimit();
+  }
+
+  /** The active slow query log, or null when it is disabled. */
+  public SlowQueryLog getSlowQueryLog() {
+    return executor.getSlowQueryLog();
+  }
+
+  /**
+   * Makes this database a primary: from now on every committed transaction is appended to the
+   * replication log in {@code logDir}, which replicas follow from that directory or through {@link
+   * #startLogShipping}. A new log starts with a copy of the tables there are. Keep the log enabled
+   * whenever the database runs; writes made without it never reach the replicas.
+   */
+  public synchronized ReplicationLog enableReplicationLog(String logDir) throws IOException {
+    if (replica != null) throw new IllegalStateException("A replica cannot keep a replication log");
+    if (replicationLog != null) throw new IllegalStateException("Replication log already enabled");
+    ReplicationLog log = new ReplicationLog(logDir);
+    try {
+      executor.enableReplicationLog(log);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.close();
+      throw new IOException("Interrupted while enabling the replication log", e);
+    } catch (IOException | RuntimeException e) {
+      log.close();
+      throw e;
+    }
+    replicationLog = log;
+    return log;
+  }
+
+  /** The replication log of a primary, or null. */
+  public synchronized ReplicationLog getReplicationLog() {
+    return replicationLog;
+  }
+
+  /**
+   * Streams the replication log to replicas connecting to {@code port} (0 picks a free one) on the
+   * loopback interface and returns the port.
+   */
+  public int startLogShipping(int port) throws IOException {
+    return startLogShipping(LogShipper.DEFAULT_BIND, port);
+  }
+
+  /**
+   * Streams the replication log to replicas connecting to {@code port} on {@code bindAddress} and
+   * returns the port. Replicas are not authenticated and are sent every row written, so bind
+   * another interface only on a network the primary trusts.
+   */
+  public synchronized int startLogShipping(String bindAddress, int port) throws IOException {
+    if (replicationLog == null) {
+      throw new IllegalStateException("Enable the replication log before shipping it");
+    }
+    if (logShipper != null) throw new IllegalStateException("Log shipping already started");
+    logShipper = new LogShipper(replicationLog, bindAddress, port);
+    return logShipper.getPort();
+  }
+
+  /** Replicas connected to the log shipper. */
+  public synchronized int getShippedReplicaCount() {
+    return logShipper != null ? logShipper.getReplicaCount() : 0;
+  }
+
+  /**
+   * Makes this database a read-only replica of the primary whose replication log is in {@code
+   * logDir}. Only an empty database, or one that replicated from the same primary before, can
+   * follow a primary.
+   */
+  public synchronized Replica startReplica(String logDir) {
+    checkCanReplicate();
+    executor.setReadOnly(true);
+    replica = Replica.fromDirectory(executor, storage, logDir);
+    return replica;
+  }
+
+  /** Same as {@link #startReplica(String)}, following the log shipped from {@code host:port}. */
+  public synchronized Replica startReplica(String host, int port) {
+    checkCanReplicate();
+    executor.setReadOnly(true);
+    replica = Replica.fromSocket(executor, storage, host, port);
+    return replica;
+  }
+
+  private void checkCanReplicate() {
+    if (replicationLog != null) throw new IllegalStateException("A primary cannot be a replica");
+    if (replica != null) throw new IllegalStateException("Already a replica");
+    if (storage.getReplicationPosition() < 0 && !storage.listTables().isEmpty()) {
+      throw new IllegalStateException("Only an empty database can start replicating");
+    }
+  }
+
+  /** The replica this database runs, or null. */
+  public synchronized Replica getReplica() {
+    return replica;
+  }
+
+  /**
+   * Stops following the primary and accepts writes again. The tables then part ways with the
+   * primary's log, so the database cannot resume following it.
+   */
+  public synchronized void stopReplica() throws IOException {
+    if (replica == null) return;
+    replica.close();
+    replica = null;
+    storage.clearReplicationPosition();
+    executor.setReadOnly(false);
+  }
+
+  /**
+   * Sets up replication from system properties: {@code byteforce.replicationLog} names the
+   * directory of a log to keep and {@code byteforce.replicationPort} a port to ship it on, on the
+   * address in {@code byteforce.replicationBind} or else loopback, while {@code
+   * byteforce.replicaOf} makes this database a replica of a log directory or a {@code host:port}.
+   */
+  public void startReplicationFromSystemProperties() throws IOException {
+    String logDir = System.getProperty("byteforce.replicationLog");
+    String port = System.getProperty("byteforce.replicationPort");
+    String bind = System.getProperty("byteforce.replicationBind", LogShipper.DEFAULT_BIND);
+    String primary = System.getProperty("byteforce.replicaOf");
+    if (logDir != null) {
+      enableReplicationLog(logDir);
+      if (port != null) {
+        startLogShipping(bind.trim(), Integer.parseInt(port.trim()));
+      }
+    }
+    if (primary != null) {
+      int colon = primary.lastIndexOf(':');
+      if (new File(primary).isDirectory() || colon < 0) {
+        startReplica(primary);
+      } else {
+        startReplica(primary.substring(0, colon), Integer.parseInt(primary.substring(colon + 1)));
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (replica != null) replica.close();
+      if (logShipper != null) logShipper.close();
+      if (replicationLog != null) replicationLog.close();
+    }
+    vacuum.shutdownNow();
+    synchronized (this) {
+      if (asyncExecutor != null) asyncExecutor.shutdown();
+    }
+    metricsBean.unregister();
+    disableSlowQueryLog();
+  }
 }
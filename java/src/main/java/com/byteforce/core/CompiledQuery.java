@@ -0,0 +1,350 @@
+package com.byteforce.core;
+
+import com.byteforce.core.models.Table;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A SELECT plan that ran often enough to be specialized. Compiling reads what the plan map says
+ * once: the tables, the join columns, the projected columns and the limit. An execution then only
+ * binds the WHERE value into a predicate made for its operator and the value's type, and runs scan,
+ * join probe, filter, projection and limit as one loop, without plan lookups or per-operator
+ * statistics per row. It covers SELECTs on one table and equi-joins of two; partitioned tables and
+ * other join conditions stay interpreted. It is compiled again when one of its tables is replaced.
+ */
+final class CompiledQuery {
+  /** Executions of a plan after which it is compiled. */
+  static final int COMPILE_AFTER = 16;
+
+  final Table table;
+  final Map<String, Object> where;
+  final Table joinTable;
+  final String leftColumn;
+  final String rightColumn;
+  final boolean outerJoin;
+  final List<String> leftColumns;
+  final List<String> rightColumns;
+  final String label;
+  // Null for SELECT *
+  private final String[] columns;
+  private final int limit;
+
+  private CompiledQuery(
+      Table table,
+      Map<String, Object> where,
+      Table joinTable,
+      Map<String, Object> condition,
+      boolean outerJoin,
+      String rightColumn,
+      String[] columns,
+      int limit,
+      String label) {
+    this.table = table;
+    this.where = where;
+    this.joinTable = joinTable;
+    this.leftColumn = condition != null ? (String) condition.get("column") : null;
+    this.rightColumn = rightColumn;
+    this.outerJoin = outerJoin;
+    this.leftColumns = new ArrayList<>(table.getColumns().keySet());
+    this.rightColumns = joinTable != null ? new ArrayList<>(joinTable.getColumns().keySet()) : null;
+    this.columns = columns;
+    this.limit = limit;
+    this.label = label;
+  }
+
+  /** Compiles a SELECT plan, or returns null for one this class does not cover. */
+  @SuppressWarnings("unchecked")
+  static CompiledQuery compile(Map<String, Object> plan, StorageEngine storage) {
+    if (!"select".equals(plan.get("type"))) return null;
+    Table table = storage.getTable((String) plan.get("table_name"));
+    if (table == null || table.isPartitioned()) return null;
+
+    Map<String, Object> join = (Map<String, Object>) plan.get("join");
+    Table joinTable = null;
+    Map<String, Object> condition = null;
+    String rightColumn = null;
+    boolean outerJoin = false;
+    if (join != null) {
+      joinTable = storage.getTable((String) join.get("join_table"));
+      condition = (Map<String, Object>) join.get("condition");
+      rightColumn = ExecutionEngine.hashJoinColumn(condition);
+      if (joinTable == null || rightColumn == null) return null;
+      outerJoin = (Boolean) join.getOrDefault("is_left", false);
+    }
+
+    String[] columns = null;
+    if (!"*".equals(plan.get("columns"))) {
+      columns = ((List<String>) plan.get("columns")).toArray(new String[0]);
+    }
+    int limit = plan.containsKey("limit") ? (int) plan.get("limit") : -1;
+
+    Map<String, Object> where = (Map<String, Object>) plan.get("where");
+    StringBuilder label = new StringBuilder("Compiled Select on ").append(table.getName());
+    if (joinTable != null) {
+      label
+          .append(outerJoin ? " LEFT JOIN " : " JOIN ")
+          .append(joinTable.getName())
+          .append(" ON ")
+          .append(ExecutionEngine.describe(condition));
+    }
+    if (where != null) label.append(" WHERE ").append(ExecutionEngine.describe(where));
+    return new CompiledQuery(
+        table,
+        where,
+        joinTable,
+        condition,
+        outerJoin,
+        rightColumn,
+        columns,
+        limit,
+        label.toString());
+  }
+
+  /** False once a table it was compiled against was replaced. */
+  boolean isCurrent(StorageEngine storage) {
+    return storage.getTable(table.getName()) == table
+        && (joinTable == null || storage.getTable(joinTable.getName()) == joinTable);
+  }
+
+  /**
+   * A test of rows against a bound WHERE clause, or null when there is none, with the same results
+   * as {@link ExecutionEngine#compare}. Constants of the common types get a closure per operator
+   * that reads the row's value once and compares without dispatching on the operator.
+   */
+  static Predicate<Map<String, Object>> predicate(Map<String, Object> resolved) {
+    if (resolved == null) return null;
+    String col = (String) resolved.get("column");
+    String op = (String) resolved.get("operator");
+    Object value = resolved.get("value");
+
+    if (resolved.containsKey("dictionary")) {
+      if ("=".equals(op)) return row -> row.get(col) == value;
+      return row -> {
+        Object v = row.get(col);
+        return v != null && v != value;
+      };
+    }
+    if (value instanceof Map) {
+      Object other = ((Map<?, ?>) value).get("name");
+      return row -> ExecutionEngine.compare(row.get(col), op, row.get(other));
+    }
+    // Only NULL compares with NULL, by any operator
+    if (value == null) return row -> row.get(col) == null;
+
+    if (value instanceof Number) {
+      double d = ((Number) value).doubleValue();
+      switch (op) {
+        case "=":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof Number && ((Number) v).doubleValue() == d;
+          };
+        case "!=":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof Number ? ((Number) v).doubleValue() != d : v != null;
+          };
+        case ">":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof Number && ((Number) v).doubleValue() > d;
+          };
+        case ">=":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof Number && ((Number) v).doubleValue() >= d;
+          };
+        case "<":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof Number && ((Number) v).doubleValue() < d;
+          };
+        case "<=":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof Number && ((Number) v).doubleValue() <= d;
+          };
+      }
+    } else if (value instanceof String) {
+      String s = (String) value;
+      switch (op) {
+        case "=":
+          return row -> s.equals(row.get(col));
+        case "!=":
+          return row -> {
+            Object v = row.get(col);
+            return v != null && !s.equals(v);
+          };
+        case ">":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof String && ((String) v).compareTo(s) > 0;
+          };
+        case ">=":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof String && ((String) v).compareTo(s) >= 0;
+          };
+        case "<":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof String && ((String) v).compareTo(s) < 0;
+          };
+        case "<=":
+          return row -> {
+            Object v = row.get(col);
+            return v instanceof String && ((String) v).compareTo(s) <= 0;
+          };
+      }
+    }
+    return row -> ExecutionEngine.compare(row.get(col), op, value);
+  }
+
+  /**
+   * The statement's rows, read lazily from {@code source}: the left table's rows, joined through
+   * {@code probe} when there is a join, or rows joined already when {@code probe} is null. With
+   * {@code project}, rows are projected or, for SELECT *, copied.
+   */
+  Iterator<Map<String, Object>> rows(
+      Iterator<Map<String, Object>> source,
+      Function<Map<String, Object>, List<Map<String, Object>>> probe,
+      Predicate<Map<String, Object>> filter,
+      boolean project,
+      boolean countScanned,
+      QueryStats stats) {
+    return new Iterator<Map<String, Object>>() {
+      private Iterator<Map<String, Object>> joined = Collections.emptyIterator();
+      private Map<String, Object> next;
+      private long produced;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null) {
+          if (limit >= 0 && produced >= limit) return false;
+          Map<String, Object> row;
+          if (joined.hasNext()) {
+            row = joined.next();
+          } else if (source.hasNext()) {
+            row = source.next();
+            if (countScanned) stats.rowsScanned++;
+            if (probe != null) {
+              List<Map<String, Object>> matches = probe.apply(row);
+              if (matches.isEmpty()) continue;
+              row = matches.get(0);
+              if (matches.size() > 1) joined = matches.listIterator(1);
+            }
+          } else {
+            return false;
+          }
+          if (filter != null && !filter.test(row)) continue;
+          next = project ? project(row) : row;
+          produced++;
+          stats.rowsReturned++;
+        }
+        return true;
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Map<String, Object> row = next;
+        next = null;
+        return row;
+      }
+    };
+  }
+
+  private Map<String, Object> project(Map<String, Object> row) {
+    if (columns == null) {
+      // Joined rows are built per statement; stored rows are copied so callers can't modify them
+      return joinTable != null ? row : new HashMap<>(row);
+    }
+    Map<String, Object> projected = new LinkedHashMap<>(columns.length * 2);
+    for (String col : columns) {
+      projected.put(col, row.get(col));
+    }
+    return projected;
+  }
+
+  /**
+   * Compiled plans by plan identity, so the plan cache and prepared statements, which hand the same
+   * plan map to every execution, find theirs. A plan is compiled on its {@link #COMPILE_AFTER}th
+   * execution; plans not run for a while are evicted LRU.
+   */
+  static final class Cache {
+    private final LinkedHashMap<Key, Entry> entries;
+
+    Cache(int capacity) {
+      this.entries =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+              return size() > capacity;
+            }
+          };
+    }
+
+    /** Counts an execution of {@code plan} and returns its compiled form, if it has one. */
+    CompiledQuery get(Map<String, Object> plan, StorageEngine storage) {
+      Entry entry;
+      synchronized (entries) {
+        entry = entries.computeIfAbsent(new Key(plan), k -> new Entry());
+      }
+      CompiledQuery compiled = entry.compiled;
+      if (compiled != null && compiled.isCurrent(storage)) return compiled;
+      return entry.executed(plan, storage);
+    }
+
+    /** Plans compiled and still cached. */
+    int size() {
+      int count = 0;
+      synchronized (entries) {
+        for (Entry entry : entries.values()) {
+          if (entry.compiled != null) count++;
+        }
+      }
+      return count;
+    }
+  }
+
+  private static final class Entry {
+    private volatile CompiledQuery compiled;
+    private int executions;
+
+    synchronized CompiledQuery executed(Map<String, Object> plan, StorageEngine storage) {
+      CompiledQuery current = compiled;
+      if (current != null && current.isCurrent(storage)) return current;
+      if (++executions < COMPILE_AFTER) return null;
+      // A plan this class does not cover is tried again after as many executions
+      executions = 0;
+      compiled = compile(plan, storage);
+      return compiled;
+    }
+  }
+
+  private static final class Key {
+    private final Map<String, Object> plan;
+
+    Key(Map<String, Object> plan) {
+      this.plan = plan;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).plan == plan;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(plan);
+    }
+  }
+}
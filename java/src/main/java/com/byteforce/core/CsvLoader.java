@@ -0,0 +1,277 @@
+package com.byteforce.core;
+
+import com.byteforce.core.models.Column;
+import com.byteforce.core.models.DataType;
+import com.byteforce.core.models.Table;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Parses a CSV file into typed rows for COPY. The file is memory-mapped and cut into line-aligned
+ * segments that are parsed in parallel. A first line made only of column names is treated as a
+ * header (as written by {@code .export}); otherwise fields follow the table's column order. Fields
+ * are quoted as in RFC 4180 and may then hold commas, quotes and line breaks. An empty field is
+ * NULL, while a quoted empty field is an empty TEXT value.
+ */
+final class CsvLoader {
+  // Keeps each mapping well under the 2 GB limit of a single MappedByteBuffer
+  private static final long MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+  private static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+
+  private final Table table;
+
+  CsvLoader(Table table) {
+    this.table = table;
+  }
+
+  List<Map<String, Object>> load(String file) throws IOException {
+    Path path = Paths.get(file);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size == 0) return new ArrayList<>();
+
+      long headerEnd = lineEnd(channel, 0);
+      // Column names are never quoted, so the header is one line
+      List<String> firstLine = splitLine(readLine(channel, 0, headerEnd));
+      List<Column> layout = headerLayout(firstLine);
+      long dataStart = layout != null ? headerEnd : 0;
+      if (layout == null) {
+        layout = new ArrayList<>(table.getColumns().values());
+      }
+
+      List<long[]> segments = split(channel, dataStart, size);
+      List<Column> columns = layout;
+      List<Segment> parsed =
+          IntStream.range(0, segments.size())
+              .parallel()
+              .mapToObj(i -> parse(channel, segments.get(i), columns))
+              .collect(Collectors.toList());
+
+      // Line numbers are only known once every earlier segment has been counted
+      int lineNo = dataStart > 0 ? 1 : 0;
+      int total = 0;
+      for (Segment segment : parsed) {
+        if (segment.error != null) {
+          throw new IllegalArgumentException(
+              "Line " + (lineNo + segment.lines) + ": " + segment.error);
+        }
+        lineNo += segment.lines;
+        total += segment.rows.size();
+      }
+
+      List<Map<String, Object>> rows = new ArrayList<>(total);
+      for (Segment segment : parsed) {
+        rows.addAll(segment.rows);
+      }
+      return rows;
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("File '" + file + "' not found");
+    }
+  }
+
+  // Columns named by the first line, or null when it is data rather than a header
+  private List<Column> headerLayout(List<String> fields) {
+    List<Column> layout = new ArrayList<>();
+    for (String field : fields) {
+      if (field == null) return null;
+      Column column = table.getColumns().get(field.trim());
+      if (column == null) return null;
+      layout.add(column);
+    }
+    return layout;
+  }
+
+  /**
+   * Cuts [start, end) into roughly equal pieces, each moved forward to begin on a new record. A
+   * line break only ends a record outside quotes, and whether a position is inside quotes depends
+   * on every quote before it, so the quotes are counted in one pass over the file. That pass only
+   * looks for two byte values and is much cheaper than the parsing it lets run in parallel.
+   */
+  private static List<long[]> split(FileChannel channel, long start, long end) throws IOException {
+    long length = end - start;
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    long target = Math.max(MIN_SEGMENT_BYTES, length / parallelism + 1);
+    target = Math.min(target, MAX_SEGMENT_BYTES);
+
+    List<long[]> segments = new ArrayList<>();
+    ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+    boolean quoted = false;
+    long segmentStart = start;
+    long pos = start;
+    while (pos < end) {
+      buf.clear();
+      int n = channel.read(buf, pos);
+      if (n <= 0) break;
+      for (int i = 0; i < n; i++) {
+        byte b = buf.get(i);
+        if (b == '"') {
+          quoted = !quoted;
+        } else if (b == '\n' && !quoted && pos + i + 1 - segmentStart >= target) {
+          segments.add(new long[] {segmentStart, pos + i + 1});
+          segmentStart = pos + i + 1;
+        }
+      }
+      pos += n;
+    }
+    if (segmentStart < end) {
+      segments.add(new long[] {segmentStart, end});
+    }
+    return segments;
+  }
+
+  // Position just past the next line break at or after pos, or the end of the file
+  private static long lineEnd(FileChannel channel, long pos) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(8192);
+    long size = channel.size();
+    while (pos < size) {
+      buf.clear();
+      int n = channel.read(buf, pos);
+      if (n <= 0) break;
+      for (int i = 0; i < n; i++) {
+        if (buf.get(i) == '\n') return pos + i + 1;
+      }
+      pos += n;
+    }
+    return size;
+  }
+
+  private static String readLine(FileChannel channel, long start, long end) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate((int) Math.min(end - start, Integer.MAX_VALUE));
+    while (buf.hasRemaining() && channel.read(buf, start + buf.position()) > 0) {}
+    return new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8);
+  }
+
+  private Segment parse(FileChannel channel, long[] range, List<Column> columns) {
+    Segment segment = new Segment();
+    MappedByteBuffer buf;
+    try {
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+    } catch (IOException e) {
+      segment.error = e.getMessage();
+      return segment;
+    }
+
+    byte[] line = new byte[256];
+    int len = 0;
+    boolean quoted = false;
+    int limit = buf.limit();
+    for (int i = 0; i <= limit; i++) {
+      byte b = i < limit ? buf.get(i) : (byte) '\n';
+      if (b == '"') quoted = !quoted;
+      if (b != '\n' || (quoted && i < limit)) {
+        if (len == line.length) {
+          line = Arrays.copyOf(line, len * 2);
+        }
+        line[len++] = b;
+        if (b == '\n') segment.lines++;
+        continue;
+      }
+      if (i == limit && len == 0) break;
+
+      segment.lines++;
+      if (len > 0 && line[len - 1] == '\r') len--;
+      if (len > 0) {
+        String text = new String(line, 0, len, StandardCharsets.UTF_8);
+        try {
+          segment.rows.add(toRow(splitLine(text), columns));
+        } catch (IllegalArgumentException e) {
+          segment.error = e.getMessage();
+          return segment;
+        }
+      }
+      len = 0;
+    }
+    return segment;
+  }
+
+  private static Map<String, Object> toRow(List<String> fields, List<Column> columns) {
+    if (fields.size() != columns.size()) {
+      throw new IllegalArgumentException(
+          "Expected " + columns.size() + " fields but found " + fields.size());
+    }
+    Map<String, Object> row = new HashMap<>();
+    for (int i = 0; i < columns.size(); i++) {
+      Column column = columns.get(i);
+      row.put(column.getName(), convert(fields.get(i), column));
+    }
+    return row;
+  }
+
+  private static Object convert(String field, Column column) {
+    if (field == null) return null;
+    if (column.getDataType() == DataType.TEXT) return field;
+    if (field.isEmpty()) return null;
+    try {
+      switch (column.getDataType()) {
+        case INTEGER:
+          return Integer.parseInt(field.trim());
+        case FLOAT:
+          return Double.parseDouble(field.trim());
+        case BOOLEAN:
+          String b = field.trim();
+          if (b.equalsIgnoreCase("true")) return true;
+          if (b.equalsIgnoreCase("false")) return false;
+          break;
+        default:
+          break;
+      }
+    } catch (NumberFormatException ignored) {
+      // Reported below
+    }
+    throw new IllegalArgumentException(
+        "Invalid value for column '" + column.getName() + "': " + field);
+  }
+
+  // Splits on commas outside double quotes; "" inside quotes is a literal quote. An empty field
+  // that was not quoted comes back as null
+  private static List<String> splitLine(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    boolean wasQuoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+        wasQuoted = true;
+      } else if (c == ',') {
+        fields.add(field.length() > 0 || wasQuoted ? field.toString() : null);
+        field.setLength(0);
+        wasQuoted = false;
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.length() > 0 || wasQuoted ? field.toString() : null);
+    return fields;
+  }
+
+  private static final class Segment {
+    private final List<Map<String, Object>> rows = new ArrayList<>();
+    private int lines;
+    private String error;
+  }
+}
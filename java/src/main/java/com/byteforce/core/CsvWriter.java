@@ -0,0 +1,40 @@
+package com.byteforce.core;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a cursor's rows as CSV that COPY reads back unchanged: a header of column names, then one
+ * record per row, quoted as in RFC 4180. NULL is an empty field and an empty string is {@code ""},
+ * so the two stay apart.
+ */
+public final class CsvWriter {
+  private CsvWriter() {}
+
+  /** Writes the header and every remaining row of {@code cursor}, returning the rows written. */
+  public static int write(Cursor cursor, Writer writer) throws IOException {
+    writer.write(String.join(",", cursor.getColumns()));
+    writer.write("\n");
+
+    int count = 0;
+    while (cursor.next()) {
+      for (int i = 0; i < cursor.getColumnCount(); i++) {
+        if (i > 0) writer.write(",");
+        String value = cursor.getString(i);
+        if (value != null) writer.write(field(value));
+      }
+      writer.write("\n");
+      count++;
+    }
+    return count;
+  }
+
+  static String field(String value) {
+    boolean quote = value.isEmpty();
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    return quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+  }
+}
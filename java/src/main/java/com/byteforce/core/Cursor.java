@@ -0,0 +1,176 @@
+package com.byteforce.core;
+
+import com.byteforce.core.models.DataType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A forward-only cursor over a SELECT result. Rows are produced one at a time from the statement's
+ * snapshot as {@link #next()} is called, so paging through a large table takes constant memory.
+ * Columns are addressed by 0-based position in {@link #getColumns()} or by name. The cursor pins
+ * its snapshot until it is closed or exhausted, so always close it.
+ */
+public class Cursor implements AutoCloseable {
+  private final List<String> columns;
+  private final DataType[] types;
+  private final Map<String, Integer> positions = new HashMap<>();
+  private final Iterator<Map<String, Object>> source;
+  private final Runnable onClose;
+
+  private Map<String, Object> current;
+  private boolean wasNull;
+  private boolean closed;
+
+  Cursor(
+      String[] columns, DataType[] types, Iterator<Map<String, Object>> source, Runnable onClose) {
+    this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+    this.types = types;
+    this.source = source;
+    this.onClose = onClose;
+    for (int i = 0; i < columns.length; i++) {
+      positions.putIfAbsent(columns[i], i);
+    }
+  }
+
+  /**
+   * A cursor over rows that are already materialized, such as an EXPLAIN result. Columns follow the
+   * key order of the first row and have no declared type.
+   */
+  public static Cursor of(List<Map<String, Object>> rows) {
+    String[] columns = rows.isEmpty() ? new String[0] : rows.get(0).keySet().toArray(new String[0]);
+    return new Cursor(columns, new DataType[columns.length], rows.iterator(), () -> {});
+  }
+
+  /** Moves to the next row. Returns false, and releases the snapshot, once there are no more. */
+  public boolean next() {
+    if (closed) throw new IllegalStateException("Cursor is closed");
+    if (source.hasNext()) {
+      current = source.next();
+      return true;
+    }
+    current = null;
+    close();
+    return false;
+  }
+
+  /** Column names in result order, shared by every row. */
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  public int getColumnCount() {
+    return columns.size();
+  }
+
+  /** Declared type of a column, or null when it cannot be traced back to a table column. */
+  public DataType getColumnType(int column) {
+    return types[checkPosition(column)];
+  }
+
+  public int findColumn(String name) {
+    Integer position = positions.get(name);
+    if (position == null) {
+      throw new IllegalArgumentException("Column '" + name + "' not in result");
+    }
+    return position;
+  }
+
+  public Object getObject(int column) {
+    if (current == null) throw new IllegalStateException("No current row");
+    Object value = current.get(columns.get(checkPosition(column)));
+    wasNull = value == null;
+    return value;
+  }
+
+  public Object getObject(String column) {
+    return getObject(findColumn(column));
+  }
+
+  public String getString(int column) {
+    Object value = getObject(column);
+    return value != null ? value.toString() : null;
+  }
+
+  public String getString(String column) {
+    return getString(findColumn(column));
+  }
+
+  /** Returns 0 for NULL; check {@link #wasNull()} to tell them apart. */
+  public int getInt(int column) {
+    Object value = getObject(column);
+    return value != null ? asNumber(value, column).intValue() : 0;
+  }
+
+  public int getInt(String column) {
+    return getInt(findColumn(column));
+  }
+
+  public long getLong(int column) {
+    Object value = getObject(column);
+    return value != null ? asNumber(value, column).longValue() : 0L;
+  }
+
+  public long getLong(String column) {
+    return getLong(findColumn(column));
+  }
+
+  public double getDouble(int column) {
+    Object value = getObject(column);
+    return value != null ? asNumber(value, column).doubleValue() : 0.0;
+  }
+
+  public double getDouble(String column) {
+    return getDouble(findColumn(column));
+  }
+
+  public boolean getBoolean(int column) {
+    Object value = getObject(column);
+    if (value == null) return false;
+    if (!(value instanceof Boolean)) {
+      throw new IllegalArgumentException(
+          "Column '" + columns.get(column) + "' is not a BOOLEAN: " + value);
+    }
+    return (Boolean) value;
+  }
+
+  public boolean getBoolean(String column) {
+    return getBoolean(findColumn(column));
+  }
+
+  /** True if the last value read was NULL. */
+  public boolean wasNull() {
+    return wasNull;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      current = null;
+      onClose.run();
+    }
+  }
+
+  private int checkPosition(int column) {
+    if (column < 0 || column >= columns.size()) {
+      throw new IndexOutOfBoundsException("Column index " + column + " out of range");
+    }
+    return column;
+  }
+
+  private Number asNumber(Object value, int column) {
+    if (!(value instanceof Number)) {
+      throw new IllegalArgumentException(
+          "Column '" + columns.get(column) + "' is not numeric: " + value);
+    }
+    return (Number) value;
+  }
+}
@@ -0,0 +1,63 @@
+package com.byteforce.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State scoped to a single statement execution. Keeping it out of {@link ExecutionEngine} lets one
+ * engine instance serve concurrent sessions.
+ */
+final class ExecutionContext {
+  private final List<Object> params;
+  private final QueryStats stats;
+  private int paramIndex;
+  private Transaction transaction;
+  private QueryMemory memory;
+
+  ExecutionContext(List<Object> params) {
+    this(params, new QueryStats());
+  }
+
+  /** A context whose statistics accumulate into {@code stats}, shared by the sets of a batch. */
+  ExecutionContext(List<Object> params, QueryStats stats) {
+    this.params = params != null ? params : new ArrayList<>();
+    this.stats = stats;
+    this.paramIndex = 0;
+  }
+
+  Object nextParam() {
+    if (paramIndex >= params.size()) {
+      throw new IllegalArgumentException("Not enough parameters provided for query placeholders.");
+    }
+    return params.get(paramIndex++);
+  }
+
+  QueryStats getStats() {
+    return stats;
+  }
+
+  Transaction getTransaction() {
+    return transaction;
+  }
+
+  void setTransaction(Transaction transaction) {
+    this.transaction = transaction;
+  }
+
+  /** The statement's operator memory, created on first use with the given limit. */
+  QueryMemory memory(long limit, File spillDir) {
+    if (memory == null) {
+      memory = new QueryMemory(limit, spillDir);
+    }
+    return memory;
+  }
+
+  /** Drops what the statement's operators spilled, once its rows were all read or abandoned. */
+  void releaseMemory() {
+    if (memory != null) {
+      memory.close();
+      memory = null;
+    }
+  }
+}
@@ -1,80 +1,541 @@
 package com.byteforce.core;
 
 import com.byteforce.core.models.Column;
+import com.byteforce.core.models.DataType;
+import com.byteforce.core.models.Partitioning;
+import com.byteforce.core.models.RowVersion;
+import com.byteforce.core.models.Snapshot;
 import com.byteforce.core.models.Table;
+import com.byteforce.core.models.TextDictionary;
+import com.byteforce.core.models.ZoneMap;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ExecutionEngine {
+  private static final long LOCK_TIMEOUT_MS = 10_000;
+  private static final int DEFAULT_HASH_PARTITIONS = 4;
+  private static final int COMPILED_PLANS = 256;
+
+  /** Memory a statement's hash join may hold before it spills to disk, unless configured. */
+  public static final long DEFAULT_QUERY_MEMORY = Long.getLong("byteforce.queryMemory", 64L << 20);
+
   private final StorageEngine storage;
-  private List<Object> currentParams;
-  private int paramIndex;
+  // Bumped once per committed transaction that changed the table's rows
+  private final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+  private final MaterializedViews views;
+  private final CompiledQuery.Cache compiledPlans = new CompiledQuery.Cache(COMPILED_PLANS);
+  private final Metrics metrics;
+  private volatile SlowQueryLog slowQueryLog;
+  private volatile ReplicationLog replicationLog;
+  private volatile boolean readOnly;
+  private volatile long queryMemoryLimit = DEFAULT_QUERY_MEMORY;
 
   public ExecutionEngine(StorageEngine storage) {
+    this(storage, new Metrics());
+  }
+
+  public ExecutionEngine(StorageEngine storage, Metrics metrics) {
     this.storage = storage;
+    this.metrics = metrics;
+    this.views = new MaterializedViews(this, storage);
+  }
+
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
+  /** Logs statements slower than the log's threshold; null turns logging off. */
+  public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+    this.slowQueryLog = slowQueryLog;
+  }
+
+  public SlowQueryLog getSlowQueryLog() {
+    return slowQueryLog;
+  }
+
+  /**
+   * Sets the estimated memory, in bytes, the operators of one statement may hold before they spill
+   * rows to temp files.
+   */
+  public void setQueryMemoryLimit(long bytes) {
+    if (bytes <= 0) {
+      throw new IllegalArgumentException("Query memory limit must be positive: " + bytes);
+    }
+    this.queryMemoryLimit = bytes;
+  }
+
+  public long getQueryMemoryLimit() {
+    return queryMemoryLimit;
+  }
+
+  /** SELECT plans run often enough to be compiled, among those executed recently. */
+  public int getCompiledPlanCount() {
+    return compiledPlans.size();
+  }
+
+  ReplicationLog getReplicationLog() {
+    return replicationLog;
+  }
+
+  /**
+   * Starts appending every committed write to {@code log}. A log that is still empty first gets a
+   * copy of every table, taken while all of them are locked, so each commit is either in the copy
+   * or logged after it.
+   */
+  void enableReplicationLog(ReplicationLog log) throws IOException, InterruptedException {
+    Transaction tx = storage.getTransactions().begin();
+    try {
+      Set<String> locked = new HashSet<>();
+      List<Table> tables = new ArrayList<>();
+      // Until no table was created while the others were being locked
+      for (boolean added = true; added; ) {
+        added = false;
+        for (String name : storage.listTables()) {
+          if (!locked.add(name)) continue;
+          Table table = storage.getTable(name);
+          lockTable(tx, name);
+          tables.add(table);
+          tables.addAll(table.getPartitions());
+          added = true;
+        }
+      }
+      if (log.getPosition() == 0 && !tables.isEmpty()) {
+        log.append(Collections.singletonList(ReplicationLog.Change.tables(tables)));
+      }
+      replicationLog = log;
+    } finally {
+      rollback(tx);
+    }
+  }
+
+  void disableReplicationLog() {
+    replicationLog = null;
+  }
+
+  /** On a replica, every statement but SELECT is refused; only replayed entries write. */
+  void setReadOnly(boolean readOnly) {
+    this.readOnly = readOnly;
   }
 
+  /** Changes whenever a committed write touches the table's rows. */
+  public long getTableVersion(String tableName) {
+    AtomicLong version = tableVersions.get(tableName);
+    return version != null ? version.get() : 0;
+  }
+
+  /** Runs a statement in its own implicit transaction, persisted when it commits. */
   public ExecutionResult execute(Map<String, Object> plan, List<Object> params) {
-    this.currentParams = params != null ? params : new ArrayList<>();
-    this.paramIndex = 0;
+    return execute(plan, params, null);
+  }
+
+  /**
+   * Runs a statement inside the explicit transaction {@code tx}, or in an implicit one of its own
+   * when {@code tx} is null. A failing statement only undoes its own writes, an explicit
+   * transaction stays open.
+   */
+  public ExecutionResult execute(Map<String, Object> plan, List<Object> params, Transaction tx) {
+    return execute(null, plan, params, tx);
+  }
 
+  /**
+   * Same as {@link #execute(Map, List, Transaction)}; {@code sql} is the statement's text for the
+   * slow query log. EXPLAIN ANALYZE runs the statement it wraps and returns the statistics of its
+   * operators instead of its result.
+   */
+  ExecutionResult execute(
+      String sql, Map<String, Object> plan, List<Object> params, Transaction tx) {
+    long start = System.nanoTime();
+    ExecutionContext ctx = new ExecutionContext(params);
+
+    boolean explain = "explain".equals(plan.get("type"));
+    if (explain) {
+      plan = safeGet(plan, "statement");
+    }
     String cmdType = (String) plan.get("type");
+    checkWritable(cmdType);
+    boolean isWrite = isWrite(cmdType) || "create_index".equals(cmdType) || "copy".equals(cmdType);
+    boolean implicit = tx == null && isWrite;
+    if (implicit) {
+      tx = storage.getTransactions().begin();
+    }
+    ctx.setTransaction(tx);
+    int savepoint = tx != null ? tx.savepoint() : 0;
+
     try {
-      switch (cmdType) {
-        case "create_table":
-          return executeCreateTable(plan);
-        case "insert":
-          return executeInsert(plan);
-        case "select":
-          return executeSelect(plan);
-        case "create_index":
-          return executeCreateIndex(plan);
-        case "update":
-          return executeUpdate(plan);
-        case "delete":
-          return executeDelete(plan);
-        default:
-          throw new IllegalArgumentException("Unknown command type: " + cmdType);
+      if (isWrite) {
+        lockForWrite(tx, (String) plan.get("table_name"));
+        if (!"create_index".equals(cmdType)) {
+          checkNotView((String) plan.get("table_name"));
+        }
       }
+
+      ExecutionResult result = dispatch(cmdType, plan, ctx);
+      // COPY logs the rows it loaded, CREATE TABLE and VIEW log themselves
+      if (replicationLog != null && (isWrite(cmdType) || "create_index".equals(cmdType))) {
+        tx.logChange(ReplicationLog.Change.statement(plan, Collections.singletonList(params)));
+      }
+
+      if (implicit) {
+        commit(tx, ctx.getStats());
+      }
+      long nanos = System.nanoTime() - start;
+      finish(cmdType, sql, ctx.getStats(), nanos, false);
+      return explain ? explainResult(ctx.getStats(), result, nanos) : result;
     } catch (Exception e) {
+      if (implicit) {
+        rollback(tx);
+      } else if (tx != null) {
+        tx.undoTo(savepoint);
+      }
+      finish(cmdType, sql, ctx.getStats(), System.nanoTime() - start, true);
       // Allow specific exceptions to bubble up or wrap them
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Runs one INSERT, UPDATE or DELETE plan once per parameter set, all in a single transaction so
+   * the table is locked once and persisted once. INSERT rows from every set are validated and
+   * indexed together. Either every set is applied or, on any failure, none of them.
+   */
+  public ExecutionResult executeBatch(
+      Map<String, Object> plan, List<List<Object>> paramSets, Transaction tx) {
+    return executeBatch(null, plan, paramSets, tx);
+  }
+
+  ExecutionResult executeBatch(
+      String sql, Map<String, Object> plan, List<List<Object>> paramSets, Transaction tx) {
+    String cmdType = (String) plan.get("type");
+    if (!isWrite(cmdType)) {
+      throw new IllegalArgumentException("Only INSERT, UPDATE and DELETE can be batched");
+    }
+    checkWritable(cmdType);
+
+    long start = System.nanoTime();
+    QueryStats stats = new QueryStats();
+    boolean implicit = tx == null;
+    if (implicit) {
+      tx = storage.getTransactions().begin();
+    }
+    int savepoint = tx.savepoint();
+
+    try {
+      lockForWrite(tx, (String) plan.get("table_name"));
+      checkNotView((String) plan.get("table_name"));
+
+      int count = 0;
+      if ("insert".equals(cmdType)) {
+        String tableName = (String) plan.get("table_name");
+        Table table = getTable(tableName);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        QueryStats.Operator insert = stats.operator("Insert on " + tableName, null);
+        long insertStart = System.nanoTime();
+        for (List<Object> params : paramSets) {
+          rows.addAll(buildInsertRows(table, plan, new ExecutionContext(params, stats)));
+        }
+        count = insertRows(table, rows, tx);
+        insert.add(System.nanoTime() - insertStart);
+        insert.rows = count;
+        stats.rowsAffected += count;
+      } else {
+        for (List<Object> params : paramSets) {
+          ExecutionContext ctx = new ExecutionContext(params, stats);
+          ctx.setTransaction(tx);
+          count += dispatch(cmdType, plan, ctx).getAffectedRows();
+          stats.repeat();
+        }
+      }
+      if (replicationLog != null) {
+        tx.logChange(ReplicationLog.Change.statement(plan, paramSets));
+      }
+
+      if (implicit) {
+        commit(tx, stats);
+      }
+      finish("batch", sql, stats, System.nanoTime() - start, false);
+      return ExecutionResult.success(count + " row(s) affected.", count);
+    } catch (Exception e) {
+      if (implicit) {
+        rollback(tx);
+      } else {
+        tx.undoTo(savepoint);
+      }
+      finish("batch", sql, stats, System.nanoTime() - start, true);
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void checkWritable(String cmdType) {
+    if (readOnly && !"select".equals(cmdType)) {
+      throw new IllegalStateException("Database is a read-only replica");
+    }
+  }
+
+  // Views change only through their base tables
+  private void checkNotView(String tableName) {
+    Table table = storage.getTable(tableName);
+    if (table != null && table.isView()) {
+      throw new IllegalArgumentException(
+          "Cannot modify materialized view '" + tableName + "' directly");
+    }
+  }
+
+  private static boolean isWrite(String cmdType) {
+    return "insert".equals(cmdType) || "update".equals(cmdType) || "delete".equals(cmdType);
+  }
+
+  private ExecutionResult dispatch(String cmdType, Map<String, Object> plan, ExecutionContext ctx)
+      throws IOException, InterruptedException {
+    switch (cmdType) {
+      case "create_table":
+        return executeCreateTable(plan);
+      case "insert":
+        return executeInsert(plan, ctx);
+      case "select":
+        return executeSelect(plan, ctx);
+      case "create_index":
+        return executeCreateIndex(plan, ctx);
+      case "update":
+        return executeUpdate(plan, ctx);
+      case "delete":
+        return executeDelete(plan, ctx);
+      case "copy":
+        return executeCopy(plan, ctx);
+      case "create_view":
+        return executeCreateView(plan, ctx);
+      default:
+        throw new IllegalArgumentException("Unknown command type: " + cmdType);
+    }
+  }
+
+  /**
+   * Persists every table the transaction wrote in a single storage commit, then makes its writes
+   * visible and releases its table locks.
+   */
+  public void commit(Transaction tx) throws IOException {
+    commit(tx, null);
+  }
+
+  private void commit(Transaction tx, QueryStats stats) throws IOException {
+    TransactionManager transactions = storage.getTransactions();
+    long start = System.nanoTime();
+    try {
+      storage.saveTables(tx.getDirtyTables());
+      // Logged before the locks are released, so conflicting transactions log in commit order
+      ReplicationLog log = replicationLog;
+      if (log != null && !tx.getChanges().isEmpty()) {
+        log.append(tx.getChanges());
+      }
+    } catch (IOException e) {
+      rollback(tx);
+      throw e;
+    }
+    long persistNanos = System.nanoTime() - start;
+    metrics.recordPhase(Metrics.Phase.PERSIST, persistNanos);
+    if (stats != null) {
+      stats.add(Metrics.Phase.PERSIST, persistNanos);
+    }
+    transactions.commit(tx);
+    for (String tableName : tx.getDirtyTables()) {
+      tableVersions.computeIfAbsent(tableName, n -> new AtomicLong()).incrementAndGet();
+      // A write to a partition changes what its table returns
+      int separator = tableName.indexOf(Table.PARTITION_SEPARATOR);
+      if (separator > 0) {
+        tableVersions
+            .computeIfAbsent(tableName.substring(0, separator), n -> new AtomicLong())
+            .incrementAndGet();
+      }
+    }
+
+    // Reclaim the versions this transaction superseded right away unless a snapshot needs them
+    long horizon = transactions.horizon();
+    if (horizon > tx.getId()) {
+      for (String tableName : tx.getLockedTables()) {
+        Table table = storage.getTable(tableName);
+        if (table != null) {
+          table.vacuum(horizon);
+        }
+      }
+    }
+    tx.releaseLocks();
+  }
+
+  public void rollback(Transaction tx) {
+    storage.getTransactions().rollback(tx);
+    tx.releaseLocks();
+  }
+
+  /**
+   * Applies one entry of a primary's replication log, a committed transaction, as one transaction.
+   * Runs on a replica, which refuses every other write.
+   */
+  void replay(List<ReplicationLog.Change> changes) throws IOException, InterruptedException {
+    Transaction tx = storage.getTransactions().begin();
+    try {
+      for (ReplicationLog.Change change : changes) {
+        if (change.tables != null) {
+          storage.restoreTables(change.tables);
+          for (Table table : change.tables) {
+            tx.markDirty(table.getName());
+          }
+        } else if (change.rows != null) {
+          lockForWrite(tx, change.tableName);
+          insertRows(getTable(change.tableName), change.rows, tx);
+        } else {
+          String cmdType = (String) change.plan.get("type");
+          switch (cmdType) {
+            case "create_table":
+              executeCreateTable(change.plan);
+              break;
+            case "create_view":
+              executeCreateView(change.plan, new ExecutionContext(null));
+              break;
+            default:
+              lockForWrite(tx, (String) change.plan.get("table_name"));
+              for (List<Object> params : change.paramSets) {
+                ExecutionContext ctx = new ExecutionContext(params);
+                ctx.setTransaction(tx);
+                dispatch(cmdType, change.plan, ctx);
+              }
+          }
+        }
+      }
+      commit(tx);
+    } catch (Exception e) {
+      rollback(tx);
+      throw e;
+    }
+  }
+
+  private void finish(String statement, String sql, QueryStats stats, long nanos, boolean failed) {
+    metrics.record(statement, stats, nanos, failed);
+    SlowQueryLog log = slowQueryLog;
+    if (log != null) {
+      log.offer(sql != null ? sql : statement, stats, nanos, failed);
+    }
+  }
+
+  /**
+   * The EXPLAIN ANALYZE report: one row per operator, from the one producing the result down to the
+   * scans, with the rows it produced and the time spent in it alone, followed by planning,
+   * persistence and total time.
+   */
+  private static ExecutionResult explainResult(
+      QueryStats stats, ExecutionResult result, long nanos) {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (QueryStats.Operator op : stats.plan()) {
+      String indent = op.depth == 0 ? "" : "  ".repeat(op.depth - 1) + "-> ";
+      rows.add(explainRow(indent + op.label, op.rows, op.nanos()));
+    }
+    rows.add(explainRow("Planning", null, stats.nanos(Metrics.Phase.PLAN)));
+    long persist = stats.nanos(Metrics.Phase.PERSIST);
+    if (persist > 0) {
+      rows.add(explainRow("Persist", null, persist));
+    }
+    long total = result.isQuery() ? stats.rowsReturned : result.getAffectedRows();
+    rows.add(explainRow("Total", total, nanos));
+    return ExecutionResult.queryResult(rows);
+  }
+
+  private static Map<String, Object> explainRow(String operator, Long rows, long nanos) {
+    Map<String, Object> row = new LinkedHashMap<>();
+    row.put("operator", operator);
+    row.put("rows", rows);
+    row.put("time_ms", Math.round(nanos / 1000.0) / 1000.0);
+    return row;
+  }
+
+  /**
+   * Takes the exclusive lock a write needs and keeps it until the transaction ends, so writers only
+   * block writers on the same table, or on a table sharing a materialized view with it. SELECT
+   * reads a snapshot and takes no lock at all. A lock that cannot be had in time fails the
+   * statement rather than deadlocking two transactions.
+   */
+  void lockTable(Transaction tx, String tableName) throws InterruptedException {
+    if (tx.holdsLock(tableName)) return;
+
+    // A partitioned table is locked as all of its partitions, in order
+    Table table = storage.getTable(tableName);
+    if (table != null && table.isPartitioned()) {
+      for (Table partition : table.getPartitions()) {
+        lockTable(tx, partition.getName());
+      }
+      return;
+    }
+
+    TableLock lock = storage.getLock(tableName);
+    if (!lock.tryLock(tx, LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+      throw new IllegalStateException("Lock wait timeout on table '" + tableName + "'");
+    }
+    tx.addLock(tableName, lock);
+  }
+
+  // Writes to a partitioned table only lock the partitions they reach, as they reach them. A write
+  // that maintains views locks every table of those views first, in name order, so two writers
+  // of tables joined by a view take the locks they share in the same order
+  private void lockForWrite(Transaction tx, String tableName) throws InterruptedException {
+    SortedSet<String> group = views.lockGroup(tableName);
+    if (!group.isEmpty()) {
+      group.add(tableName);
+      for (String name : group) {
+        lockTable(tx, name);
+      }
+      return;
+    }
+    Table table = storage.getTable(tableName);
+    if (table == null || !table.isPartitioned()) {
+      lockTable(tx, tableName);
+    }
+  }
+
   @SuppressWarnings("unchecked")
-  private <T> T safeGet(Map<String, Object> plan, String key) {
+  <T> T safeGet(Map<String, Object> plan, String key) {
     return (T) plan.get(key);
   }
 
-  private Object resolveValue(Object valObj) {
+  private Object resolveValue(Object valObj, ExecutionContext ctx) {
     if (valObj instanceof Map) {
       Map<?, ?> map = (Map<?, ?>) valObj;
       if ("placeholder".equals(map.get("type"))) {
-        if (paramIndex >= currentParams.size()) {
-          throw new IllegalArgumentException(
-              "Not enough parameters provided for query placeholders.");
-        }
-        return currentParams.get(paramIndex++);
+        return ctx.nextParam();
       }
     }
     return valObj;
   }
 
-  private ExecutionResult executeCreateIndex(Map<String, Object> plan) throws IOException {
+  private ExecutionResult executeCreateIndex(Map<String, Object> plan, ExecutionContext ctx)
+      throws InterruptedException {
     String tableName = (String) plan.get("table_name");
     Table table = storage.getTable(tableName);
     if (table == null) throw new IllegalArgumentException("Table '" + tableName + "' not found");
 
     String colName = (String) plan.get("column_name");
-    table.createIndex(colName);
-    storage.saveTable(tableName);
+    Transaction tx = ctx.getTransaction();
+    // Each partition indexes its own rows
+    lockTable(tx, tableName);
+    List<Table> targets =
+        table.isPartitioned() ? table.getPartitions() : Collections.singletonList(table);
+    for (Table target : targets) {
+      if (!target.getIndices().containsKey(colName)) {
+        tx.recordUndo(() -> target.dropIndex(colName));
+      }
+      target.createIndex(colName);
+      tx.markDirty(target.getName());
+    }
     return ExecutionResult.success(
         "Index '" + plan.get("index_name") + "' created on " + tableName + "(" + colName + ").");
   }
 
-  private ExecutionResult executeCreateTable(Map<String, Object> plan) throws IOException {
+  private ExecutionResult executeCreateTable(Map<String, Object> plan)
+      throws IOException, InterruptedException {
     String tableName = (String) plan.get("table_name");
     List<Column> columnList = safeGet(plan, "columns");
     Map<String, Column> columns = new LinkedHashMap<>();
@@ -82,82 +543,330 @@ public class ExecutionEngine {
       columns.put(col.getName(), col);
     }
 
-    Table table = new Table(tableName, columns);
-    storage.createTable(table);
+    Map<String, Object> partition = safeGet(plan, "partition");
+    Table table;
+    if (partition == null) {
+      table = new Table(tableName, columns);
+    } else {
+      String column = (String) partition.get("column");
+      Partitioning partitioning;
+      if ("hash".equals(partition.get("method"))) {
+        partitioning =
+            Partitioning.hash(
+                column, (Integer) partition.getOrDefault("partitions", DEFAULT_HASH_PARTITIONS));
+      } else {
+        List<Object> bounds = safeGet(partition, "bounds");
+        partitioning = Partitioning.range(column, bounds);
+      }
+      table = Table.partitioned(tableName, columns, partitioning);
+    }
+
+    // Takes effect immediately, but under the locks of its name and partitions, so that no write
+    // to the new table can be logged before it
+    Transaction tx = storage.getTransactions().begin();
+    try {
+      lockTable(tx, tableName);
+      if (table.isPartitioned()) {
+        for (int i = 0; i < table.getPartitioning().getCount(); i++) {
+          lockTable(tx, table.getPartitionName(i));
+        }
+      }
+      storage.createTable(table);
+      if (replicationLog != null) {
+        tx.logChange(ReplicationLog.Change.statement(plan, Collections.emptyList()));
+      }
+      commit(tx);
+    } catch (Exception e) {
+      rollback(tx);
+      throw e;
+    }
     return ExecutionResult.success("Table '" + tableName + "' created.");
   }
 
-  private ExecutionResult executeInsert(Map<String, Object> plan) throws IOException {
-    String tableName = (String) plan.get("table_name");
+  Table getTable(String tableName) {
     Table table = storage.getTable(tableName);
     if (table == null) throw new IllegalArgumentException("Table '" + tableName + "' not found");
+    return table;
+  }
+
+  /**
+   * Creates and fills a materialized view. Like CREATE TABLE it takes effect immediately, so it may
+   * not run inside a transaction; the base tables are locked while the view is filled.
+   */
+  private ExecutionResult executeCreateView(Map<String, Object> plan, ExecutionContext ctx)
+      throws IOException, InterruptedException {
+    if (ctx.getTransaction() != null) {
+      throw new IllegalStateException("CREATE MATERIALIZED VIEW cannot run inside a transaction");
+    }
+    String viewName = (String) plan.get("view_name");
+    Map<String, Object> query = safeGet(plan, "query");
+    Map<String, Object> join = safeGet(query, "join");
+
+    Transaction tx = storage.getTransactions().begin();
+    try {
+      // In name order, like writes that maintain views
+      SortedSet<String> tables = new TreeSet<>();
+      tables.add((String) query.get("table_name"));
+      if (join != null) tables.add((String) join.get("join_table"));
+      tables.add(viewName);
+      for (String name : tables) {
+        lockTable(tx, name);
+      }
+      if (storage.getTable(viewName) != null) {
+        throw new IllegalArgumentException("Table '" + viewName + "' already exists");
+      }
 
+      Table view = views.create(viewName, plan);
+      storage.createTable(view);
+      if (replicationLog != null) {
+        tx.logChange(ReplicationLog.Change.statement(plan, Collections.emptyList()));
+      }
+      commit(tx);
+      return ExecutionResult.success(
+          "Materialized view '" + viewName + "' created with " + view.getRowCount() + " row(s).");
+    } catch (Exception e) {
+      rollback(tx);
+      throw e;
+    }
+  }
+
+  private ExecutionResult executeInsert(Map<String, Object> plan, ExecutionContext ctx)
+      throws InterruptedException {
+    Table table = getTable((String) plan.get("table_name"));
+    QueryStats.Operator insert = ctx.getStats().operator("Insert on " + table.getName(), null);
+    long start = System.nanoTime();
+    int count = insertRows(table, buildInsertRows(table, plan, ctx), ctx.getTransaction());
+    insert.add(System.nanoTime() - start);
+    insert.rows += count;
+    ctx.getStats().rowsAffected += count;
+    return ExecutionResult.success(
+        count == 1 ? "1 row inserted." : count + " row(s) inserted.", count);
+  }
+
+  // One row map per VALUES tuple, binding placeholders in order across the tuples
+  private List<Map<String, Object>> buildInsertRows(
+      Table table, Map<String, Object> plan, ExecutionContext ctx) {
     List<String> targetColumns = safeGet(plan, "columns");
-    List<Object> rawValues = safeGet(plan, "values");
-    List<Object> values = rawValues.stream().map(this::resolveValue).collect(Collectors.toList());
+    List<List<Object>> tuples = safeGet(plan, "rows");
 
-    Map<String, Object> rowData = new HashMap<>();
-    if (targetColumns != null) {
-      if (targetColumns.size() != values.size()) {
-        throw new IllegalArgumentException("Column count doesn't match value count");
+    List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+    for (List<Object> rawValues : tuples) {
+      List<Object> values =
+          rawValues.stream().map(v -> resolveValue(v, ctx)).collect(Collectors.toList());
+
+      Map<String, Object> rowData = new HashMap<>();
+      if (targetColumns != null) {
+        if (targetColumns.size() != values.size()) {
+          throw new IllegalArgumentException("Column count doesn't match value count");
+        }
+        for (int i = 0; i < targetColumns.size(); i++) {
+          rowData.put(targetColumns.get(i), values.get(i));
+        }
+      } else {
+        // Implicit column order based on creation (LinkedHashMap)
+        if (values.size() != table.getColumns().size()) {
+          throw new IllegalArgumentException("Value count doesn't match table column count");
+        }
+        int i = 0;
+        for (String colName : table.getColumns().keySet()) {
+          rowData.put(colName, values.get(i++));
+        }
       }
-      for (int i = 0; i < targetColumns.size(); i++) {
-        rowData.put(targetColumns.get(i), values.get(i));
+      rows.add(rowData);
+    }
+    return rows;
+  }
+
+  int insertRows(Table table, List<Map<String, Object>> rows, Transaction tx)
+      throws InterruptedException {
+    if (rows.isEmpty()) return 0;
+
+    storeRows(table, rows, tx);
+    views.propagate(table.getName(), Collections.emptyList(), rows, tx);
+    return rows.size();
+  }
+
+  // Inserts without maintaining views. Rows of a partitioned table are routed to their partitions,
+  // each locked only once it receives rows.
+  private void storeRows(Table table, List<Map<String, Object>> rows, Transaction tx)
+      throws InterruptedException {
+    if (table.isPartitioned()) {
+      Partitioning partitioning = table.getPartitioning();
+      List<List<Map<String, Object>>> routed = new ArrayList<>();
+      for (int i = 0; i < partitioning.getCount(); i++) {
+        routed.add(new ArrayList<>());
       }
-    } else {
-      // Implicit column order based on creation (LinkedHashMap)
-      if (values.size() != table.getColumns().size()) {
-        throw new IllegalArgumentException("Value count doesn't match table column count");
+      for (Map<String, Object> row : rows) {
+        routed.get(partitioning.partitionOf(row.get(partitioning.getColumn()))).add(row);
       }
-      int i = 0;
-      for (String colName : table.getColumns().keySet()) {
-        rowData.put(colName, values.get(i++));
+      for (int i = 0; i < routed.size(); i++) {
+        if (routed.get(i).isEmpty()) continue;
+        Table partition = table.getPartitions().get(i);
+        lockTable(tx, partition.getName());
+        storeRows(partition, routed.get(i), tx);
       }
+      return;
     }
 
-    table.addRow(rowData);
-    storage.saveTable(tableName);
-    return ExecutionResult.success("1 row inserted.");
+    int firstId = table.insertRows(rows, tx.getId());
+    int count = rows.size();
+    tx.recordUndo(
+        () -> {
+          for (int rowId = firstId + count - 1; rowId >= firstId; rowId--) {
+            table.rollback(rowId, null);
+          }
+        });
+    tx.markDirty(table.getName());
   }
 
-  private ExecutionResult executeSelect(Map<String, Object> plan) {
-    String tableName = (String) plan.get("table_name");
-    Table table = storage.getTable(tableName);
-    if (table == null) throw new IllegalArgumentException("Table '" + tableName + "' not found");
+  /**
+   * Loads a CSV file in one go: segments are parsed in parallel off the engine path, then the rows
+   * go through the same bulk insert as a batch, so the table is validated, indexed and persisted
+   * once.
+   */
+  private ExecutionResult executeCopy(Map<String, Object> plan, ExecutionContext ctx)
+      throws IOException, InterruptedException {
+    Table table = getTable((String) plan.get("table_name"));
+    QueryStats stats = ctx.getStats();
+    QueryStats.Operator load = stats.scan("CSV Load of '" + plan.get("file_path") + "'");
+    QueryStats.Operator insert = stats.operator("Insert on " + table.getName(), null);
+    long start = System.nanoTime();
+    List<Map<String, Object>> rows = new CsvLoader(table).load((String) plan.get("file_path"));
+    load.add(System.nanoTime() - start);
+    load.rows += rows.size();
+    stats.rowsScanned += rows.size();
 
-    List<Map<String, Object>> results = new ArrayList<>(table.getRows());
-    Map<String, Object> join = safeGet(plan, "join");
-    Map<String, Object> where = safeGet(plan, "where");
+    start = System.nanoTime();
+    int count = insertRows(table, rows, ctx.getTransaction());
+    insert.add(System.nanoTime() - start);
+    insert.rows += count;
+    stats.rowsAffected += count;
+    if (replicationLog != null) {
+      ctx.getTransaction().logChange(ReplicationLog.Change.rows(table.getName(), rows));
+    }
+    return ExecutionResult.success(count + " row(s) copied.", count);
+  }
+
+  private ExecutionResult executeSelect(Map<String, Object> plan, ExecutionContext ctx) {
+    TransactionManager transactions = storage.getTransactions();
+    Snapshot snapshot = transactions.openSnapshot(ctx.getTransaction());
+    try {
+      return executeSelect(plan, ctx, snapshot);
+    } finally {
+      ctx.releaseMemory();
+      transactions.releaseSnapshot(snapshot);
+    }
+  }
 
-    // Resolve WHERE
-    Map<String, Object> resolvedWhere = null;
-    if (where != null) {
-      resolvedWhere = new HashMap<>(where);
-      resolvedWhere.put("value", resolveValue(where.get("value")));
-    }
-
-    // Index Optimization
-    if (resolvedWhere != null && join == null) {
-      String col = (String) resolvedWhere.get("column");
-      String op = (String) resolvedWhere.get("operator");
-      Object valObj = resolvedWhere.get("value");
-
-      if ("=".equals(op) && table.getIndices().containsKey(col)) {
-        // Check if value is a column reference (cannot index scan that easily)
-        boolean isColRef =
-            valObj instanceof Map && "column".equals(((Map<?, ?>) valObj).get("type"));
-        if (!isColRef) {
-          List<Integer> rowIndices = table.getIndices().get(col).get(valObj);
-          if (rowIndices != null) {
-            results = new ArrayList<>();
-            for (int idx : rowIndices) {
-              results.add(table.getRows().get(idx));
-            }
-          } else {
-            results = new ArrayList<>();
+  private ExecutionResult executeSelect(
+      Map<String, Object> plan, ExecutionContext ctx, Snapshot snapshot) {
+    CompiledQuery compiled = compiledPlans.get(plan, storage);
+    if (compiled != null) {
+      List<Map<String, Object>> result = new ArrayList<>();
+      compiledRows(compiled, ctx, snapshot, true).forEachRemaining(result::add);
+      return ExecutionResult.queryResult(result);
+    }
+    Stream<Map<String, Object>> rows = selectRows(plan, ctx, snapshot, true);
+
+    // Hand out copies of stored rows so callers can't modify them
+    if (plan.get("join") == null && "*".equals(plan.get("columns"))) {
+      rows = rows.map(row -> new HashMap<>(row));
+    }
+    return ExecutionResult.queryResult(rows.collect(Collectors.toList()));
+  }
+
+  /**
+   * Opens a cursor that produces the rows of a SELECT lazily from a snapshot held until the cursor
+   * is closed. Only the right side of a join is read up front.
+   */
+  public Cursor openCursor(Map<String, Object> plan, List<Object> params, Transaction tx) {
+    return openCursor(null, plan, params, tx);
+  }
+
+  Cursor openCursor(String sql, Map<String, Object> plan, List<Object> params, Transaction tx) {
+    if (!"select".equals(plan.get("type"))) {
+      throw new IllegalArgumentException("Only SELECT statements return a cursor");
+    }
+    long start = System.nanoTime();
+    ExecutionContext ctx = new ExecutionContext(params);
+    ctx.setTransaction(tx);
+
+    TransactionManager transactions = storage.getTransactions();
+    Snapshot snapshot = transactions.openSnapshot(tx);
+    try {
+      Table table = getTable((String) plan.get("table_name"));
+      Map<String, Object> join = safeGet(plan, "join");
+      Table joinTable = join != null ? getTable((String) join.get("join_table")) : null;
+
+      // Result header: declared columns, or every column of the scanned tables for SELECT *
+      List<String> names = new ArrayList<>();
+      if ("*".equals(plan.get("columns"))) {
+        names.addAll(table.getColumns().keySet());
+        if (joinTable != null) {
+          for (String col : joinTable.getColumns().keySet()) {
+            if (!names.contains(col)) names.add(col);
           }
         }
+      } else {
+        List<String> selectedCols = safeGet(plan, "columns");
+        names.addAll(selectedCols);
+      }
+      DataType[] types = new DataType[names.size()];
+      for (int i = 0; i < types.length; i++) {
+        Column col = table.getColumns().get(names.get(i));
+        if (col == null && joinTable != null) col = joinTable.getColumns().get(names.get(i));
+        types[i] = col != null ? col.getDataType() : null;
       }
+
+      // The cursor reads its columns by name, so rows are passed through without projecting them
+      CompiledQuery compiled = compiledPlans.get(plan, storage);
+      Iterator<Map<String, Object>> rows =
+          compiled != null
+              ? compiledRows(compiled, ctx, snapshot, false)
+              : selectRows(plan, ctx, snapshot, false).iterator();
+      // Recorded apart from "select": the time a cursor is open includes the caller's own work
+      return new Cursor(
+          names.toArray(new String[0]),
+          types,
+          rows,
+          () -> {
+            ctx.releaseMemory();
+            transactions.releaseSnapshot(snapshot);
+            finish("cursor", sql, ctx.getStats(), System.nanoTime() - start, false);
+          });
+    } catch (RuntimeException e) {
+      ctx.releaseMemory();
+      transactions.releaseSnapshot(snapshot);
+      finish("cursor", sql, ctx.getStats(), System.nanoTime() - start, true);
+      throw e;
+    }
+  }
+
+  // Lazy SELECT pipeline: access path, join, filter, projection and limit are applied per row
+  private Stream<Map<String, Object>> selectRows(
+      Map<String, Object> plan, ExecutionContext ctx, Snapshot snapshot, boolean project) {
+    QueryStats stats = ctx.getStats();
+    long planStart = System.nanoTime();
+    Table table = getTable((String) plan.get("table_name"));
+
+    Stream<Map<String, Object>> rows;
+    Map<String, Object> join = safeGet(plan, "join");
+    Map<String, Object> where = safeGet(plan, "where");
+    Map<String, Object> resolvedWhere;
+
+    if (table.isPartitioned()) {
+      resolvedWhere = bindWhere(where, ctx);
+      stats.add(Metrics.Phase.PLAN, System.nanoTime() - planStart);
+      // Only a statement that collects its whole result is worth reading on several threads
+      boolean parallel = project && join == null && !plan.containsKey("limit");
+      rows = partitionRows(table, where, resolvedWhere, join, parallel, snapshot, stats);
+      // Without a join, each partition was already filtered against its own dictionaries
+      if (join == null) resolvedWhere = null;
+    } else {
+      // Joined rows mix columns of two tables, so only a single-table filter can use the dictionary
+      resolvedWhere = resolveWhere(table, where, join == null, ctx);
+      stats.add(Metrics.Phase.PLAN, System.nanoTime() - planStart);
+      rows = accessPath(table, where, join == null ? resolvedWhere : null, snapshot, stats);
     }
 
     // JOIN
@@ -169,67 +878,557 @@ public class ExecutionEngine {
         throw new IllegalArgumentException("Join table '" + joinTableName + "' not found");
 
       Map<String, Object> condition = safeGet(join, "condition");
-      List<Map<String, Object>> joinedResults = new ArrayList<>();
-
-      for (Map<String, Object> leftRow : results) {
-        boolean matched = false;
-        for (Map<String, Object> rightRow : joinTable.getRows()) {
-          if (evaluateJoinCondition(leftRow, rightRow, condition)) {
-            Map<String, Object> merged = new HashMap<>(leftRow);
-            merged.putAll(rightRow);
-            joinedResults.add(merged);
-            matched = true;
-          }
-        }
-        if (!matched && isLeft) {
-          Map<String, Object> merged = new HashMap<>(leftRow);
-          // Fill right table columns with null
-          for (String rightCol : joinTable.getColumns().keySet()) {
-            if (!merged.containsKey(rightCol)) {
-              merged.put(rightCol, null);
-            }
-          }
-          joinedResults.add(merged);
+      String rightColumn = hashJoinColumn(condition);
+      QueryStats.Operator rightScan = stats.scan("Seq Scan on " + joinTableName);
+      stats.fullScans++;
+      if (rightColumn != null) {
+        HashJoin hashJoin =
+            new HashJoin(
+                (String) condition.get("column"),
+                rightColumn,
+                isLeft,
+                new ArrayList<>(table.getColumns().keySet()),
+                new ArrayList<>(joinTable.getColumns().keySet()),
+                ctx.memory(queryMemoryLimit, storage.getSpillDir()));
+        long buildStart = System.nanoTime();
+        hashJoin.build(scanning(joinTable.iterator(snapshot), stats, rightScan));
+        long buildNanos = System.nanoTime() - buildStart;
+
+        String label = (isLeft ? "Hash Left Join (" : "Hash Join (") + describe(condition) + ")";
+        if (hashJoin.getSpilledPartitions() > 0) {
+          label +=
+              " (spilled "
+                  + hashJoin.getSpilledPartitions()
+                  + " of "
+                  + HashJoin.FANOUT
+                  + " partitions)";
         }
+        QueryStats.Operator joinOp = stats.operator(label, Metrics.Phase.JOIN);
+        joinOp.add(Math.max(0, buildNanos - rightScan.nanos()));
+        rows = hashJoin.probe(rows, joinOp);
+      } else {
+        long scanStart = System.nanoTime();
+        List<Map<String, Object>> rightRows = joinTable.scan(snapshot);
+        rightScan.add(System.nanoTime() - scanStart);
+        rightScan.rows += rightRows.size();
+        stats.rowsScanned += rightRows.size();
+
+        QueryStats.Operator joinOp =
+            stats.operator(
+                (isLeft ? "Nested Loop Left Join (" : "Nested Loop Join (")
+                    + describe(condition)
+                    + ")",
+                Metrics.Phase.JOIN);
+        rows =
+            rows.flatMap(
+                leftRow -> {
+                  List<Map<String, Object>> joined =
+                      joinOp.timed(() -> joinRow(leftRow, rightRows, condition, isLeft, joinTable));
+                  joinOp.rows += joined.size();
+                  return joined.stream();
+                });
       }
-      results = joinedResults;
     }
 
     // Filter
     if (resolvedWhere != null) {
       final Map<String, Object> w = resolvedWhere;
-      results = results.stream().filter(row -> evaluateWhere(row, w)).collect(Collectors.toList());
+      QueryStats.Operator filter =
+          stats.operator("Filter (" + describe(where) + ")", Metrics.Phase.FILTER);
+      rows = rows.filter(row -> matches(filter, row, w));
     }
 
     // Projection
-    Object selectedColsObj = plan.get("columns");
-    if (!"*".equals(selectedColsObj)) {
+    if (project && !"*".equals(plan.get("columns"))) {
       List<String> selectedCols = safeGet(plan, "columns");
-      results =
-          results.stream()
-              .map(
-                  row -> {
-                    Map<String, Object> newRow = new LinkedHashMap<>(); // Keep order
-                    for (String col : selectedCols) {
-                      newRow.put(col, row.get(col));
+      QueryStats.Operator projection =
+          stats.operator("Project (" + String.join(", ", selectedCols) + ")", null);
+      rows =
+          rows.map(
+              row ->
+                  projection.timed(
+                      () -> {
+                        projection.rows++;
+                        Map<String, Object> newRow = new LinkedHashMap<>(); // Keep order
+                        for (String col : selectedCols) {
+                          newRow.put(col, row.get(col));
+                        }
+                        return newRow;
+                      }));
+    }
+
+    // Limit
+    if (plan.containsKey("limit")) {
+      QueryStats.Operator limit = stats.operator("Limit (" + plan.get("limit") + ")", null);
+      rows = rows.limit((int) plan.get("limit")).peek(row -> limit.rows++);
+    }
+    return rows.peek(row -> stats.rowsReturned++);
+  }
+
+  /**
+   * The rows of a compiled SELECT. Choosing the access path and building the join's hash table
+   * happen once per execution as in {@link #selectRows}; the rest runs in the compiled loop, which
+   * the statistics show as a single operator.
+   */
+  private Iterator<Map<String, Object>> compiledRows(
+      CompiledQuery compiled, ExecutionContext ctx, Snapshot snapshot, boolean project) {
+    QueryStats stats = ctx.getStats();
+    long planStart = System.nanoTime();
+    Table table = compiled.table;
+    boolean join = compiled.joinTable != null;
+    Map<String, Object> resolvedWhere = resolveWhere(table, compiled.where, !join, ctx);
+    QueryStats.Operator op = stats.scan(compiled.label);
+    stats.add(Metrics.Phase.PLAN, System.nanoTime() - planStart);
+
+    Iterator<Map<String, Object>> source;
+    if (!join && isIndexable(table, resolvedWhere)) {
+      source =
+          table
+              .lookup((String) resolvedWhere.get("column"), resolvedWhere.get("value"), snapshot)
+              .iterator();
+      stats.indexLookups++;
+    } else if (!join && isDictionaryMiss(resolvedWhere)) {
+      source = Collections.emptyIterator();
+    } else {
+      source = table.iterator(snapshot, join ? null : zoneFilter(table, resolvedWhere));
+      stats.fullScans++;
+    }
+
+    Function<Map<String, Object>, List<Map<String, Object>>> probe = null;
+    boolean countScanned = true;
+    if (join) {
+      HashJoin hashJoin =
+          new HashJoin(
+              compiled.leftColumn,
+              compiled.rightColumn,
+              compiled.outerJoin,
+              compiled.leftColumns,
+              compiled.rightColumns,
+              ctx.memory(queryMemoryLimit, storage.getSpillDir()));
+      long buildStart = System.nanoTime();
+      hashJoin.build(counting(compiled.joinTable.iterator(snapshot), stats));
+      stats.fullScans++;
+      op.add(System.nanoTime() - buildStart);
+      if (hashJoin.isSpilled()) {
+        // Spilled partitions are joined after the left side is read, so they stay a stream
+        source =
+            hashJoin
+                .probe(
+                    StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(
+                            counting(source, stats), Spliterator.ORDERED),
+                        false),
+                    op)
+                .iterator();
+        countScanned = false;
+      } else {
+        probe = hashJoin::probeRow;
+      }
+    }
+    return compiled.rows(
+        source, probe, CompiledQuery.predicate(resolvedWhere), project, countScanned, stats);
+  }
+
+  private static Iterator<Map<String, Object>> counting(
+      Iterator<Map<String, Object>> source, QueryStats stats) {
+    return new Iterator<Map<String, Object>>() {
+      @Override
+      public boolean hasNext() {
+        return source.hasNext();
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        stats.rowsScanned++;
+        return source.next();
+      }
+    };
+  }
+
+  /**
+   * Reads one table's rows for a single-table WHERE clause ({@code resolvedWhere}, or null when it
+   * cannot narrow the read): from a hash index, not at all on a dictionary miss, or by a sequential
+   * scan that skips the blocks zone maps rule out. The caller still filters the rows.
+   */
+  private Stream<Map<String, Object>> accessPath(
+      Table table,
+      Map<String, Object> where,
+      Map<String, Object> resolvedWhere,
+      Snapshot snapshot,
+      QueryStats stats) {
+    if (isIndexable(table, resolvedWhere)) {
+      QueryStats.Operator lookup = stats.scan(indexLookupLabel(table, where));
+      long scanStart = System.nanoTime();
+      List<Map<String, Object>> matches =
+          table.lookup((String) resolvedWhere.get("column"), resolvedWhere.get("value"), snapshot);
+      lookup.add(System.nanoTime() - scanStart);
+      lookup.rows += matches.size();
+      stats.indexLookups++;
+      stats.rowsScanned += matches.size();
+      return matches.stream();
+    }
+    if (isDictionaryMiss(resolvedWhere)) {
+      stats.scan(dictionaryMissLabel(table, where));
+      return Stream.empty();
+    }
+    stats.fullScans++;
+    Table.ZoneFilter zones = zoneFilter(table, resolvedWhere);
+    QueryStats.Operator scan = stats.scan(seqScanLabel(table, zones));
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(
+            scanning(table.iterator(snapshot, zones), stats, scan), Spliterator.ORDERED),
+        false);
+  }
+
+  /**
+   * Reads a partitioned table, skipping the partitions the WHERE clause rules out. Without a join,
+   * each remaining partition is read through its own access path and filtered right there; with
+   * one, the caller filters the joined rows. With {@code parallel} the partitions are read and
+   * filtered at the same time, each with statistics of its own that are merged at the end.
+   */
+  private Stream<Map<String, Object>> partitionRows(
+      Table table,
+      Map<String, Object> where,
+      Map<String, Object> boundWhere,
+      Map<String, Object> join,
+      boolean parallel,
+      Snapshot snapshot,
+      QueryStats stats) {
+    // A joined row holds the right side's value of a column both tables have
+    Table joinTable = join != null ? storage.getTable((String) join.get("join_table")) : null;
+    boolean prunable =
+        joinTable == null
+            || (boundWhere != null
+                && !joinTable.getColumns().containsKey(boundWhere.get("column")));
+    List<Table> partitions = prunable ? prunePartitions(table, boundWhere) : table.getPartitions();
+    Map<String, Object> pushed = join == null ? boundWhere : null;
+    String label =
+        " on "
+            + table.getName()
+            + " ("
+            + partitions.size()
+            + " of "
+            + table.getPartitions().size()
+            + " partitions)";
+
+    if (parallel && partitions.size() > 1) {
+      List<QueryStats> parts = new ArrayList<>();
+      for (int i = 0; i < partitions.size(); i++) {
+        parts.add(new QueryStats());
+      }
+      List<List<Map<String, Object>>> results =
+          IntStream.range(0, partitions.size())
+              .parallel()
+              .mapToObj(
+                  i -> {
+                    Table partition = partitions.get(i);
+                    QueryStats part = parts.get(i);
+                    Map<String, Object> encoded = encodeWhere(partition, pushed);
+                    Stream<Map<String, Object>> rows =
+                        accessPath(partition, where, encoded, snapshot, part);
+                    if (encoded != null) {
+                      QueryStats.Operator filter = filterOperator(where, part);
+                      rows = rows.filter(row -> matches(filter, row, encoded));
                     }
-                    return newRow;
+                    return rows.collect(Collectors.toList());
                   })
               .collect(Collectors.toList());
+      stats.absorb(parts);
+      QueryStats.Operator append = stats.operator("Parallel Append" + label, null);
+      for (List<Map<String, Object>> result : results) {
+        append.rows += result.size();
+      }
+      return results.stream().flatMap(List::stream);
     }
 
-    // Limit
-    if (plan.containsKey("limit")) {
-      int limit = (int) plan.get("limit");
-      if (limit < results.size()) {
-        results = results.subList(0, limit);
+    // Every source is opened before the filter so the plan shows them side by side
+    List<Stream<Map<String, Object>>> sources = new ArrayList<>();
+    List<Map<String, Object>> encoded = new ArrayList<>();
+    for (Table partition : partitions) {
+      Map<String, Object> partitionWhere = encodeWhere(partition, pushed);
+      encoded.add(partitionWhere);
+      sources.add(accessPath(partition, where, partitionWhere, snapshot, stats));
+    }
+    QueryStats.Operator filter = pushed != null ? filterOperator(where, stats) : null;
+    List<Iterator<Map<String, Object>>> iterators = new ArrayList<>();
+    for (int i = 0; i < sources.size(); i++) {
+      Map<String, Object> partitionWhere = encoded.get(i);
+      Stream<Map<String, Object>> rows = sources.get(i);
+      if (filter != null) {
+        rows = rows.filter(row -> matches(filter, row, partitionWhere));
       }
+      iterators.add(rows.iterator());
     }
+    QueryStats.Operator append = stats.operator("Append" + label, null);
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(concat(iterators), Spliterator.ORDERED), false)
+        .peek(row -> append.rows++);
+  }
+
+  // The partitions whose rows can satisfy a bound WHERE clause
+  private static List<Table> prunePartitions(Table table, Map<String, Object> boundWhere) {
+    List<Table> partitions = table.getPartitions();
+    if (boundWhere == null || boundWhere.get("value") instanceof Map) return partitions;
 
-    return ExecutionResult.queryResult(results);
+    BitSet live =
+        table
+            .getPartitioning()
+            .prune(
+                (String) boundWhere.get("column"),
+                (String) boundWhere.get("operator"),
+                boundWhere.get("value"));
+    List<Table> pruned = new ArrayList<>(live.cardinality());
+    for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+      pruned.add(partitions.get(i));
+    }
+    return pruned;
   }
 
-  private ExecutionResult executeUpdate(Map<String, Object> plan) throws IOException {
+  // The tables a write with a bound WHERE clause reaches: the table, or its surviving partitions
+  private static List<Table> writeTargets(Table table, Map<String, Object> boundWhere) {
+    return table.isPartitioned()
+        ? prunePartitions(table, boundWhere)
+        : Collections.singletonList(table);
+  }
+
+  private static Iterator<Map<String, Object>> concat(List<Iterator<Map<String, Object>>> sources) {
+    return new Iterator<Map<String, Object>>() {
+      private int current;
+
+      @Override
+      public boolean hasNext() {
+        while (current < sources.size()) {
+          if (sources.get(current).hasNext()) return true;
+          current++;
+        }
+        return false;
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return sources.get(current).next();
+      }
+    };
+  }
+
+  private boolean matches(
+      QueryStats.Operator filter, Map<String, Object> row, Map<String, Object> where) {
+    boolean match = filter.timed(() -> evaluateWhere(row, where));
+    if (match) filter.rows++;
+    return match;
+  }
+
+  private static String indexLookupLabel(Table table, Map<String, Object> where) {
+    return "Index Lookup on " + table.getName() + " (" + describe(where) + ")";
+  }
+
+  private static String dictionaryMissLabel(Table table, Map<String, Object> where) {
+    return "Dictionary Miss on " + table.getName() + " (" + describe(where) + ")";
+  }
+
+  /** Binds the WHERE value, and encodes it for {@code table} when {@code encoded} is set. */
+  private Map<String, Object> resolveWhere(
+      Table table, Map<String, Object> where, boolean encoded, ExecutionContext ctx) {
+    Map<String, Object> bound = bindWhere(where, ctx);
+    return encoded ? encodeWhere(table, bound) : bound;
+  }
+
+  // Takes the WHERE value's parameter, so call it once per statement
+  private Map<String, Object> bindWhere(Map<String, Object> where, ExecutionContext ctx) {
+    if (where == null) return null;
+    Map<String, Object> bound = new HashMap<>(where);
+    bound.put("value", resolveValue(where.get("value"), ctx));
+    return bound;
+  }
+
+  /**
+   * When a bound WHERE value is a string compared with = or != against a dictionary-encoded column
+   * of {@code table}, swaps it for the dictionary's instance and marks it, so rows are matched by
+   * reference (the value's code) instead of character by character.
+   */
+  private static Map<String, Object> encodeWhere(Table table, Map<String, Object> bound) {
+    if (bound == null) return null;
+    Object value = bound.get("value");
+    String op = (String) bound.get("operator");
+    TextDictionary dictionary = table.getDictionary((String) bound.get("column"));
+    if (dictionary == null || !(value instanceof String) || !("=".equals(op) || "!=".equals(op))) {
+      return bound;
+    }
+    Map<String, Object> encoded = new HashMap<>(bound);
+    String canonical = dictionary.lookup((String) value);
+    // False when no row holds the value: the literal then equals nothing by reference either
+    encoded.put("dictionary", canonical != null);
+    if (canonical != null) encoded.put("value", canonical);
+    return encoded;
+  }
+
+  // Blocks a scan can skip because their zone maps rule out a predicate against a constant
+  private static Table.ZoneFilter zoneFilter(Table table, Map<String, Object> resolvedWhere) {
+    if (resolvedWhere == null || resolvedWhere.get("value") instanceof Map) return null;
+    return table.zoneFilter(
+        (String) resolvedWhere.get("column"),
+        (String) resolvedWhere.get("operator"),
+        resolvedWhere.get("value"));
+  }
+
+  private static String seqScanLabel(Table table, Table.ZoneFilter zones) {
+    String label = "Seq Scan on " + table.getName();
+    if (zones == null) return label;
+    return label
+        + " (zone map skipped "
+        + zones.getSkippedBlocks()
+        + " of "
+        + zones.getBlocks()
+        + " blocks)";
+  }
+
+  // An equality on a value the column's dictionary has never seen matches no row
+  private static boolean isDictionaryMiss(Map<String, Object> resolvedWhere) {
+    return resolvedWhere != null
+        && Boolean.FALSE.equals(resolvedWhere.get("dictionary"))
+        && "=".equals(resolvedWhere.get("operator"));
+  }
+
+  // A predicate as written in the statement, with "?" for its placeholder
+  static String describe(Map<String, Object> predicate) {
+    Object value = predicate.get("value");
+    String operand;
+    if (value instanceof Map) {
+      Map<?, ?> ref = (Map<?, ?>) value;
+      operand = "column".equals(ref.get("type")) ? String.valueOf(ref.get("name")) : "?";
+    } else if (value instanceof String) {
+      operand = "'" + value + "'";
+    } else {
+      operand = String.valueOf(value);
+    }
+    return predicate.get("column") + " " + predicate.get("operator") + " " + operand;
+  }
+
+  /**
+   * The right table's column of a join condition that equates a column of each table, which is
+   * joined by hash, or null for any other condition, which is joined row by row.
+   */
+  static String hashJoinColumn(Map<String, Object> condition) {
+    Object value = condition.get("value");
+    if (!"=".equals(condition.get("operator"))
+        || !(value instanceof Map && "column".equals(((Map<?, ?>) value).get("type")))) {
+      return null;
+    }
+    return (String) ((Map<?, ?>) value).get("name");
+  }
+
+  private List<Map<String, Object>> joinRow(
+      Map<String, Object> leftRow,
+      List<Map<String, Object>> rightRows,
+      Map<String, Object> condition,
+      boolean isLeft,
+      Table joinTable) {
+    List<Map<String, Object>> joinedResults = new ArrayList<>();
+    for (Map<String, Object> rightRow : rightRows) {
+      if (evaluateJoinCondition(leftRow, rightRow, condition)) {
+        Map<String, Object> merged = new HashMap<>(leftRow);
+        merged.putAll(rightRow);
+        joinedResults.add(merged);
+      }
+    }
+    if (joinedResults.isEmpty() && isLeft) {
+      Map<String, Object> merged = new HashMap<>(leftRow);
+      // Fill right table columns with null
+      for (String rightCol : joinTable.getColumns().keySet()) {
+        if (!merged.containsKey(rightCol)) {
+          merged.put(rightCol, null);
+        }
+      }
+      joinedResults.add(merged);
+    }
+    return joinedResults;
+  }
+
+  // Counts the rows a full scan reads and times a sample of them
+  private static Iterator<Map<String, Object>> scanning(
+      Iterator<Map<String, Object>> source, QueryStats stats, QueryStats.Operator scan) {
+    return new Iterator<Map<String, Object>>() {
+      @Override
+      public boolean hasNext() {
+        return source.hasNext();
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        stats.rowsScanned++;
+        scan.rows++;
+        return scan.timed(source::next);
+      }
+    };
+  }
+
+  /** True when a single-table WHERE clause can be served by a hash index lookup. */
+  private boolean isIndexable(Table table, Map<String, Object> resolvedWhere) {
+    if (resolvedWhere == null) return false;
+
+    String col = (String) resolvedWhere.get("column");
+    String op = (String) resolvedWhere.get("operator");
+    Object valObj = resolvedWhere.get("value");
+
+    if (!"=".equals(op) || !table.getIndices().containsKey(col)) return false;
+    // Check if value is a column reference (cannot index scan that easily)
+    return !(valObj instanceof Map && "column".equals(((Map<?, ?>) valObj).get("type")));
+  }
+
+  /**
+   * Picks the access path for a write's WHERE clause: the candidate row ids from a hash index, or
+   * every row id when the predicate cannot use one.
+   */
+  private List<Integer> findCandidateRowIds(
+      Table table, Map<String, Object> where, Map<String, Object> resolvedWhere, QueryStats stats) {
+    long start = System.nanoTime();
+    List<Integer> rowIds;
+    QueryStats.Operator scan;
+    if (isIndexable(table, resolvedWhere)) {
+      scan = stats.scan(indexLookupLabel(table, where));
+      rowIds = table.findRowIds((String) resolvedWhere.get("column"), resolvedWhere.get("value"));
+      stats.indexLookups++;
+    } else if (isDictionaryMiss(resolvedWhere)) {
+      scan = stats.scan(dictionaryMissLabel(table, where));
+      rowIds = new ArrayList<>();
+    } else {
+      Table.ZoneFilter zones = zoneFilter(table, resolvedWhere);
+      scan = stats.scan(seqScanLabel(table, zones));
+      rowIds = new ArrayList<>(table.getSlotCount());
+      for (int i = 0; i < table.getSlotCount(); i++) {
+        if (zones != null && zones.skips(i)) {
+          // Jump to the last row of the block
+          i |= ZoneMap.BLOCK_SIZE - 1;
+          continue;
+        }
+        rowIds.add(i);
+      }
+      stats.fullScans++;
+    }
+    scan.add(System.nanoTime() - start);
+    scan.rows += rowIds.size();
+    stats.rowsScanned += rowIds.size();
+    return rowIds;
+  }
+
+  private static QueryStats.Operator filterOperator(Map<String, Object> where, QueryStats stats) {
+    return where != null
+        ? stats.operator("Filter (" + describe(where) + ")", Metrics.Phase.FILTER)
+        : null;
+  }
+
+  // Time since start minus what the filter, evaluated inside the same loop, took meanwhile
+  private static long excludingFilter(long start, QueryStats.Operator filter, long filterBefore) {
+    long elapsed = System.nanoTime() - start;
+    if (filter != null) {
+      elapsed -= filter.nanos() - filterBefore;
+    }
+    return Math.max(0, elapsed);
+  }
+
+  private ExecutionResult executeUpdate(Map<String, Object> plan, ExecutionContext ctx)
+      throws InterruptedException {
     String tableName = (String) plan.get("table_name");
     Table table = storage.getTable(tableName);
     if (table == null) throw new IllegalArgumentException("Table '" + tableName + "' not found");
@@ -239,80 +1438,144 @@ public class ExecutionEngine {
 
     Map<String, Object> resolvedAssignments = new HashMap<>();
     for (Map.Entry<String, Object> entry : assignments.entrySet()) {
-      resolvedAssignments.put(entry.getKey(), resolveValue(entry.getValue()));
+      resolvedAssignments.put(entry.getKey(), resolveValue(entry.getValue(), ctx));
     }
 
-    Map<String, Object> resolvedWhere = null;
-    if (where != null) {
-      resolvedWhere = new HashMap<>(where);
-      resolvedWhere.put("value", resolveValue(where.get("value")));
+    Map<String, Object> boundWhere = bindWhere(where, ctx);
+
+    for (Map.Entry<String, Object> entry : resolvedAssignments.entrySet()) {
+      String col = entry.getKey();
+      Object val = entry.getValue();
+
+      if (!table.getColumns().containsKey(col)) {
+        throw new IllegalArgumentException("Column '" + col + "' not found");
+      }
+      if (!table.getColumns().get(col).validate(val)) {
+        throw new IllegalArgumentException("Invalid value for column '" + col + "': " + val);
+      }
     }
 
-    int count = 0;
-    for (Map<String, Object> row : table.getRows()) {
-      if (resolvedWhere == null || evaluateWhere(row, resolvedWhere)) {
-        for (Map.Entry<String, Object> entry : resolvedAssignments.entrySet()) {
-          String col = entry.getKey();
-          Object val = entry.getValue();
+    // Setting the partition column moves the rows of every other partition into the one for the
+    // new value
+    Partitioning partitioning = table.getPartitioning();
+    int destination =
+        partitioning != null && resolvedAssignments.containsKey(partitioning.getColumn())
+            ? partitioning.partitionOf(resolvedAssignments.get(partitioning.getColumn()))
+            : -1;
 
-          if (!table.getColumns().containsKey(col)) {
-            throw new IllegalArgumentException("Column '" + col + "' not found");
-          }
-          if (!table.getColumns().get(col).validate(val)) {
-            throw new IllegalArgumentException("Invalid value for column '" + col + "': " + val);
+    Transaction tx = ctx.getTransaction();
+    List<Map<String, Object>> removed = new ArrayList<>();
+    List<Map<String, Object>> added = new ArrayList<>();
+    List<Map<String, Object>> moved = new ArrayList<>();
+    QueryStats stats = ctx.getStats();
+    List<Table> targets = writeTargets(table, boundWhere);
+    List<Map<String, Object>> resolvedWheres = new ArrayList<>();
+    List<List<Integer>> candidates = new ArrayList<>();
+    for (Table target : targets) {
+      lockTable(tx, target.getName());
+      Map<String, Object> resolvedWhere = encodeWhere(target, boundWhere);
+      resolvedWheres.add(resolvedWhere);
+      candidates.add(findCandidateRowIds(target, where, resolvedWhere, stats));
+    }
+    QueryStats.Operator filter = filterOperator(where, stats);
+    QueryStats.Operator update = stats.operator("Update on " + tableName, null);
+    long writeStart = System.nanoTime();
+    long filterBefore = filter != null ? filter.nanos() : 0;
+    for (int t = 0; t < targets.size(); t++) {
+      Table target = targets.get(t);
+      Map<String, Object> resolvedWhere = resolvedWheres.get(t);
+      boolean moving = destination >= 0 && table.getPartitions().get(destination) != target;
+      int changed = 0;
+      for (int rowId : candidates.get(t)) {
+        Map<String, Object> row = target.getLatest(rowId);
+        if (row != null && (filter == null || matches(filter, row, resolvedWhere))) {
+          changed++;
+          removed.add(row);
+          if (moving) {
+            RowVersion previous = target.deleteRow(rowId, tx.getId());
+            tx.recordUndo(() -> target.rollback(rowId, previous));
+            Map<String, Object> data = new HashMap<>(row);
+            data.putAll(resolvedAssignments);
+            moved.add(data);
+            continue;
           }
-          row.put(col, val);
+          RowVersion previous = target.updateRow(rowId, resolvedAssignments, tx.getId());
+          tx.recordUndo(() -> target.rollback(rowId, previous));
+          added.add(target.getLatest(rowId));
         }
-        count++;
       }
+      if (changed > 0) tx.markDirty(target.getName());
+    }
+    // Moved rows are inserted once every partition has been read, so none is updated twice
+    if (!moved.isEmpty()) {
+      storeRows(table, moved, tx);
+      added.addAll(moved);
     }
 
+    int count = removed.size();
+    stats.rowsAffected += count;
     if (count > 0) {
-      // Rebuild indices
-      for (String colName : table.getIndices().keySet()) {
-        table.createIndex(colName);
-      }
-      storage.saveTable(tableName);
+      views.propagate(tableName, removed, added, tx);
     }
+    update.add(excludingFilter(writeStart, filter, filterBefore));
+    update.rows += count;
 
-    return ExecutionResult.success(count + " row(s) updated.");
+    return ExecutionResult.success(count + " row(s) updated.", count);
   }
 
-  private ExecutionResult executeDelete(Map<String, Object> plan) throws IOException {
+  private ExecutionResult executeDelete(Map<String, Object> plan, ExecutionContext ctx)
+      throws InterruptedException {
     String tableName = (String) plan.get("table_name");
     Table table = storage.getTable(tableName);
     if (table == null) throw new IllegalArgumentException("Table '" + tableName + "' not found");
 
     Map<String, Object> where = safeGet(plan, "where");
-    Map<String, Object> resolvedWhere = null;
-    if (where != null) {
-      resolvedWhere = new HashMap<>(where);
-      resolvedWhere.put("value", resolveValue(where.get("value")));
-    }
+    Map<String, Object> boundWhere = bindWhere(where, ctx);
 
-    int initialCount = table.getRows().size();
-    final Map<String, Object> w = resolvedWhere;
-
-    List<Map<String, Object>> newRows =
-        table.getRows().stream()
-            .filter(row -> !(w == null || evaluateWhere(row, w)))
-            .collect(Collectors.toList());
-
-    table.setRows(newRows);
-    int finalCount = table.getRows().size();
-    int count = initialCount - finalCount;
+    Transaction tx = ctx.getTransaction();
+    List<Map<String, Object>> removed = new ArrayList<>();
+    QueryStats stats = ctx.getStats();
+    List<Table> targets = writeTargets(table, boundWhere);
+    List<Map<String, Object>> resolvedWheres = new ArrayList<>();
+    List<List<Integer>> candidates = new ArrayList<>();
+    for (Table target : targets) {
+      lockTable(tx, target.getName());
+      Map<String, Object> resolvedWhere = encodeWhere(target, boundWhere);
+      resolvedWheres.add(resolvedWhere);
+      candidates.add(findCandidateRowIds(target, where, resolvedWhere, stats));
+    }
+    QueryStats.Operator filter = filterOperator(where, stats);
+    QueryStats.Operator delete = stats.operator("Delete on " + tableName, null);
+    long writeStart = System.nanoTime();
+    long filterBefore = filter != null ? filter.nanos() : 0;
+    for (int t = 0; t < targets.size(); t++) {
+      Table target = targets.get(t);
+      Map<String, Object> resolvedWhere = resolvedWheres.get(t);
+      int deleted = 0;
+      for (int rowId : candidates.get(t)) {
+        Map<String, Object> row = target.getLatest(rowId);
+        if (row != null && (filter == null || matches(filter, row, resolvedWhere))) {
+          RowVersion previous = target.deleteRow(rowId, tx.getId());
+          tx.recordUndo(() -> target.rollback(rowId, previous));
+          removed.add(row);
+          deleted++;
+        }
+      }
+      if (deleted > 0) tx.markDirty(target.getName());
+    }
 
+    int count = removed.size();
+    stats.rowsAffected += count;
     if (count > 0) {
-      for (String colName : table.getIndices().keySet()) {
-        table.createIndex(colName);
-      }
-      storage.saveTable(tableName);
+      views.propagate(tableName, removed, Collections.emptyList(), tx);
     }
+    delete.add(excludingFilter(writeStart, filter, filterBefore));
+    delete.rows += count;
 
-    return ExecutionResult.success(count + " row(s) deleted.");
+    return ExecutionResult.success(count + " row(s) deleted.", count);
   }
 
-  private boolean evaluateJoinCondition(
+  boolean evaluateJoinCondition(
       Map<String, Object> leftRow, Map<String, Object> rightRow, Map<String, Object> condition) {
     String col = (String) condition.get("column");
     String op = (String) condition.get("operator");
@@ -330,12 +1593,17 @@ public class ExecutionEngine {
     return compare(leftVal, op, rightVal);
   }
 
-  private boolean evaluateWhere(Map<String, Object> row, Map<String, Object> where) {
+  boolean evaluateWhere(Map<String, Object> row, Map<String, Object> where) {
     String col = (String) where.get("column");
     String op = (String) where.get("operator");
     Object valObj = where.get("value");
     Object rowVal = row.get(col);
 
+    if (where.containsKey("dictionary")) {
+      boolean same = rowVal == valObj;
+      return "=".equals(op) ? same : rowVal != null && !same;
+    }
+
     Object targetVal;
     if (valObj instanceof Map && "column".equals(((Map<?, ?>) valObj).get("type"))) {
       targetVal = row.get(((Map<?, ?>) valObj).get("name"));
@@ -347,7 +1615,7 @@ public class ExecutionEngine {
   }
 
   @SuppressWarnings("unchecked")
-  private boolean compare(Object left, String op, Object right) {
+  static boolean compare(Object left, String op, Object right) {
     if (left == null || right == null) return left == right; // Simple null check
 
     // Convert to compatible types for comparison
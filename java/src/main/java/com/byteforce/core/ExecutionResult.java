@@ -13,25 +13,35 @@ public class ExecutionResult {
   private final String message;
   private final List<Map<String, Object>> rows;
   private final boolean isError;
+  private final int affectedRows;
 
   private ExecutionResult(
-      boolean isQuery, String message, List<Map<String, Object>> rows, boolean isError) {
+      boolean isQuery,
+      String message,
+      List<Map<String, Object>> rows,
+      boolean isError,
+      int affectedRows) {
     this.isQuery = isQuery;
     this.message = message;
     this.rows = rows;
     this.isError = isError;
+    this.affectedRows = affectedRows;
   }
 
   public static ExecutionResult success(String message) {
-    return new ExecutionResult(false, message, Collections.emptyList(), false);
+    return success(message, 0);
+  }
+
+  public static ExecutionResult success(String message, int affectedRows) {
+    return new ExecutionResult(false, message, Collections.emptyList(), false, affectedRows);
   }
 
   public static ExecutionResult queryResult(List<Map<String, Object>> rows) {
-    return new ExecutionResult(true, null, rows, false);
+    return new ExecutionResult(true, null, rows, false, 0);
   }
 
   public static ExecutionResult error(String errorMessage) {
-    return new ExecutionResult(false, errorMessage, Collections.emptyList(), true);
+    return new ExecutionResult(false, errorMessage, Collections.emptyList(), true, 0);
   }
 
   public boolean isQuery() {
@@ -49,4 +59,9 @@ public class ExecutionResult {
   public boolean isError() {
     return isError;
   }
+
+  /** Rows inserted, updated or deleted by a write statement. */
+  public int getAffectedRows() {
+    return affectedRows;
+  }
 }
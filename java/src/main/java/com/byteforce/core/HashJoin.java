@@ -0,0 +1,234 @@
+package com.byteforce.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Equi-join of a streamed left side with a right side built into a hash table, by the engine's
+ * comparison rules: numbers match by value, NULL matches NULL, NaN matches nothing. The table is
+ * bounded by the statement's {@link QueryMemory}. When the right side would exceed it, the join
+ * turns into a hybrid hash join: rows are split into {@link #FANOUT} partitions by key hash, the
+ * first stays in memory as long as it fits, and the others go to spill files, where left rows of
+ * the same partitions follow them. Each spilled pair is then joined on its own, split again by
+ * other hash bits if it still does not fit. Rows from spilled partitions come out last.
+ */
+final class HashJoin {
+  static final int FANOUT = 16;
+  private static final int FANOUT_BITS = 4;
+  // Past this depth a partition is joined in memory whatever its size: its rows share few keys
+  private static final int MAX_LEVEL = 3;
+  private static final Object NULL_KEY = new Object();
+
+  private final String leftColumn;
+  private final String rightColumn;
+  private final boolean outer;
+  private final List<String> leftColumns;
+  private final List<String> rightColumns;
+  private final QueryMemory memory;
+  private final Pass top = new Pass(0);
+  private int spilledPartitions;
+
+  HashJoin(
+      String leftColumn,
+      String rightColumn,
+      boolean outer,
+      List<String> leftColumns,
+      List<String> rightColumns,
+      QueryMemory memory) {
+    this.leftColumn = leftColumn;
+    this.rightColumn = rightColumn;
+    this.outer = outer;
+    this.leftColumns = leftColumns;
+    this.rightColumns = rightColumns;
+    this.memory = memory;
+  }
+
+  /** Reads the whole right side. */
+  void build(Iterator<Map<String, Object>> rows) {
+    top.build(rows);
+  }
+
+  /** Partitions spilled while building, at every level. */
+  int getSpilledPartitions() {
+    return spilledPartitions;
+  }
+
+  /** Whether building moved part of the right side to disk. */
+  boolean isSpilled() {
+    return top.buildFiles != null;
+  }
+
+  /** Joins one left row with a right side that is all in memory. */
+  List<Map<String, Object>> probeRow(Map<String, Object> row) {
+    if (isSpilled()) throw new IllegalStateException("The join spilled; probe it as a stream");
+    return top.join(row);
+  }
+
+  /** Joins each left row with the right side built before, timing the rows {@code op} samples. */
+  Stream<Map<String, Object>> probe(Stream<Map<String, Object>> rows, QueryStats.Operator op) {
+    return top.probe(rows, op);
+  }
+
+  // Numbers compare as doubles, where -0.0 equals 0.0; null means the value matches nothing
+  private static Object key(Object value) {
+    if (value == null) return NULL_KEY;
+    if (value instanceof Number) {
+      double d = ((Number) value).doubleValue();
+      if (Double.isNaN(d)) return null;
+      return d == 0 ? 0.0 : d;
+    }
+    return value;
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private Map<String, Object> merge(Map<String, Object> left, Map<String, Object> right) {
+    Map<String, Object> merged = new HashMap<>(left);
+    merged.putAll(right);
+    return merged;
+  }
+
+  private List<Map<String, Object>> unmatched(Map<String, Object> left) {
+    if (!outer) return Collections.emptyList();
+    Map<String, Object> merged = new HashMap<>(left);
+    // Fill right table columns with null
+    for (String col : rightColumns) {
+      if (!merged.containsKey(col)) {
+        merged.put(col, null);
+      }
+    }
+    return Collections.singletonList(merged);
+  }
+
+  /** One level of partitioning: the whole join, or one spilled partition of the level above. */
+  private final class Pass {
+    private final int level;
+    private final Map<Object, List<Map<String, Object>>> table = new HashMap<>();
+    private long bytes;
+    // Null until the right side overflows, then one file per partition not held in memory
+    private SpillFile[] buildFiles;
+    private SpillFile[] probeFiles;
+    private boolean firstInMemory;
+
+    Pass(int level) {
+      this.level = level;
+    }
+
+    private int partition(Object key) {
+      return (hash(key) >>> (level * FANOUT_BITS)) & (FANOUT - 1);
+    }
+
+    void build(Iterator<Map<String, Object>> rows) {
+      while (rows.hasNext()) {
+        Map<String, Object> row = rows.next();
+        Object key = key(row.get(rightColumn));
+        if (key == null) continue;
+        if (buildFiles != null && (partition(key) != 0 || !firstInMemory)) {
+          buildFiles[partition(key)].write(row);
+          continue;
+        }
+        table.computeIfAbsent(key, k -> new ArrayList<>(1)).add(row);
+        bytes += RowSize.estimate(row);
+        if (bytes > memory.getLimit() && level < MAX_LEVEL) overflow();
+      }
+    }
+
+    // Moves every partition but the first to disk, and the first too once it overflows alone
+    private void overflow() {
+      if (buildFiles == null) {
+        buildFiles = new SpillFile[FANOUT];
+        probeFiles = new SpillFile[FANOUT];
+        for (int p = 1; p < FANOUT; p++) {
+          buildFiles[p] = memory.spill(rightColumns);
+          probeFiles[p] = memory.spill(leftColumns);
+        }
+        spilledPartitions += FANOUT - 1;
+        firstInMemory = true;
+      } else {
+        buildFiles[0] = memory.spill(rightColumns);
+        probeFiles[0] = memory.spill(leftColumns);
+        spilledPartitions++;
+        firstInMemory = false;
+      }
+
+      Iterator<Map.Entry<Object, List<Map<String, Object>>>> it = table.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<Object, List<Map<String, Object>>> entry = it.next();
+        int p = partition(entry.getKey());
+        if (p == 0 && firstInMemory) continue;
+        for (Map<String, Object> row : entry.getValue()) {
+          buildFiles[p].write(row);
+          bytes -= RowSize.estimate(row);
+        }
+        it.remove();
+      }
+    }
+
+    Stream<Map<String, Object>> probe(Stream<Map<String, Object>> rows, QueryStats.Operator op) {
+      Stream<Map<String, Object>> joined =
+          rows.flatMap(
+              row -> {
+                List<Map<String, Object>> result = op.timed(() -> probeRow(row));
+                op.rows += result.size();
+                return result.stream();
+              });
+      if (buildFiles == null) return joined;
+
+      // Runs once the left side is exhausted, when the probe files are complete
+      Stream<Map<String, Object>> spilled =
+          IntStream.range(0, FANOUT).boxed().flatMap(p -> joinSpilled(p, op));
+      return Stream.concat(joined, spilled);
+    }
+
+    private List<Map<String, Object>> probeRow(Map<String, Object> row) {
+      if (buildFiles == null) return join(row);
+      Object key = key(row.get(leftColumn));
+      if (key == null) return unmatched(row);
+      int p = partition(key);
+      if (p == 0 && firstInMemory) return join(row);
+      probeFiles[p].write(row);
+      return Collections.emptyList();
+    }
+
+    private Stream<Map<String, Object>> joinSpilled(int p, QueryStats.Operator op) {
+      table.clear();
+      bytes = 0;
+      if (buildFiles[p] == null) return Stream.empty();
+      if (probeFiles[p].getRows() == 0 || (buildFiles[p].getRows() == 0 && !outer)) {
+        buildFiles[p].close();
+        probeFiles[p].close();
+        return Stream.empty();
+      }
+      Pass pass = new Pass(level + 1);
+      pass.build(buildFiles[p].read());
+      return pass.probe(
+          StreamSupport.stream(
+              Spliterators.spliteratorUnknownSize(probeFiles[p].read(), Spliterator.ORDERED),
+              false),
+          op);
+    }
+
+    private List<Map<String, Object>> join(Map<String, Object> row) {
+      Object key = key(row.get(leftColumn));
+      List<Map<String, Object>> matches = key != null ? table.get(key) : null;
+      if (matches == null) return unmatched(row);
+      List<Map<String, Object>> joined = new ArrayList<>(matches.size());
+      for (Map<String, Object> right : matches) {
+        joined.add(merge(row, right));
+      }
+      return joined;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.byteforce.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Buckets are log-linear: every power of two is
+ * split into 8 equal sub-buckets, so a reported percentile is at most 12.5% above the true value
+ * while the whole range up to hours fits in a few hundred counters.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BITS = 3;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long nanos) {
+    if (nanos < 0) nanos = 0;
+    counts.incrementAndGet(bucket(nanos));
+    count.increment();
+    sum.add(nanos);
+    if (nanos > max.get()) {
+      max.accumulateAndGet(nanos, Math::max);
+    }
+  }
+
+  private static int bucket(long value) {
+    if (value < SUB_COUNT) return (int) value;
+    int exp = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+    return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+
+  // Largest value that falls into the bucket
+  private static long upperBound(int bucket) {
+    if (bucket < SUB_COUNT) return bucket;
+    int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+    long width = 1L << (exp - SUB_BITS);
+    return (SUB_COUNT + bucket % SUB_COUNT) * width + width - 1;
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getTotalNanos() {
+    return sum.sum();
+  }
+
+  public double getMeanNanos() {
+    long n = getCount();
+    return n == 0 ? 0.0 : (double) getTotalNanos() / n;
+  }
+
+  public long getMaxNanos() {
+    return max.get();
+  }
+
+  /** Value below which {@code percentile} percent of the recorded durations fall, e.g. 99.9. */
+  public long getPercentileNanos(double percentile) {
+    long total = getCount();
+    if (total == 0) return 0;
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBound(i), getMaxNanos());
+      }
+    }
+    return getMaxNanos();
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+}
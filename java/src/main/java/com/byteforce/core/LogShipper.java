@@ -0,0 +1,120 @@
+package com.byteforce.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams a primary's {@link ReplicationLog} to replicas over TCP. A replica connects and sends the
+ * position it has applied up to as an 8-byte big-endian long. It is then sent every entry from
+ * there on, each as the primary's current log position followed by the entry's frame exactly as it
+ * is stored, and a heartbeat of the position and a size of -1 whenever the log is idle. Each
+ * replica is served by a virtual thread reading the log file on its own.
+ *
+ * <p>Replicas are not authenticated and receive every row written, so the shipper listens on the
+ * loopback interface unless it is given another address to bind.
+ */
+final class LogShipper implements AutoCloseable {
+  static final long HEARTBEAT_MS = 1000;
+  static final int HEARTBEAT = -1;
+  static final String DEFAULT_BIND = "127.0.0.1";
+
+  private final ReplicationLog log;
+  private final ServerSocket serverSocket;
+  private final Set<Socket> replicas = ConcurrentHashMap.newKeySet();
+  private final Thread acceptor;
+  private volatile boolean closed;
+
+  LogShipper(ReplicationLog log, String bindAddress, int port) throws IOException {
+    this.log = log;
+    this.serverSocket = new ServerSocket();
+    this.serverSocket.setReuseAddress(true);
+    this.serverSocket.bind(new InetSocketAddress(bindAddress, port));
+    this.acceptor = Thread.ofPlatform().name("byteforce-log-shipper").start(this::acceptLoop);
+  }
+
+  int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /** Replicas currently connected. */
+  int getReplicaCount() {
+    return replicas.size();
+  }
+
+  private void acceptLoop() {
+    while (!closed) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+      } catch (IOException e) {
+        if (!closed) System.err.println("Log shipper accept failed: " + e.getMessage());
+        continue;
+      }
+      replicas.add(socket);
+      Thread.ofVirtual().name("byteforce-log-ship-" + socket.getPort()).start(() -> ship(socket));
+    }
+  }
+
+  private void ship(Socket socket) {
+    try (socket;
+        RandomAccessFile file = new RandomAccessFile(log.getFile(), "r")) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      long pos = in.readLong();
+      while (!closed) {
+        long end = log.awaitPast(pos, HEARTBEAT_MS);
+        if (pos >= end) {
+          // Also how a replica that is ahead of this log learns about it
+          out.writeLong(end);
+          out.writeInt(HEARTBEAT);
+        }
+        while (pos < end) {
+          byte[] frame = ReplicationLog.readFrame(file, pos);
+          out.writeLong(end);
+          out.write(frame);
+          pos += frame.length;
+        }
+        out.flush();
+      }
+    } catch (IOException e) {
+      // The replica went away; it reconnects from where it got to
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      replicas.remove(socket);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      System.err.println("Failed to close log shipper socket: " + e.getMessage());
+    }
+    for (Socket socket : replicas) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Already gone
+      }
+    }
+    try {
+      acceptor.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,392 @@
+package com.byteforce.core;
+
+import com.byteforce.core.models.Column;
+import com.byteforce.core.models.RowVersion;
+import com.byteforce.core.models.Snapshot;
+import com.byteforce.core.models.Table;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Keeps materialized views in step with their base tables. A view is stored as a {@link Table}
+ * holding the rows of its SELECT. Every write to a base table hands the rows it removed and added
+ * to {@link #propagate}, which turns them into view rows to delete and insert inside the same
+ * transaction, so the view commits or rolls back together with the write. View rows are treated as
+ * a multiset: a row to delete is found by value, any copy will do. For a join on an equality of
+ * columns, both join columns are indexed, so a changed row finds its partners without a scan.
+ */
+final class MaterializedViews {
+  private final ExecutionEngine engine;
+  private final StorageEngine storage;
+
+  MaterializedViews(ExecutionEngine engine, StorageEngine storage) {
+    this.engine = engine;
+    this.storage = storage;
+  }
+
+  /** Builds the storage and initial contents of a view; the caller holds the base table locks. */
+  Table create(String viewName, Map<String, Object> definition) {
+    Map<String, Object> query = engine.safeGet(definition, "query");
+    if (query.containsKey("limit")) {
+      throw new IllegalArgumentException("LIMIT is not supported in materialized views");
+    }
+    Map<String, Object> where = engine.safeGet(query, "where");
+    if (where != null && isPlaceholder(where.get("value"))) {
+      throw new IllegalArgumentException("Materialized views cannot use placeholders");
+    }
+
+    Table base = engine.getTable((String) query.get("table_name"));
+    Table right = joinTable(query);
+
+    Map<String, Column> columns = new LinkedHashMap<>();
+    List<String> names = new ArrayList<>();
+    if ("*".equals(query.get("columns"))) {
+      names.addAll(base.getColumns().keySet());
+      if (right != null) {
+        for (String col : right.getColumns().keySet()) {
+          if (!names.contains(col)) names.add(col);
+        }
+      }
+    } else {
+      List<String> selected = engine.safeGet(query, "columns");
+      names.addAll(selected);
+    }
+    for (String col : names) {
+      Column source = base.getColumns().get(col);
+      if (source == null && right != null) source = right.getColumns().get(col);
+      if (source == null) throw new IllegalArgumentException("Column '" + col + "' not found");
+      columns.put(col, new Column(col, source.getDataType(), false, false, true));
+    }
+
+    Table view = new Table(viewName, columns, definition);
+    // Rows to delete are looked up by value through their first column
+    view.createIndex(names.get(0));
+
+    JoinSide rightSide = rightSide(query);
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (Map<String, Object> row : base.scan(Snapshot.LATEST)) {
+      rows.addAll(derive(query, row, rightSide));
+    }
+    view.insertRows(rows, Table.FROZEN_TX);
+    return view;
+  }
+
+  /**
+   * The tables a write to {@code tableName} may have to lock to maintain views, sorted by name:
+   * every view that reads it, directly or through another view, and the base tables of those views.
+   * Empty when no view reads it.
+   */
+  SortedSet<String> lockGroup(String tableName) {
+    SortedSet<String> group = new TreeSet<>();
+    Deque<String> pending = new ArrayDeque<>();
+    pending.add(tableName);
+    while (!pending.isEmpty()) {
+      for (Table view : viewsOn(pending.poll())) {
+        Map<String, Object> query = view.getViewQuery();
+        Map<String, Object> join = engine.safeGet(query, "join");
+        group.add((String) query.get("table_name"));
+        if (join != null) group.add((String) join.get("join_table"));
+        if (group.add(view.getName())) pending.add(view.getName());
+      }
+    }
+    return group;
+  }
+
+  /**
+   * Applies a change to {@code tableName} (rows removed and rows added, e.g. the old and new
+   * versions of updated rows) to every view that reads it. Must run after the change itself, in the
+   * transaction that made it.
+   */
+  void propagate(
+      String tableName,
+      List<Map<String, Object>> removed,
+      List<Map<String, Object>> added,
+      Transaction tx)
+      throws InterruptedException {
+    if (removed.isEmpty() && added.isEmpty()) return;
+
+    for (Table view : viewsOn(tableName)) {
+      Map<String, Object> query = view.getViewQuery();
+      String leftName = (String) query.get("table_name");
+      Map<String, Object> join = engine.safeGet(query, "join");
+
+      // Base rows are read at their newest version, so no other writer may hold them. The write
+      // locked its whole lock group up front, so these only re-enter locks the transaction holds
+      engine.lockTable(tx, leftName);
+      if (join != null) engine.lockTable(tx, (String) join.get("join_table"));
+      engine.lockTable(tx, view.getName());
+
+      if (join != null && leftName.equals(join.get("join_table"))) {
+        refresh(view, tx);
+        continue;
+      }
+
+      List<Map<String, Object>> deletes = new ArrayList<>();
+      List<Map<String, Object>> inserts = new ArrayList<>();
+      if (tableName.equals(leftName)) {
+        JoinSide rightSide = rightSide(query);
+        for (Map<String, Object> row : removed) {
+          deletes.addAll(derive(query, row, rightSide));
+        }
+        for (Map<String, Object> row : added) {
+          inserts.addAll(derive(query, row, rightSide));
+        }
+      } else {
+        joinDelta(query, removed, added, deletes, inserts);
+      }
+      apply(view, deletes, inserts, tx);
+    }
+  }
+
+  // A change to the right side of a join only affects the left rows it matched before or after
+  private void joinDelta(
+      Map<String, Object> query,
+      List<Map<String, Object>> removed,
+      List<Map<String, Object>> added,
+      List<Map<String, Object>> deletes,
+      List<Map<String, Object>> inserts) {
+    Map<String, Object> join = engine.safeGet(query, "join");
+    Map<String, Object> condition = engine.safeGet(join, "condition");
+    boolean isLeft = (Boolean) join.getOrDefault("is_left", false);
+    String rightColumn = ExecutionEngine.hashJoinColumn(condition);
+    JoinSide leftSide =
+        new JoinSide(
+            engine.getTable((String) query.get("table_name")),
+            rightColumn != null ? (String) condition.get("column") : null,
+            rightColumn);
+    JoinSide rightSide = isLeft ? rightSide(query) : null;
+
+    // Each left row the changed rows may join, once
+    Map<Integer, Map<String, Object>> leftRows = new LinkedHashMap<>();
+    for (List<Map<String, Object>> changed : List.of(removed, added)) {
+      for (Map<String, Object> rightRow : changed) {
+        leftRows.putAll(leftSide.partners(rightRow));
+      }
+    }
+
+    for (Map<String, Object> row : leftRows.values()) {
+      int matchedRemoved = 0;
+      int matchedAdded = 0;
+      for (Map<String, Object> old : removed) {
+        if (engine.evaluateJoinCondition(row, old, condition)) {
+          addIfPresent(deletes, tuple(query, row, old));
+          matchedRemoved++;
+        }
+      }
+      for (Map<String, Object> fresh : added) {
+        if (engine.evaluateJoinCondition(row, fresh, condition)) {
+          addIfPresent(inserts, tuple(query, row, fresh));
+          matchedAdded++;
+        }
+      }
+      if (!isLeft || (matchedRemoved == 0 && matchedAdded == 0)) continue;
+
+      // The NULL-padded row of a LEFT JOIN exists exactly while the left row has no match
+      int after = 0;
+      for (Map<String, Object> rightRow : rightSide.partners(row).values()) {
+        if (engine.evaluateJoinCondition(row, rightRow, condition)) after++;
+      }
+      int before = after - matchedAdded + matchedRemoved;
+      if (before == 0 && after > 0) {
+        addIfPresent(deletes, padded(query, row));
+      } else if (before > 0 && after == 0) {
+        addIfPresent(inserts, padded(query, row));
+      }
+    }
+  }
+
+  // Recomputes the whole view, used when one table is on both sides of its join
+  private void refresh(Table view, Transaction tx) throws InterruptedException {
+    Map<String, Object> query = view.getViewQuery();
+    JoinSide rightSide = rightSide(query);
+    List<Map<String, Object>> inserts = new ArrayList<>();
+    for (Map<String, Object> row :
+        engine.getTable((String) query.get("table_name")).scan(Snapshot.LATEST)) {
+      inserts.addAll(derive(query, row, rightSide));
+    }
+    apply(view, view.scan(Snapshot.LATEST), inserts, tx);
+  }
+
+  private void apply(
+      Table view,
+      List<Map<String, Object>> deletes,
+      List<Map<String, Object>> inserts,
+      Transaction tx)
+      throws InterruptedException {
+    List<Map<String, Object>> removed = new ArrayList<>();
+    for (Map<String, Object> row : deletes) {
+      int rowId = find(view, row);
+      if (rowId < 0) continue;
+      RowVersion previous = view.deleteRow(rowId, tx.getId());
+      tx.recordUndo(() -> view.rollback(rowId, previous));
+      removed.add(row);
+    }
+    if (!removed.isEmpty()) {
+      tx.markDirty(view.getName());
+      // Views defined on this view see the deletes before the inserts below
+      propagate(view.getName(), removed, Collections.emptyList(), tx);
+    }
+    engine.insertRows(view, inserts, tx);
+  }
+
+  private static int find(Table view, Map<String, Object> row) {
+    String firstCol = view.getColumns().keySet().iterator().next();
+    List<Integer> candidates = view.findRowIds(firstCol, row.get(firstCol));
+    if (candidates == null) {
+      candidates = new ArrayList<>();
+      for (int i = 0; i < view.getSlotCount(); i++) {
+        candidates.add(i);
+      }
+    }
+    for (int rowId : candidates) {
+      if (row.equals(view.getLatest(rowId))) {
+        return rowId;
+      }
+    }
+    return -1;
+  }
+
+  /** View rows produced by one left row: one per matching right row, like the SELECT would. */
+  private List<Map<String, Object>> derive(
+      Map<String, Object> query, Map<String, Object> row, JoinSide rightSide) {
+    List<Map<String, Object>> result = new ArrayList<>();
+    Map<String, Object> join = engine.safeGet(query, "join");
+    if (join == null) {
+      addIfPresent(result, tuple(query, row, null));
+      return result;
+    }
+
+    Map<String, Object> condition = engine.safeGet(join, "condition");
+    boolean matched = false;
+    for (Map<String, Object> rightRow : rightSide.partners(row).values()) {
+      if (engine.evaluateJoinCondition(row, rightRow, condition)) {
+        addIfPresent(result, tuple(query, row, rightRow));
+        matched = true;
+      }
+    }
+    if (!matched && (Boolean) join.getOrDefault("is_left", false)) {
+      addIfPresent(result, padded(query, row));
+    }
+    return result;
+  }
+
+  private Map<String, Object> padded(Map<String, Object> query, Map<String, Object> row) {
+    Map<String, Object> merged = new HashMap<>(row);
+    for (String rightCol : joinTable(query).getColumns().keySet()) {
+      merged.putIfAbsent(rightCol, null);
+    }
+    return filterAndProject(query, merged);
+  }
+
+  private Map<String, Object> tuple(
+      Map<String, Object> query, Map<String, Object> row, Map<String, Object> rightRow) {
+    Map<String, Object> merged = new HashMap<>(row);
+    if (rightRow != null) {
+      merged.putAll(rightRow);
+    }
+    return filterAndProject(query, merged);
+  }
+
+  // The view row for a joined row, or null when the WHERE clause rejects it
+  private Map<String, Object> filterAndProject(
+      Map<String, Object> query, Map<String, Object> merged) {
+    Map<String, Object> where = engine.safeGet(query, "where");
+    if (where != null && !engine.evaluateWhere(merged, where)) return null;
+    if ("*".equals(query.get("columns"))) return merged;
+
+    List<String> selected = engine.safeGet(query, "columns");
+    Map<String, Object> projected = new LinkedHashMap<>();
+    for (String col : selected) {
+      projected.put(col, merged.get(col));
+    }
+    return projected;
+  }
+
+  private static void addIfPresent(List<Map<String, Object>> rows, Map<String, Object> row) {
+    if (row != null) rows.add(row);
+  }
+
+  private Table joinTable(Map<String, Object> query) {
+    Map<String, Object> join = engine.safeGet(query, "join");
+    return join != null ? engine.getTable((String) join.get("join_table")) : null;
+  }
+
+  // The joined table of a view's query, or null when it has no join
+  private JoinSide rightSide(Map<String, Object> query) {
+    Map<String, Object> join = engine.safeGet(query, "join");
+    if (join == null) return null;
+    Map<String, Object> condition = engine.safeGet(join, "condition");
+    return new JoinSide(
+        joinTable(query),
+        ExecutionEngine.hashJoinColumn(condition),
+        (String) condition.get("column"));
+  }
+
+  private List<Table> viewsOn(String tableName) {
+    List<Table> views = new ArrayList<>();
+    for (String name : storage.listTables()) {
+      Table table = storage.getTable(name);
+      if (table == null || !table.isView()) continue;
+      Map<String, Object> query = table.getViewQuery();
+      Map<String, Object> join = engine.safeGet(query, "join");
+      if (tableName.equals(query.get("table_name"))
+          || (join != null && tableName.equals(join.get("join_table")))) {
+        views.add(table);
+      }
+    }
+    return views;
+  }
+
+  /**
+   * One table of a view's join, read at its newest versions for the rows that may join a row of the
+   * other table. For an equality of columns they come from a hash index on this table's column,
+   * created on first use; otherwise, or for a partitioned table, every row may join. Callers still
+   * apply the join condition, and hold the table's lock.
+   */
+  private static final class JoinSide {
+    private final Table table;
+    // Null when every row may join
+    private final String column;
+    private final String otherColumn;
+    private List<Map<String, Object>> rows;
+
+    JoinSide(Table table, String column, String otherColumn) {
+      this.table = table;
+      this.column = column != null && !table.isPartitioned() ? column : null;
+      this.otherColumn = otherColumn;
+      if (this.column != null && !table.getIndices().containsKey(this.column)) {
+        table.createIndex(this.column);
+      }
+    }
+
+    /** The rows that may join {@code other}, a row of the other table, by row id or position. */
+    Map<Integer, Map<String, Object>> partners(Map<String, Object> other) {
+      Map<Integer, Map<String, Object>> result = new LinkedHashMap<>();
+      if (column == null) {
+        if (rows == null) rows = table.scan(Snapshot.LATEST);
+        for (int i = 0; i < rows.size(); i++) {
+          result.put(i, rows.get(i));
+        }
+        return result;
+      }
+      for (int rowId : table.findRowIds(column, other.get(otherColumn))) {
+        Map<String, Object> row = table.getLatest(rowId);
+        if (row != null) result.put(rowId, row);
+      }
+      return result;
+    }
+  }
+
+  private static boolean isPlaceholder(Object value) {
+    return value instanceof Map && Objects.equals("placeholder", ((Map<?, ?>) value).get("type"));
+  }
+}
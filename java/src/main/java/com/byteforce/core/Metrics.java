@@ -0,0 +1,125 @@
+package com.byteforce.core;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Engine-wide instrumentation: a latency histogram per statement type and per execution phase, plus
+ * row and access path counters. Statements report a {@link QueryStats} when they finish; parsing
+ * and persistence report their phase directly, since they happen outside a statement's execution
+ * (plan cache misses, COMMIT).
+ */
+public class Metrics {
+  public enum Phase {
+    PARSE,
+    PLAN,
+    SCAN,
+    JOIN,
+    FILTER,
+    PERSIST
+  }
+
+  // Phases a statement measures itself; the others are recorded where they happen
+  private static final Phase[] STATEMENT_PHASES = {
+    Phase.PLAN, Phase.SCAN, Phase.JOIN, Phase.FILTER
+  };
+
+  private final Map<String, LatencyHistogram> statements = new ConcurrentSkipListMap<>();
+  private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder rowsScanned = new LongAdder();
+  private final LongAdder rowsReturned = new LongAdder();
+  private final LongAdder rowsAffected = new LongAdder();
+  private final LongAdder indexLookups = new LongAdder();
+  private final LongAdder fullScans = new LongAdder();
+
+  public Metrics() {
+    for (Phase phase : Phase.values()) {
+      phases.put(phase, new LatencyHistogram());
+    }
+  }
+
+  void record(String statement, QueryStats stats, long nanos, boolean failed) {
+    statements.computeIfAbsent(statement, s -> new LatencyHistogram()).record(nanos);
+    if (failed) {
+      errors.increment();
+    }
+    for (Phase phase : STATEMENT_PHASES) {
+      long phaseNanos = stats.nanos(phase);
+      if (phaseNanos > 0) {
+        phases.get(phase).record(phaseNanos);
+      }
+    }
+    rowsScanned.add(stats.rowsScanned);
+    rowsReturned.add(stats.rowsReturned);
+    rowsAffected.add(stats.rowsAffected);
+    indexLookups.add(stats.indexLookups);
+    fullScans.add(stats.fullScans);
+  }
+
+  void recordPhase(Phase phase, long nanos) {
+    phases.get(phase).record(nanos);
+  }
+
+  /** Counts a statement that failed before it reached the engine, e.g. on a syntax error. */
+  void recordError() {
+    errors.increment();
+  }
+
+  /** Statement latencies keyed by statement type ("select", "insert", "batch", ...). */
+  public Map<String, LatencyHistogram> getStatementLatencies() {
+    return Collections.unmodifiableMap(statements);
+  }
+
+  public LatencyHistogram getPhaseLatency(Phase phase) {
+    return phases.get(phase);
+  }
+
+  public long getStatements() {
+    long total = 0;
+    for (LatencyHistogram histogram : statements.values()) {
+      total += histogram.getCount();
+    }
+    return total;
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  public long getRowsScanned() {
+    return rowsScanned.sum();
+  }
+
+  public long getRowsReturned() {
+    return rowsReturned.sum();
+  }
+
+  public long getRowsAffected() {
+    return rowsAffected.sum();
+  }
+
+  public long getIndexLookups() {
+    return indexLookups.sum();
+  }
+
+  public long getFullScans() {
+    return fullScans.sum();
+  }
+
+  public void reset() {
+    statements.clear();
+    for (LatencyHistogram histogram : phases.values()) {
+      histogram.reset();
+    }
+    errors.reset();
+    rowsScanned.reset();
+    rowsReturned.reset();
+    rowsAffected.reset();
+    indexLookups.reset();
+    fullScans.reset();
+  }
+}
@@ -0,0 +1,127 @@
+package com.byteforce.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+final class MetricsBean implements MetricsMXBean {
+  private final ByteForceDB db;
+  private final Metrics metrics;
+  private ObjectName name;
+
+  MetricsBean(ByteForceDB db) {
+    this.db = db;
+    this.metrics = db.getMetrics();
+  }
+
+  /**
+   * Registers the bean for {@code dataDir}. A database opened again on the same directory takes the
+   * name over from the previous instance.
+   */
+  void register(String dataDir) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName =
+          new ObjectName("com.byteforce:type=Metrics,dir=" + ObjectName.quote(dataDir));
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+      server.registerMBean(this, objectName);
+      name = objectName;
+    } catch (JMException e) {
+      System.err.println("Failed to register metrics MBean: " + e.getMessage());
+    }
+  }
+
+  void unregister() {
+    if (name == null) return;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    } catch (JMException e) {
+      // Already replaced by a newer instance on the same directory
+    }
+    name = null;
+  }
+
+  @Override
+  public long getStatements() {
+    return metrics.getStatements();
+  }
+
+  @Override
+  public long getErrors() {
+    return metrics.getErrors();
+  }
+
+  @Override
+  public long getRowsScanned() {
+    return metrics.getRowsScanned();
+  }
+
+  @Override
+  public long getRowsReturned() {
+    return metrics.getRowsReturned();
+  }
+
+  @Override
+  public long getRowsAffected() {
+    return metrics.getRowsAffected();
+  }
+
+  @Override
+  public long getIndexLookups() {
+    return metrics.getIndexLookups();
+  }
+
+  @Override
+  public long getFullScans() {
+    return metrics.getFullScans();
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return db.getStorage().getBytesWritten();
+  }
+
+  @Override
+  public double getPlanCacheHitRatio() {
+    return db.getPlanCache().getHitRatio();
+  }
+
+  @Override
+  public double getResultCacheHitRatio() {
+    return db.getResultCache().getHitRatio();
+  }
+
+  @Override
+  public Map<String, Double> getLatencyMicros() {
+    Map<String, Double> latencies = new LinkedHashMap<>();
+    for (Map.Entry<String, LatencyHistogram> entry : metrics.getStatementLatencies().entrySet()) {
+      putPercentiles(latencies, entry.getKey(), entry.getValue());
+    }
+    for (Metrics.Phase phase : Metrics.Phase.values()) {
+      putPercentiles(
+          latencies,
+          "phase." + phase.name().toLowerCase(Locale.ROOT),
+          metrics.getPhaseLatency(phase));
+    }
+    return latencies;
+  }
+
+  private static void putPercentiles(
+      Map<String, Double> latencies, String prefix, LatencyHistogram histogram) {
+    latencies.put(prefix + ".p50", histogram.getPercentileNanos(50) / 1000.0);
+    latencies.put(prefix + ".p99", histogram.getPercentileNanos(99) / 1000.0);
+    latencies.put(prefix + ".p999", histogram.getPercentileNanos(99.9) / 1000.0);
+    latencies.put(prefix + ".max", histogram.getMaxNanos() / 1000.0);
+  }
+
+  @Override
+  public void reset() {
+    metrics.reset();
+  }
+}
@@ -0,0 +1,36 @@
+package com.byteforce.core;
+
+import java.util.Map;
+
+/**
+ * JMX view of a database's {@link Metrics}, registered under {@code com.byteforce:type=Metrics}.
+ */
+public interface MetricsMXBean {
+  long getStatements();
+
+  long getErrors();
+
+  long getRowsScanned();
+
+  long getRowsReturned();
+
+  long getRowsAffected();
+
+  long getIndexLookups();
+
+  long getFullScans();
+
+  long getBytesWritten();
+
+  double getPlanCacheHitRatio();
+
+  double getResultCacheHitRatio();
+
+  /**
+   * Latency percentiles in microseconds, keyed "select.p99", "phase.scan.p50" and so on; each
+   * histogram reports p50, p99, p999 and max.
+   */
+  Map<String, Double> getLatencyMicros();
+
+  void reset();
+}
@@ -0,0 +1,72 @@
+package com.byteforce.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of parsed plans keyed by SQL text. Cached plans are shared between executions,
+ * so the execution engine must treat them as read-only.
+ */
+public class PlanCache {
+  private final int capacity;
+  private final LinkedHashMap<String, Map<String, Object>> plans;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public PlanCache(int capacity) {
+    this.capacity = capacity;
+    this.plans =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object>> eldest) {
+            return size() > PlanCache.this.capacity;
+          }
+        };
+  }
+
+  public Map<String, Object> get(String sql) {
+    Map<String, Object> plan;
+    synchronized (plans) {
+      plan = plans.get(sql);
+    }
+    (plan != null ? hits : misses).incrementAndGet();
+    return plan;
+  }
+
+  public void put(String sql, Map<String, Object> plan) {
+    if (capacity <= 0) return;
+    synchronized (plans) {
+      plans.put(sql, plan);
+    }
+  }
+
+  public void clear() {
+    synchronized (plans) {
+      plans.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (plans) {
+      return plans.size();
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public double getHitRatio() {
+    long total = getHits() + getMisses();
+    return total == 0 ? 0.0 : (double) getHits() / total;
+  }
+}
@@ -0,0 +1,59 @@
+package com.byteforce.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/** A parsed statement that can be executed repeatedly with different placeholder bindings. */
+public class PreparedQuery {
+  private final ByteForceDB db;
+  private final Session session;
+  private final String sql;
+  private final Map<String, Object> plan;
+
+  // A null session runs on the calling thread's session
+  PreparedQuery(ByteForceDB db, Session session, String sql, Map<String, Object> plan) {
+    this.db = db;
+    this.session = session;
+    this.sql = sql;
+    this.plan = plan;
+  }
+
+  public ExecutionResult execute() {
+    return execute((List<Object>) null);
+  }
+
+  public ExecutionResult execute(Object... params) {
+    return execute(Arrays.asList(params));
+  }
+
+  public ExecutionResult execute(List<Object> params) {
+    return (session != null ? session : db.currentSession()).executePlan(sql, plan, params);
+  }
+
+  public Cursor query(Object... params) {
+    return query(Arrays.asList(params));
+  }
+
+  public Cursor query(List<Object> params) {
+    return (session != null ? session : db.currentSession()).openCursor(sql, plan, params);
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  public String getType() {
+    return (String) plan.get("type");
+  }
+
+  /** Whether running the statement reads a file on the server: COPY, also under EXPLAIN ANALYZE. */
+  @SuppressWarnings("unchecked")
+  public boolean readsFiles() {
+    Map<String, Object> statement = plan;
+    if ("explain".equals(statement.get("type"))) {
+      statement = (Map<String, Object>) statement.get("statement");
+    }
+    return "copy".equals(statement.get("type"));
+  }
+}
@@ -0,0 +1,54 @@
+package com.byteforce.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The memory one statement's operators may hold, such as the table of a hash join, and the spill
+ * files they move rows to once they would hold more. Sizes are {@link RowSize} estimates, as for
+ * the result cache. Closing it closes the files a statement that stopped early never read back.
+ */
+final class QueryMemory implements AutoCloseable {
+  private final long limit;
+  private final File spillDir;
+  private final List<SpillFile> files = new ArrayList<>();
+
+  QueryMemory(long limit, File spillDir) {
+    this.limit = limit;
+    this.spillDir = spillDir;
+  }
+
+  long getLimit() {
+    return limit;
+  }
+
+  SpillFile spill(List<String> columns) {
+    try {
+      SpillFile file = new SpillFile(spillDir, columns);
+      files.add(file);
+      return file;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create spill file: " + e.getMessage(), e);
+    }
+  }
+
+  /** Bytes written to spill files so far. */
+  long getSpilledBytes() {
+    long bytes = 0;
+    for (SpillFile file : files) {
+      bytes += file.getBytes();
+    }
+    return bytes;
+  }
+
+  @Override
+  public void close() {
+    for (SpillFile file : files) {
+      file.close();
+    }
+    files.clear();
+  }
+}
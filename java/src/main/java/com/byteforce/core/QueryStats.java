@@ -0,0 +1,176 @@
+package com.byteforce.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * What one statement did: the operators of its plan with the rows each produced and the time spent
+ * in each, plus statement-wide counters. Per-row operators only time every {@code SAMPLE_EVERY}-th
+ * row and extrapolate, which keeps two clock reads per row off the hot path. Not thread-safe: work
+ * a statement spreads over threads keeps statistics of its own and {@link #absorb}s them after.
+ */
+final class QueryStats {
+  private static final int SAMPLE_EVERY = 16;
+
+  /** One step of the plan. Its time excludes the operators feeding it. */
+  static final class Operator {
+    final String label;
+    final Metrics.Phase phase;
+    final boolean leaf;
+    long rows;
+    int depth;
+    private long exactNanos;
+    private long sampledNanos;
+    private long sampled;
+    private long calls;
+
+    private Operator(String label, Metrics.Phase phase, boolean leaf) {
+      this.label = label;
+      this.phase = phase;
+      this.leaf = leaf;
+    }
+
+    void add(long nanos) {
+      exactNanos += nanos;
+    }
+
+    /** Runs one per-row step, timing it if this row is sampled. */
+    <T> T timed(Supplier<T> step) {
+      if (calls++ % SAMPLE_EVERY != 0) return step.get();
+
+      long start = System.nanoTime();
+      T result = step.get();
+      sampledNanos += System.nanoTime() - start;
+      sampled++;
+      return result;
+    }
+
+    private void merge(Operator other) {
+      rows += other.rows;
+      exactNanos += other.exactNanos;
+      sampledNanos += other.sampledNanos;
+      sampled += other.sampled;
+      calls += other.calls;
+    }
+
+    /** Time spent in the operator, with sampled steps scaled up to every call. */
+    long nanos() {
+      long estimate = sampled == 0 ? 0 : sampledNanos * calls / sampled;
+      return exactNanos + estimate;
+    }
+  }
+
+  private final List<Operator> operators = new ArrayList<>();
+  // Time not spent in an operator: planning and persisting
+  private final long[] phaseNanos = new long[Metrics.Phase.values().length];
+  private int replay = -1;
+
+  long rowsScanned;
+  long rowsReturned;
+  long rowsAffected;
+  int indexLookups;
+  int fullScans;
+
+  /** Registers an operator that consumes the output of the operators registered before it. */
+  Operator operator(String label, Metrics.Phase phase) {
+    return register(label, phase, false);
+  }
+
+  /** Registers a source of rows, such as a table scan. */
+  Operator scan(String label) {
+    return register(label, Metrics.Phase.SCAN, true);
+  }
+
+  /**
+   * Starts another run of the same plan, as for each parameter set of a batch. Its operators are
+   * registered in the same order, so they accumulate into those of the first run.
+   */
+  void repeat() {
+    replay = 0;
+  }
+
+  private Operator register(String label, Metrics.Phase phase, boolean leaf) {
+    if (replay >= 0 && replay < operators.size()) {
+      return operators.get(replay++);
+    }
+    Operator op = new Operator(label, phase, leaf);
+    operators.add(op);
+    return op;
+  }
+
+  /**
+   * Takes in the statistics of parts of this statement that ran on other threads, such as the reads
+   * of single partitions. Their sources are registered side by side, then their other operators,
+   * with those of the same label summed into one.
+   */
+  void absorb(List<QueryStats> parts) {
+    Map<String, Operator> merged = new LinkedHashMap<>();
+    for (QueryStats part : parts) {
+      for (Operator op : part.operators) {
+        if (op.leaf) {
+          operators.add(op);
+        } else {
+          Operator into = merged.putIfAbsent(op.label, op);
+          if (into != null) into.merge(op);
+        }
+      }
+      rowsScanned += part.rowsScanned;
+      indexLookups += part.indexLookups;
+      fullScans += part.fullScans;
+    }
+    operators.addAll(merged.values());
+  }
+
+  void add(Metrics.Phase phase, long nanos) {
+    phaseNanos[phase.ordinal()] += nanos;
+  }
+
+  long nanos(Metrics.Phase phase) {
+    long total = phaseNanos[phase.ordinal()];
+    for (Operator op : operators) {
+      if (op.phase == phase) total += op.nanos();
+    }
+    return total;
+  }
+
+  /**
+   * Operators from the one producing the result down to the scans, with {@link Operator#depth} set
+   * to their nesting level. The sources of a join share a level, outer side first.
+   */
+  List<Operator> plan() {
+    List<Operator> plan = new ArrayList<>();
+    int depth = 0;
+    int i = operators.size() - 1;
+    while (i >= 0) {
+      if (!operators.get(i).leaf) {
+        Operator op = operators.get(i--);
+        op.depth = depth++;
+        plan.add(op);
+        continue;
+      }
+      int first = i;
+      while (first > 0 && operators.get(first - 1).leaf) first--;
+      for (int j = first; j <= i; j++) {
+        operators.get(j).depth = depth;
+        plan.add(operators.get(j));
+      }
+      i = first - 1;
+    }
+    return plan;
+  }
+
+  /** The plan on one line, e.g. "Filter (a > 1) -> Seq Scan on t". */
+  String shape() {
+    StringBuilder sb = new StringBuilder();
+    int depth = -1;
+    for (Operator op : plan()) {
+      if (depth >= 0) sb.append(op.depth == depth ? ", " : " -> ");
+      sb.append(op.label);
+      depth = op.depth;
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,311 @@
+package com.byteforce.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * The follower side of log shipping: a thread that reads a primary's {@link ReplicationLog}, from a
+ * shared directory or from the primary's log shipper over TCP, and replays each entry into this
+ * database as one transaction. The position reached is saved together with the tables each entry
+ * changed, so a restarted replica picks up where it stopped without applying anything twice. While
+ * it runs, the database only accepts reads.
+ */
+public final class Replica implements AutoCloseable {
+  private static final long POLL_MS = 50;
+  private static final long RETRY_MS = 1000;
+
+  private final ExecutionEngine executor;
+  private final StorageEngine storage;
+  private final Source source;
+  private final String description;
+  private final Thread thread;
+  private volatile long appliedPosition;
+  private volatile long primaryPosition;
+  // Commit time on the primary of the entry being applied, 0 when there is none
+  private volatile long applyingSince;
+  private volatile long appliedEntries;
+  private volatile String error;
+  private volatile boolean closed;
+
+  /** Where the entries come from; {@link #next} blocks until one past {@code position} exists. */
+  private interface Source extends Closeable {
+    Frame next(long position) throws IOException, InterruptedException;
+
+    /** The end of the primary's log as last seen. */
+    long end();
+  }
+
+  private record Frame(ReplicationLog.Entry entry, long end) {}
+
+  private Replica(ExecutionEngine executor, StorageEngine storage, Source source, String from) {
+    this.executor = executor;
+    this.storage = storage;
+    this.source = source;
+    this.description = from;
+    this.appliedPosition = Math.max(0, storage.getReplicationPosition());
+    this.primaryPosition = appliedPosition;
+    this.thread = Thread.ofPlatform().name("byteforce-replica").daemon().unstarted(this::run);
+  }
+
+  /** Follows the log in {@code logDir}, a directory the primary writes its log to. */
+  static Replica fromDirectory(ExecutionEngine executor, StorageEngine storage, String logDir) {
+    File file = new File(logDir, ReplicationLog.FILE_NAME);
+    return start(new Replica(executor, storage, new DirectorySource(file), logDir));
+  }
+
+  /** Follows the log shipped by the primary listening on {@code host:port}. */
+  static Replica fromSocket(
+      ExecutionEngine executor, StorageEngine storage, String host, int port) {
+    return start(new Replica(executor, storage, new SocketSource(host, port), host + ":" + port));
+  }
+
+  private static Replica start(Replica replica) {
+    replica.thread.start();
+    return replica;
+  }
+
+  private void run() {
+    try {
+      while (!closed) {
+        Frame frame = source.next(appliedPosition);
+        primaryPosition = Math.max(source.end(), frame.end());
+        applyingSince = frame.entry().commitTime;
+        storage.setReplicationPosition(frame.end());
+        executor.replay(frame.entry().changes);
+        appliedEntries++;
+        synchronized (this) {
+          appliedPosition = frame.end();
+          applyingSince = 0;
+          notifyAll();
+        }
+      }
+    } catch (InterruptedException e) {
+      // Closed
+    } catch (Exception e) {
+      if (!closed) {
+        error = e.getMessage();
+        System.err.println(
+            "Replication from "
+                + description
+                + " stopped at position "
+                + appliedPosition
+                + ": "
+                + error);
+      }
+    } finally {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+  /** Where this replica reads the primary's log from. */
+  public String getSource() {
+    return description;
+  }
+
+  /** Log position up to which every entry has been applied. */
+  public long getAppliedPosition() {
+    return appliedPosition;
+  }
+
+  /** The end of the primary's log as last seen. */
+  public long getPrimaryPosition() {
+    return Math.max(primaryPosition, source.end());
+  }
+
+  /** Entries applied since the replica started. */
+  public long getAppliedEntries() {
+    return appliedEntries;
+  }
+
+  /** Bytes of the primary's log not applied yet. */
+  public long getLagBytes() {
+    return Math.max(0, getPrimaryPosition() - appliedPosition);
+  }
+
+  /**
+   * How long ago the oldest entry not applied yet committed on the primary, or 0 when caught up.
+   * Compares clocks of the two hosts, so it is only as exact as they agree.
+   */
+  public long getLagMillis() {
+    long since = applyingSince;
+    if (since == 0 || getLagBytes() == 0) return 0;
+    return Math.max(0, System.currentTimeMillis() - since);
+  }
+
+  /** Why replication stopped, or null while it runs. */
+  public String getError() {
+    return error;
+  }
+
+  public boolean isRunning() {
+    return thread.isAlive();
+  }
+
+  /**
+   * Waits until every entry up to {@code position} of the primary's log is applied, so that reads
+   * see a write the primary committed at that position. Returns false on timeout or if replication
+   * stopped.
+   */
+  public synchronized boolean awaitPosition(long position, long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (appliedPosition < position) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0 || !thread.isAlive()) return false;
+      wait(remaining);
+    }
+    return true;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    thread.interrupt();
+    try {
+      source.close();
+    } catch (IOException e) {
+      // Nothing left to read from
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Tails the log file, polling while the next frame is not completely written
+  private static final class DirectorySource implements Source {
+    private final File file;
+    private RandomAccessFile in;
+    private volatile long end;
+
+    DirectorySource(File file) {
+      this.file = file;
+    }
+
+    @Override
+    public Frame next(long position) throws IOException, InterruptedException {
+      while (true) {
+        if (in == null && file.exists()) {
+          in = new RandomAccessFile(file, "r");
+        }
+        if (in != null) {
+          long length = in.length();
+          end = length;
+          if (position > length) {
+            throw new IOException("Replica is ahead of the primary's log (" + length + " bytes)");
+          }
+          if (position + ReplicationLog.FRAME_HEADER <= length) {
+            in.seek(position);
+            int size = in.readInt();
+            int crc = in.readInt();
+            long frameEnd = position + ReplicationLog.FRAME_HEADER + size;
+            if (size >= 0 && frameEnd <= length) {
+              byte[] payload = new byte[size];
+              in.readFully(payload);
+              ReplicationLog.Entry entry = ReplicationLog.decode(crc, payload);
+              // A frame failing its checksum is still being written, or torn and about to be cut
+              if (entry != null) return new Frame(entry, frameEnd);
+            }
+          }
+        }
+        Thread.sleep(POLL_MS);
+      }
+    }
+
+    @Override
+    public long end() {
+      return end;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (in != null) in.close();
+    }
+  }
+
+  // Connects to the primary's log shipper, and again after the connection drops
+  private static final class SocketSource implements Source {
+    private final String host;
+    private final int port;
+    private volatile Socket socket;
+    private DataInputStream in;
+    private volatile long end;
+    private volatile boolean closed;
+
+    SocketSource(String host, int port) {
+      this.host = host;
+      this.port = port;
+    }
+
+    @Override
+    public Frame next(long position) throws IOException, InterruptedException {
+      while (!closed) {
+        try {
+          if (in == null) connect(position);
+          long primaryEnd = in.readLong();
+          int size = in.readInt();
+          end = primaryEnd;
+          if (position > primaryEnd) {
+            throw new IllegalStateException(
+                "Replica is ahead of the primary's log (" + primaryEnd + " bytes)");
+          }
+          if (size == LogShipper.HEARTBEAT) continue;
+          ReplicationLog.Entry entry = ReplicationLog.readEntry(in, size);
+          return new Frame(entry, position + ReplicationLog.FRAME_HEADER + size);
+        } catch (IOException e) {
+          disconnect();
+          if (closed) break;
+          Thread.sleep(RETRY_MS);
+        }
+      }
+      throw new InterruptedException("Replica closed");
+    }
+
+    private void connect(long position) throws IOException {
+      Socket s = new Socket();
+      socket = s;
+      s.connect(new InetSocketAddress(host, port), (int) RETRY_MS);
+      s.setTcpNoDelay(true);
+      // A primary that stops sending heartbeats is treated as gone
+      s.setSoTimeout((int) (3 * LogShipper.HEARTBEAT_MS));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+      out.writeLong(position);
+      out.flush();
+      in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+    }
+
+    private void disconnect() {
+      in = null;
+      Socket s = socket;
+      if (s != null) {
+        try {
+          s.close();
+        } catch (IOException e) {
+          // Already gone
+        }
+      }
+    }
+
+    @Override
+    public long end() {
+      return end;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      disconnect();
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package com.byteforce.core;
+
+import com.byteforce.core.models.Table;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The mutation log a primary keeps for its replicas: one entry per committed transaction, holding
+ * the plans and parameters of the writes it ran, in commit order. Entries are appended while the
+ * transaction still holds its table locks, so two transactions that touched the same table are
+ * logged in the order they committed, and replaying the entries one by one rebuilds the same
+ * tables. Statements are deterministic; COPY is logged as the rows it loaded, since the file it
+ * read need not exist on the replica.
+ *
+ * <p>The log is the file {@value #FILE_NAME} in its directory. Each entry is a frame of a 4-byte
+ * length, a CRC32 of the payload and the serialized entry; a position is a byte offset just past a
+ * frame. A torn frame left by a crash is cut off when the log is opened again. Entries read back
+ * from a file or a socket may only hold the classes entries are made of.
+ */
+public final class ReplicationLog implements AutoCloseable {
+  public static final String FILE_NAME = "replication.log";
+  static final int FRAME_HEADER = 8;
+  static final int MAX_FRAME = Integer.MAX_VALUE - FRAME_HEADER;
+
+  // Entries hold plans, parameters and rows made of these, and tables with their schema
+  private static final ObjectInputFilter ENTRY_CLASSES =
+      ObjectInputFilter.Config.createFilter(
+          "com.byteforce.core.ReplicationLog$*;com.byteforce.core.models.*;"
+              + "java.lang.Object;java.lang.String;java.lang.Number;java.lang.Integer;"
+              + "java.lang.Long;java.lang.Double;java.lang.Boolean;java.lang.Enum;"
+              + "java.util.HashMap;java.util.LinkedHashMap;java.util.ArrayList;"
+              + "java.util.Arrays$ArrayList;java.util.Map$Entry;java.util.KeyValueHolder;"
+              + "java.util.Collections$*;java.util.ImmutableCollections$*;java.util.CollSer;!*");
+
+  private final File file;
+  private final RandomAccessFile out;
+  private volatile long position;
+  private boolean closed;
+
+  /** One write of a transaction, in the order it ran. */
+  static final class Change implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final Map<String, Object> plan;
+    final List<List<Object>> paramSets;
+    final String tableName;
+    final List<Map<String, Object>> rows;
+    final List<Table> tables;
+
+    private Change(
+        Map<String, Object> plan,
+        List<List<Object>> paramSets,
+        String tableName,
+        List<Map<String, Object>> rows,
+        List<Table> tables) {
+      this.plan = plan;
+      this.paramSets = paramSets;
+      this.tableName = tableName;
+      this.rows = rows;
+      this.tables = tables;
+    }
+
+    /** A statement, run once per parameter set. */
+    static Change statement(Map<String, Object> plan, List<List<Object>> paramSets) {
+      // The caller may reuse its parameter lists before the transaction commits
+      List<List<Object>> copies = new ArrayList<>(paramSets.size());
+      for (List<Object> params : paramSets) {
+        copies.add(params != null ? new ArrayList<>(params) : null);
+      }
+      return new Change(plan, copies, null, null, null);
+    }
+
+    /** Rows inserted into {@code tableName} as they are, without a statement. */
+    static Change rows(String tableName, List<Map<String, Object>> rows) {
+      return new Change(null, null, tableName, rows, null);
+    }
+
+    /** Whole tables, as the log's first entry when it starts on a database that has data. */
+    static Change tables(List<Table> tables) {
+      return new Change(null, null, null, null, tables);
+    }
+  }
+
+  static final class Entry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final long commitTime;
+    final List<Change> changes;
+
+    Entry(long commitTime, List<Change> changes) {
+      this.commitTime = commitTime;
+      this.changes = changes;
+    }
+  }
+
+  /** Opens the log in {@code dir}, creating it if needed, positioned after its last whole entry. */
+  public ReplicationLog(String dir) throws IOException {
+    File directory = new File(dir);
+    if (!directory.exists()) {
+      directory.mkdirs();
+    }
+    this.file = new File(directory, FILE_NAME);
+    this.out = new RandomAccessFile(file, "rw");
+    this.position = validLength(out);
+    if (position < out.length()) {
+      System.err.println(
+          "Replication log " + file + ": dropping " + (out.length() - position) + " torn byte(s)");
+      out.setLength(position);
+    }
+    out.seek(position);
+  }
+
+  // Length of the longest prefix made of whole frames with matching checksums
+  private static long validLength(RandomAccessFile in) throws IOException {
+    long length = in.length();
+    long pos = 0;
+    while (pos + FRAME_HEADER <= length) {
+      in.seek(pos);
+      int size = in.readInt();
+      int crc = in.readInt();
+      if (size < 0 || pos + FRAME_HEADER + size > length) break;
+      byte[] payload = new byte[size];
+      in.readFully(payload);
+      if (checksum(payload) != crc) break;
+      pos += FRAME_HEADER + size;
+    }
+    return pos;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /** The position just past the last entry; a replica at this position is caught up. */
+  public long getPosition() {
+    return position;
+  }
+
+  /** Appends one committed transaction and returns the position after it. */
+  synchronized long append(List<Change> changes) throws IOException {
+    if (closed) throw new IOException("Replication log is closed");
+    byte[] payload = encode(new Entry(System.currentTimeMillis(), changes));
+    ByteArrayOutputStream frame = new ByteArrayOutputStream(FRAME_HEADER + payload.length);
+    DataOutputStream data = new DataOutputStream(frame);
+    data.writeInt(payload.length);
+    data.writeInt(checksum(payload));
+    data.write(payload);
+    // A single write, so only the last frame can be torn by a crash
+    out.write(frame.toByteArray());
+    position += frame.size();
+    notifyAll();
+    return position;
+  }
+
+  /**
+   * Waits until the log grows past {@code from} or {@code timeoutMillis} pass, and returns the
+   * current position.
+   */
+  synchronized long awaitPast(long from, long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    long remaining = timeoutMillis;
+    while (position <= from && !closed && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return position;
+  }
+
+  /** Reads the whole frame, header included, that starts at {@code pos} of {@code in}. */
+  static byte[] readFrame(RandomAccessFile in, long pos) throws IOException {
+    in.seek(pos);
+    int size = in.readInt();
+    if (size < 0 || pos + FRAME_HEADER + size > in.length()) {
+      throw new IOException("No replication log entry at position " + pos);
+    }
+    byte[] frame = new byte[FRAME_HEADER + size];
+    in.seek(pos);
+    in.readFully(frame);
+    return frame;
+  }
+
+  /** Decodes a frame's payload, or returns null if it does not match its checksum. */
+  static Entry decode(int crc, byte[] payload) throws IOException {
+    if (checksum(payload) != crc) return null;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+      in.setObjectInputFilter(ENTRY_CLASSES);
+      return (Entry) in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unreadable replication log entry", e);
+    }
+  }
+
+  /** Reads the rest of a frame from a stream, after its {@code size}. */
+  static Entry readEntry(DataInputStream in, int size) throws IOException {
+    if (size < 0 || size > MAX_FRAME) throw new IOException("Bad replication frame size " + size);
+    int crc = in.readInt();
+    byte[] payload = new byte[size];
+    in.readFully(payload);
+    Entry entry = decode(crc, payload);
+    if (entry == null) throw new IOException("Replication frame failed its checksum");
+    return entry;
+  }
+
+  private static byte[] encode(Entry entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      oos.writeObject(entry);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static int checksum(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    notifyAll();
+    try {
+      out.close();
+    } catch (IOException e) {
+      System.err.println("Failed to close replication log: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package com.byteforce.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Optional LRU cache of SELECT results keyed by whitespace-normalized SQL plus bound parameters,
+ * bounded by an estimated memory budget. Each entry remembers the version of every table it read; a
+ * commit that writes one of those tables bumps its version in the {@link ExecutionEngine}, and the
+ * entry is never served again. Only statements outside an explicit transaction use the cache, since
+ * those always read the latest committed data. An entry holds its own copy of the rows, and each
+ * hit gets a copy of it, so callers may change the rows they get whether or not the query hit.
+ */
+public class ResultCache {
+  private final long maxBytes;
+  private final ExecutionEngine executor;
+  private final LinkedHashMap<List<Object>, Entry> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private long usedBytes;
+
+  public ResultCache(long maxBytes, ExecutionEngine executor) {
+    this.maxBytes = maxBytes;
+    this.executor = executor;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  public boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * Returns the cached result of a SELECT plan if none of its tables changed since it was stored,
+   * otherwise runs {@code query} and caches its result.
+   */
+  ExecutionResult getOrCompute(
+      String sql, Map<String, Object> plan, List<Object> params, Supplier<ExecutionResult> query) {
+    List<Object> key =
+        Arrays.asList(normalize(sql), params != null ? new ArrayList<>(params) : List.of());
+    // Read versions before the query opens its snapshot: a commit racing with it can only make
+    // the entry look older than it is, never newer
+    long[] versions = versions(plan);
+
+    Entry cached;
+    synchronized (entries) {
+      cached = entries.get(key);
+    }
+    if (cached != null && Arrays.equals(cached.versions, versions)) {
+      hits.incrementAndGet();
+      return ExecutionResult.queryResult(copy(cached.rows));
+    }
+    misses.incrementAndGet();
+
+    ExecutionResult result = query.get();
+    if (!result.isError()) {
+      put(key, versions, result);
+    }
+    return result;
+  }
+
+  private long[] versions(Map<String, Object> plan) {
+    Map<?, ?> join = (Map<?, ?>) plan.get("join");
+    long version = executor.getTableVersion((String) plan.get("table_name"));
+    if (join == null) return new long[] {version};
+    return new long[] {version, executor.getTableVersion((String) join.get("join_table"))};
+  }
+
+  private void put(List<Object> key, long[] versions, ExecutionResult result) {
+    // The row list, then each row
+    long size = RowSize.OBJECT_OVERHEAD;
+    for (Map<String, Object> row : result.getRows()) {
+      size += RowSize.estimate(row);
+    }
+    // One result may not take more than a quarter of the budget
+    if (size > maxBytes / 4) return;
+
+    Entry entry = new Entry(versions, copy(result.getRows()), size);
+    synchronized (entries) {
+      Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        usedBytes -= previous.size;
+      }
+      usedBytes += size;
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (usedBytes > maxBytes && eldest.hasNext()) {
+        usedBytes -= eldest.next().size;
+        eldest.remove();
+      }
+    }
+  }
+
+  private static List<Map<String, Object>> copy(List<Map<String, Object>> rows) {
+    List<Map<String, Object>> copies = new ArrayList<>(rows.size());
+    for (Map<String, Object> row : rows) {
+      copies.add(new LinkedHashMap<>(row));
+    }
+    return copies;
+  }
+
+  // Collapses whitespace outside string literals so formatting differences share an entry
+  private static String normalize(String sql) {
+    StringBuilder sb = new StringBuilder(sql.length());
+    boolean quoted = false;
+    boolean space = false;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (c == '\'') {
+        quoted = !quoted;
+      }
+      if (!quoted && Character.isWhitespace(c)) {
+        space = sb.length() > 0;
+        continue;
+      }
+      if (space) {
+        sb.append(' ');
+        space = false;
+      }
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      usedBytes = 0;
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getUsedBytes() {
+    synchronized (entries) {
+      return usedBytes;
+    }
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public double getHitRatio() {
+    long total = getHits() + getMisses();
+    return total == 0 ? 0.0 : (double) getHits() / total;
+  }
+
+  private static final class Entry {
+    private final long[] versions;
+    private final List<Map<String, Object>> rows;
+    private final long size;
+
+    Entry(long[] versions, List<Map<String, Object>> rows, long size) {
+      this.versions = versions;
+      this.rows = rows;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package com.byteforce.core;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the rows of a SELECT to each subscriber as it requests them. Every subscription opens
+ * its own cursor on the engine executor when demand first arrives and only reads as many rows as
+ * were requested, so a slow subscriber holds back the scan instead of rows piling up in memory.
+ * Rows are copied out of the table, so subscribers may keep or modify them.
+ */
+final class RowPublisher implements Flow.Publisher<Map<String, Object>> {
+  // Rows emitted per executor task before yielding the thread to other work
+  private static final int BATCH = 256;
+
+  private final Supplier<Cursor> open;
+  private final Executor executor;
+
+  RowPublisher(Supplier<Cursor> open, Executor executor) {
+    this.open = open;
+    this.executor = executor;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super Map<String, Object>> subscriber) {
+    RowSubscription subscription = new RowSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+  }
+
+  private final class RowSubscription implements Flow.Subscription, Runnable {
+    private final Flow.Subscriber<? super Map<String, Object>> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    // Drain tasks pending; only the task that raised it from 0 runs, so signals never overlap
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Throwable badRequest;
+    private Cursor cursor;
+    private boolean done;
+
+    RowSubscription(Flow.Subscriber<? super Map<String, Object>> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        badRequest = new IllegalArgumentException("Subscribers must request a positive count");
+      } else {
+        demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (wip.getAndIncrement() != 0) return;
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        // Report the rejection from the requesting thread instead
+        badRequest = e;
+        run();
+      }
+    }
+
+    @Override
+    public void run() {
+      int missed = 1;
+      while (true) {
+        if (drain()) {
+          // Hand the thread back after a batch; the resubmitted task keeps the drain exclusive
+          try {
+            executor.execute(this);
+          } catch (RejectedExecutionException e) {
+            finish();
+            subscriber.onError(e);
+          }
+          return;
+        }
+        missed = wip.addAndGet(-missed);
+        if (missed == 0) return;
+      }
+    }
+
+    /** Emits rows while there is demand. Returns true if it stopped early to yield the thread. */
+    private boolean drain() {
+      if (done) return false;
+      if (cancelled) {
+        finish();
+        return false;
+      }
+      if (badRequest != null) {
+        finish();
+        subscriber.onError(badRequest);
+        return false;
+      }
+      try {
+        if (cursor == null && demand.get() > 0) {
+          cursor = open.get();
+        }
+        int emitted = 0;
+        while (cursor != null && demand.get() > 0 && !cancelled) {
+          if (emitted++ == BATCH) return true;
+          if (!cursor.next()) {
+            finish();
+            subscriber.onComplete();
+            return false;
+          }
+          demand.decrementAndGet();
+          subscriber.onNext(copy(cursor));
+        }
+        if (cancelled) finish();
+      } catch (RuntimeException e) {
+        finish();
+        subscriber.onError(e);
+      }
+      return false;
+    }
+
+    private void finish() {
+      done = true;
+      if (cursor != null) cursor.close();
+    }
+  }
+
+  private static Map<String, Object> copy(Cursor cursor) {
+    List<String> columns = cursor.getColumns();
+    Map<String, Object> row = new LinkedHashMap<>(columns.size() * 2);
+    for (int i = 0; i < columns.size(); i++) {
+      row.put(columns.get(i), cursor.getObject(i));
+    }
+    return row;
+  }
+}
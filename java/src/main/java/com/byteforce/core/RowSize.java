@@ -0,0 +1,29 @@
+package com.byteforce.core;
+
+import java.util.Map;
+
+/**
+ * Estimated JVM footprint of row maps, the one measure memory budgets are set in: the result
+ * cache's and a statement's {@link QueryMemory}.
+ */
+final class RowSize {
+  // Rough JVM footprint of a map or list, one entry in a map, and a boxed value
+  static final long OBJECT_OVERHEAD = 64;
+  private static final long ENTRY_OVERHEAD = 40;
+  private static final long VALUE_OVERHEAD = 16;
+
+  private RowSize() {}
+
+  static long estimate(Map<String, Object> row) {
+    long size = OBJECT_OVERHEAD;
+    for (Object value : row.values()) {
+      size += ENTRY_OVERHEAD;
+      if (value instanceof String) {
+        size += VALUE_OVERHEAD + 24 + ((String) value).length();
+      } else if (value != null) {
+        size += VALUE_OVERHEAD;
+      }
+    }
+    return size;
+  }
+}
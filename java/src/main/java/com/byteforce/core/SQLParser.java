@@ -8,6 +8,7 @@ import com.byteforce.core.models.DataType;
 import java.util.*;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.tree.ParseTree;
 
 public class SQLParser {
@@ -80,9 +81,28 @@ public class SQLParser {
         }
       }
       plan.put("columns", columns);
+      if (ctx.partitionClause() != null) {
+        plan.put("partition", visit(ctx.partitionClause()));
+      }
       return plan;
     }
 
+    @Override
+    public Object visitPartitionClause(SqlParser.PartitionClauseContext ctx) {
+      Map<String, Object> partition = new HashMap<>();
+      partition.put("column", ctx.column_name.getText());
+      if (ctx.K_HASH() != null) {
+        partition.put("method", "hash");
+        if (ctx.count != null) {
+          partition.put("partitions", Integer.parseInt(ctx.count.getText()));
+        }
+      } else {
+        partition.put("method", "range");
+        partition.put("bounds", asList(visit(ctx.valueList())));
+      }
+      return partition;
+    }
+
     @Override
     public Object visitColDef(SqlParser.ColDefContext ctx) {
       String name = ctx.col_name.getText();
@@ -145,7 +165,11 @@ public class SQLParser {
         plan.put("columns", null);
       }
 
-      plan.put("values", asList(visit(ctx.valueList())));
+      List<List<Object>> rows = new ArrayList<>();
+      for (SqlParser.ValueTupleContext tuple : ctx.valueTuple()) {
+        rows.add(asList(visit(tuple.valueList())));
+      }
+      plan.put("rows", rows);
       return plan;
     }
 
@@ -158,6 +182,24 @@ public class SQLParser {
       return values;
     }
 
+    @Override
+    public Object visitCreateViewStmt(SqlParser.CreateViewStmtContext ctx) {
+      Map<String, Object> plan = new HashMap<>();
+      plan.put("type", "create_view");
+      plan.put("view_name", ctx.view_name.getText());
+      plan.put("query", visit(ctx.selectStmt()));
+
+      // Original text of the query, kept for display
+      SqlParser.SelectStmtContext query = ctx.selectStmt();
+      plan.put(
+          "sql",
+          query
+              .start
+              .getInputStream()
+              .getText(Interval.of(query.start.getStartIndex(), query.stop.getStopIndex())));
+      return plan;
+    }
+
     @Override
     public Object visitSelectStmt(SqlParser.SelectStmtContext ctx) {
       Map<String, Object> plan = new HashMap<>();
@@ -242,7 +284,8 @@ public class SQLParser {
       plan.put("type", "update");
       plan.put("table_name", ctx.table_name.getText());
 
-      Map<String, Object> assignments = new HashMap<>();
+      // Keeps SET order so placeholders bind left to right
+      Map<String, Object> assignments = new LinkedHashMap<>();
       for (SqlParser.AssignmentContext a : ctx.assignment()) {
         Object res = visit(a);
         if (res instanceof Map.Entry) {
@@ -277,6 +320,45 @@ public class SQLParser {
       return plan;
     }
 
+    @Override
+    public Object visitCopyStmt(SqlParser.CopyStmtContext ctx) {
+      Map<String, Object> plan = new HashMap<>();
+      plan.put("type", "copy");
+      plan.put("table_name", ctx.table_name.getText());
+      String path = ctx.file_path.getText();
+      plan.put("file_path", path.substring(1, path.length() - 1)); // remove quotes
+      return plan;
+    }
+
+    @Override
+    public Object visitExplainStmt(SqlParser.ExplainStmtContext ctx) {
+      Map<String, Object> plan = new HashMap<>();
+      plan.put("type", "explain");
+      plan.put("statement", visit(ctx.getChild(2)));
+      return plan;
+    }
+
+    @Override
+    public Object visitBeginStmt(SqlParser.BeginStmtContext ctx) {
+      Map<String, Object> plan = new HashMap<>();
+      plan.put("type", "begin");
+      return plan;
+    }
+
+    @Override
+    public Object visitCommitStmt(SqlParser.CommitStmtContext ctx) {
+      Map<String, Object> plan = new HashMap<>();
+      plan.put("type", "commit");
+      return plan;
+    }
+
+    @Override
+    public Object visitRollbackStmt(SqlParser.RollbackStmtContext ctx) {
+      Map<String, Object> plan = new HashMap<>();
+      plan.put("type", "rollback");
+      return plan;
+    }
+
     @Override
     public Object visitValue(SqlParser.ValueContext ctx) {
       if (ctx.INTEGER_LITERAL() != null) return Integer.parseInt(ctx.INTEGER_LITERAL().getText());
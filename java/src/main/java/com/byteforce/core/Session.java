@@ -0,0 +1,115 @@
+package com.byteforce.core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A connection-like handle that owns transaction state. Statements run in their own implicit
+ * transaction unless BEGIN opened an explicit one, which then spans statements until COMMIT or
+ * ROLLBACK. A session must not be used by two threads at the same time.
+ */
+public class Session implements AutoCloseable {
+  private final ByteForceDB db;
+  private Transaction transaction;
+
+  Session(ByteForceDB db) {
+    this.db = db;
+  }
+
+  public ExecutionResult execute(String sql) {
+    return execute(sql, null);
+  }
+
+  public ExecutionResult execute(String sql, List<Object> params) {
+    Map<String, Object> plan;
+    try {
+      plan = db.getPlan(sql);
+    } catch (Exception e) {
+      return ExecutionResult.error("Error: " + e.getMessage());
+    }
+    return executePlan(sql, plan, params);
+  }
+
+  /** Runs {@code sql} once per parameter set, inside the open transaction if there is one. */
+  public ExecutionResult executeBatch(String sql, List<List<Object>> paramSets) {
+    try {
+      return db.getExecutor().executeBatch(sql, db.getPlan(sql), paramSets, transaction);
+    } catch (Exception e) {
+      return ExecutionResult.error("Error: " + e.getMessage());
+    }
+  }
+
+  public Cursor query(String sql) {
+    return query(sql, null);
+  }
+
+  /**
+   * Runs a SELECT and returns a cursor that produces its rows lazily. Unlike {@link #execute},
+   * failures are thrown rather than returned.
+   */
+  public Cursor query(String sql, List<Object> params) {
+    return openCursor(sql, db.getPlan(sql), params);
+  }
+
+  Cursor openCursor(String sql, Map<String, Object> plan, List<Object> params) {
+    return db.getExecutor().openCursor(sql, plan, params, transaction);
+  }
+
+  public PreparedQuery prepare(String sql) {
+    return new PreparedQuery(db, this, sql, db.getPlan(sql));
+  }
+
+  public boolean isInTransaction() {
+    return transaction != null;
+  }
+
+  ExecutionResult executePlan(String sql, Map<String, Object> plan, List<Object> params) {
+    ExecutionEngine executor = db.getExecutor();
+    try {
+      switch ((String) plan.get("type")) {
+        case "begin":
+          if (transaction != null) {
+            throw new IllegalStateException("A transaction is already in progress");
+          }
+          transaction = db.getStorage().getTransactions().begin();
+          return ExecutionResult.success("Transaction started.");
+        case "commit":
+          executor.commit(requireTransaction());
+          return ExecutionResult.success("Transaction committed.");
+        case "rollback":
+          executor.rollback(requireTransaction());
+          return ExecutionResult.success("Transaction rolled back.");
+        case "select":
+          ResultCache cache = db.getResultCache();
+          if (transaction == null && cache.isEnabled()) {
+            return cache.getOrCompute(
+                sql, plan, params, () -> executor.execute(sql, plan, params, null));
+          }
+          return executor.execute(sql, plan, params, transaction);
+        default:
+          return executor.execute(sql, plan, params, transaction);
+      }
+    } catch (Exception e) {
+      return ExecutionResult.error("Error: " + e.getMessage());
+    }
+  }
+
+  private Transaction requireTransaction() {
+    if (transaction == null) {
+      throw new IllegalStateException("No transaction in progress");
+    }
+    Transaction tx = transaction;
+    // A failed COMMIT rolls back, so the session is done with this transaction either way
+    transaction = null;
+    return tx;
+  }
+
+  /** Rolls back a transaction left open. */
+  @Override
+  public void close() {
+    if (transaction != null) {
+      db.getExecutor().rollback(transaction);
+      transaction = null;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.byteforce.core;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends one line per statement slower than a threshold: its SQL, plan shape, rows examined and
+ * time spent persisting. Statements only hand their statistics to a bounded queue; a background
+ * thread formats and writes them, so logging never blocks a query. When the writer falls behind,
+ * entries are dropped and counted instead.
+ */
+public class SlowQueryLog implements AutoCloseable {
+  private static final int QUEUE_CAPACITY = 1024;
+
+  private final String path;
+  private final long thresholdNanos;
+  private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Writer writer;
+  private final Thread thread;
+  private final AtomicLong logged = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private volatile boolean closed;
+
+  public SlowQueryLog(String path, long thresholdMillis) throws IOException {
+    this.path = path;
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    this.writer = new BufferedWriter(new FileWriter(path, true));
+    this.thread = new Thread(this::run, "byteforce-slow-query-log");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  void offer(String sql, QueryStats stats, long nanos, boolean failed) {
+    if (nanos < thresholdNanos || closed) return;
+    if (!queue.offer(new Entry(System.currentTimeMillis(), sql, stats, nanos, failed))) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  private void run() {
+    try {
+      while (!closed || !queue.isEmpty()) {
+        Entry entry = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (entry == null) continue;
+        // Write whatever queued up meanwhile, then flush once
+        do {
+          writer.write(format(entry));
+          logged.incrementAndGet();
+        } while ((entry = queue.poll()) != null);
+        writer.flush();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      System.err.println("Slow query log failed: " + e.getMessage());
+    }
+  }
+
+  private static String format(Entry entry) {
+    QueryStats stats = entry.stats;
+    StringBuilder sb = new StringBuilder();
+    sb.append(Instant.ofEpochMilli(entry.timestamp));
+    sb.append(String.format(Locale.ROOT, " duration_ms=%.3f", entry.nanos / 1e6));
+    sb.append(
+        String.format(Locale.ROOT, " persist_ms=%.3f", stats.nanos(Metrics.Phase.PERSIST) / 1e6));
+    sb.append(" rows_examined=").append(stats.rowsScanned);
+    sb.append(" rows_returned=").append(stats.rowsReturned);
+    sb.append(" rows_affected=").append(stats.rowsAffected);
+    if (entry.failed) {
+      sb.append(" failed=true");
+    }
+    sb.append(" plan=").append(quote(stats.shape()));
+    sb.append(" sql=").append(quote(entry.sql));
+    sb.append('\n');
+    return sb.toString();
+  }
+
+  private static String quote(String text) {
+    return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"").replaceAll("\\s+", " ") + "\"";
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public long getThresholdMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+  }
+
+  /** Entries written so far. */
+  public long getLogged() {
+    return logged.get();
+  }
+
+  /** Entries discarded because the queue was full. */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /** Writes out the entries already queued and closes the file. */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      writer.close();
+    } catch (IOException e) {
+      System.err.println("Failed to close slow query log: " + e.getMessage());
+    }
+  }
+
+  private static final class Entry {
+    private final long timestamp;
+    private final String sql;
+    private final QueryStats stats;
+    private final long nanos;
+    private final boolean failed;
+
+    Entry(long timestamp, String sql, QueryStats stats, long nanos, boolean failed) {
+      this.timestamp = timestamp;
+      this.sql = sql;
+      this.stats = stats;
+      this.nanos = nanos;
+      this.failed = failed;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package com.byteforce.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Rows an operator moved out of memory, written once and then read back once. A row is its values
+ * in the order of the file's columns, each a tag byte followed by the value: 4 bytes for an
+ * Integer, 8 for a Long or Double, none for NULL and booleans, and a length-prefixed UTF-8 string
+ * for TEXT. The file is unlinked as soon as it is opened, so a crash leaves nothing behind.
+ */
+final class SpillFile implements AutoCloseable {
+  private static final byte NULL = 0;
+  private static final byte INTEGER = 1;
+  private static final byte LONG = 2;
+  private static final byte DOUBLE = 3;
+  private static final byte FALSE = 4;
+  private static final byte TRUE = 5;
+  private static final byte TEXT = 6;
+
+  private final String[] columns;
+  private final FileChannel channel;
+  private DataOutputStream out;
+  private long rows;
+  private long bytes;
+  private boolean closed;
+
+  SpillFile(File dir, List<String> columns) throws IOException {
+    this.columns = columns.toArray(new String[0]);
+    dir.mkdirs();
+    File file = File.createTempFile("spill", ".rows", dir);
+    this.channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    // Where an open file cannot be deleted, it goes at exit
+    if (!file.delete()) file.deleteOnExit();
+    this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+  }
+
+  long getRows() {
+    return rows;
+  }
+
+  /** Bytes written so far, including those still buffered. */
+  long getBytes() {
+    return out != null ? out.size() : bytes;
+  }
+
+  void write(Map<String, Object> row) {
+    try {
+      for (String column : columns) {
+        Object value = row.get(column);
+        if (value == null) {
+          out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+          out.writeByte(INTEGER);
+          out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+          out.writeByte(LONG);
+          out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+          out.writeByte(DOUBLE);
+          out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+          out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof String) {
+          byte[] text = ((String) value).getBytes(StandardCharsets.UTF_8);
+          out.writeByte(TEXT);
+          out.writeInt(text.length);
+          out.write(text);
+        } else {
+          throw new IllegalStateException(
+              "Cannot spill a value of type " + value.getClass().getSimpleName());
+        }
+      }
+      rows++;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot write spill file: " + e.getMessage(), e);
+    }
+  }
+
+  /** Ends writing and reads the rows back in the order they were written, closing at the end. */
+  Iterator<Map<String, Object>> read() {
+    DataInputStream in;
+    try {
+      out.flush();
+      out = null;
+      bytes = channel.size();
+      channel.position(0);
+      in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read spill file: " + e.getMessage(), e);
+    }
+    long count = rows;
+    return new Iterator<Map<String, Object>>() {
+      private long read;
+
+      @Override
+      public boolean hasNext() {
+        if (read < count) return true;
+        close();
+        return false;
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        read++;
+        try {
+          return readRow(in);
+        } catch (IOException e) {
+          close();
+          throw new UncheckedIOException("Cannot read spill file: " + e.getMessage(), e);
+        }
+      }
+    };
+  }
+
+  private Map<String, Object> readRow(DataInputStream in) throws IOException {
+    Map<String, Object> row = new HashMap<>(columns.length * 2);
+    for (String column : columns) {
+      byte tag = in.readByte();
+      switch (tag) {
+        case NULL:
+          row.put(column, null);
+          break;
+        case INTEGER:
+          row.put(column, in.readInt());
+          break;
+        case LONG:
+          row.put(column, in.readLong());
+          break;
+        case DOUBLE:
+          row.put(column, in.readDouble());
+          break;
+        case FALSE:
+          row.put(column, false);
+          break;
+        case TRUE:
+          row.put(column, true);
+          break;
+        case TEXT:
+          byte[] bytes = new byte[in.readInt()];
+          in.readFully(bytes);
+          row.put(column, new String(bytes, StandardCharsets.UTF_8));
+          break;
+        default:
+          throw new IOException("Corrupt spill file: tag " + tag);
+      }
+    }
+    return row;
+  }
+
+  @Override
+  public void close() {
+    if (closed) return;
+    closed = true;
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // Unlinked already, the space is freed either way
+    }
+  }
+}
@@ -1,65 +1,311 @@
 package com.byteforce.core;
 
+import com.byteforce.core.models.RowStorage;
 import com.byteforce.core.models.Table;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class StorageEngine {
+  // Lists the tables of a multi-table commit whose temp files are complete but not yet renamed
+  private static final String COMMIT_MANIFEST = "commit.pending";
+  private static final String TEMP_SUFFIX = ".db.tmp";
+  // Scratch files behind MAPPED row storage; they are unlinked as soon as they are mapped
+  private static final String MAPPED_DIR = "mapped";
+  // Rows queries moved out of memory; also unlinked as soon as they are created
+  private static final String SPILL_DIR = "spill";
+  // On a replica, the position in the primary's replication log the saved tables reflect
+  private static final String REPLICATION_POSITION = "replication.position";
+
   private final String dataDir;
+  private final RowStorage rowStorage;
   private final Map<String, Table> tables;
+  private final Map<String, TableLock> locks;
+  private final TransactionManager transactions;
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private volatile long replicationPosition = -1;
 
   public StorageEngine(String dataDir) {
+    this(dataDir, RowStorage.HEAP);
+  }
+
+  public StorageEngine(String dataDir, RowStorage rowStorage) {
     this.dataDir = dataDir;
-    this.tables = new HashMap<>();
+    this.rowStorage = rowStorage;
+    this.tables = new ConcurrentHashMap<>();
+    this.locks = new ConcurrentHashMap<>();
+    this.transactions = new TransactionManager();
     File dir = new File(dataDir);
     if (!dir.exists()) {
       dir.mkdirs();
     }
   }
 
+  /** Registers and saves a new table, along with the partitions of a partitioned one. */
   public void createTable(Table table) throws IOException {
-    if (tables.containsKey(table.getName())) {
+    table.setRowStorage(rowStorage, new File(dataDir, MAPPED_DIR));
+    if (tables.putIfAbsent(table.getName(), table) != null) {
       throw new IllegalArgumentException("Table '" + table.getName() + "' already exists");
     }
-    tables.put(table.getName(), table);
-    saveTable(table.getName());
+    List<String> names = new ArrayList<>();
+    names.add(table.getName());
+    if (table.isPartitioned()) {
+      List<Table> partitions = new ArrayList<>();
+      for (int i = 0; i < table.getPartitioning().getCount(); i++) {
+        Table partition = table.newPartition(i);
+        partition.setRowStorage(rowStorage, new File(dataDir, MAPPED_DIR));
+        tables.put(partition.getName(), partition);
+        partitions.add(partition);
+        names.add(partition.getName());
+      }
+      table.attachPartitions(partitions);
+    }
+    saveTables(names);
+  }
+
+  /**
+   * Registers tables read from elsewhere as they are, attaching the partitions of partitioned ones.
+   * The caller saves them.
+   */
+  void restoreTables(List<Table> restored) {
+    for (Table table : restored) {
+      table.setRowStorage(rowStorage, new File(dataDir, MAPPED_DIR));
+      if (tables.putIfAbsent(table.getName(), table) != null) {
+        throw new IllegalArgumentException("Table '" + table.getName() + "' already exists");
+      }
+    }
+    attachPartitions();
+  }
+
+  /**
+   * Returns the exclusive lock writers take on a table. Readers go through MVCC snapshots and never
+   * need it, so it only makes writers on the same table wait for each other.
+   */
+  public TableLock getLock(String name) {
+    return locks.computeIfAbsent(name, n -> new TableLock());
+  }
+
+  /** Where queries write the rows that do not fit in their memory limit. */
+  File getSpillDir() {
+    return new File(dataDir, SPILL_DIR);
+  }
+
+  public RowStorage getRowStorage() {
+    return rowStorage;
+  }
+
+  /** Memory held outside the heap by off-heap and mapped tables. */
+  public long getOffHeapBytes() {
+    long bytes = 0;
+    for (Table table : tables.values()) {
+      bytes += table.getOffHeapBytes();
+    }
+    return bytes;
+  }
+
+  /** Bytes of table data written to disk since startup. */
+  public long getBytesWritten() {
+    return bytesWritten.get();
   }
 
   public Table getTable(String name) {
     return tables.get(name);
   }
 
+  /** Persists one table. The caller must hold the table's lock. */
   public void saveTable(String name) throws IOException {
-    Table table = tables.get(name);
-    if (table == null) return;
+    saveTables(Collections.singletonList(name));
+  }
+
+  /**
+   * On a replica, the position in the primary's replication log up to which the saved tables are up
+   * to date, or -1 on a database that never replicated.
+   */
+  public long getReplicationPosition() {
+    return replicationPosition;
+  }
+
+  /** Sets the position saved along with the tables of every later commit. */
+  void setReplicationPosition(long position) {
+    this.replicationPosition = position;
+  }
+
+  /** Forgets the position once the tables are written to other than by replaying the log. */
+  void clearReplicationPosition() throws IOException {
+    replicationPosition = -1;
+    Files.deleteIfExists(new File(dataDir, REPLICATION_POSITION).toPath());
+  }
+
+  /**
+   * Persists a set of tables as one unit. Every table is first written to a temp file; a commit
+   * manifest then marks the set complete before the files are renamed into place, so a crash
+   * mid-way is finished on the next start instead of leaving a half-applied commit. On a replica
+   * the replication position is part of the same unit.
+   */
+  public void saveTables(Collection<String> names) throws IOException {
+    List<String> written = new ArrayList<>();
+    for (String name : names) {
+      Table table = tables.get(name);
+      if (table == null) continue;
 
-    File file = new File(dataDir, name + ".db");
-    try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-      oos.writeObject(table);
+      File tmp = new File(dataDir, name + TEMP_SUFFIX);
+      try (ObjectOutputStream oos =
+          new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        oos.writeObject(table);
+      }
+      bytesWritten.addAndGet(tmp.length());
+      written.add(name);
+    }
+    if (written.isEmpty()) return;
+
+    long position = replicationPosition;
+    if (position >= 0) {
+      Files.write(
+          new File(dataDir, REPLICATION_POSITION + ".tmp").toPath(),
+          Long.toString(position).getBytes(StandardCharsets.UTF_8));
+    }
+    File manifest = new File(dataDir, COMMIT_MANIFEST);
+    if (written.size() > 1 || position >= 0) {
+      Files.write(manifest.toPath(), written, StandardCharsets.UTF_8);
+    }
+    publish(written);
+    Files.deleteIfExists(manifest.toPath());
+  }
+
+  private void publish(List<String> names) throws IOException {
+    for (String name : names) {
+      moveIntoPlace(new File(dataDir, name + TEMP_SUFFIX), new File(dataDir, name + ".db"));
+    }
+    moveIntoPlace(
+        new File(dataDir, REPLICATION_POSITION + ".tmp"), new File(dataDir, REPLICATION_POSITION));
+  }
+
+  private static void moveIntoPlace(File tmp, File target) throws IOException {
+    if (tmp.exists()) {
+      Files.move(
+          tmp.toPath(),
+          target.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  // Completes a commit interrupted after its manifest was written, and drops unfinished temp files
+  private void recoverPendingCommit() {
+    File manifest = new File(dataDir, COMMIT_MANIFEST);
+    try {
+      if (manifest.exists()) {
+        publish(Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8));
+        Files.delete(manifest.toPath());
+      }
+      Files.deleteIfExists(new File(dataDir, REPLICATION_POSITION + ".tmp").toPath());
+      File[] leftovers = new File(dataDir).listFiles((d, name) -> name.endsWith(TEMP_SUFFIX));
+      if (leftovers != null) {
+        for (File file : leftovers) {
+          Files.delete(file.toPath());
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to recover pending commit: " + e.getMessage());
     }
   }
 
   public void loadAllTables() {
+    recoverPendingCommit();
+
+    File position = new File(dataDir, REPLICATION_POSITION);
+    if (position.exists()) {
+      try {
+        replicationPosition =
+            Long.parseLong(Files.readString(position.toPath(), StandardCharsets.UTF_8).trim());
+      } catch (IOException | NumberFormatException e) {
+        System.err.println("Failed to read replication position: " + e.getMessage());
+      }
+    }
+
     File dir = new File(dataDir);
     File[] files = dir.listFiles((d, name) -> name.endsWith(".db"));
 
     if (files != null) {
       for (File file : files) {
         String tableName = file.getName().substring(0, file.getName().length() - 3);
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+        try (ObjectInputStream ois =
+            new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
           Table table = (Table) ois.readObject();
+          table.setRowStorage(rowStorage, new File(dataDir, MAPPED_DIR));
           tables.put(tableName, table);
         } catch (IOException | ClassNotFoundException e) {
           System.err.println("Failed to load table " + tableName + ": " + e.getMessage());
         }
       }
     }
+
+    attachPartitions();
+  }
+
+  // Partitions load as tables of their own; a missing one starts out empty
+  private void attachPartitions() {
+    for (Table table : new ArrayList<>(tables.values())) {
+      if (!table.isPartitioned() || !table.getPartitions().isEmpty()) continue;
+      List<Table> partitions = new ArrayList<>();
+      for (int i = 0; i < table.getPartitioning().getCount(); i++) {
+        Table partition = tables.get(table.getPartitionName(i));
+        if (partition == null) {
+          System.err.println(
+              "Partition " + table.getPartitionName(i) + " is missing, starting empty");
+          partition = table.newPartition(i);
+          partition.setRowStorage(rowStorage, new File(dataDir, MAPPED_DIR));
+          tables.put(partition.getName(), partition);
+        }
+        partitions.add(partition);
+      }
+      table.attachPartitions(partitions);
+    }
+  }
+
+  public TransactionManager getTransactions() {
+    return transactions;
   }
 
+  /**
+   * Reclaims row versions no snapshot can see any more. Tables busy with a writer are skipped and
+   * picked up on the next pass, so vacuuming never makes a statement wait.
+   */
+  public void vacuum() {
+    Object owner = new Object();
+    for (Table table : tables.values()) {
+      TableLock lock = getLock(table.getName());
+      try {
+        if (!lock.tryLock(owner, 0, TimeUnit.MILLISECONDS)) continue;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      try {
+        if (table.needsVacuum()) {
+          table.vacuum(transactions.horizon());
+        }
+      } finally {
+        lock.unlock(owner);
+      }
+    }
+  }
+
+  /** Names of the tables and views, without the partitions of partitioned tables. */
   public List<String> listTables() {
-    return new ArrayList<>(tables.keySet());
+    List<String> names = new ArrayList<>();
+    for (String name : tables.keySet()) {
+      if (name.indexOf(Table.PARTITION_SEPARATOR) < 0) names.add(name);
+    }
+    return names;
   }
 }
@@ -0,0 +1,66 @@
+package com.byteforce.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive per-table write lock. It is owned by a transaction rather than a thread, so an explicit
+ * transaction can hold it across statements until COMMIT or ROLLBACK. Acquiring it again with the
+ * same owner is a no-op. Waiting uses a {@link Condition} rather than a monitor so a blocked
+ * virtual thread releases its carrier.
+ */
+public class TableLock {
+  private final ReentrantLock mutex = new ReentrantLock();
+  private final Condition released = mutex.newCondition();
+  private Object owner;
+
+  public void lock(Object owner) throws InterruptedException {
+    mutex.lock();
+    try {
+      while (this.owner != null && this.owner != owner) {
+        released.await();
+      }
+      this.owner = owner;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  public boolean tryLock(Object owner, long timeout, TimeUnit unit) throws InterruptedException {
+    long remaining = unit.toNanos(timeout);
+    mutex.lock();
+    try {
+      while (this.owner != null && this.owner != owner) {
+        if (remaining <= 0) return false;
+        remaining = released.awaitNanos(remaining);
+      }
+      this.owner = owner;
+      return true;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  public void unlock(Object owner) {
+    mutex.lock();
+    try {
+      if (this.owner != owner) {
+        throw new IllegalMonitorStateException("Table lock is not held by this owner");
+      }
+      this.owner = null;
+      released.signalAll();
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  public boolean isHeldBy(Object owner) {
+    mutex.lock();
+    try {
+      return this.owner == owner;
+    } finally {
+      mutex.unlock();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.byteforce.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A unit of work. Every row version it writes is stamped with its id until it commits. It owns the
+ * table locks it took, the undo log of its writes, the set of tables to persist at commit and, when
+ * the database keeps a replication log, the statements to log at commit.
+ */
+public class Transaction {
+  private final long id;
+  private final List<Runnable> undoLog = new ArrayList<>();
+  private final Map<String, TableLock> heldLocks = new LinkedHashMap<>();
+  private final Set<String> dirtyTables = new LinkedHashSet<>();
+  private List<ReplicationLog.Change> changes;
+
+  Transaction(long id) {
+    this.id = id;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  void recordUndo(Runnable undo) {
+    undoLog.add(undo);
+  }
+
+  /** Position to roll back to if the statement about to run fails. */
+  int savepoint() {
+    return undoLog.size();
+  }
+
+  // Undo entries run newest first so repeated writes to one row unwind in order
+  void undoTo(int savepoint) {
+    for (int i = undoLog.size() - 1; i >= savepoint; i--) {
+      undoLog.remove(i).run();
+    }
+  }
+
+  void undo() {
+    undoTo(0);
+  }
+
+  boolean holdsLock(String tableName) {
+    return heldLocks.containsKey(tableName);
+  }
+
+  void addLock(String tableName, TableLock lock) {
+    heldLocks.put(tableName, lock);
+  }
+
+  Set<String> getLockedTables() {
+    return heldLocks.keySet();
+  }
+
+  void releaseLocks() {
+    for (TableLock lock : heldLocks.values()) {
+      lock.unlock(this);
+    }
+    heldLocks.clear();
+  }
+
+  void markDirty(String tableName) {
+    dirtyTables.add(tableName);
+  }
+
+  Set<String> getDirtyTables() {
+    return dirtyTables;
+  }
+
+  /** Records a write that succeeded, for the replication log. */
+  void logChange(ReplicationLog.Change change) {
+    if (changes == null) {
+      changes = new ArrayList<>();
+    }
+    changes.add(change);
+  }
+
+  List<ReplicationLog.Change> getChanges() {
+    return changes != null ? changes : Collections.emptyList();
+  }
+}
@@ -0,0 +1,70 @@
+package com.byteforce.core;
+
+import com.byteforce.core.models.Snapshot;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Hands out transaction ids and snapshots, and tracks which ones are still in use so that the
+ * vacuum knows which row versions can no longer be seen.
+ */
+public class TransactionManager {
+  private long nextTxId = 1;
+  private final TreeSet<Long> active = new TreeSet<>();
+  private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+
+  public synchronized Transaction begin() {
+    long id = nextTxId++;
+    active.add(id);
+    return new Transaction(id);
+  }
+
+  public synchronized void commit(Transaction tx) {
+    active.remove(tx.getId());
+  }
+
+  /** Reverts every write of {@code tx}. Undo runs before the id is released so no one sees it. */
+  public void rollback(Transaction tx) {
+    tx.undo();
+    synchronized (this) {
+      active.remove(tx.getId());
+    }
+  }
+
+  public Snapshot openSnapshot() {
+    return openSnapshot(null);
+  }
+
+  /** Opens a snapshot that also sees the uncommitted writes of {@code owner}, if given. */
+  public synchronized Snapshot openSnapshot(Transaction owner) {
+    long[] inProgress = active.stream().mapToLong(Long::longValue).toArray();
+    long xmin = inProgress.length > 0 ? inProgress[0] : nextTxId;
+    Snapshot snapshot =
+        new Snapshot(xmin, nextTxId, inProgress, owner != null ? owner.getId() : -1);
+    openSnapshots.merge(xmin, 1, Integer::sum);
+    return snapshot;
+  }
+
+  public synchronized void releaseSnapshot(Snapshot snapshot) {
+    openSnapshots.computeIfPresent(snapshot.getXmin(), (k, count) -> count > 1 ? count - 1 : null);
+  }
+
+  /**
+   * Every transaction below the horizon has finished and every open snapshot sees it as committed.
+   * A row version superseded or deleted below the horizon is invisible to everyone.
+   */
+  public synchronized long horizon() {
+    long horizon = nextTxId;
+    if (!active.isEmpty()) {
+      horizon = Math.min(horizon, active.first());
+    }
+    if (!openSnapshots.isEmpty()) {
+      horizon = Math.min(horizon, openSnapshots.firstKey());
+    }
+    return horizon;
+  }
+
+  public synchronized int getOpenSnapshotCount() {
+    return openSnapshots.values().stream().mapToInt(Integer::intValue).sum();
+  }
+}
@@ -0,0 +1,104 @@
+package com.byteforce.core.models;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash index from column value to row ids. Writers (holding the table's write lock) only append to
+ * a row id list or swap in a new one, so lock-free readers always see a consistent list. An id may
+ * point at a row whose visible version no longer has the value, so readers re-check the predicate.
+ */
+public class HashIndex {
+  private static final Object NULL_KEY = new Object();
+
+  private final Map<Object, RowIdList> entries = new ConcurrentHashMap<>();
+
+  public List<Integer> get(Object value) {
+    return entries.get(key(value));
+  }
+
+  public boolean containsKey(Object value) {
+    return entries.containsKey(key(value));
+  }
+
+  /** Number of distinct values in the index. */
+  public int size() {
+    return entries.size();
+  }
+
+  void add(Object value, int rowId) {
+    entries.computeIfAbsent(key(value), k -> new RowIdList()).append(rowId);
+  }
+
+  void addIfAbsent(Object value, int rowId) {
+    RowIdList ids = entries.computeIfAbsent(key(value), k -> new RowIdList());
+    if (!ids.contains(rowId)) {
+      ids.append(rowId);
+    }
+  }
+
+  void remove(Object value, int rowId) {
+    Object key = key(value);
+    RowIdList ids = entries.get(key);
+    if (ids == null) return;
+
+    RowIdList copy = ids.without(rowId);
+    if (copy.isEmpty()) {
+      entries.remove(key);
+    } else {
+      entries.put(key, copy);
+    }
+  }
+
+  // Numbers are keyed by their double value, as the engine compares them, so 5 finds 5.0 and a
+  // Long finds an Integer; -0.0 and 0.0 share a key. NaN keeps its own, readers re-check anyway
+  private static Object key(Object value) {
+    if (value == null) return NULL_KEY;
+    if (value instanceof Number) {
+      double d = ((Number) value).doubleValue();
+      return d == 0 ? 0.0 : d;
+    }
+    return value;
+  }
+
+  /** Append-only id list: the array is filled before {@code size} publishes the new element. */
+  private static final class RowIdList extends AbstractList<Integer> {
+    private volatile int[] ids = new int[2];
+    private volatile int size;
+
+    @Override
+    public Integer get(int i) {
+      return ids[i];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    void append(int rowId) {
+      int[] a = ids;
+      int n = size;
+      if (n == a.length) {
+        a = Arrays.copyOf(a, n * 2);
+      }
+      a[n] = rowId;
+      ids = a;
+      size = n + 1;
+    }
+
+    RowIdList without(int rowId) {
+      RowIdList copy = new RowIdList();
+      int[] a = ids;
+      for (int i = 0; i < size; i++) {
+        if (a[i] != rowId) {
+          copy.append(a[i]);
+        }
+      }
+      return copy;
+    }
+  }
+}
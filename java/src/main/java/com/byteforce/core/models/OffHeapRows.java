@@ -0,0 +1,396 @@
+package com.byteforce.core.models;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Row versions encoded outside the Java heap, so a large table costs the garbage collector only its
+ * slot and version objects. A record is laid out as
+ *
+ * <pre>
+ * int length | null bitmap | one fixed-width slot per column | UTF-8 bytes of TEXT values
+ * </pre>
+ *
+ * with INTEGER in 4 bytes, FLOAT in a tag byte (Integer or Double, as inserted) and 8 bytes,
+ * BOOLEAN in 1 byte, and TEXT as an int pair: the offset and length of its bytes or, for a
+ * dictionary-encoded column, the value's code and {@link #CODED}. Records are appended to chunks of
+ * direct memory or of memory-mapped scratch files, and read in place through {@link Row}, which
+ * decodes only the fields asked for.
+ *
+ * <p>A chunk is dropped once every record in it is dead. A reader still holding a version keeps its
+ * chunk reachable, so the memory is only freed by the garbage collector after the last scan is done
+ * with it. Writes happen under the table's write lock.
+ */
+final class OffHeapRows {
+  static final int CHUNK_SIZE = 1 << 20;
+  private static final int CODED = -1;
+  private static final byte FLOAT_DOUBLE = 0;
+  private static final byte FLOAT_INTEGER = 1;
+
+  private final String[] names;
+  private final DataType[] types;
+  private final int[] slots;
+  private final Map<String, Integer> positions;
+  private final int fixedSize;
+  // Codes written into records stay decodable after the table stops encoding a column
+  private final TextDictionary[] decoders;
+  private final Map<String, TextDictionary> active;
+  private final File mappedDir;
+  private Chunk current;
+  private volatile long allocatedBytes;
+
+  /**
+   * @param active the table's live dictionaries; a TEXT column is stored as codes while its
+   *     dictionary is in this map
+   * @param mappedDir directory for memory-mapped chunk files, or null for direct memory
+   */
+  OffHeapRows(Collection<Column> columns, Map<String, TextDictionary> active, File mappedDir) {
+    int n = columns.size();
+    this.names = new String[n];
+    this.types = new DataType[n];
+    this.slots = new int[n];
+    this.positions = new HashMap<>(n * 2);
+    this.decoders = new TextDictionary[n];
+    this.active = active;
+    this.mappedDir = mappedDir;
+
+    int offset = 4 + (n + 7) / 8;
+    int i = 0;
+    for (Column column : columns) {
+      names[i] = column.getName();
+      types[i] = column.getDataType();
+      slots[i] = offset;
+      positions.put(names[i], i);
+      decoders[i] = active.get(names[i]);
+      offset += width(types[i]);
+      i++;
+    }
+    this.fixedSize = offset;
+  }
+
+  private static int width(DataType type) {
+    switch (type) {
+      case INTEGER:
+        return 4;
+      case FLOAT:
+        return 9;
+      case BOOLEAN:
+        return 1;
+      default:
+        return 8;
+    }
+  }
+
+  long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  boolean owns(RowVersion version) {
+    return version.chunk != null && version.chunk.owner() == this;
+  }
+
+  /** Encodes {@code data} into a new record and returns the version pointing at it. */
+  RowVersion version(Map<String, Object> data, long xmin, RowVersion prev) {
+    int n = names.length;
+    byte[][] text = null;
+    int[] codes = null;
+    int size = fixedSize;
+    for (int i = 0; i < n; i++) {
+      if (types[i] != DataType.TEXT) continue;
+      Object value = data.get(names[i]);
+      if (value == null) continue;
+      TextDictionary dictionary = decoders[i];
+      if (dictionary != null && active.get(names[i]) == dictionary) {
+        if (codes == null) codes = new int[n];
+        codes[i] = dictionary.encode((String) value);
+      } else {
+        if (text == null) text = new byte[n][];
+        text[i] = ((String) value).getBytes(StandardCharsets.UTF_8);
+        size += text[i].length;
+      }
+    }
+
+    Chunk chunk = reserve(size);
+    ByteBuffer b = chunk.buffer;
+    int base = chunk.used;
+    chunk.used += size;
+    chunk.live += size;
+
+    b.putInt(base, size);
+    int var = fixedSize;
+    int nulls = 0;
+    for (int i = 0; i < n; i++) {
+      Object value = data.get(names[i]);
+      int at = base + slots[i];
+      if (value == null) {
+        nulls |= 1 << (i & 7);
+      } else {
+        switch (types[i]) {
+          case INTEGER:
+            b.putInt(at, (Integer) value);
+            break;
+          case FLOAT:
+            b.put(at, value instanceof Integer ? FLOAT_INTEGER : FLOAT_DOUBLE);
+            b.putDouble(at + 1, ((Number) value).doubleValue());
+            break;
+          case BOOLEAN:
+            b.put(at, (byte) ((Boolean) value ? 1 : 0));
+            break;
+          default:
+            if (text != null && text[i] != null) {
+              b.putInt(at, var);
+              b.putInt(at + 4, text[i].length);
+              b.put(base + var, text[i]);
+              var += text[i].length;
+            } else {
+              b.putInt(at, codes[i]);
+              b.putInt(at + 4, CODED);
+            }
+        }
+      }
+      if ((i & 7) == 7 || i == n - 1) {
+        b.put(base + 4 + (i >> 3), (byte) nulls);
+        nulls = 0;
+      }
+    }
+    return new RowVersion(chunk, base, xmin, prev);
+  }
+
+  /** Marks the record of a version no snapshot can reach any more as dead. */
+  void release(RowVersion version) {
+    if (!owns(version)) return;
+    Chunk chunk = version.chunk;
+    chunk.live -= chunk.buffer.getInt(version.offset);
+    if (chunk.live == 0 && chunk != current) {
+      allocatedBytes -= chunk.buffer.capacity();
+    }
+  }
+
+  private Chunk reserve(int size) {
+    Chunk chunk = current;
+    if (chunk != null && chunk.buffer.capacity() - chunk.used >= size) {
+      return chunk;
+    }
+    if (chunk != null && chunk.live == 0) {
+      allocatedBytes -= chunk.buffer.capacity();
+    }
+    chunk = new Chunk(allocate(Math.max(CHUNK_SIZE, size)));
+    allocatedBytes += chunk.buffer.capacity();
+    current = chunk;
+    return chunk;
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    if (mappedDir == null) return ByteBuffer.allocateDirect(capacity);
+    try {
+      mappedDir.mkdirs();
+      File file = File.createTempFile("rows", ".chunk", mappedDir);
+      ByteBuffer buffer;
+      try (FileChannel channel =
+          FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+      }
+      // The mapping outlives the name; where a mapped file cannot be deleted, it goes at exit
+      if (!file.delete()) file.deleteOnExit();
+      return buffer;
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot map row chunk: " + e.getMessage(), e);
+    }
+  }
+
+  // --- Reading in place ---
+
+  private Object get(Chunk chunk, int base, int i) {
+    ByteBuffer b = chunk.buffer;
+    if ((b.get(base + 4 + (i >> 3)) & (1 << (i & 7))) != 0) return null;
+    int at = base + slots[i];
+    switch (types[i]) {
+      case INTEGER:
+        return b.getInt(at);
+      case FLOAT:
+        double d = b.getDouble(at + 1);
+        return b.get(at) == FLOAT_INTEGER ? (Object) (int) d : (Object) d;
+      case BOOLEAN:
+        return b.get(at) != 0;
+      default:
+        int length = b.getInt(at + 4);
+        if (length == CODED) return decoders[i].decode(b.getInt(at));
+        byte[] bytes = new byte[length];
+        b.get(base + b.getInt(at), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  final class Chunk {
+    private final ByteBuffer buffer;
+    private int used;
+    private int live;
+
+    Chunk(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    OffHeapRows owner() {
+      return OffHeapRows.this;
+    }
+
+    Map<String, Object> row(int offset) {
+      return new Row(this, offset);
+    }
+  }
+
+  /** A read-only view of one record that decodes a field each time it is read. */
+  private final class Row extends AbstractMap<String, Object> {
+    private final Chunk chunk;
+    private final int base;
+
+    Row(Chunk chunk, int base) {
+      this.chunk = chunk;
+      this.base = base;
+    }
+
+    @Override
+    public Object get(Object key) {
+      Integer i = positions.get(key);
+      return i != null ? OffHeapRows.this.get(chunk, base, i) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return positions.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return names.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public int size() {
+          return names.length;
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new Iterator<Entry<String, Object>>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+              return i < names.length;
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              if (i == names.length) throw new NoSuchElementException();
+              Object value = OffHeapRows.this.get(chunk, base, i);
+              return new SimpleImmutableEntry<>(names[i++], value);
+            }
+          };
+        }
+      };
+    }
+  }
+
+  // --- Persistence ---
+
+  /**
+   * Writes the decoders and then the records of {@code versions} byte for byte, so a load needs no
+   * per-row objects. Every version must be one of this store's.
+   */
+  void writeTo(ObjectOutputStream out, List<RowVersion> versions) throws IOException {
+    for (int i = 0; i < names.length; i++) {
+      if (types[i] != DataType.TEXT) continue;
+      TextDictionary dictionary = decoders[i];
+      out.writeBoolean(dictionary != null);
+      if (dictionary == null) continue;
+      out.writeBoolean(active.get(names[i]) == dictionary);
+      int size = dictionary.size();
+      out.writeInt(size);
+      for (int code = 0; code < size; code++) {
+        writeText(out, dictionary.decode(code));
+      }
+    }
+
+    out.writeInt(versions.size());
+    byte[] scratch = new byte[fixedSize];
+    for (RowVersion version : versions) {
+      if (!owns(version)) throw new IllegalStateException("Row is not stored off heap");
+      ByteBuffer b = version.chunk.buffer;
+      int length = b.getInt(version.offset);
+      if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+      b.get(version.offset, scratch, 0, length);
+      out.write(scratch, 0, length);
+    }
+  }
+
+  /**
+   * Reads what {@link #writeTo} wrote into this (empty) store and returns the rows as frozen
+   * versions. The dictionaries come back with the same codes and replace the table's.
+   */
+  List<RowVersion> readFrom(ObjectInputStream in) throws IOException {
+    for (int i = 0; i < names.length; i++) {
+      if (types[i] != DataType.TEXT) continue;
+      decoders[i] = null;
+      active.remove(names[i]);
+      if (!in.readBoolean()) continue;
+      boolean live = in.readBoolean();
+      int size = in.readInt();
+      TextDictionary dictionary = new TextDictionary();
+      for (int code = 0; code < size; code++) {
+        dictionary.encode(readText(in));
+      }
+      decoders[i] = dictionary;
+      if (live) active.put(names[i], dictionary);
+    }
+
+    int count = in.readInt();
+    List<RowVersion> versions = new ArrayList<>(count);
+    byte[] scratch = new byte[fixedSize];
+    for (int r = 0; r < count; r++) {
+      int length = in.readInt();
+      if (length < fixedSize) throw new IOException("Corrupt row record of " + length + " bytes");
+      Chunk chunk = reserve(length);
+      int base = chunk.used;
+      if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+      in.readFully(scratch, 4, length - 4);
+      chunk.buffer.putInt(base, length);
+      chunk.buffer.put(base + 4, scratch, 4, length - 4);
+      chunk.used += length;
+      chunk.live += length;
+      versions.add(new RowVersion(chunk, base, Table.FROZEN_TX, null));
+    }
+    return versions;
+  }
+
+  private static void writeText(ObjectOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readText(ObjectInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
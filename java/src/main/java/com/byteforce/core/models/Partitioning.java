@@ -0,0 +1,187 @@
+package com.byteforce.core.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * How a partitioned table spreads its rows over partitions by the value of one column: by hash into
+ * a fixed number of partitions, or by ranges between ascending split points, where partition {@code
+ * i} holds the values below split point {@code i} and the last one everything above. NULL always
+ * goes to the first partition.
+ */
+public final class Partitioning implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final int MAX_PARTITIONS = 1024;
+
+  public enum Method {
+    HASH,
+    RANGE
+  }
+
+  private final Method method;
+  private final String column;
+  private final int count;
+  private final List<Object> bounds;
+
+  private Partitioning(Method method, String column, int count, List<Object> bounds) {
+    this.method = method;
+    this.column = column;
+    this.count = count;
+    this.bounds = bounds;
+  }
+
+  public static Partitioning hash(String column, int count) {
+    if (count < 1 || count > MAX_PARTITIONS) {
+      throw new IllegalArgumentException(
+          "Partition count must be between 1 and " + MAX_PARTITIONS + ": " + count);
+    }
+    return new Partitioning(Method.HASH, column, count, Collections.emptyList());
+  }
+
+  public static Partitioning range(String column, List<Object> bounds) {
+    if (bounds.isEmpty() || bounds.size() >= MAX_PARTITIONS) {
+      throw new IllegalArgumentException(
+          "Range partitioning needs between 1 and " + (MAX_PARTITIONS - 1) + " split points");
+    }
+    return new Partitioning(Method.RANGE, column, bounds.size() + 1, new ArrayList<>(bounds));
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public List<Object> getBounds() {
+    return Collections.unmodifiableList(bounds);
+  }
+
+  /**
+   * Checks the scheme against the table's columns. A PRIMARY KEY or UNIQUE column must be the
+   * partition column: each partition only enforces uniqueness among its own rows.
+   */
+  void validate(Map<String, Column> columns) {
+    Column partitionColumn = columns.get(column);
+    if (partitionColumn == null) {
+      throw new IllegalArgumentException("Partition column '" + column + "' not found");
+    }
+    for (Column col : columns.values()) {
+      if ((col.isPrimaryKey() || col.isUnique()) && !col.getName().equals(column)) {
+        throw new IllegalArgumentException(
+            "Unique column '" + col.getName() + "' must be the partition column '" + column + "'");
+      }
+    }
+    for (int i = 0; i < bounds.size(); i++) {
+      Object bound = bounds.get(i);
+      if (bound == null || !partitionColumn.validate(bound)) {
+        throw new IllegalArgumentException(
+            "Invalid split point for column '" + column + "': " + bound);
+      }
+      if (i > 0 && Values.compare(bounds.get(i - 1), bound) >= 0) {
+        throw new IllegalArgumentException("Split points must be in ascending order");
+      }
+    }
+  }
+
+  /** The partition a row whose partition column holds {@code value} belongs to. */
+  public int partitionOf(Object value) {
+    if (value == null) return 0;
+    if (method == Method.HASH) {
+      return Math.floorMod(hash(value), count);
+    }
+    for (int i = 0; i < bounds.size(); i++) {
+      Integer cmp = Values.compare(value, bounds.get(i));
+      // A value of the wrong type is rejected by the partition's column check
+      if (cmp == null) return 0;
+      if (cmp < 0) return i;
+    }
+    return bounds.size();
+  }
+
+  // Numbers hash by value, so an INTEGER and an equal FLOAT land in the same partition. The bits
+  // are spread so that keys with a regular stride still fill every partition.
+  private static int hash(Object value) {
+    int h;
+    if (value instanceof Number) {
+      double d = ((Number) value).doubleValue();
+      long l = (long) d;
+      h = l == d ? Long.hashCode(l) : Double.hashCode(d);
+    } else {
+      h = value.hashCode();
+    }
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * The partitions that may hold rows satisfying {@code colName op value}, by the engine's
+   * comparison rules: every partition unless the predicate is on the partition column.
+   */
+  public BitSet prune(String colName, String op, Object value) {
+    BitSet live = new BitSet(count);
+    if (!column.equals(colName)) {
+      live.set(0, count);
+    } else if (value == null) {
+      // Only NULL matches a comparison with NULL
+      live.set(0);
+    } else if ("=".equals(op)) {
+      live.set(partitionOf(value));
+    } else if (method == Method.HASH || !isRangeOperator(op)) {
+      live.set(0, count);
+    } else {
+      for (int i = 0; i < count; i++) {
+        if (mayHold(i, op, value)) live.set(i);
+      }
+    }
+    return live;
+  }
+
+  private static boolean isRangeOperator(String op) {
+    return "<".equals(op) || "<=".equals(op) || ">".equals(op) || ">=".equals(op);
+  }
+
+  // Range partition i holds lower <= x < upper, without a lower bound for the first partition and
+  // an upper bound for the last
+  private boolean mayHold(int partition, String op, Object value) {
+    boolean below = "<".equals(op) || "<=".equals(op);
+    int boundIndex = below ? partition - 1 : partition;
+    if (boundIndex < 0 || boundIndex >= bounds.size()) return true;
+
+    Integer cmp = Values.compare(bounds.get(boundIndex), value);
+    if (cmp == null) return true;
+    switch (op) {
+      case "<":
+        return cmp < 0;
+      case "<=":
+        return cmp <= 0;
+      default:
+        return cmp > 0;
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (method == Method.HASH) {
+      return "HASH(" + column + ") PARTITIONS " + count;
+    }
+    return "RANGE("
+        + column
+        + ") ("
+        + bounds.stream()
+            .map(b -> b instanceof String ? "'" + b + "'" : String.valueOf(b))
+            .collect(Collectors.joining(", "))
+        + ")";
+  }
+}
@@ -0,0 +1,23 @@
+package com.byteforce.core.models;
+
+/** Where a table keeps its rows. */
+public enum RowStorage {
+  /** Row maps on the Java heap. */
+  HEAP,
+  /** Encoded records in direct memory, outside the heap. */
+  OFF_HEAP,
+  /** Encoded records in memory-mapped scratch files, which the OS can page out under pressure. */
+  MAPPED;
+
+  /** The storage named by the {@code byteforce.rowStorage} system property, HEAP if unset. */
+  public static RowStorage fromSystemProperty() {
+    String name = System.getProperty("byteforce.rowStorage");
+    if (name == null) return HEAP;
+    try {
+      return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "byteforce.rowStorage must be heap, off_heap or mapped, not '" + name + "'");
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.byteforce.core.models;
+
+import java.util.Map;
+
+/**
+ * One version of a row. Versions are never modified after creation except for {@code xmax}, which
+ * is stamped by the transaction that supersedes or deletes it. Older versions hang off {@code prev}
+ * until no snapshot can see them.
+ */
+public final class RowVersion {
+  // Heap rows keep their map; off-heap rows a record in a chunk, read through a view
+  private final Map<String, Object> data;
+  final OffHeapRows.Chunk chunk;
+  final int offset;
+  private final long xmin;
+  volatile long xmax;
+  volatile RowVersion prev;
+
+  RowVersion(Map<String, Object> data, long xmin, RowVersion prev) {
+    this.data = data;
+    this.chunk = null;
+    this.offset = 0;
+    this.xmin = xmin;
+    this.prev = prev;
+  }
+
+  RowVersion(OffHeapRows.Chunk chunk, int offset, long xmin, RowVersion prev) {
+    this.data = null;
+    this.chunk = chunk;
+    this.offset = offset;
+    this.xmin = xmin;
+    this.prev = prev;
+  }
+
+  public Map<String, Object> getData() {
+    return data != null ? data : chunk.row(offset);
+  }
+
+  public long getXmin() {
+    return xmin;
+  }
+
+  public long getXmax() {
+    return xmax;
+  }
+
+  boolean isVisibleTo(Snapshot snapshot) {
+    long deletedBy = xmax;
+    return snapshot.isVisible(xmin) && (deletedBy == 0 || !snapshot.isVisible(deletedBy));
+  }
+}
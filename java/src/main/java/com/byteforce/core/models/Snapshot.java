@@ -0,0 +1,44 @@
+package com.byteforce.core.models;
+
+import java.util.Arrays;
+
+/**
+ * A consistent view of the database at a point in time. A row version is visible when the
+ * transaction that wrote it had committed before the snapshot was taken, or when it belongs to the
+ * snapshot's own transaction.
+ */
+public final class Snapshot {
+  /** Sees the newest version of every row. Only consistent while holding the table's write lock. */
+  public static final Snapshot LATEST =
+      new Snapshot(Long.MAX_VALUE, Long.MAX_VALUE, new long[0], 0);
+
+  private final long xmin; // every transaction below this had finished
+  private final long xmax; // first transaction id that had not started yet
+  private final long[] active; // sorted ids still in progress when the snapshot was taken
+  private final long ownTxId;
+
+  public Snapshot(long xmin, long xmax, long[] active, long ownTxId) {
+    this.xmin = xmin;
+    this.xmax = xmax;
+    this.active = active;
+    this.ownTxId = ownTxId;
+  }
+
+  public boolean isVisible(long txId) {
+    if (txId == ownTxId || txId < xmin) return true;
+    if (txId >= xmax) return false;
+    return Arrays.binarySearch(active, txId) < 0;
+  }
+
+  public long getXmin() {
+    return xmin;
+  }
+
+  public long getXmax() {
+    return xmax;
+  }
+
+  public long getOwnTxId() {
+    return ownTxId;
+  }
+}
@@ -1,21 +1,122 @@
 package com.byteforce.core.models;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * A table whose rows are multi-versioned. Each row slot holds a chain of {@link RowVersion}s,
+ * newest first, so readers pick the version their {@link Snapshot} can see without taking any lock.
+ * All mutating methods must be called while holding the table's write lock.
+ *
+ * <p>A partitioned table holds no rows itself. Each partition is a table of its own, named {@code
+ * <table>#<n>}, with its own file and lock; the partitioned table reads through them.
+ */
 public class Table implements Serializable {
   private static final long serialVersionUID = 1L;
 
+  /** Transaction id for rows that are visible to every snapshot (loaded from disk, seeded). */
+  public static final long FROZEN_TX = 0;
+
+  /** Separates a partitioned table's name from a partition number; it is not valid in SQL names. */
+  public static final char PARTITION_SEPARATOR = '#';
+
+  // A TEXT column stops being dictionary-encoded once its distinct values pass a hard cap, or
+  // outnumber half its rows past a small floor: mostly unique values gain nothing from interning
+  private static final int DICTIONARY_MIN_SIZE = 256;
+  private static final int DICTIONARY_MAX_SIZE = 1 << 16;
+
+  // Keeps the on-disk layout of the original heap table: rows are written as plain maps
+  private static final ObjectStreamField[] serialPersistentFields = {
+    new ObjectStreamField("name", String.class),
+    new ObjectStreamField("columns", Map.class),
+    new ObjectStreamField("rows", List.class),
+    new ObjectStreamField("indices", Map.class),
+    new ObjectStreamField("view", Map.class),
+    // 1 when the rows follow the fields as off-heap records instead of being in "rows"
+    new ObjectStreamField("format", int.class),
+    // Zone maps of the rows as written, keyed by column
+    new ObjectStreamField("zones", Map.class),
+    new ObjectStreamField("partitioning", Partitioning.class)
+  };
+  private static final int FORMAT_RECORDS = 1;
+
   private String name;
   private Map<String, Column> columns;
-  private List<Map<String, Object>> rows;
-  private Map<String, Map<Object, List<Integer>>> indices;
+  // CREATE MATERIALIZED VIEW plan for a view, null for a plain table
+  private Map<String, Object> view;
+  // Null unless the rows are spread over partitions
+  private Partitioning partitioning;
+  private transient volatile List<Table> partitions;
+  private transient volatile RowStore store;
+  private transient volatile int liveRows;
+  private transient int deadSlots;
+  private transient Set<RowSlot> pendingVacuum;
+  private transient Map<String, TextDictionary> dictionaries;
+  private transient RowStorage rowStorage = RowStorage.HEAP;
+  // Null while rows are kept on the heap
+  private transient OffHeapRows offHeap;
 
   public Table(String name, Map<String, Column> columns) {
+    this(name, columns, null);
+  }
+
+  /** Creates the storage of a materialized view defined by a {@code create_view} plan. */
+  public Table(String name, Map<String, Column> columns, Map<String, Object> view) {
+    this(name, columns, view, null);
+  }
+
+  private Table(
+      String name,
+      Map<String, Column> columns,
+      Map<String, Object> view,
+      Partitioning partitioning) {
     this.name = name;
     this.columns = columns;
-    this.rows = new ArrayList<>();
-    this.indices = new HashMap<>();
+    this.view = view;
+    this.partitioning = partitioning;
+    init();
+    ensureKeyIndices();
+  }
+
+  /**
+   * Creates a table whose rows are spread over partitions as {@code partitioning} says. Its
+   * partitions come from {@link #newPartition} and are attached by the storage engine.
+   */
+  public static Table partitioned(
+      String name, Map<String, Column> columns, Partitioning partitioning) {
+    partitioning.validate(columns);
+    return new Table(name, columns, null, partitioning);
+  }
+
+  private void init() {
+    this.rowStorage = RowStorage.HEAP;
+    this.store = newStore(16);
+    this.pendingVacuum = new LinkedHashSet<>();
+    this.dictionaries = new ConcurrentHashMap<>();
+    // Each partition encodes its own values
+    if (partitioning != null) return;
+    for (Column column : columns.values()) {
+      if (column.getDataType() == DataType.TEXT) {
+        dictionaries.put(column.getName(), new TextDictionary());
+      }
+    }
+  }
+
+  // PK/UNIQUE columns are always indexed so point writes and constraint checks avoid a full scan
+  private void ensureKeyIndices() {
+    if (partitioning != null) return;
+    for (Column column : columns.values()) {
+      if ((column.isPrimaryKey() || column.isUnique())
+          && !store.indices.containsKey(column.getName())) {
+        createIndex(column.getName());
+      }
+    }
   }
 
   public String getName() {
@@ -26,54 +127,598 @@ public class Table implements Serializable {
     return columns;
   }
 
+  public boolean isView() {
+    return view != null;
+  }
+
+  /** The SELECT plan a materialized view is maintained from, or null for a plain table. */
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> getViewQuery() {
+    return view != null ? (Map<String, Object>) view.get("query") : null;
+  }
+
+  public String getViewSql() {
+    return view != null ? (String) view.get("sql") : null;
+  }
+
+  public boolean isPartitioned() {
+    return partitioning != null;
+  }
+
+  /** How rows are spread over partitions, or null for a table that holds its own rows. */
+  public Partitioning getPartitioning() {
+    return partitioning;
+  }
+
+  /** The partitions, in partition order; empty until they are attached. */
+  public List<Table> getPartitions() {
+    List<Table> attached = partitions;
+    return attached != null ? attached : Collections.emptyList();
+  }
+
+  public String getPartitionName(int partition) {
+    return name + PARTITION_SEPARATOR + partition;
+  }
+
+  /** An empty table to hold one partition's rows. */
+  public Table newPartition(int partition) {
+    if (partitioning == null || partition < 0 || partition >= partitioning.getCount()) {
+      throw new IllegalArgumentException("Table '" + name + "' has no partition " + partition);
+    }
+    return new Table(getPartitionName(partition), new LinkedHashMap<>(columns));
+  }
+
+  /** Connects the tables holding the rows of each partition, in partition order. */
+  public void attachPartitions(List<Table> tables) {
+    if (partitioning == null || tables.size() != partitioning.getCount()) {
+      throw new IllegalArgumentException("Table '" + name + "' has no such partitions");
+    }
+    this.partitions = Collections.unmodifiableList(new ArrayList<>(tables));
+  }
+
+  /** Newest version of every live row. Use {@link #scan(Snapshot)} for a consistent read. */
   public List<Map<String, Object>> getRows() {
-    return rows;
+    return scan(Snapshot.LATEST);
+  }
+
+  public int getRowCount() {
+    if (partitioning == null) return liveRows;
+    int count = 0;
+    for (Table partition : getPartitions()) {
+      count += partition.getRowCount();
+    }
+    return count;
+  }
+
+  public Map<String, HashIndex> getIndices() {
+    return Collections.unmodifiableMap(store.indices);
+  }
+
+  /**
+   * The dictionary of a TEXT column, or null if the column is not dictionary-encoded (any more).
+   * Every row holds the dictionary's instance of its value.
+   */
+  public TextDictionary getDictionary(String colName) {
+    return dictionaries.get(colName);
+  }
+
+  public RowStorage getRowStorage() {
+    return rowStorage;
+  }
+
+  /** Memory held outside the heap for this table's rows, including dead records not yet freed. */
+  public long getOffHeapBytes() {
+    OffHeapRows rows = offHeap;
+    return rows != null ? rows.getAllocatedBytes() : 0;
+  }
+
+  /**
+   * Moves the rows to {@code storage}, with mapped chunk files in {@code mappedDir}. Only for a
+   * table nothing reads or writes yet, just created or loaded, whose rows are single versions.
+   */
+  public void setRowStorage(RowStorage storage, File mappedDir) {
+    if (storage == rowStorage) return;
+    OffHeapRows target =
+        storage == RowStorage.HEAP
+            ? null
+            : new OffHeapRows(
+                columns.values(), dictionaries, storage == RowStorage.MAPPED ? mappedDir : null);
+
+    RowStore st = store;
+    for (int i = 0; i < st.size; i++) {
+      RowSlot slot = st.slots[i];
+      RowVersion head = slot.head;
+      if (slot.dead || head == null) continue;
+      if (head.prev != null || head.xmax != 0) {
+        throw new IllegalStateException("Row storage can only change before the table is used");
+      }
+      Map<String, Object> data = head.getData();
+      slot.head =
+          target != null
+              ? target.version(data, head.getXmin(), null)
+              : new RowVersion(new HashMap<>(data), head.getXmin(), null);
+    }
+    offHeap = target;
+    rowStorage = storage;
+  }
+
+  // --- Snapshot reads (lock-free) ---
+
+  public List<Map<String, Object>> scan(Snapshot snapshot) {
+    if (partitioning != null) {
+      List<Map<String, Object>> result = new ArrayList<>();
+      for (Table partition : getPartitions()) {
+        result.addAll(partition.scan(snapshot));
+      }
+      return result;
+    }
+    RowStore st = store;
+    RowSlot[] slots = st.slots;
+    int n = Math.min(st.size, slots.length);
+
+    List<Map<String, Object>> result = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      RowVersion v = visibleVersion(slots[i], snapshot);
+      if (v != null) {
+        result.add(v.getData());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Lazily walks the rows visible to {@code snapshot} without copying them. The snapshot must stay
+   * open while the iterator is in use so that vacuum keeps the versions it will reach.
+   */
+  public Iterator<Map<String, Object>> iterator(Snapshot snapshot) {
+    if (partitioning == null) return iterator(snapshot, null);
+
+    Iterator<Table> rest = getPartitions().iterator();
+    return new Iterator<Map<String, Object>>() {
+      private Iterator<Map<String, Object>> current = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!current.hasNext() && rest.hasNext()) {
+          current = rest.next().iterator(snapshot);
+        }
+        return current.hasNext();
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return current.next();
+      }
+    };
+  }
+
+  /** Like {@link #iterator(Snapshot)}, but skips the blocks {@code filter} rules out. */
+  public Iterator<Map<String, Object>> iterator(Snapshot snapshot, ZoneFilter filter) {
+    // Block numbers are only meaningful for the generation the filter was built from
+    RowStore st = filter != null ? filter.store : store;
+    RowSlot[] slots = st.slots;
+    int n = Math.min(st.size, slots.length);
+
+    return new Iterator<Map<String, Object>>() {
+      private int pos;
+      private RowVersion next = advance();
+
+      private RowVersion advance() {
+        while (pos < n) {
+          if (filter != null && filter.skips(pos)) {
+            pos = (pos | (ZoneMap.BLOCK_SIZE - 1)) + 1;
+            continue;
+          }
+          RowVersion v = visibleVersion(slots[pos++], snapshot);
+          if (v != null) return v;
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        if (next == null) throw new NoSuchElementException();
+        Map<String, Object> data = next.getData();
+        next = advance();
+        return data;
+      }
+    };
+  }
+
+  /**
+   * Returns the visible rows whose index entry matches {@code value}, or null when the column is
+   * not indexed. Callers must still apply the predicate, an entry can outlive the value it was
+   * added for.
+   */
+  public List<Map<String, Object>> lookup(String colName, Object value, Snapshot snapshot) {
+    RowStore st = store;
+    HashIndex index = st.indices.get(colName);
+    if (index == null) return null;
+
+    List<Integer> ids = index.get(value);
+    if (ids == null) return new ArrayList<>();
+
+    // Ids are published after their slot, so read the count before the slot array
+    int n = ids.size();
+    RowSlot[] slots = st.slots;
+    List<Map<String, Object>> result = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      RowVersion v = visibleVersion(slots[ids.get(i)], snapshot);
+      if (v != null) {
+        result.add(v.getData());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The blocks whose zone map shows no row can satisfy {@code colName op value}, or null when the
+   * column has no zone map or no block can be skipped.
+   */
+  public ZoneFilter zoneFilter(String colName, String op, Object value) {
+    RowStore st = store;
+    ZoneMap zones = st.zones.get(colName);
+    if (zones == null) return null;
+
+    int blocks = (st.size + ZoneMap.BLOCK_SIZE - 1) >> ZoneMap.BLOCK_SHIFT;
+    BitSet skipped = new BitSet(blocks);
+    for (int b = 0; b < blocks; b++) {
+      if (!zones.mayMatch(b, op, value)) skipped.set(b);
+    }
+    return skipped.isEmpty() ? null : new ZoneFilter(st, skipped, blocks);
+  }
+
+  /** Blocks of one slot generation that a scan can pass over. */
+  public static final class ZoneFilter {
+    private final RowStore store;
+    private final BitSet skipped;
+    private final int blocks;
+
+    private ZoneFilter(RowStore store, BitSet skipped, int blocks) {
+      this.store = store;
+      this.skipped = skipped;
+      this.blocks = blocks;
+    }
+
+    /** Whether the block holding row {@code rowId} is skipped. */
+    public boolean skips(int rowId) {
+      return skipped.get(rowId >> ZoneMap.BLOCK_SHIFT);
+    }
+
+    public int getBlocks() {
+      return blocks;
+    }
+
+    public int getSkippedBlocks() {
+      return skipped.cardinality();
+    }
+  }
+
+  private static RowVersion visibleVersion(RowSlot slot, Snapshot snapshot) {
+    if (slot == null) return null;
+    for (RowVersion v = slot.head; v != null; v = v.prev) {
+      if (snapshot.isVisible(v.getXmin())) {
+        return v.isVisibleTo(snapshot) ? v : null;
+      }
+    }
+    return null;
   }
 
-  public Map<String, Map<Object, List<Integer>>> getIndices() {
-    return indices;
+  // --- Writes (caller holds the write lock) ---
+
+  public int getSlotCount() {
+    return store.size;
+  }
+
+  /** Row ids from the index on {@code colName} for {@code value}, or null if not indexed. */
+  public List<Integer> findRowIds(String colName, Object value) {
+    HashIndex index = store.indices.get(colName);
+    if (index == null) return null;
+    List<Integer> ids = index.get(value);
+    return ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+  }
+
+  /** Newest live version of a row, or null if it has been deleted. */
+  public Map<String, Object> getLatest(int rowId) {
+    RowVersion head = store.slots[rowId].head;
+    return head != null && head.xmax == 0 ? head.getData() : null;
   }
 
+  /** Inserts a row that is immediately visible to every snapshot. */
   public void addRow(Map<String, Object> rowData) {
-    // Validate columns and check types
+    insertRow(rowData, FROZEN_TX);
+  }
+
+  public int insertRow(Map<String, Object> rowData, long txId) {
+    return insertRows(Collections.singletonList(rowData), txId);
+  }
+
+  /**
+   * Inserts a batch of rows as one unit and returns the id of the first; the rest follow it
+   * contiguously. The whole batch is validated column by column before anything is written, so a
+   * bad row leaves the table untouched, and each index is then extended in a single pass.
+   */
+  public int insertRows(List<Map<String, Object>> batch, long txId) {
+    if (partitioning != null) {
+      throw new IllegalStateException("Rows of '" + name + "' are stored in its partitions");
+    }
     for (Map.Entry<String, Column> entry : columns.entrySet()) {
       String colName = entry.getKey();
       Column column = entry.getValue();
-      Object val = rowData.get(colName);
+      boolean unique = column.isPrimaryKey() || column.isUnique();
+      Set<Object> seen = unique ? new HashSet<>() : null;
 
-      if (!column.validate(val)) {
-        throw new IllegalArgumentException("Invalid value for column '" + colName + "': " + val);
-      }
-
-      // Check constraints (Primary Key and Unique)
-      if ((column.isPrimaryKey() || column.isUnique()) && val != null) {
-        // Naive linear scan for uniqueness check (O(N))
-        // Note: In a production DB, this would use the index if available.
-        for (Map<String, Object> existingRow : rows) {
-          if (Objects.equals(existingRow.get(colName), val)) {
-            throw new IllegalArgumentException(
-                "Constraint violation: duplicate value '"
-                    + val
-                    + "' for unique/PK column '"
-                    + colName
-                    + "'");
-          }
+      for (Map<String, Object> rowData : batch) {
+        Object val = rowData.get(colName);
+        if (!column.validate(val)) {
+          throw new IllegalArgumentException("Invalid value for column '" + colName + "': " + val);
+        }
+
+        // Check constraints (Primary Key and Unique), within the batch as well as the table
+        if (unique && val != null && (!seen.add(val) || containsValue(colName, val))) {
+          throw new IllegalArgumentException(
+              "Constraint violation: duplicate value '"
+                  + val
+                  + "' for unique/PK column '"
+                  + colName
+                  + "'");
         }
       }
     }
 
-    // Track the index of the new row for indexing
-    int rowIndex = rows.size();
-    rows.add(rowData);
+    for (Map<String, Object> rowData : batch) {
+      encode(rowData, rowData.keySet());
+    }
 
-    // Update existing indices with the new row
-    for (Map.Entry<String, Map<Object, List<Integer>>> entry : indices.entrySet()) {
+    RowStore st = store;
+    int firstId = st.size;
+    st.reserve(batch.size());
+    // Zones cover a row before it is published
+    for (int i = 0; i < batch.size(); i++) {
+      st.addToZones(firstId + i, batch.get(i), columns.keySet());
+    }
+    for (Map<String, Object> rowData : batch) {
+      st.append(new RowSlot(newVersion(rowData, txId, null)));
+    }
+    // A load that at least doubles the table rebuilds each index once instead of growing it
+    boolean rebuild = batch.size() >= firstId && batch.size() > 1;
+    for (Map.Entry<String, HashIndex> entry : st.indices.entrySet()) {
       String colName = entry.getKey();
-      Map<Object, List<Integer>> index = entry.getValue();
+      if (rebuild) {
+        st.indices.put(colName, buildIndex(st, colName));
+        continue;
+      }
+      HashIndex index = entry.getValue();
+      for (int i = 0; i < batch.size(); i++) {
+        index.add(batch.get(i).get(colName), firstId + i);
+      }
+    }
+    liveRows += batch.size();
+    dropHighCardinalityDictionaries();
+    return firstId;
+  }
+
+  private RowVersion newVersion(Map<String, Object> data, long txId, RowVersion prev) {
+    return offHeap != null ? offHeap.version(data, txId, prev) : new RowVersion(data, txId, prev);
+  }
 
+  // Off-heap records of versions no snapshot can reach any more
+  private void release(List<RowVersion> versions) {
+    if (offHeap == null) return;
+    for (RowVersion v : versions) {
+      offHeap.release(v);
+    }
+  }
+
+  // Swaps TEXT values for their dictionary instances; the row maps are the caller's fresh copies
+  private void encode(Map<String, Object> rowData, Collection<String> colNames) {
+    for (String colName : colNames) {
+      TextDictionary dictionary = dictionaries.get(colName);
       Object val = rowData.get(colName);
-      index.computeIfAbsent(val, k -> new ArrayList<>()).add(rowIndex);
+      if (dictionary != null && val instanceof String) {
+        rowData.put(colName, dictionary.intern((String) val));
+      }
+    }
+  }
+
+  // A dropped dictionary is never reinstated, so lookups against a live one stay exhaustive
+  private void dropHighCardinalityDictionaries() {
+    if (dictionaries.isEmpty()) return;
+    dictionaries
+        .values()
+        .removeIf(
+            d ->
+                d.size() > DICTIONARY_MAX_SIZE
+                    || (d.size() > DICTIONARY_MIN_SIZE && d.size() * 2L > liveRows));
+  }
+
+  private boolean containsValue(String colName, Object val) {
+    List<Integer> candidates = findRowIds(colName, val);
+    if (candidates == null) {
+      candidates = new ArrayList<>();
+      for (int i = 0; i < store.size; i++) {
+        candidates.add(i);
+      }
+    }
+    for (int id : candidates) {
+      Map<String, Object> row = getLatest(id);
+      if (row != null && Objects.equals(row.get(colName), val)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes a new version of the row with {@code changes} applied. Only indices on changed columns
+   * are touched. Returns the superseded version, which {@link #rollback} restores.
+   */
+  public RowVersion updateRow(int rowId, Map<String, Object> changes, long txId) {
+    RowSlot slot = store.slots[rowId];
+    RowVersion head = slot.head;
+
+    Map<String, Object> data = new HashMap<>(head.getData());
+    data.putAll(changes);
+    encode(data, changes.keySet());
+    store.addToZones(rowId, data, changes.keySet());
+    RowVersion next = newVersion(data, txId, head);
+    head.xmax = txId;
+    slot.head = next;
+
+    for (Map.Entry<String, HashIndex> entry : store.indices.entrySet()) {
+      Object newVal = data.get(entry.getKey());
+      if (!Objects.equals(head.getData().get(entry.getKey()), newVal)) {
+        entry.getValue().addIfAbsent(newVal, rowId);
+      }
+    }
+    pendingVacuum.add(slot);
+    return head;
+  }
+
+  /**
+   * Marks the row deleted as of {@code txId}. Returns the deleted version for {@link #rollback}.
+   */
+  public RowVersion deleteRow(int rowId, long txId) {
+    RowSlot slot = store.slots[rowId];
+    RowVersion head = slot.head;
+    head.xmax = txId;
+    liveRows--;
+    pendingVacuum.add(slot);
+    return head;
+  }
+
+  /** Undoes writes to a row by restoring {@code previousHead} (null undoes an insert). */
+  public void rollback(int rowId, RowVersion previousHead) {
+    RowSlot slot = store.slots[rowId];
+    RowVersion current = slot.head;
+    boolean wasLive = current != null && current.xmax == 0;
+
+    slot.head = previousHead;
+    if (previousHead != null) {
+      previousHead.xmax = 0;
+    }
+
+    List<RowVersion> discarded = new ArrayList<>();
+    for (RowVersion v = current; v != null && v != previousHead; v = v.prev) {
+      discarded.add(v);
+    }
+    removeIndexEntries(slot, discarded, previousHead);
+    release(discarded);
+
+    liveRows += (previousHead != null ? 1 : 0) - (wasLive ? 1 : 0);
+    if (previousHead == null) {
+      markDead(slot);
+    }
+  }
+
+  // --- Garbage collection ---
+
+  /**
+   * Drops row versions that no snapshot can see any more: every transaction below {@code horizon}
+   * has finished and no open snapshot predates it. Compacts the slot array once enough rows are
+   * dead.
+   */
+  public void vacuum(long horizon) {
+    Iterator<RowSlot> it = pendingVacuum.iterator();
+    while (it.hasNext()) {
+      if (prune(it.next(), horizon)) {
+        it.remove();
+      }
+    }
+
+    if (needsCompaction()) {
+      compact();
+    }
+  }
+
+  public boolean needsVacuum() {
+    return !pendingVacuum.isEmpty() || needsCompaction();
+  }
+
+  private boolean needsCompaction() {
+    return deadSlots > 0 && deadSlots * 4 >= store.size;
+  }
+
+  /** Returns true once the slot holds no garbage that a later vacuum could reclaim. */
+  private boolean prune(RowSlot slot, long horizon) {
+    if (slot.dead) return true;
+
+    RowVersion keep = slot.head;
+    while (keep != null && keep.getXmin() >= horizon) {
+      keep = keep.prev;
     }
+    if (keep == null) return false;
+
+    long deletedBy = keep.xmax;
+    if (deletedBy != 0 && deletedBy < horizon) {
+      List<RowVersion> chain = new ArrayList<>();
+      for (RowVersion v = slot.head; v != null; v = v.prev) {
+        chain.add(v);
+      }
+      removeIndexEntries(slot, chain, null);
+      release(chain);
+      markDead(slot);
+      return true;
+    }
+
+    List<RowVersion> removed = new ArrayList<>();
+    for (RowVersion v = keep.prev; v != null; v = v.prev) {
+      removed.add(v);
+    }
+    if (!removed.isEmpty()) {
+      keep.prev = null;
+      removeIndexEntries(slot, removed, slot.head);
+      release(removed);
+    }
+    return keep == slot.head && deletedBy == 0;
+  }
+
+  // Removes index entries of the given versions unless a surviving version still has that value
+  private void removeIndexEntries(RowSlot slot, List<RowVersion> versions, RowVersion survivors) {
+    for (Map.Entry<String, HashIndex> entry : store.indices.entrySet()) {
+      String colName = entry.getKey();
+      Set<Object> kept = new HashSet<>();
+      for (RowVersion v = survivors; v != null; v = v.prev) {
+        kept.add(v.getData().get(colName));
+      }
+      for (RowVersion v : versions) {
+        Object val = v.getData().get(colName);
+        if (kept.add(val)) {
+          entry.getValue().remove(val, slot.id);
+        }
+      }
+    }
+  }
+
+  private void markDead(RowSlot slot) {
+    if (!slot.dead) {
+      slot.dead = true;
+      deadSlots++;
+    }
+  }
+
+  // Rebuilds the slot array without dead rows. Readers still holding the old store are unaffected.
+  private void compact() {
+    RowStore old = store;
+    RowStore fresh = newStore(Math.max(16, old.size - deadSlots));
+    for (int i = 0; i < old.size; i++) {
+      RowSlot slot = old.slots[i];
+      if (!slot.dead) {
+        slot.id = fresh.append(slot);
+      }
+    }
+    for (String colName : old.indices.keySet()) {
+      fresh.indices.put(colName, buildIndex(fresh, colName));
+    }
+    buildZones(fresh);
+    store = fresh;
+    deadSlots = 0;
   }
 
   public void createIndex(String colName) {
@@ -82,17 +727,185 @@ public class Table implements Serializable {
           "Column '" + colName + "' not found in table '" + name + "'");
     }
 
-    Map<Object, List<Integer>> index = new HashMap<>();
-    // Populate index with existing data
-    for (int i = 0; i < rows.size(); i++) {
-      Object val = rows.get(i).get(colName);
-      index.computeIfAbsent(val, k -> new ArrayList<>()).add(i);
+    RowStore st = store;
+    st.indices.put(colName, buildIndex(st, colName));
+  }
+
+  public void dropIndex(String colName) {
+    store.indices.remove(colName);
+  }
+
+  // Indexes every version still in a chain so older snapshots can find them too
+  private static HashIndex buildIndex(RowStore st, String colName) {
+    HashIndex index = new HashIndex();
+    Set<Object> values = new HashSet<>();
+    for (int i = 0; i < st.size; i++) {
+      RowSlot slot = st.slots[i];
+      if (slot.dead) continue;
+
+      values.clear();
+      for (RowVersion v = slot.head; v != null; v = v.prev) {
+        Object val = v.getData().get(colName);
+        if (values.add(val)) {
+          index.add(val, i);
+        }
+      }
+    }
+    return index;
+  }
+
+  private RowStore newStore(int capacity) {
+    RowStore st = new RowStore(capacity);
+    for (String colName : columns.keySet()) {
+      st.zones.put(colName, new ZoneMap());
     }
+    return st;
+  }
 
-    indices.put(colName, index);
+  // Covers every version still in a chain, like the indices
+  private void buildZones(RowStore st) {
+    for (int i = 0; i < st.size; i++) {
+      RowSlot slot = st.slots[i];
+      if (slot.dead) continue;
+      for (RowVersion v = slot.head; v != null; v = v.prev) {
+        st.addToZones(i, v.getData(), columns.keySet());
+      }
+    }
   }
 
-  public void setRows(List<Map<String, Object>> rows) {
-    this.rows = rows;
+  // --- Serialization ---
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    Map<String, Map<Object, List<Integer>>> indexNames = new HashMap<>();
+    for (String colName : store.indices.keySet()) {
+      indexNames.put(colName, new HashMap<>());
+    }
+
+    RowStore st = store;
+    List<RowVersion> latest = new ArrayList<>(liveRows);
+    for (int i = 0; i < st.size; i++) {
+      RowVersion v = visibleVersion(st.slots[i], Snapshot.LATEST);
+      if (v != null) latest.add(v);
+    }
+    // The rows are read back into slots in this order, so these zones are tight and line up
+    RowStore written = newStore(16);
+    List<Map<String, Object>> rows = new ArrayList<>(latest.size());
+    for (int i = 0; i < latest.size(); i++) {
+      Map<String, Object> data = latest.get(i).getData();
+      written.addToZones(i, data, columns.keySet());
+      rows.add(data);
+    }
+
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("name", name);
+    fields.put("columns", columns);
+    fields.put("rows", offHeap == null ? rows : null);
+    fields.put("indices", indexNames);
+    fields.put("view", view);
+    fields.put("format", offHeap == null ? 0 : FORMAT_RECORDS);
+    fields.put("zones", new HashMap<>(written.zones));
+    fields.put("partitioning", partitioning);
+    out.writeFields();
+
+    // Off-heap records are copied out as they are, without a map per row
+    if (offHeap != null) {
+      offHeap.writeTo(out, latest);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    this.name = (String) fields.get("name", null);
+    this.columns = (Map<String, Column>) fields.get("columns", null);
+    List<Map<String, Object>> rows = (List<Map<String, Object>>) fields.get("rows", null);
+    Map<String, ?> indices = (Map<String, ?>) fields.get("indices", null);
+    this.view = (Map<String, Object>) fields.get("view", null);
+    Map<String, ZoneMap> zones = (Map<String, ZoneMap>) fields.get("zones", null);
+    this.partitioning = (Partitioning) fields.get("partitioning", null);
+
+    init();
+    if (fields.get("format", 0) == FORMAT_RECORDS) {
+      // Read back into direct memory; the storage engine moves them where it keeps rows
+      offHeap = new OffHeapRows(columns.values(), dictionaries, null);
+      rowStorage = RowStorage.OFF_HEAP;
+      RowStore st = store;
+      for (RowVersion version : offHeap.readFrom(in)) {
+        st.append(new RowSlot(version));
+      }
+      liveRows = st.size;
+    } else if (rows != null) {
+      RowStore st = store;
+      for (Map<String, Object> row : rows) {
+        encode(row, row.keySet());
+        st.append(new RowSlot(new RowVersion(row, FROZEN_TX, null)));
+      }
+      liveRows = st.size;
+      dropHighCardinalityDictionaries();
+    }
+    // Tables saved before zone maps existed get theirs built from the rows
+    if (zones != null && zones.keySet().equals(columns.keySet())) {
+      store.zones.putAll(zones);
+    } else {
+      buildZones(store);
+    }
+    if (indices != null) {
+      for (String colName : indices.keySet()) {
+        createIndex(colName);
+      }
+    }
+    ensureKeyIndices();
+  }
+
+  // One generation of row slots, their indices and zone maps; compaction swaps in a new one
+  private static final class RowStore {
+    private volatile RowSlot[] slots;
+    private volatile int size;
+    private final Map<String, HashIndex> indices = new ConcurrentHashMap<>();
+    // One per column, all created with the store
+    private final Map<String, ZoneMap> zones = new HashMap<>();
+
+    RowStore(int capacity) {
+      this.slots = new RowSlot[capacity];
+    }
+
+    // Grows the array once up front so a large batch is not copied on every doubling
+    void reserve(int extra) {
+      int needed = size + extra;
+      if (needed > slots.length) {
+        slots = Arrays.copyOf(slots, Math.max(needed, slots.length * 2));
+      }
+    }
+
+    void addToZones(int rowId, Map<String, Object> data, Collection<String> colNames) {
+      for (String colName : colNames) {
+        ZoneMap zoneMap = zones.get(colName);
+        if (zoneMap != null) zoneMap.add(rowId, data.get(colName));
+      }
+    }
+
+    // The slot is stored before size is published so lock-free readers never see a hole
+    int append(RowSlot slot) {
+      RowSlot[] a = slots;
+      int n = size;
+      if (n == a.length) {
+        a = Arrays.copyOf(a, n * 2);
+      }
+      a[n] = slot;
+      slot.id = n;
+      slots = a;
+      size = n + 1;
+      return n;
+    }
+  }
+
+  private static final class RowSlot {
+    private volatile RowVersion head;
+    private int id;
+    private boolean dead;
+
+    RowSlot(RowVersion head) {
+      this.head = head;
+    }
   }
 }
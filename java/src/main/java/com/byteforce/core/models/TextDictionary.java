@@ -0,0 +1,54 @@
+package com.byteforce.core.models;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The distinct values of a TEXT column, each held as one canonical instance with a dense code. Rows
+ * on the heap store the dictionary's instance, so the reference acts as the value's code: a
+ * repeated value costs one pointer per row, is written once per table file (serialization writes
+ * later occurrences as back-references), and equality against it is a reference comparison. Rows
+ * off the heap store the code itself. Values are never removed, so a value missing from the
+ * dictionary is in no row of the table. Only the table's writer adds values; lookups are lock-free.
+ */
+public final class TextDictionary {
+  private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+  private volatile String[] values = new String[16];
+
+  /** Returns the canonical instance of {@code value}, adding it if it is new. */
+  String intern(String value) {
+    int code = encode(value);
+    return values[code];
+  }
+
+  /** Returns the code of {@code value}, adding it if it is new. */
+  int encode(String value) {
+    Integer code = codes.get(value);
+    if (code != null) return code;
+
+    int next = codes.size();
+    String[] a = values;
+    if (next == a.length) {
+      a = Arrays.copyOf(a, next * 2);
+    }
+    // The value is in the array before its code is published
+    a[next] = value;
+    values = a;
+    codes.put(value, next);
+    return next;
+  }
+
+  /** The canonical instance of {@code value}, or null if no row has ever held it. */
+  public String lookup(String value) {
+    Integer code = codes.get(value);
+    return code != null ? values[code] : null;
+  }
+
+  String decode(int code) {
+    return values[code];
+  }
+
+  public int size() {
+    return codes.size();
+  }
+}
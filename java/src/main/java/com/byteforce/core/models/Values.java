@@ -0,0 +1,25 @@
+package com.byteforce.core.models;
+
+/** Ordering of stored values, by the same rules the engine's WHERE comparisons follow. */
+final class Values {
+  private Values() {}
+
+  /**
+   * Orders {@code a} against {@code b}: numbers by value (an INTEGER against a FLOAT included),
+   * other values against their own type. Returns null when the two cannot be ordered, as the engine
+   * then only ever finds them unequal.
+   */
+  @SuppressWarnings("unchecked")
+  static Integer compare(Object a, Object b) {
+    if (a instanceof Number && b instanceof Number) {
+      double x = ((Number) a).doubleValue();
+      double y = ((Number) b).doubleValue();
+      // Like the engine's primitive comparisons, 0.0 and -0.0 are equal
+      return x < y ? -1 : x > y ? 1 : 0;
+    }
+    if (a instanceof Comparable && a.getClass().isInstance(b)) {
+      return ((Comparable<Object>) a).compareTo(b);
+    }
+    return null;
+  }
+}
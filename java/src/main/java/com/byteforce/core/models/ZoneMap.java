@@ -0,0 +1,93 @@
+package com.byteforce.core.models;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Min, max and null count of one column for each block of {@link #BLOCK_SIZE} row slots. A summary
+ * is widened before a version with a new value is published and never narrowed by deletes or
+ * rollbacks, so it covers every version a snapshot can find in the block. Compaction and saving
+ * rebuild summaries tight. Only the table's writer changes them. NaN is counted rather than
+ * ordered: it fails every comparison except {@code !=}, and would pin min and max.
+ */
+public final class ZoneMap implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final int BLOCK_SIZE = 1024;
+  static final int BLOCK_SHIFT = 10;
+
+  private volatile Zone[] zones = new Zone[4];
+
+  private static final class Zone implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Object min;
+    private Object max;
+    private int nulls;
+    private int nans;
+  }
+
+  void add(int slot, Object value) {
+    int block = slot >> BLOCK_SHIFT;
+    Zone[] a = zones;
+    if (block >= a.length) {
+      a = Arrays.copyOf(a, Math.max(block + 1, a.length * 2));
+    }
+    Zone zone = a[block];
+    if (zone == null) {
+      zone = new Zone();
+      a[block] = zone;
+    }
+    if (value == null) {
+      zone.nulls++;
+    } else if (isNaN(value)) {
+      zone.nans++;
+    } else {
+      // Values of one column share a type, or are all numbers (FLOAT also holds Integers)
+      if (zone.min == null || Values.compare(value, zone.min) < 0) zone.min = value;
+      if (zone.max == null || Values.compare(value, zone.max) > 0) zone.max = value;
+    }
+    zones = a;
+  }
+
+  /**
+   * Whether a row in {@code block} may satisfy {@code column op value}, under the engine's
+   * comparison rules: null only equals null, numbers compare by value, other values only against
+   * their own type, and values of different types are only ever unequal.
+   */
+  public boolean mayMatch(int block, String op, Object value) {
+    Zone[] a = zones;
+    if (block >= a.length || a[block] == null) return true;
+    Zone zone = a[block];
+    if (value == null) return zone.nulls > 0;
+    if (isNaN(value)) return "!=".equals(op);
+    if (zone.nans > 0 && "!=".equals(op)) return true;
+    if (zone.min == null) return false;
+    // Saved before NaN was left out of min and max
+    if (isNaN(zone.min) || isNaN(zone.max)) return true;
+
+    Integer lo = Values.compare(zone.min, value);
+    Integer hi = Values.compare(zone.max, value);
+    if (lo == null || hi == null) return "!=".equals(op);
+    switch (op) {
+      case "=":
+        return lo <= 0 && hi >= 0;
+      case "!=":
+        return lo != 0 || hi != 0;
+      case ">":
+        return hi > 0;
+      case ">=":
+        return hi >= 0;
+      case "<":
+        return lo < 0;
+      case "<=":
+        return lo <= 0;
+      default:
+        return true;
+    }
+  }
+
+  private static boolean isNaN(Object value) {
+    return value instanceof Number && Double.isNaN(((Number) value).doubleValue());
+  }
+}
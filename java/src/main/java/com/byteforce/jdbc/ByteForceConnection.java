@@ -0,0 +1,433 @@
+package com.byteforce.jdbc;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.PreparedQuery;
+import com.byteforce.core.Session;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A JDBC connection backed by a {@link Session}. With auto-commit off, the first statement after a
+ * commit or rollback opens a transaction, as JDBC expects. Prepared statements are parsed once per
+ * connection and kept in an LRU cache keyed by SQL text, so a pool handing out the same connection
+ * skips even the plan cache lookup.
+ */
+public class ByteForceConnection implements Connection {
+  private final ByteForceDB db;
+  private final Session session;
+  private final Runnable onClose;
+  private final Map<String, PreparedQuery> statementCache;
+  private final Set<ByteForceStatement> statements = ConcurrentHashMap.newKeySet();
+  private long cacheHits;
+  private long cacheMisses;
+  private boolean autoCommit = true;
+  private boolean readOnly;
+  private volatile boolean closed;
+
+  ByteForceConnection(ByteForceDB db, int statementCacheSize, Runnable onClose) {
+    this.db = db;
+    this.session = db.openSession();
+    this.onClose = onClose;
+    this.statementCache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, PreparedQuery> eldest) {
+            return size() > statementCacheSize;
+          }
+        };
+  }
+
+  /** The engine this connection runs on. */
+  public ByteForceDB getDatabase() {
+    return db;
+  }
+
+  public long getStatementCacheHits() {
+    return cacheHits;
+  }
+
+  public long getStatementCacheMisses() {
+    return cacheMisses;
+  }
+
+  PreparedQuery prepare(String sql) throws SQLException {
+    checkOpen();
+    PreparedQuery query = statementCache.get(sql);
+    if (query != null) {
+      cacheHits++;
+      return query;
+    }
+    cacheMisses++;
+    try {
+      query = session.prepare(sql);
+    } catch (RuntimeException e) {
+      throw new SQLException(e.getMessage(), e);
+    }
+    statementCache.put(sql, query);
+    return query;
+  }
+
+  Session getSession() {
+    return session;
+  }
+
+  /** Opens the implicit transaction of manual-commit mode before a statement runs. */
+  void beginIfNeeded() throws SQLException {
+    checkOpen();
+    if (!autoCommit && !session.isInTransaction()) {
+      check(session.execute("BEGIN"));
+    }
+  }
+
+  static ExecutionResult check(ExecutionResult result) throws SQLException {
+    if (result.isError()) throw new SQLException(result.getMessage());
+    return result;
+  }
+
+  void checkOpen() throws SQLException {
+    if (closed) throw new SQLException("Connection is closed");
+  }
+
+  void statementClosed(ByteForceStatement statement) {
+    statements.remove(statement);
+  }
+
+  private <T extends ByteForceStatement> T track(T statement) {
+    statements.add(statement);
+    return statement;
+  }
+
+  @Override
+  public Statement createStatement() throws SQLException {
+    checkOpen();
+    return track(new ByteForceStatement(this));
+  }
+
+  @Override
+  public Statement createStatement(int resultSetType, int resultSetConcurrency)
+      throws SQLException {
+    checkResultSetOptions(resultSetType, resultSetConcurrency);
+    return createStatement();
+  }
+
+  @Override
+  public Statement createStatement(
+      int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    checkResultSetOptions(resultSetType, resultSetConcurrency);
+    return createStatement();
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql) throws SQLException {
+    return track(new ByteForcePreparedStatement(this, prepare(sql)));
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+      throws SQLException {
+    checkResultSetOptions(resultSetType, resultSetConcurrency);
+    return prepareStatement(sql);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(
+      String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+      throws SQLException {
+    checkResultSetOptions(resultSetType, resultSetConcurrency);
+    return prepareStatement(sql);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+    if (autoGeneratedKeys != Statement.NO_GENERATED_KEYS) throw ByteForceDriver.unsupported();
+    return prepareStatement(sql);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  private static void checkResultSetOptions(int type, int concurrency) throws SQLException {
+    if (type != ResultSet.TYPE_FORWARD_ONLY || concurrency != ResultSet.CONCUR_READ_ONLY) {
+      throw new SQLFeatureNotSupportedException(
+          "Only forward-only, read-only result sets are supported");
+    }
+  }
+
+  @Override
+  public CallableStatement prepareCall(String sql) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+      throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public CallableStatement prepareCall(
+      String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+      throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public String nativeSQL(String sql) {
+    return sql;
+  }
+
+  @Override
+  public void setAutoCommit(boolean autoCommit) throws SQLException {
+    checkOpen();
+    // Switching auto-commit back on commits the open transaction
+    if (autoCommit && !this.autoCommit && session.isInTransaction()) {
+      check(session.execute("COMMIT"));
+    }
+    this.autoCommit = autoCommit;
+  }
+
+  @Override
+  public boolean getAutoCommit() throws SQLException {
+    checkOpen();
+    return autoCommit;
+  }
+
+  @Override
+  public void commit() throws SQLException {
+    checkOpen();
+    if (autoCommit) throw new SQLException("Cannot commit in auto-commit mode");
+    if (session.isInTransaction()) {
+      check(session.execute("COMMIT"));
+    }
+  }
+
+  @Override
+  public void rollback() throws SQLException {
+    checkOpen();
+    if (autoCommit) throw new SQLException("Cannot roll back in auto-commit mode");
+    if (session.isInTransaction()) {
+      check(session.execute("ROLLBACK"));
+    }
+  }
+
+  /** Closes open statements and rolls back a transaction left open. */
+  @Override
+  public void close() {
+    if (closed) return;
+    for (ByteForceStatement statement : new ArrayList<>(statements)) {
+      statement.close();
+    }
+    session.close();
+    closed = true;
+    onClose.run();
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public boolean isValid(int timeout) {
+    return !closed;
+  }
+
+  @Override
+  public void abort(Executor executor) {
+    close();
+  }
+
+  @Override
+  public DatabaseMetaData getMetaData() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setReadOnly(boolean readOnly) throws SQLException {
+    checkOpen();
+    // Only a hint in JDBC; the engine does not enforce it
+    this.readOnly = readOnly;
+  }
+
+  @Override
+  public boolean isReadOnly() throws SQLException {
+    checkOpen();
+    return readOnly;
+  }
+
+  @Override
+  public void setCatalog(String catalog) {}
+
+  @Override
+  public String getCatalog() {
+    return null;
+  }
+
+  @Override
+  public void setSchema(String schema) {}
+
+  @Override
+  public String getSchema() {
+    return null;
+  }
+
+  /** Transactions read from a snapshot, which is what JDBC calls repeatable read. */
+  @Override
+  public void setTransactionIsolation(int level) throws SQLException {
+    checkOpen();
+    if (level != TRANSACTION_REPEATABLE_READ
+        && level != TRANSACTION_READ_COMMITTED
+        && level != TRANSACTION_READ_UNCOMMITTED) {
+      throw new SQLFeatureNotSupportedException(
+          "Transactions are snapshot isolated; SERIALIZABLE is not supported");
+    }
+  }
+
+  @Override
+  public int getTransactionIsolation() {
+    return TRANSACTION_REPEATABLE_READ;
+  }
+
+  @Override
+  public SQLWarning getWarnings() {
+    return null;
+  }
+
+  @Override
+  public void clearWarnings() {}
+
+  @Override
+  public Map<String, Class<?>> getTypeMap() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setHoldability(int holdability) throws SQLException {
+    if (holdability != ResultSet.CLOSE_CURSORS_AT_COMMIT) throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public int getHoldability() {
+    return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+  }
+
+  @Override
+  public Savepoint setSavepoint() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Savepoint setSavepoint(String name) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void rollback(Savepoint savepoint) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Clob createClob() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Blob createBlob() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public NClob createNClob() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public SQLXML createSQLXML() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setClientInfo(String name, String value) throws SQLClientInfoException {}
+
+  @Override
+  public void setClientInfo(Properties properties) throws SQLClientInfoException {}
+
+  @Override
+  public String getClientInfo(String name) {
+    return null;
+  }
+
+  @Override
+  public Properties getClientInfo() {
+    return new Properties();
+  }
+
+  @Override
+  public void setNetworkTimeout(Executor executor, int milliseconds) {}
+
+  @Override
+  public int getNetworkTimeout() {
+    return 0;
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) return iface.cast(this);
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+}
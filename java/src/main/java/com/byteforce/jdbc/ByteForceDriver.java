@@ -0,0 +1,124 @@
+package com.byteforce.jdbc;
+
+import com.byteforce.core.ByteForceDB;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * JDBC driver for URLs of the form {@code jdbc:byteforce:<dataDir>}. Statements run directly on an
+ * embedded {@link ByteForceDB}; connections to the same data directory share one engine, which is
+ * closed again when the last of them closes. Each connection caches up to {@code
+ * statementCacheSize} (property, default 64) prepared statements by SQL text.
+ */
+public class ByteForceDriver implements Driver {
+  public static final String URL_PREFIX = "jdbc:byteforce:";
+  public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+  private static final Map<String, Shared> DATABASES = new HashMap<>();
+
+  static {
+    try {
+      DriverManager.registerDriver(new ByteForceDriver());
+    } catch (SQLException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private static final class Shared {
+    private final ByteForceDB db;
+    private int connections;
+
+    Shared(ByteForceDB db) {
+      this.db = db;
+    }
+  }
+
+  @Override
+  public Connection connect(String url, Properties info) throws SQLException {
+    if (!acceptsURL(url)) return null;
+    String dataDir = url.substring(URL_PREFIX.length());
+    if (dataDir.isEmpty()) throw new SQLException("No data directory in " + url);
+
+    int cacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+    String property = info != null ? info.getProperty("statementCacheSize") : null;
+    if (property != null) {
+      try {
+        cacheSize = Integer.parseInt(property);
+      } catch (NumberFormatException e) {
+        throw new SQLException("Invalid statementCacheSize: " + property);
+      }
+    }
+
+    String key = new File(dataDir).getAbsolutePath();
+    ByteForceDB db = acquire(key);
+    return new ByteForceConnection(db, cacheSize, () -> release(key));
+  }
+
+  private static synchronized ByteForceDB acquire(String dataDir) throws SQLException {
+    Shared shared = DATABASES.get(dataDir);
+    if (shared == null) {
+      try {
+        shared = new Shared(new ByteForceDB(dataDir));
+      } catch (RuntimeException e) {
+        throw new SQLException("Cannot open " + dataDir + ": " + e.getMessage(), e);
+      }
+      DATABASES.put(dataDir, shared);
+    }
+    shared.connections++;
+    return shared.db;
+  }
+
+  private static synchronized void release(String dataDir) {
+    Shared shared = DATABASES.get(dataDir);
+    if (shared != null && --shared.connections == 0) {
+      DATABASES.remove(dataDir);
+      shared.db.close();
+    }
+  }
+
+  @Override
+  public boolean acceptsURL(String url) {
+    return url != null && url.startsWith(URL_PREFIX);
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    DriverPropertyInfo cacheSize =
+        new DriverPropertyInfo("statementCacheSize", String.valueOf(DEFAULT_STATEMENT_CACHE_SIZE));
+    cacheSize.description = "Prepared statements cached per connection";
+    return new DriverPropertyInfo[] {cacheSize};
+  }
+
+  @Override
+  public int getMajorVersion() {
+    return 1;
+  }
+
+  @Override
+  public int getMinorVersion() {
+    return 0;
+  }
+
+  @Override
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw unsupported();
+  }
+
+  static SQLFeatureNotSupportedException unsupported() {
+    return new SQLFeatureNotSupportedException("Not supported by ByteForceDB");
+  }
+}
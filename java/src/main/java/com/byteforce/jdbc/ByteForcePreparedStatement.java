@@ -0,0 +1,390 @@
+package com.byteforce.jdbc;
+
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.PreparedQuery;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.BatchUpdateException;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * A JDBC prepared statement over a cached {@link PreparedQuery}. Parameters are converted once to
+ * the engine's value types (Integer, Double, Boolean, String) when they are bound. {@link
+ * #executeBatch()} hands all parameter sets to the engine's batch path, which validates, locks and
+ * persists the table once for the whole batch.
+ */
+public class ByteForcePreparedStatement extends ByteForceStatement implements PreparedStatement {
+  private final PreparedQuery query;
+  private final List<Object> params = new ArrayList<>();
+  private final List<List<Object>> batch = new ArrayList<>();
+
+  ByteForcePreparedStatement(ByteForceConnection connection, PreparedQuery query) {
+    super(connection);
+    this.query = query;
+  }
+
+  @Override
+  public boolean execute() throws SQLException {
+    return run(query, params.isEmpty() ? null : new ArrayList<>(params));
+  }
+
+  @Override
+  public ResultSet executeQuery() throws SQLException {
+    if (!execute()) throw new SQLException("Statement did not return a result set");
+    return getResultSet();
+  }
+
+  @Override
+  public int executeUpdate() throws SQLException {
+    if (execute()) throw new SQLException("Statement returned a result set");
+    return getUpdateCount();
+  }
+
+  @Override
+  public long executeLargeUpdate() throws SQLException {
+    return executeUpdate();
+  }
+
+  @Override
+  public void addBatch() throws SQLException {
+    checkOpen();
+    batch.add(new ArrayList<>(params));
+  }
+
+  @Override
+  public void clearBatch() throws SQLException {
+    checkOpen();
+    batch.clear();
+  }
+
+  /** The engine reports one total for a batch, so each entry is SUCCESS_NO_INFO. */
+  @Override
+  public int[] executeBatch() throws SQLException {
+    checkOpen();
+    List<List<Object>> paramSets = new ArrayList<>(batch);
+    batch.clear();
+    if (paramSets.isEmpty()) return new int[0];
+
+    connection.beginIfNeeded();
+    ExecutionResult result = connection.getSession().executeBatch(query.getSql(), paramSets);
+    if (result.isError()) {
+      throw new BatchUpdateException(result.getMessage(), new int[0]);
+    }
+    int[] counts = new int[paramSets.size()];
+    Arrays.fill(counts, SUCCESS_NO_INFO);
+    return counts;
+  }
+
+  @Override
+  public void clearParameters() throws SQLException {
+    checkOpen();
+    params.clear();
+  }
+
+  private void bind(int parameterIndex, Object value) throws SQLException {
+    checkOpen();
+    if (parameterIndex < 1) throw new SQLException("Parameter index starts at 1");
+    while (params.size() < parameterIndex) {
+      params.add(null);
+    }
+    params.set(parameterIndex - 1, value);
+  }
+
+  /** Narrows a value to the type the engine stores for its column type. */
+  private static Object toEngineValue(Object value) throws SQLException {
+    if (value == null
+        || value instanceof Integer
+        || value instanceof Double
+        || value instanceof Boolean
+        || value instanceof String) {
+      return value;
+    }
+    if (value instanceof Long) {
+      long l = (Long) value;
+      return l == (int) l ? (Object) (int) l : value;
+    }
+    if (value instanceof Short || value instanceof Byte) {
+      return ((Number) value).intValue();
+    }
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    if (value instanceof Character) {
+      return value.toString();
+    }
+    throw new SQLException("Unsupported parameter type " + value.getClass().getName());
+  }
+
+  @Override
+  public void setNull(int parameterIndex, int sqlType) throws SQLException {
+    bind(parameterIndex, null);
+  }
+
+  @Override
+  public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+    bind(parameterIndex, null);
+  }
+
+  @Override
+  public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+    bind(parameterIndex, x);
+  }
+
+  @Override
+  public void setByte(int parameterIndex, byte x) throws SQLException {
+    bind(parameterIndex, (int) x);
+  }
+
+  @Override
+  public void setShort(int parameterIndex, short x) throws SQLException {
+    bind(parameterIndex, (int) x);
+  }
+
+  @Override
+  public void setInt(int parameterIndex, int x) throws SQLException {
+    bind(parameterIndex, x);
+  }
+
+  @Override
+  public void setLong(int parameterIndex, long x) throws SQLException {
+    bind(parameterIndex, toEngineValue(x));
+  }
+
+  @Override
+  public void setFloat(int parameterIndex, float x) throws SQLException {
+    bind(parameterIndex, (double) x);
+  }
+
+  @Override
+  public void setDouble(int parameterIndex, double x) throws SQLException {
+    bind(parameterIndex, x);
+  }
+
+  @Override
+  public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+    bind(parameterIndex, x == null ? null : x.doubleValue());
+  }
+
+  @Override
+  public void setString(int parameterIndex, String x) throws SQLException {
+    bind(parameterIndex, x);
+  }
+
+  @Override
+  public void setNString(int parameterIndex, String value) throws SQLException {
+    bind(parameterIndex, value);
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x) throws SQLException {
+    bind(parameterIndex, toEngineValue(x));
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+    bind(parameterIndex, toEngineValue(x));
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength)
+      throws SQLException {
+    bind(parameterIndex, toEngineValue(x));
+  }
+
+  // Streams, LOBs and date/time types are not supported
+
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public ParameterMetaData getParameterMetaData() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setArray(int parameterIndex, Array x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, Blob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, InputStream x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Clob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setDate(int parameterIndex, Date x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setNCharacterStream(int parameterIndex, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setNCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, NClob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setRef(int parameterIndex, Ref x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setRowId(int parameterIndex, RowId x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setTime(int parameterIndex, Time x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setURL(int parameterIndex, URL x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+}
@@ -0,0 +1,1072 @@
+package com.byteforce.jdbc;
+
+import com.byteforce.core.Cursor;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * A forward-only, read-only result set reading straight from a {@link Cursor}: each {@link #next()}
+ * pulls one row from the statement's snapshot and getters read its values in place, without copying
+ * rows into a JDBC-side buffer.
+ */
+public class ByteForceResultSet implements ResultSet {
+  private final ByteForceStatement statement;
+  private final Cursor cursor;
+  private final int maxRows;
+  private int row;
+  private boolean afterLast;
+  private boolean closed;
+
+  ByteForceResultSet(ByteForceStatement statement, Cursor cursor, int maxRows) {
+    this.statement = statement;
+    this.cursor = cursor;
+    this.maxRows = maxRows;
+  }
+
+  @Override
+  public boolean next() throws SQLException {
+    checkOpen();
+    if (afterLast) return false;
+    if ((maxRows > 0 && row >= maxRows) || !cursor.next()) {
+      afterLast = true;
+      cursor.close();
+      return false;
+    }
+    row++;
+    return true;
+  }
+
+  private int position(int columnIndex) throws SQLException {
+    checkOpen();
+    if (row == 0 || afterLast) throw new SQLException("No current row");
+    if (columnIndex < 1 || columnIndex > cursor.getColumnCount()) {
+      throw new SQLException("Column index " + columnIndex + " out of range");
+    }
+    return columnIndex - 1;
+  }
+
+  private SQLException conversionError(RuntimeException e) {
+    return new SQLException(e.getMessage(), "22018", e);
+  }
+
+  @Override
+  public Object getObject(int columnIndex) throws SQLException {
+    return cursor.getObject(position(columnIndex));
+  }
+
+  @Override
+  public String getString(int columnIndex) throws SQLException {
+    return cursor.getString(position(columnIndex));
+  }
+
+  @Override
+  public boolean getBoolean(int columnIndex) throws SQLException {
+    try {
+      return cursor.getBoolean(position(columnIndex));
+    } catch (IllegalArgumentException e) {
+      throw conversionError(e);
+    }
+  }
+
+  @Override
+  public byte getByte(int columnIndex) throws SQLException {
+    return (byte) getInt(columnIndex);
+  }
+
+  @Override
+  public short getShort(int columnIndex) throws SQLException {
+    return (short) getInt(columnIndex);
+  }
+
+  @Override
+  public int getInt(int columnIndex) throws SQLException {
+    try {
+      return cursor.getInt(position(columnIndex));
+    } catch (IllegalArgumentException e) {
+      throw conversionError(e);
+    }
+  }
+
+  @Override
+  public long getLong(int columnIndex) throws SQLException {
+    try {
+      return cursor.getLong(position(columnIndex));
+    } catch (IllegalArgumentException e) {
+      throw conversionError(e);
+    }
+  }
+
+  @Override
+  public float getFloat(int columnIndex) throws SQLException {
+    return (float) getDouble(columnIndex);
+  }
+
+  @Override
+  public double getDouble(int columnIndex) throws SQLException {
+    try {
+      return cursor.getDouble(position(columnIndex));
+    } catch (IllegalArgumentException e) {
+      throw conversionError(e);
+    }
+  }
+
+  @Override
+  public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+    Object value = getObject(columnIndex);
+    if (value == null) return null;
+    if (value instanceof Integer || value instanceof Long) {
+      return BigDecimal.valueOf(((Number) value).longValue());
+    }
+    if (value instanceof Number) return BigDecimal.valueOf(((Number) value).doubleValue());
+    throw new SQLException("Column " + columnIndex + " is not numeric: " + value, "22018");
+  }
+
+  @Override
+  public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+    Object value = getObject(columnIndex);
+    if (value == null) return null;
+    if (type.isInstance(value)) return type.cast(value);
+    if (type == Long.class) return type.cast(getLong(columnIndex));
+    if (type == Double.class) return type.cast(getDouble(columnIndex));
+    if (type == String.class) return type.cast(value.toString());
+    if (type == BigDecimal.class) return type.cast(getBigDecimal(columnIndex));
+    throw new SQLException("Cannot convert " + value + " to " + type.getName(), "22018");
+  }
+
+  @Override
+  public int findColumn(String columnLabel) throws SQLException {
+    checkOpen();
+    try {
+      return cursor.findColumn(columnLabel) + 1;
+    } catch (IllegalArgumentException e) {
+      throw new SQLException(e.getMessage(), "42S22", e);
+    }
+  }
+
+  @Override
+  public Object getObject(String columnLabel) throws SQLException {
+    return getObject(findColumn(columnLabel));
+  }
+
+  @Override
+  public String getString(String columnLabel) throws SQLException {
+    return getString(findColumn(columnLabel));
+  }
+
+  @Override
+  public String getNString(int columnIndex) throws SQLException {
+    return getString(columnIndex);
+  }
+
+  @Override
+  public String getNString(String columnLabel) throws SQLException {
+    return getString(findColumn(columnLabel));
+  }
+
+  @Override
+  public boolean getBoolean(String columnLabel) throws SQLException {
+    return getBoolean(findColumn(columnLabel));
+  }
+
+  @Override
+  public byte getByte(String columnLabel) throws SQLException {
+    return getByte(findColumn(columnLabel));
+  }
+
+  @Override
+  public short getShort(String columnLabel) throws SQLException {
+    return getShort(findColumn(columnLabel));
+  }
+
+  @Override
+  public int getInt(String columnLabel) throws SQLException {
+    return getInt(findColumn(columnLabel));
+  }
+
+  @Override
+  public long getLong(String columnLabel) throws SQLException {
+    return getLong(findColumn(columnLabel));
+  }
+
+  @Override
+  public float getFloat(String columnLabel) throws SQLException {
+    return getFloat(findColumn(columnLabel));
+  }
+
+  @Override
+  public double getDouble(String columnLabel) throws SQLException {
+    return getDouble(findColumn(columnLabel));
+  }
+
+  @Override
+  public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel));
+  }
+
+  @Override
+  public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+    return getObject(findColumn(columnLabel), type);
+  }
+
+  @Override
+  public boolean wasNull() throws SQLException {
+    checkOpen();
+    return cursor.wasNull();
+  }
+
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException {
+    checkOpen();
+    return new ByteForceResultSetMetaData(cursor);
+  }
+
+  @Override
+  public Statement getStatement() throws SQLException {
+    checkOpen();
+    return statement;
+  }
+
+  @Override
+  public int getRow() throws SQLException {
+    checkOpen();
+    return afterLast ? 0 : row;
+  }
+
+  @Override
+  public boolean isBeforeFirst() throws SQLException {
+    checkOpen();
+    return row == 0 && !afterLast;
+  }
+
+  @Override
+  public boolean isAfterLast() throws SQLException {
+    checkOpen();
+    return afterLast && row > 0;
+  }
+
+  @Override
+  public boolean isFirst() throws SQLException {
+    checkOpen();
+    return row == 1 && !afterLast;
+  }
+
+  @Override
+  public int getType() {
+    return TYPE_FORWARD_ONLY;
+  }
+
+  @Override
+  public int getConcurrency() {
+    return CONCUR_READ_ONLY;
+  }
+
+  @Override
+  public int getHoldability() {
+    return CLOSE_CURSORS_AT_COMMIT;
+  }
+
+  @Override
+  public int getFetchDirection() {
+    return FETCH_FORWARD;
+  }
+
+  @Override
+  public void setFetchDirection(int direction) throws SQLException {
+    if (direction != FETCH_FORWARD) throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public int getFetchSize() {
+    return 0;
+  }
+
+  @Override
+  public void setFetchSize(int rows) {}
+
+  @Override
+  public SQLWarning getWarnings() {
+    return null;
+  }
+
+  @Override
+  public void clearWarnings() {}
+
+  @Override
+  public String getCursorName() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  private void checkOpen() throws SQLException {
+    if (closed) throw new SQLException("Result set is closed");
+  }
+
+  /** Releases the cursor, and with it the snapshot it pins. */
+  @Override
+  public void close() {
+    if (closed) return;
+    closed = true;
+    cursor.close();
+    statement.resultSetClosed(this);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) return iface.cast(this);
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  // Scrolling, updates, LOBs and date/time types are not supported
+
+  @Override
+  public boolean absolute(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void afterLast() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void beforeFirst() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void cancelRowUpdates() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void deleteRow() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean first() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Array getArray(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Array getArray(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public InputStream getAsciiStream(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public InputStream getAsciiStream(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public BigDecimal getBigDecimal(String columnLabel, int x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public BigDecimal getBigDecimal(int columnIndex, int x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public InputStream getBinaryStream(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public InputStream getBinaryStream(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Blob getBlob(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Blob getBlob(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public byte[] getBytes(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public byte[] getBytes(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Reader getCharacterStream(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Reader getCharacterStream(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Clob getClob(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Clob getClob(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Date getDate(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Date getDate(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Reader getNCharacterStream(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Reader getNCharacterStream(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public NClob getNClob(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public NClob getNClob(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Ref getRef(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Ref getRef(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public RowId getRowId(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public RowId getRowId(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public SQLXML getSQLXML(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public SQLXML getSQLXML(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Time getTime(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Time getTime(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Timestamp getTimestamp(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Timestamp getTimestamp(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public URL getURL(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public URL getURL(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void insertRow() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean isLast() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean last() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void moveToCurrentRow() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void moveToInsertRow() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean previous() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void refreshRow() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean relative(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean rowDeleted() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean rowInserted() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean rowUpdated() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateArray(String columnLabel, Array x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateArray(int columnIndex, Array x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(String columnLabel, InputStream x, long length)
+      throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(String columnLabel, InputStream x, int length)
+      throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(String columnLabel, InputStream x, long length)
+      throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBlob(String columnLabel, Blob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBlob(String columnLabel, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBlob(String columnLabel, InputStream x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBlob(int columnIndex, Blob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBlob(int columnIndex, InputStream x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBlob(int columnIndex, InputStream x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateByte(String columnLabel, byte x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateByte(int columnIndex, byte x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(String columnLabel, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(String columnLabel, Reader x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateClob(String columnLabel, Clob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateClob(String columnLabel, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateClob(String columnLabel, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateClob(int columnIndex, Clob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateClob(int columnIndex, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateClob(int columnIndex, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateDate(String columnLabel, Date x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateDate(int columnIndex, Date x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateDouble(String columnLabel, double x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateDouble(int columnIndex, double x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateFloat(String columnLabel, float x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateFloat(int columnIndex, float x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateInt(String columnLabel, int x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateInt(int columnIndex, int x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateLong(String columnLabel, long x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateLong(int columnIndex, long x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNCharacterStream(String columnLabel, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNCharacterStream(String columnLabel, Reader x, long length)
+      throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNClob(String columnLabel, NClob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNClob(String columnLabel, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNClob(String columnLabel, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNClob(int columnIndex, NClob x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNClob(int columnIndex, Reader x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNClob(int columnIndex, Reader x, long length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNString(String columnLabel, String x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNString(int columnIndex, String x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNull(String columnLabel) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateNull(int columnIndex) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateObject(String columnLabel, Object x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateObject(String columnLabel, Object x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateObject(int columnIndex, Object x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateObject(int columnIndex, Object x, int length) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateRef(String columnLabel, Ref x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateRef(int columnIndex, Ref x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateRow() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateRowId(String columnLabel, RowId x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateRowId(int columnIndex, RowId x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateSQLXML(String columnLabel, SQLXML x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateSQLXML(int columnIndex, SQLXML x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateShort(String columnLabel, short x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateShort(int columnIndex, short x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateString(String columnLabel, String x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateString(int columnIndex, String x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateTime(String columnLabel, Time x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateTime(int columnIndex, Time x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+}
@@ -0,0 +1,164 @@
+package com.byteforce.jdbc;
+
+import com.byteforce.core.Cursor;
+import com.byteforce.core.models.DataType;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/** Column names and types of a result, taken from the cursor's header. */
+class ByteForceResultSetMetaData implements ResultSetMetaData {
+  private final Cursor cursor;
+
+  ByteForceResultSetMetaData(Cursor cursor) {
+    this.cursor = cursor;
+  }
+
+  private DataType type(int column) throws SQLException {
+    if (column < 1 || column > cursor.getColumnCount()) {
+      throw new SQLException("Column index " + column + " out of range");
+    }
+    return cursor.getColumnType(column - 1);
+  }
+
+  @Override
+  public int getColumnCount() {
+    return cursor.getColumnCount();
+  }
+
+  @Override
+  public String getColumnName(int column) throws SQLException {
+    type(column);
+    return cursor.getColumns().get(column - 1);
+  }
+
+  @Override
+  public String getColumnLabel(int column) throws SQLException {
+    return getColumnName(column);
+  }
+
+  @Override
+  public int getColumnType(int column) throws SQLException {
+    DataType type = type(column);
+    if (type == null) return Types.JAVA_OBJECT;
+    switch (type) {
+      case INTEGER:
+        return Types.INTEGER;
+      case FLOAT:
+        return Types.DOUBLE;
+      case BOOLEAN:
+        return Types.BOOLEAN;
+      default:
+        return Types.VARCHAR;
+    }
+  }
+
+  @Override
+  public String getColumnTypeName(int column) throws SQLException {
+    DataType type = type(column);
+    return type != null ? type.name() : "OTHER";
+  }
+
+  @Override
+  public String getColumnClassName(int column) throws SQLException {
+    DataType type = type(column);
+    if (type == null) return Object.class.getName();
+    switch (type) {
+      case INTEGER:
+        return Integer.class.getName();
+      case FLOAT:
+        return Double.class.getName();
+      case BOOLEAN:
+        return Boolean.class.getName();
+      default:
+        return String.class.getName();
+    }
+  }
+
+  @Override
+  public boolean isAutoIncrement(int column) {
+    return false;
+  }
+
+  @Override
+  public boolean isCaseSensitive(int column) throws SQLException {
+    return type(column) == DataType.TEXT;
+  }
+
+  @Override
+  public boolean isSearchable(int column) {
+    return true;
+  }
+
+  @Override
+  public boolean isCurrency(int column) {
+    return false;
+  }
+
+  @Override
+  public int isNullable(int column) {
+    return columnNullableUnknown;
+  }
+
+  @Override
+  public boolean isSigned(int column) throws SQLException {
+    DataType type = type(column);
+    return type == DataType.INTEGER || type == DataType.FLOAT;
+  }
+
+  @Override
+  public int getColumnDisplaySize(int column) {
+    return 0;
+  }
+
+  @Override
+  public String getSchemaName(int column) {
+    return "";
+  }
+
+  @Override
+  public int getPrecision(int column) {
+    return 0;
+  }
+
+  @Override
+  public int getScale(int column) {
+    return 0;
+  }
+
+  @Override
+  public String getTableName(int column) {
+    return "";
+  }
+
+  @Override
+  public String getCatalogName(int column) {
+    return "";
+  }
+
+  @Override
+  public boolean isReadOnly(int column) {
+    return true;
+  }
+
+  @Override
+  public boolean isWritable(int column) {
+    return false;
+  }
+
+  @Override
+  public boolean isDefinitelyWritable(int column) {
+    return false;
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) return iface.cast(this);
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+}
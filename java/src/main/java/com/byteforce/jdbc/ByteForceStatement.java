@@ -0,0 +1,361 @@
+package com.byteforce.jdbc;
+
+import com.byteforce.core.Cursor;
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.PreparedQuery;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A JDBC statement for SQL without placeholders. At most one result set is open at a time. */
+public class ByteForceStatement implements Statement {
+  final ByteForceConnection connection;
+  private final List<String> batch = new ArrayList<>();
+  private ByteForceResultSet resultSet;
+  private int updateCount = -1;
+  private int maxRows;
+  private int fetchSize;
+  private boolean closeOnCompletion;
+  private boolean closed;
+
+  ByteForceStatement(ByteForceConnection connection) {
+    this.connection = connection;
+  }
+
+  /**
+   * Runs a statement and leaves its outcome in {@link #getResultSet()} or {@link
+   * #getUpdateCount()}. SELECTs are read through a cursor, so rows are produced as the caller
+   * advances the result set.
+   */
+  boolean run(PreparedQuery query, List<Object> params) throws SQLException {
+    checkOpen();
+    closeResultSet();
+    updateCount = -1;
+    connection.beginIfNeeded();
+
+    if ("select".equals(query.getType())) {
+      Cursor cursor;
+      try {
+        cursor = query.query(params);
+      } catch (RuntimeException e) {
+        throw new SQLException(e.getMessage(), e);
+      }
+      resultSet = new ByteForceResultSet(this, cursor, maxRows);
+      return true;
+    }
+    ExecutionResult result = ByteForceConnection.check(query.execute(params));
+    if (result.isQuery()) {
+      resultSet = new ByteForceResultSet(this, Cursor.of(result.getRows()), maxRows);
+      return true;
+    }
+    updateCount = result.getAffectedRows();
+    return false;
+  }
+
+  @Override
+  public boolean execute(String sql) throws SQLException {
+    return run(connection.prepare(sql), null);
+  }
+
+  @Override
+  public ResultSet executeQuery(String sql) throws SQLException {
+    if (!execute(sql)) throw new SQLException("Statement did not return a result set: " + sql);
+    return resultSet;
+  }
+
+  @Override
+  public int executeUpdate(String sql) throws SQLException {
+    if (execute(sql)) throw new SQLException("Statement returned a result set: " + sql);
+    return updateCount;
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql) throws SQLException {
+    return executeUpdate(sql);
+  }
+
+  @Override
+  public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+    if (autoGeneratedKeys != NO_GENERATED_KEYS) throw ByteForceDriver.unsupported();
+    return execute(sql);
+  }
+
+  @Override
+  public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public boolean execute(String sql, String[] columnNames) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+    if (autoGeneratedKeys != NO_GENERATED_KEYS) throw ByteForceDriver.unsupported();
+    return executeUpdate(sql);
+  }
+
+  @Override
+  public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void addBatch(String sql) throws SQLException {
+    checkOpen();
+    batch.add(sql);
+  }
+
+  @Override
+  public void clearBatch() throws SQLException {
+    checkOpen();
+    batch.clear();
+  }
+
+  /**
+   * Runs the batched statements in one transaction, so the tables they touch are persisted once. If
+   * a transaction is already open they join it instead.
+   */
+  @Override
+  public int[] executeBatch() throws SQLException {
+    checkOpen();
+    List<String> statements = new ArrayList<>(batch);
+    batch.clear();
+    connection.beginIfNeeded();
+    boolean ownTransaction = !connection.getSession().isInTransaction();
+    if (ownTransaction) {
+      ByteForceConnection.check(connection.getSession().execute("BEGIN"));
+    }
+
+    int[] counts = new int[statements.size()];
+    for (int i = 0; i < statements.size(); i++) {
+      ExecutionResult result = connection.getSession().execute(statements.get(i));
+      if (result.isError()) {
+        if (ownTransaction) connection.getSession().execute("ROLLBACK");
+        throw new BatchUpdateException(result.getMessage(), Arrays.copyOf(counts, i));
+      }
+      counts[i] = result.getAffectedRows();
+    }
+    if (ownTransaction) {
+      ExecutionResult commit = connection.getSession().execute("COMMIT");
+      if (commit.isError()) throw new BatchUpdateException(commit.getMessage(), new int[0]);
+    }
+    return counts;
+  }
+
+  @Override
+  public ResultSet getResultSet() throws SQLException {
+    checkOpen();
+    return resultSet;
+  }
+
+  @Override
+  public int getUpdateCount() throws SQLException {
+    checkOpen();
+    return updateCount;
+  }
+
+  @Override
+  public long getLargeUpdateCount() throws SQLException {
+    return getUpdateCount();
+  }
+
+  @Override
+  public boolean getMoreResults() throws SQLException {
+    checkOpen();
+    closeResultSet();
+    updateCount = -1;
+    return false;
+  }
+
+  @Override
+  public boolean getMoreResults(int current) throws SQLException {
+    return getMoreResults();
+  }
+
+  @Override
+  public ResultSet getGeneratedKeys() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  private void closeResultSet() {
+    if (resultSet != null) {
+      ByteForceResultSet open = resultSet;
+      resultSet = null;
+      open.close();
+    }
+  }
+
+  /** Called when the current result set is closed. */
+  void resultSetClosed(ByteForceResultSet closedResultSet) {
+    if (resultSet == closedResultSet) {
+      resultSet = null;
+      if (closeOnCompletion) close();
+    }
+  }
+
+  void checkOpen() throws SQLException {
+    if (closed) throw new SQLException("Statement is closed");
+    connection.checkOpen();
+  }
+
+  @Override
+  public void close() {
+    if (closed) return;
+    closed = true;
+    closeResultSet();
+    connection.statementClosed(this);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public void closeOnCompletion() throws SQLException {
+    checkOpen();
+    closeOnCompletion = true;
+  }
+
+  @Override
+  public boolean isCloseOnCompletion() throws SQLException {
+    checkOpen();
+    return closeOnCompletion;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    checkOpen();
+    return connection;
+  }
+
+  @Override
+  public int getMaxRows() throws SQLException {
+    checkOpen();
+    return maxRows;
+  }
+
+  @Override
+  public void setMaxRows(int max) throws SQLException {
+    checkOpen();
+    if (max < 0) throw new SQLException("maxRows must not be negative");
+    maxRows = max;
+  }
+
+  @Override
+  public long getLargeMaxRows() throws SQLException {
+    return getMaxRows();
+  }
+
+  @Override
+  public void setLargeMaxRows(long max) throws SQLException {
+    setMaxRows((int) Math.min(max, Integer.MAX_VALUE));
+  }
+
+  /** Rows already stream from a cursor one at a time; the hint is only remembered. */
+  @Override
+  public void setFetchSize(int rows) throws SQLException {
+    checkOpen();
+    fetchSize = rows;
+  }
+
+  @Override
+  public int getFetchSize() throws SQLException {
+    checkOpen();
+    return fetchSize;
+  }
+
+  @Override
+  public void setFetchDirection(int direction) throws SQLException {
+    if (direction != ResultSet.FETCH_FORWARD) throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public int getFetchDirection() {
+    return ResultSet.FETCH_FORWARD;
+  }
+
+  @Override
+  public int getResultSetConcurrency() {
+    return ResultSet.CONCUR_READ_ONLY;
+  }
+
+  @Override
+  public int getResultSetType() {
+    return ResultSet.TYPE_FORWARD_ONLY;
+  }
+
+  @Override
+  public int getResultSetHoldability() {
+    return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+  }
+
+  @Override
+  public int getMaxFieldSize() {
+    return 0;
+  }
+
+  @Override
+  public void setMaxFieldSize(int max) {}
+
+  @Override
+  public void setEscapeProcessing(boolean enable) {}
+
+  @Override
+  public int getQueryTimeout() {
+    return 0;
+  }
+
+  @Override
+  public void setQueryTimeout(int seconds) {}
+
+  @Override
+  public void cancel() throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public SQLWarning getWarnings() {
+    return null;
+  }
+
+  @Override
+  public void clearWarnings() {}
+
+  @Override
+  public void setCursorName(String name) throws SQLException {
+    throw ByteForceDriver.unsupported();
+  }
+
+  @Override
+  public void setPoolable(boolean poolable) {}
+
+  @Override
+  public boolean isPoolable() {
+    return false;
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) return iface.cast(this);
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+}
@@ -0,0 +1,201 @@
+package com.byteforce.server;
+
+import com.byteforce.core.ExecutionResult;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client for {@link ByteForceServer}. Results come back as the same {@link ExecutionResult} that
+ * {@link com.byteforce.core.ByteForceDB#execute} returns, with SQL errors reported in the result
+ * rather than thrown; only I/O failures throw. The connection keeps server-side state (an open
+ * transaction, prepared statements), so a client is safe to share between threads but its requests
+ * are serialized.
+ */
+public class ByteForceClient implements AutoCloseable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final Protocol.FrameWriter out;
+
+  private ByteForceClient(Socket socket) throws IOException {
+    this.socket = socket;
+    this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+    this.out =
+        new Protocol.FrameWriter(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+  }
+
+  public static ByteForceClient connect(String host, int port) throws IOException {
+    Socket socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    return new ByteForceClient(socket);
+  }
+
+  public ExecutionResult execute(String sql, Object... params) throws IOException {
+    return execute(sql, Arrays.asList(params));
+  }
+
+  public synchronized ExecutionResult execute(String sql, List<Object> params) throws IOException {
+    sendQuery(sql, params);
+    out.flush();
+    return readResult();
+  }
+
+  /**
+   * Sends every statement before reading any response, so they share round trips instead of waiting
+   * for each other. Results are in statement order.
+   */
+  public synchronized List<ExecutionResult> pipeline(List<String> sqls) throws IOException {
+    for (String sql : sqls) {
+      sendQuery(sql, null);
+    }
+    out.flush();
+    List<ExecutionResult> results = new ArrayList<>(sqls.size());
+    for (int i = 0; i < sqls.size(); i++) {
+      results.add(readResult());
+    }
+    return results;
+  }
+
+  /**
+   * Parses {@code sql} once on the server; fails with IllegalArgumentException if it is invalid.
+   */
+  public synchronized Statement prepare(String sql) throws IOException {
+    DataOutputStream payload = out.begin(Protocol.PREPARE);
+    Protocol.writeString(payload, sql);
+    out.end();
+    out.flush();
+
+    int type = Protocol.readFrame(in);
+    if (type == Protocol.ERROR) {
+      throw new IllegalArgumentException(Protocol.readString(in));
+    }
+    expect(type, Protocol.PREPARED);
+    int handle = in.readInt();
+    return new Statement(handle, sql, Protocol.readString(in));
+  }
+
+  private void sendQuery(String sql, List<Object> params) throws IOException {
+    DataOutputStream payload = out.begin(Protocol.QUERY);
+    Protocol.writeString(payload, sql);
+    Protocol.writeValues(payload, params);
+    out.end();
+  }
+
+  private ExecutionResult readResult() throws IOException {
+    int type = Protocol.readFrame(in);
+    if (type == Protocol.ERROR) {
+      return ExecutionResult.error(Protocol.readString(in));
+    }
+    if (type == Protocol.DONE) {
+      int affectedRows = in.readInt();
+      return ExecutionResult.success(Protocol.readString(in), affectedRows);
+    }
+    expect(type, Protocol.COLUMNS);
+
+    int width = in.readInt();
+    String[] columns = new String[width];
+    for (int i = 0; i < width; i++) {
+      columns[i] = Protocol.readString(in);
+    }
+    List<Map<String, Object>> rows = new ArrayList<>();
+    while ((type = Protocol.readFrame(in)) == Protocol.ROW) {
+      Map<String, Object> row = new LinkedHashMap<>();
+      for (String column : columns) {
+        row.put(column, Protocol.readValue(in));
+      }
+      rows.add(row);
+    }
+    if (type == Protocol.ERROR) {
+      return ExecutionResult.error(Protocol.readString(in));
+    }
+    expect(type, Protocol.DONE);
+    in.readInt();
+    Protocol.readString(in);
+    return ExecutionResult.queryResult(rows);
+  }
+
+  private static void expect(int type, byte expected) throws IOException {
+    if (type < 0) throw new IOException("Server closed the connection");
+    if (type != expected) {
+      throw new IOException("Unexpected frame " + type + ", expected " + expected);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+
+  /** A statement prepared on the server, bound to this client's connection. */
+  public class Statement implements AutoCloseable {
+    private final int handle;
+    private final String sql;
+    private final String type;
+
+    private Statement(int handle, String sql, String type) {
+      this.handle = handle;
+      this.sql = sql;
+      this.type = type;
+    }
+
+    public ExecutionResult execute(Object... params) throws IOException {
+      return execute(Arrays.asList(params));
+    }
+
+    public ExecutionResult execute(List<Object> params) throws IOException {
+      synchronized (ByteForceClient.this) {
+        DataOutputStream payload = out.begin(Protocol.EXECUTE);
+        payload.writeInt(handle);
+        Protocol.writeValues(payload, params);
+        out.end();
+        out.flush();
+        return readResult();
+      }
+    }
+
+    /** Runs the statement once per parameter set in one server-side transaction and round trip. */
+    public ExecutionResult executeBatch(List<List<Object>> paramSets) throws IOException {
+      synchronized (ByteForceClient.this) {
+        DataOutputStream payload = out.begin(Protocol.BATCH);
+        payload.writeInt(handle);
+        payload.writeInt(paramSets.size());
+        for (List<Object> params : paramSets) {
+          Protocol.writeValues(payload, params);
+        }
+        out.end();
+        out.flush();
+        return readResult();
+      }
+    }
+
+    public String getSql() {
+      return sql;
+    }
+
+    /** Statement type as the server parsed it: "select", "insert", ... */
+    public String getType() {
+      return type;
+    }
+
+    @Override
+    public void close() throws IOException {
+      synchronized (ByteForceClient.this) {
+        DataOutputStream payload = out.begin(Protocol.CLOSE);
+        payload.writeInt(handle);
+        out.end();
+        out.flush();
+        readResult();
+      }
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.byteforce.server;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.models.RowStorage;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares one {@link ByteForceDB} with other processes over TCP using the binary protocol described
+ * in {@link Protocol}. Each connection is served by its own virtual thread, so idle or blocked
+ * clients cost a few kilobytes rather than a platform thread each. Talk to it with {@link
+ * ByteForceClient}.
+ *
+ * <p>Clients are not authenticated and may run any statement, including {@code COPY}, which reads
+ * files on the server. It therefore listens on the loopback interface unless given another bind
+ * address; only expose it on a network where every host is trusted.
+ */
+public class ByteForceServer implements AutoCloseable {
+  public static final int DEFAULT_PORT = 5454;
+  public static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+
+  private final ByteForceDB db;
+  private final ServerSocket serverSocket;
+  private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+  private final AtomicLong accepted = new AtomicLong();
+  private Thread acceptor;
+  private volatile boolean closed;
+
+  /** Binds to {@code port} on loopback; port 0 picks a free one, see {@link #getPort()}. */
+  public ByteForceServer(ByteForceDB db, int port) throws IOException {
+    this(db, DEFAULT_BIND_ADDRESS, port);
+  }
+
+  /** Binds to {@code port} on {@code bindAddress}, such as "0.0.0.0" for every interface. */
+  public ByteForceServer(ByteForceDB db, String bindAddress, int port) throws IOException {
+    this.db = db;
+    this.serverSocket = new ServerSocket();
+    this.serverSocket.setReuseAddress(true);
+    this.serverSocket.bind(new InetSocketAddress(bindAddress, port));
+  }
+
+  public synchronized void start() {
+    if (acceptor != null) throw new IllegalStateException("Server already started");
+    acceptor = Thread.ofPlatform().name("byteforce-server-accept").start(this::acceptLoop);
+  }
+
+  private void acceptLoop() {
+    while (!closed) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+      } catch (IOException e) {
+        if (!closed) System.err.println("Accept failed: " + e.getMessage());
+        continue;
+      }
+      Connection connection = new Connection(this, db, socket);
+      connections.add(connection);
+      long id = accepted.incrementAndGet();
+      Thread.ofVirtual().name("byteforce-conn-" + id).start(connection);
+    }
+  }
+
+  void disconnected(Connection connection) {
+    connections.remove(connection);
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  public InetAddress getBindAddress() {
+    return serverSocket.getInetAddress();
+  }
+
+  /** Connections currently open. */
+  public int getConnectionCount() {
+    return connections.size();
+  }
+
+  /** Connections accepted since the server started. */
+  public long getAcceptedConnections() {
+    return accepted.get();
+  }
+
+  /** Stops accepting and drops open connections, rolling back their open transactions. */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      System.err.println("Failed to close server socket: " + e.getMessage());
+    }
+    for (Connection connection : connections) {
+      try {
+        connection.getSocket().close();
+      } catch (IOException e) {
+        // Already gone
+      }
+    }
+    Thread thread;
+    synchronized (this) {
+      thread = acceptor;
+    }
+    if (thread != null) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Usage: ByteForceServer [port] [data dir] [bind address] */
+  public static void main(String[] args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    String dataDir = args.length > 1 ? args[1] : "data";
+    String bindAddress = args.length > 2 ? args[2] : DEFAULT_BIND_ADDRESS;
+
+    ByteForceDB db =
+        new ByteForceDB(
+            dataDir, ByteForceDB.DEFAULT_PLAN_CACHE_SIZE, 0, RowStorage.fromSystemProperty());
+    db.startReplicationFromSystemProperties();
+    ByteForceServer server = new ByteForceServer(db, bindAddress, port);
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  server.close();
+                  db.close();
+                }));
+    server.start();
+    System.out.println(
+        "ByteForce server listening on "
+            + server.getBindAddress().getHostAddress()
+            + ":"
+            + server.getPort()
+            + " ("
+            + dataDir
+            + ")");
+    server.acceptor.join();
+  }
+}
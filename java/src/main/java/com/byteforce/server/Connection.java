@@ -0,0 +1,207 @@
+package com.byteforce.server;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.Cursor;
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.PreparedQuery;
+import com.byteforce.core.Session;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves one client socket on its own virtual thread. The connection owns a {@link Session}, so a
+ * transaction opened with BEGIN spans its later requests, and the statements it prepared.
+ */
+final class Connection implements Runnable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ByteForceServer server;
+  private final ByteForceDB db;
+  private final Socket socket;
+  private final Map<Integer, PreparedQuery> statements = new HashMap<>();
+  private int nextHandle = 1;
+
+  Connection(ByteForceServer server, ByteForceDB db, Socket socket) {
+    this.server = server;
+    this.db = db;
+    this.socket = socket;
+  }
+
+  Socket getSocket() {
+    return socket;
+  }
+
+  @Override
+  public void run() {
+    try (Socket s = socket;
+        Session session = db.openSession()) {
+      DataInputStream in =
+          new DataInputStream(new BufferedInputStream(s.getInputStream(), BUFFER_SIZE));
+      Protocol.FrameWriter out =
+          new Protocol.FrameWriter(new BufferedOutputStream(s.getOutputStream(), BUFFER_SIZE));
+      int type;
+      while ((type = Protocol.readFrame(in)) >= 0) {
+        handle((byte) type, in, out, session);
+        // Hold responses back while pipelined requests are waiting, then send them together
+        if (in.available() == 0) {
+          out.flush();
+        }
+      }
+    } catch (IOException e) {
+      // The client went away or broke the protocol; either way this connection is done
+    } finally {
+      server.disconnected(this);
+    }
+  }
+
+  private void handle(byte type, DataInputStream in, Protocol.FrameWriter out, Session session)
+      throws IOException {
+    switch (type) {
+      case Protocol.QUERY:
+        {
+          String sql = Protocol.readString(in);
+          List<Object> params = Protocol.readValues(in);
+          PreparedQuery query;
+          try {
+            query = session.prepare(sql);
+          } catch (RuntimeException e) {
+            error(out, "Error: " + e.getMessage());
+            return;
+          }
+          run(query, params, out);
+          return;
+        }
+      case Protocol.PREPARE:
+        {
+          String sql = Protocol.readString(in);
+          PreparedQuery query;
+          try {
+            query = session.prepare(sql);
+          } catch (RuntimeException e) {
+            error(out, "Error: " + e.getMessage());
+            return;
+          }
+          int handle = nextHandle++;
+          statements.put(handle, query);
+          DataOutputStream payload = out.begin(Protocol.PREPARED);
+          payload.writeInt(handle);
+          Protocol.writeString(payload, query.getType());
+          out.end();
+          return;
+        }
+      case Protocol.EXECUTE:
+        {
+          PreparedQuery query = statements.get(in.readInt());
+          List<Object> params = Protocol.readValues(in);
+          if (query == null) {
+            error(out, "Error: Unknown statement handle");
+            return;
+          }
+          run(query, params, out);
+          return;
+        }
+      case Protocol.BATCH:
+        {
+          PreparedQuery query = statements.get(in.readInt());
+          int count = in.readInt();
+          if (count < 0) throw new IOException("Bad batch size " + count);
+          List<List<Object>> paramSets = new ArrayList<>(Math.min(count, 1024));
+          for (int i = 0; i < count; i++) {
+            paramSets.add(Protocol.readValues(in));
+          }
+          if (query == null) {
+            error(out, "Error: Unknown statement handle");
+            return;
+          }
+          respond(session.executeBatch(query.getSql(), paramSets), out);
+          return;
+        }
+      case Protocol.CLOSE:
+        statements.remove(in.readInt());
+        done(out, 0, null);
+        return;
+      default:
+        // The payload of an unknown frame cannot be skipped reliably
+        throw new IOException("Unknown frame type " + type);
+    }
+  }
+
+  private void run(PreparedQuery query, List<Object> params, Protocol.FrameWriter out)
+      throws IOException {
+    if (params.isEmpty()) params = null;
+    if (!"select".equals(query.getType())) {
+      respond(query.execute(params), out);
+      return;
+    }
+
+    // Stream rows straight from the cursor instead of materializing the result
+    try (Cursor cursor = query.query(params)) {
+      writeColumns(out, cursor.getColumns());
+      int width = cursor.getColumnCount();
+      while (cursor.next()) {
+        DataOutputStream payload = out.begin(Protocol.ROW);
+        for (int i = 0; i < width; i++) {
+          Protocol.writeValue(payload, cursor.getObject(i));
+        }
+        out.end();
+      }
+    } catch (RuntimeException e) {
+      error(out, "Error: " + e.getMessage());
+      return;
+    }
+    done(out, 0, null);
+  }
+
+  private void respond(ExecutionResult result, Protocol.FrameWriter out) throws IOException {
+    if (result.isError()) {
+      error(out, result.getMessage());
+      return;
+    }
+    if (result.isQuery()) {
+      List<Map<String, Object>> rows = result.getRows();
+      List<String> columns =
+          rows.isEmpty() ? new ArrayList<>() : new ArrayList<>(rows.get(0).keySet());
+      writeColumns(out, columns);
+      for (Map<String, Object> row : rows) {
+        DataOutputStream payload = out.begin(Protocol.ROW);
+        for (String column : columns) {
+          Protocol.writeValue(payload, row.get(column));
+        }
+        out.end();
+      }
+    }
+    done(out, result.getAffectedRows(), result.getMessage());
+  }
+
+  private static void writeColumns(Protocol.FrameWriter out, List<String> columns)
+      throws IOException {
+    DataOutputStream payload = out.begin(Protocol.COLUMNS);
+    payload.writeInt(columns.size());
+    for (String column : columns) {
+      Protocol.writeString(payload, column);
+    }
+    out.end();
+  }
+
+  private static void done(Protocol.FrameWriter out, int affectedRows, String message)
+      throws IOException {
+    DataOutputStream payload = out.begin(Protocol.DONE);
+    payload.writeInt(affectedRows);
+    Protocol.writeString(payload, message);
+    out.end();
+  }
+
+  private static void error(Protocol.FrameWriter out, String message) throws IOException {
+    DataOutputStream payload = out.begin(Protocol.ERROR);
+    Protocol.writeString(payload, message);
+    out.end();
+  }
+}
@@ -0,0 +1,196 @@
+package com.byteforce.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The wire format shared by {@link ByteForceServer} and {@link ByteForceClient}. Every frame is a
+ * 4-byte big-endian length, a type byte and a payload; the length counts the type byte and payload.
+ * Strings are a length (-1 for null) followed by UTF-8 bytes, values are a tag byte followed by the
+ * value, and parameter lists are a count followed by values.
+ *
+ * <p>Requests are answered in order, so a client may send several before reading any response. A
+ * SELECT is answered with COLUMNS, one ROW per row and DONE; any other statement with DONE alone.
+ * ERROR can replace DONE at any point of a response.
+ */
+final class Protocol {
+  static final int MAX_FRAME = 64 * 1024 * 1024;
+
+  // Client frames
+  static final byte QUERY = 1; // sql, params
+  static final byte PREPARE = 2; // sql; answered with PREPARED
+  static final byte EXECUTE = 3; // handle, params
+  static final byte BATCH = 4; // handle, count, params...
+  static final byte CLOSE = 5; // handle; answered with DONE
+
+  // Server frames
+  static final byte COLUMNS = 16; // count, names...
+  static final byte ROW = 17; // values, one per column
+  static final byte DONE = 18; // affected rows, message
+  static final byte ERROR = 19; // message
+  static final byte PREPARED = 20; // handle, statement type
+
+  // Value tags
+  private static final byte NULL = 0;
+  private static final byte INT = 1;
+  private static final byte LONG = 2;
+  private static final byte DOUBLE = 3;
+  private static final byte BOOLEAN = 4;
+  private static final byte STRING = 5;
+
+  private Protocol() {}
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) return null;
+    if (length > MAX_FRAME) throw new IOException("String of " + length + " bytes is too long");
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Number) {
+      out.writeByte(DOUBLE);
+      out.writeDouble(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else {
+      out.writeByte(STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  static Object readValue(DataInputStream in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case INT:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case BOOLEAN:
+        return in.readBoolean();
+      case STRING:
+        return readString(in);
+      default:
+        throw new IOException("Unknown value tag " + tag);
+    }
+  }
+
+  static void writeValues(DataOutputStream out, List<Object> values) throws IOException {
+    if (values == null) {
+      out.writeInt(0);
+      return;
+    }
+    out.writeInt(values.size());
+    for (Object value : values) {
+      writeValue(out, value);
+    }
+  }
+
+  static List<Object> readValues(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    if (count < 0 || count > MAX_FRAME) throw new IOException("Bad value count " + count);
+    // Trust the count only as far as the values that actually arrive
+    List<Object> values = new ArrayList<>(Math.min(count, 1024));
+    for (int i = 0; i < count; i++) {
+      values.add(readValue(in));
+    }
+    return values;
+  }
+
+  /**
+   * Reads the header of the next frame and returns its type, or -1 at end of stream. The payload is
+   * then read field by field from the same stream.
+   */
+  static int readFrame(DataInputStream in) throws IOException {
+    int length;
+    try {
+      length = in.readInt();
+    } catch (EOFException e) {
+      return -1;
+    }
+    if (length < 1 || length > MAX_FRAME) throw new IOException("Bad frame length " + length);
+    return in.readByte();
+  }
+
+  /** Builds frames in a reusable buffer so each can be prefixed with its length. */
+  static final class FrameWriter {
+    private final OutputStream out;
+    private final Buffer buffer = new Buffer();
+    private final DataOutputStream payload = new DataOutputStream(buffer);
+
+    FrameWriter(OutputStream out) {
+      this.out = out;
+    }
+
+    /** Starts a frame; write its payload to the returned stream, then call {@link #end()}. */
+    DataOutputStream begin(byte type) throws IOException {
+      buffer.reset();
+      buffer.write(0);
+      buffer.write(0);
+      buffer.write(0);
+      buffer.write(0);
+      buffer.write(type);
+      return payload;
+    }
+
+    void end() throws IOException {
+      buffer.writeLength();
+      out.write(buffer.array(), 0, buffer.size());
+    }
+
+    void flush() throws IOException {
+      out.flush();
+    }
+  }
+
+  private static final class Buffer extends ByteArrayOutputStream {
+    Buffer() {
+      super(256);
+    }
+
+    byte[] array() {
+      return buf;
+    }
+
+    void writeLength() throws IOException {
+      int length = count - 4;
+      if (length > MAX_FRAME) throw new IOException("Frame of " + length + " bytes is too long");
+      buf[0] = (byte) (length >>> 24);
+      buf[1] = (byte) (length >>> 16);
+      buf[2] = (byte) (length >>> 8);
+      buf[3] = (byte) length;
+    }
+  }
+}
@@ -0,0 +1,393 @@
+package com.byteforce.web;
+
+import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.Cursor;
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.PreparedQuery;
+import com.byteforce.core.Session;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+
+/**
+ * JSON access to the engine over HTTP.
+ *
+ * <p>{@code POST /query} takes {@code {"sql": ..., "params": [...]}}. A SELECT is streamed from a
+ * cursor straight to the response, row by row, so the result is never held in memory: as one JSON
+ * document ({@code {"columns": [...], "rows": [[...], ...]}}) or, with {@code ?format=ndjson} or
+ * {@code Accept: application/x-ndjson}, as one JSON object per row. A failure after rows were sent
+ * can no longer change the status, so it is reported as an {@code "error"} field or line at the
+ * end. Other statements answer {@code {"affected_rows": n, "message": ...}}.
+ *
+ * <p>{@code POST /batch} takes either one statement with many parameter sets ({@code {"sql": ...,
+ * "params": [[...], ...]}}), which goes through the engine's batch path, or a list of statements
+ * ({@code {"statements": [{"sql": ..., "params": [...]}, ...]}}), which run in one transaction.
+ *
+ * <p>There is no authentication, so statements that read server files, such as {@code COPY t FROM
+ * '<path>'}, are refused unless the endpoint was created with file access allowed.
+ */
+public class QueryEndpoint {
+  static final String JSON = "application/json";
+  static final String NDJSON = "application/x-ndjson";
+
+  private final ByteForceDB db;
+  private final boolean allowFileAccess;
+
+  public QueryEndpoint(ByteForceDB db) {
+    this(db, false);
+  }
+
+  public QueryEndpoint(ByteForceDB db, boolean allowFileAccess) {
+    this.db = db;
+    this.allowFileAccess = allowFileAccess;
+  }
+
+  private static class Statement {
+    String sql;
+    List<Object> params;
+    List<List<Object>> paramSets;
+    List<Statement> statements;
+  }
+
+  public Object query(Request req, Response res) throws IOException {
+    boolean ndjson = wantsNdjson(req);
+    Statement statement;
+    try {
+      statement = parse(req.body(), false);
+    } catch (IllegalArgumentException | IOException e) {
+      return badRequest(res, e.getMessage());
+    }
+
+    try (Session session = db.openSession()) {
+      PreparedQuery query;
+      try {
+        query = session.prepare(statement.sql);
+      } catch (RuntimeException e) {
+        return badRequest(res, e.getMessage());
+      }
+      if (!allowFileAccess && query.readsFiles()) return forbidden(res);
+      if (!"select".equals(query.getType())) {
+        return respond(res, query.execute(statement.params));
+      }
+
+      Cursor cursor;
+      try {
+        cursor = query.query(statement.params);
+      } catch (RuntimeException e) {
+        return badRequest(res, e.getMessage());
+      }
+      try (cursor) {
+        res.status(200);
+        res.type(ndjson ? NDJSON : JSON);
+        // No content length is known, so the servlet sends the body chunked as the buffer fills
+        Writer out =
+            new BufferedWriter(
+                new OutputStreamWriter(res.raw().getOutputStream(), StandardCharsets.UTF_8));
+        if (ndjson) {
+          streamLines(cursor, out);
+        } else {
+          streamDocument(cursor, out);
+        }
+        out.flush();
+      }
+    }
+    return "";
+  }
+
+  public Object batch(Request req, Response res) {
+    Statement batch;
+    try {
+      batch = parse(req.body(), true);
+    } catch (IllegalArgumentException | IOException e) {
+      return badRequest(res, e.getMessage());
+    }
+
+    try (Session session = db.openSession()) {
+      if (!allowFileAccess) {
+        // Checked before anything runs; a statement that does not parse fails when it runs
+        List<Statement> statements = batch.statements != null ? batch.statements : List.of(batch);
+        for (Statement statement : statements) {
+          try {
+            if (session.prepare(statement.sql).readsFiles()) return forbidden(res);
+          } catch (RuntimeException e) {
+            // Reported with its position when the batch runs
+          }
+        }
+      }
+      if (batch.statements == null) {
+        return respond(res, session.executeBatch(batch.sql, batch.paramSets));
+      }
+
+      session.execute("BEGIN");
+      List<ExecutionResult> results = new ArrayList<>();
+      for (Statement statement : batch.statements) {
+        ExecutionResult result = session.execute(statement.sql, statement.params);
+        if (result.isError()) {
+          // Closing the session rolls the earlier statements back
+          return badRequest(res, "Statement " + (results.size() + 1) + ": " + message(result));
+        }
+        results.add(result);
+      }
+      ExecutionResult commit = session.execute("COMMIT");
+      if (commit.isError()) return badRequest(res, message(commit));
+
+      res.type(JSON);
+      return json(
+          writer -> {
+            writer.beginObject().name("results").beginArray();
+            for (ExecutionResult result : results) {
+              writeResult(writer, result);
+            }
+            writer.endArray().endObject();
+          });
+    }
+  }
+
+  private static boolean wantsNdjson(Request req) {
+    String format = req.queryParams("format");
+    if (format != null) return format.equalsIgnoreCase("ndjson");
+    String accept = req.headers("Accept");
+    return accept != null && accept.contains(NDJSON);
+  }
+
+  private static void streamDocument(Cursor cursor, Writer out) throws IOException {
+    JsonWriter writer = new JsonWriter(out);
+    writer.beginObject().name("columns").beginArray();
+    for (String column : cursor.getColumns()) {
+      writer.value(column);
+    }
+    writer.endArray().name("rows").beginArray();
+    int width = cursor.getColumnCount();
+    String error = null;
+    try {
+      while (cursor.next()) {
+        writer.beginArray();
+        for (int i = 0; i < width; i++) {
+          writeValue(writer, cursor.getObject(i));
+        }
+        writer.endArray();
+      }
+    } catch (RuntimeException e) {
+      error = e.getMessage();
+    }
+    writer.endArray();
+    if (error != null) writer.name("error").value(error);
+    writer.endObject();
+    writer.flush();
+  }
+
+  private static void streamLines(Cursor cursor, Writer out) throws IOException {
+    List<String> columns = cursor.getColumns();
+    try {
+      while (cursor.next()) {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        for (int i = 0; i < columns.size(); i++) {
+          writer.name(columns.get(i));
+          writeValue(writer, cursor.getObject(i));
+        }
+        writer.endObject().flush();
+        out.write('\n');
+      }
+    } catch (RuntimeException e) {
+      new JsonWriter(out).beginObject().name("error").value(e.getMessage()).endObject().flush();
+      out.write('\n');
+    }
+  }
+
+  private static void writeValue(JsonWriter writer, Object value) throws IOException {
+    if (value == null) {
+      writer.nullValue();
+    } else if (value instanceof Boolean) {
+      writer.value((Boolean) value);
+    } else if (value instanceof Number) {
+      writer.value((Number) value);
+    } else {
+      writer.value(value.toString());
+    }
+  }
+
+  private static void writeResult(JsonWriter writer, ExecutionResult result) throws IOException {
+    writer.beginObject();
+    writer.name("affected_rows").value(result.getAffectedRows());
+    writer.name("message").value(result.getMessage());
+    writer.endObject();
+  }
+
+  private static Object respond(Response res, ExecutionResult result) {
+    if (result.isError()) return badRequest(res, message(result));
+    res.type(JSON);
+    if (result.isQuery()) {
+      // SELECTs are streamed; this is only reached for results like EXPLAIN
+      return json(
+          writer -> {
+            writer.beginObject().name("rows").beginArray();
+            for (Map<String, Object> row : result.getRows()) {
+              writer.beginObject();
+              for (Map.Entry<String, Object> entry : row.entrySet()) {
+                writer.name(entry.getKey());
+                writeValue(writer, entry.getValue());
+              }
+              writer.endObject();
+            }
+            writer.endArray().endObject();
+          });
+    }
+    return json(writer -> writeResult(writer, result));
+  }
+
+  private static Object badRequest(Response res, String message) {
+    res.status(400);
+    res.type(JSON);
+    return json(writer -> writer.beginObject().name("error").value(message).endObject());
+  }
+
+  private static Object forbidden(Response res) {
+    res.status(403);
+    res.type(JSON);
+    return json(
+        writer ->
+            writer
+                .beginObject()
+                .name("error")
+                .value("Statements that read server files are not allowed over HTTP")
+                .endObject());
+  }
+
+  private static String message(ExecutionResult result) {
+    String message = result.getMessage();
+    return message.startsWith("Error: ") ? message.substring("Error: ".length()) : message;
+  }
+
+  private interface JsonBody {
+    void write(JsonWriter writer) throws IOException;
+  }
+
+  private static String json(JsonBody body) {
+    StringWriter out = new StringWriter();
+    try {
+      body.write(new JsonWriter(out));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return out.toString();
+  }
+
+  // Request parsing
+
+  private static Statement parse(String body, boolean batch) throws IOException {
+    if (body == null || body.isBlank()) throw new IllegalArgumentException("Empty request body");
+    JsonReader reader = new JsonReader(new StringReader(body));
+    Statement statement = readStatement(reader, batch);
+    if (reader.peek() != JsonToken.END_DOCUMENT) {
+      throw new IllegalArgumentException("Unexpected content after the request object");
+    }
+    if (statement.statements == null && statement.sql == null) {
+      throw new IllegalArgumentException(
+          batch ? "Missing \"sql\" or \"statements\"" : "Missing \"sql\"");
+    }
+    if (batch && statement.statements == null && statement.paramSets == null) {
+      throw new IllegalArgumentException("Missing \"params\" for the batch");
+    }
+    return statement;
+  }
+
+  private static Statement readStatement(JsonReader reader, boolean batch) throws IOException {
+    Statement statement = new Statement();
+    expect(reader, JsonToken.BEGIN_OBJECT, "request");
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      switch (name) {
+        case "sql":
+          expect(reader, JsonToken.STRING, "\"sql\"");
+          statement.sql = reader.nextString();
+          break;
+        case "params":
+          if (batch) {
+            statement.paramSets = new ArrayList<>();
+            expect(reader, JsonToken.BEGIN_ARRAY, "\"params\"");
+            reader.beginArray();
+            while (reader.hasNext()) {
+              statement.paramSets.add(readParams(reader));
+            }
+            reader.endArray();
+          } else {
+            statement.params = readParams(reader);
+          }
+          break;
+        case "statements":
+          if (!batch) throw new IllegalArgumentException("\"statements\" is only valid in /batch");
+          statement.statements = new ArrayList<>();
+          expect(reader, JsonToken.BEGIN_ARRAY, "\"statements\"");
+          reader.beginArray();
+          while (reader.hasNext()) {
+            Statement entry = readStatement(reader, false);
+            if (entry.sql == null) throw new IllegalArgumentException("Missing \"sql\"");
+            statement.statements.add(entry);
+          }
+          reader.endArray();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown field \"" + name + "\"");
+      }
+    }
+    reader.endObject();
+    return statement;
+  }
+
+  private static List<Object> readParams(JsonReader reader) throws IOException {
+    expect(reader, JsonToken.BEGIN_ARRAY, "parameter list");
+    List<Object> params = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      params.add(readValue(reader));
+    }
+    reader.endArray();
+    return params;
+  }
+
+  /** Reads a parameter as the type the engine stores: Integer, Double, Boolean or String. */
+  private static Object readValue(JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+      case NULL:
+        reader.nextNull();
+        return null;
+      case BOOLEAN:
+        return reader.nextBoolean();
+      case STRING:
+        return reader.nextString();
+      case NUMBER:
+        String number = reader.nextString();
+        // 1.0 stays a FLOAT; integral literals are INTEGER if they fit
+        if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+          try {
+            return Integer.parseInt(number);
+          } catch (NumberFormatException e) {
+            // Too large for an INTEGER column
+          }
+        }
+        return Double.parseDouble(number);
+      default:
+        throw new IllegalArgumentException("Parameters must be scalars");
+    }
+  }
+
+  private static void expect(JsonReader reader, JsonToken token, String what) throws IOException {
+    if (reader.peek() != token) {
+      throw new IllegalArgumentException("Expected " + what + " at " + reader.getPath());
+    }
+  }
+}
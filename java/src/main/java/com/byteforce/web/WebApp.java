@@ -4,6 +4,11 @@ import static spark.Spark.*;
 
 import com.byteforce.core.ByteForceDB;
 import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.LatencyHistogram;
+import com.byteforce.core.Metrics;
+import com.byteforce.core.Session;
+import com.byteforce.core.models.RowStorage;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -12,12 +17,29 @@ import spark.ModelAndView;
 import spark.template.handlebars.HandlebarsTemplateEngine;
 
 public class WebApp {
+  // Page views re-read the same task list; cache it until a write changes the tables
+  private static final long RESULT_CACHE_BYTES = 16L * 1024 * 1024;
+  // Requests slower than this show up in the slow query log with their plan
+  private static final long SLOW_QUERY_MS = Long.getLong("byteforce.slowQueryMs", 100);
+  // There is no authentication, so only local clients can connect unless told otherwise
+  private static final String HOST = System.getProperty("byteforce.web.host", "127.0.0.1");
+  // Lets POST /query and /batch run COPY, which reads any file the server can
+  private static final boolean ALLOW_FILE_ACCESS =
+      Boolean.getBoolean("byteforce.web.allowFileAccess");
+
   private static ByteForceDB db;
 
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
+    ipAddress(HOST);
     port(4567);
 
-    db = new ByteForceDB("data");
+    db =
+        new ByteForceDB(
+            "data",
+            ByteForceDB.DEFAULT_PLAN_CACHE_SIZE,
+            RESULT_CACHE_BYTES,
+            RowStorage.fromSystemProperty());
+    db.enableSlowQueryLog("slow_queries.log", SLOW_QUERY_MS);
     initDb();
 
     HandlebarsTemplateEngine engine = new HandlebarsTemplateEngine();
@@ -33,8 +55,7 @@ public class WebApp {
         "/tasks/:view",
         (req, res) -> {
           String view = req.params(":view");
-          ExecutionResult result =
-              db.execute("SELECT * FROM tasks LEFT JOIN subtasks ON id = parent_id");
+          ExecutionResult result = db.execute("SELECT * FROM task_list");
 
           if (result.isError()) return "Error: " + result.getMessage();
 
@@ -145,8 +166,29 @@ public class WebApp {
           } else if ("publish".equals(action)) {
             db.execute("UPDATE tasks SET is_draft = ? WHERE id = ?", Arrays.asList(false, id));
           } else if ("destroy".equals(action)) {
-            db.execute("DELETE FROM tasks WHERE id = ?", Collections.singletonList(id));
-            db.execute("DELETE FROM subtasks WHERE parent_id = ?", Collections.singletonList(id));
+            // Remove the task and its subtasks atomically, persisted in one commit. A failed
+            // statement only undoes itself, so any failure rolls back the whole transaction
+            try (Session session = db.openSession()) {
+              ExecutionResult step = session.execute("BEGIN");
+              if (!step.isError()) {
+                step =
+                    session.execute(
+                        "DELETE FROM tasks WHERE id = ?", Collections.singletonList(id));
+              }
+              if (!step.isError()) {
+                step =
+                    session.execute(
+                        "DELETE FROM subtasks WHERE parent_id = ?", Collections.singletonList(id));
+              }
+              if (!step.isError()) {
+                step = session.execute("COMMIT");
+              }
+              if (step.isError()) {
+                session.execute("ROLLBACK");
+                res.status(500);
+                return step.getMessage();
+              }
+            }
           }
 
           String ref = req.headers("Referer");
@@ -156,7 +198,80 @@ public class WebApp {
           return null;
         });
 
-    System.out.println("Java Server running on http://localhost:4567");
+    get(
+        "/metrics",
+        (req, res) -> {
+          res.type("text/plain; version=0.0.4");
+          return renderMetrics();
+        });
+
+    QueryEndpoint api = new QueryEndpoint(db, ALLOW_FILE_ACCESS);
+    post("/query", api::query);
+    post("/batch", api::batch);
+
+    System.out.println("Java Server running on http://" + HOST + ":4567");
+  }
+
+  // Prometheus text exposition of the engine's counters and latency summaries
+  private static String renderMetrics() {
+    Metrics metrics = db.getMetrics();
+    StringBuilder out = new StringBuilder();
+    counter(out, "statements_total", metrics.getStatements());
+    counter(out, "errors_total", metrics.getErrors());
+    counter(out, "rows_scanned_total", metrics.getRowsScanned());
+    counter(out, "rows_returned_total", metrics.getRowsReturned());
+    counter(out, "rows_affected_total", metrics.getRowsAffected());
+    counter(out, "index_lookups_total", metrics.getIndexLookups());
+    counter(out, "full_scans_total", metrics.getFullScans());
+    counter(out, "bytes_written_total", db.getStorage().getBytesWritten());
+    gauge(out, "offheap_bytes", db.getStorage().getOffHeapBytes());
+    gauge(out, "plan_cache_hit_ratio", db.getPlanCache().getHitRatio());
+    gauge(out, "result_cache_hit_ratio", db.getResultCache().getHitRatio());
+
+    out.append("# TYPE byteforce_statement_latency_seconds summary\n");
+    for (Map.Entry<String, LatencyHistogram> entry : metrics.getStatementLatencies().entrySet()) {
+      summary(out, "statement_latency_seconds", "statement", entry.getKey(), entry.getValue());
+    }
+    out.append("# TYPE byteforce_phase_latency_seconds summary\n");
+    for (Metrics.Phase phase : Metrics.Phase.values()) {
+      summary(
+          out,
+          "phase_latency_seconds",
+          "phase",
+          phase.name().toLowerCase(),
+          metrics.getPhaseLatency(phase));
+    }
+    return out.toString();
+  }
+
+  private static void counter(StringBuilder out, String name, long value) {
+    out.append("# TYPE byteforce_").append(name).append(" counter\n");
+    out.append("byteforce_").append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void gauge(StringBuilder out, String name, double value) {
+    out.append("# TYPE byteforce_").append(name).append(" gauge\n");
+    out.append("byteforce_").append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void summary(
+      StringBuilder out, String name, String label, String value, LatencyHistogram histogram) {
+    String series = "byteforce_" + name;
+    String labels = label + "=\"" + value + "\"";
+    for (double quantile : new double[] {0.5, 0.99, 0.999}) {
+      out.append(series)
+          .append('{')
+          .append(labels)
+          .append(",quantile=\"")
+          .append(quantile)
+          .append("\"} ")
+          .append(histogram.getPercentileNanos(quantile * 100) / 1e9)
+          .append('\n');
+    }
+    out.append(series).append("_sum{").append(labels).append("} ");
+    out.append(histogram.getTotalNanos() / 1e9).append('\n');
+    out.append(series).append("_count{").append(labels).append("} ");
+    out.append(histogram.getCount()).append('\n');
   }
 
   private static void initDb() {
@@ -169,6 +284,11 @@ public class WebApp {
       db.execute(
           "CREATE TABLE subtasks (sid INTEGER PRIMARY KEY, parent_id INTEGER, subtitle TEXT, substatus TEXT)");
     }
+    // The task list join, maintained on every write instead of recomputed per page view
+    if (!tables.contains("task_list")) {
+      db.execute(
+          "CREATE MATERIALIZED VIEW task_list AS SELECT * FROM tasks LEFT JOIN subtasks ON id = parent_id");
+    }
   }
 
   private static int getNextId(String table, String idCol) {
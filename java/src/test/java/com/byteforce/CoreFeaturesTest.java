@@ -2,18 +2,70 @@ package com.byteforce;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.byteforce.cli.Workload;
 import com.byteforce.core.ByteForceDB;
+import com.byteforce.core.CsvWriter;
+import com.byteforce.core.Cursor;
+import com.byteforce.core.ExecutionResult;
+import com.byteforce.core.LatencyHistogram;
+import com.byteforce.core.Metrics;
+import com.byteforce.core.PlanCache;
+import com.byteforce.core.PreparedQuery;
+import com.byteforce.core.ResultCache;
+import com.byteforce.core.Session;
+import com.byteforce.core.TransactionManager;
+import com.byteforce.core.models.DataType;
+import com.byteforce.core.models.RowStorage;
+import com.byteforce.core.models.Snapshot;
 import com.byteforce.core.models.Table;
+import com.byteforce.jdbc.ByteForceConnection;
+import com.byteforce.server.ByteForceClient;
+import com.byteforce.server.ByteForceServer;
+import com.byteforce.web.QueryEndpoint;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import javax.management.ObjectName;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import spark.Service;
 
 class CoreFeaturesTest {
 
@@ -29,6 +81,7 @@ class CoreFeaturesTest {
 
   @AfterEach
   void tearDown() {
+    db.close();
     deleteDirectory(new File(TEST_DIR));
   }
 
@@ -108,4 +161,1403 @@ class CoreFeaturesTest {
     assertEquals(1, rows.size());
     assertEquals("Bob", rows.get(0).get("name"));
   }
+
+  @Test
+  void testIndexedUpdateAndDelete() {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT)");
+    db.execute("INSERT INTO users VALUES (1, 'Alice')");
+    db.execute("INSERT INTO users VALUES (2, 'Bob')");
+    db.execute("INSERT INTO users VALUES (3, 'Carol')");
+
+    assertEquals(
+        "1 row(s) updated.", db.execute("UPDATE users SET id = 10 WHERE id = 1").getMessage());
+    assertEquals("1 row(s) deleted.", db.execute("DELETE FROM users WHERE id = 2").getMessage());
+
+    Table table = db.getStorage().getTable("users");
+    assertEquals(2, table.getRows().size());
+    assertFalse(table.getIndices().get("id").containsKey(1));
+    assertFalse(table.getIndices().get("id").containsKey(2));
+
+    List<Map<String, Object>> rows = db.execute("SELECT * FROM users WHERE id = 10").getRows();
+    assertEquals(1, rows.size());
+    assertEquals("Alice", rows.get(0).get("name"));
+    rows = db.execute("SELECT * FROM users WHERE id = 3").getRows();
+    assertEquals("Carol", rows.get(0).get("name"));
+  }
+
+  @Test
+  void testIndexLookupMatchesNumbersByValue() {
+    db.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT, price FLOAT)");
+    db.execute("CREATE INDEX idx_price ON items(price)");
+    db.execute("INSERT INTO items VALUES (1, 'a', 5), (2, 'b', 7), (3, 'c', 9)");
+
+    assertEquals(1, db.execute("SELECT * FROM items WHERE price = 5.0").getRows().size());
+    assertEquals(
+        "1 row(s) updated.",
+        db.execute("UPDATE items SET name = 'z' WHERE price = 5.0").getMessage());
+    assertEquals(
+        "z", db.execute("SELECT * FROM items WHERE price = 5").getRows().get(0).get("name"));
+    assertEquals(
+        "1 row(s) deleted.", db.execute("DELETE FROM items WHERE price = 5.0").getMessage());
+
+    // A Long parameter against INTEGER keys
+    List<Map<String, Object>> rows =
+        db.execute("SELECT * FROM items WHERE id = ?", List.of(2L)).getRows();
+    assertEquals(1, rows.size());
+    assertEquals("b", rows.get(0).get("name"));
+    assertEquals(
+        "1 row(s) updated.",
+        db.execute("UPDATE items SET name = 'y' WHERE id = ?", List.of(2L)).getMessage());
+    assertEquals("y", db.execute("SELECT * FROM items WHERE id = 2").getRows().get(0).get("name"));
+    assertEquals(
+        "1 row(s) deleted.",
+        db.execute("DELETE FROM items WHERE id = ?", List.of(3L)).getMessage());
+    assertEquals(0, db.execute("SELECT * FROM items WHERE price = 9").getRows().size());
+  }
+
+  @Test
+  void testPreparedQueryAndPlanCache() {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT)");
+    PreparedQuery insert = db.prepare("INSERT INTO users VALUES (?, ?)");
+    insert.execute(1, "Alice");
+    insert.execute(2, "Bob");
+
+    PreparedQuery byId = db.prepare("SELECT * FROM users WHERE id = ?");
+    assertEquals("Bob", byId.execute(2).getRows().get(0).get("name"));
+    assertEquals("Alice", byId.execute(1).getRows().get(0).get("name"));
+
+    PlanCache cache = db.getPlanCache();
+    long misses = cache.getMisses();
+    db.execute("SELECT * FROM users WHERE id = ?", List.of(1));
+    db.execute("SELECT * FROM users WHERE id = ?", List.of(2));
+    assertEquals(misses, cache.getMisses());
+    assertTrue(cache.getHits() >= 2);
+  }
+
+  @Test
+  void testConcurrentSessions() throws Exception {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT)");
+    PreparedQuery insert = db.prepare("INSERT INTO users VALUES (?, ?)");
+    PreparedQuery byId = db.prepare("SELECT * FROM users WHERE id = ?");
+
+    int threads = 4;
+    int perThread = 50;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int base = t * perThread;
+      futures.add(
+          pool.submit(
+              () -> {
+                for (int i = 0; i < perThread; i++) {
+                  int id = base + i;
+                  assertFalse(insert.execute(id, "user" + id).isError());
+                  List<Map<String, Object>> rows = byId.execute(id).getRows();
+                  assertEquals("user" + id, rows.get(0).get("name"));
+                }
+              }));
+    }
+    for (Future<?> f : futures) {
+      f.get();
+    }
+    pool.shutdown();
+
+    assertEquals(threads * perThread, db.execute("SELECT * FROM users").getRows().size());
+    assertEquals(
+        threads * perThread, db.getStorage().getTable("users").getIndices().get("id").size());
+  }
+
+  @Test
+  void testSnapshotIsolation() {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT)");
+    db.execute("INSERT INTO users VALUES (1, 'Alice')");
+
+    TransactionManager transactions = db.getStorage().getTransactions();
+    Table table = db.getStorage().getTable("users");
+    Snapshot snapshot = transactions.openSnapshot();
+
+    db.execute("UPDATE users SET name = 'Alicia' WHERE id = 1");
+    db.execute("INSERT INTO users VALUES (2, 'Bob')");
+    db.execute("DELETE FROM users WHERE id = 1");
+
+    // The old snapshot still sees the original row, through a scan and through the index
+    List<Map<String, Object>> old = table.scan(snapshot);
+    assertEquals(1, old.size());
+    assertEquals("Alice", old.get(0).get("name"));
+    assertEquals("Alice", table.lookup("id", 1, snapshot).get(0).get("name"));
+
+    List<Map<String, Object>> current = db.execute("SELECT * FROM users").getRows();
+    assertEquals(1, current.size());
+    assertEquals("Bob", current.get(0).get("name"));
+
+    transactions.releaseSnapshot(snapshot);
+    db.getStorage().vacuum();
+    assertFalse(table.getIndices().get("id").containsKey(1));
+    assertEquals(1, table.getRowCount());
+    assertEquals(1, table.getSlotCount());
+  }
+
+  @Test
+  void testPersistenceRoundTrip() {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT)");
+    db.execute("CREATE INDEX idx_name ON users(name)");
+    db.execute("INSERT INTO users VALUES (1, 'Alice')");
+    db.execute("INSERT INTO users VALUES (2, 'Bob')");
+    db.execute("UPDATE users SET name = 'Bobby' WHERE id = 2");
+    db.close();
+
+    db = new ByteForceDB(TEST_DIR);
+    Table table = db.getStorage().getTable("users");
+    assertEquals(2, table.getRowCount());
+    assertTrue(table.getIndices().containsKey("name"));
+    List<Map<String, Object>> rows =
+        db.execute("SELECT * FROM users WHERE name = 'Bobby'").getRows();
+    assertEquals(1, rows.size());
+    assertEquals(2, rows.get(0).get("id"));
+  }
+
+  @Test
+  void testExplicitTransactions() {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT)");
+    db.execute("INSERT INTO users VALUES (1, 'Alice')");
+
+    try (Session session = db.openSession()) {
+      assertFalse(session.execute("BEGIN").isError());
+      session.execute("INSERT INTO users VALUES (2, 'Bob')");
+      session.execute("DELETE FROM users WHERE id = 1");
+      // A failing statement only undoes itself
+      assertTrue(session.execute("INSERT INTO users VALUES (2, 'Bobby')").isError());
+
+      List<Map<String, Object>> own = session.execute("SELECT * FROM users").getRows();
+      assertEquals(1, own.size());
+      assertEquals("Bob", own.get(0).get("name"));
+      // Other sessions only see committed data
+      List<Map<String, Object>> others = db.execute("SELECT * FROM users").getRows();
+      assertEquals(1, others.size());
+      assertEquals("Alice", others.get(0).get("name"));
+
+      assertFalse(session.execute("ROLLBACK").isError());
+    }
+    List<Map<String, Object>> rows = db.execute("SELECT * FROM users").getRows();
+    assertEquals(1, rows.size());
+    assertEquals("Alice", rows.get(0).get("name"));
+
+    db.execute("BEGIN");
+    db.execute("INSERT INTO users VALUES (2, 'Bob')");
+    db.execute("UPDATE users SET name = 'Alicia' WHERE id = 1");
+    assertEquals("Transaction committed.", db.execute("COMMIT").getMessage());
+    assertTrue(db.execute("COMMIT").isError());
+
+    db.close();
+    db = new ByteForceDB(TEST_DIR);
+    assertEquals(2, db.execute("SELECT * FROM users").getRows().size());
+    assertEquals(
+        "Alicia", db.execute("SELECT * FROM users WHERE id = 1").getRows().get(0).get("name"));
+  }
+
+  @Test
+  void testMultiRowInsertAndBatch() {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT, age INTEGER)");
+    ExecutionResult multi =
+        db.execute(
+            "INSERT INTO users VALUES (1, 'Alice', 30), (2, 'Bob', 25), (?, ?, ?)",
+            Arrays.asList(3, "Carol", 41));
+    assertFalse(multi.isError(), multi.getMessage());
+    assertEquals(3, multi.getAffectedRows());
+
+    List<List<Object>> batch = new ArrayList<>();
+    for (int i = 4; i <= 500; i++) {
+      batch.add(Arrays.asList(i, "user" + i, i % 90));
+    }
+    ExecutionResult result = db.executeBatch("INSERT INTO users VALUES (?, ?, ?)", batch);
+    assertFalse(result.isError(), result.getMessage());
+    assertEquals(497, result.getAffectedRows());
+    assertEquals(1, db.execute("SELECT * FROM users WHERE name = 'user250'").getRows().size());
+
+    // A duplicate anywhere in the batch rejects all of it
+    ExecutionResult dup =
+        db.executeBatch(
+            "INSERT INTO users VALUES (?, ?, ?)",
+            Arrays.asList(Arrays.asList(501, "x", 1), Arrays.asList(501, "y", 2)));
+    assertTrue(dup.isError());
+    assertEquals(500, db.execute("SELECT * FROM users").getRows().size());
+
+    // Placeholders bind in SET order, then WHERE
+    ExecutionResult updated =
+        db.executeBatch(
+            "UPDATE users SET name = ?, age = ? WHERE id = ?",
+            Arrays.asList(Arrays.asList("Alicia", 31, 1), Arrays.asList("Robert", 26, 2)));
+    assertEquals(2, updated.getAffectedRows());
+    Map<String, Object> bob = db.execute("SELECT * FROM users WHERE id = 2").getRows().get(0);
+    assertEquals("Robert", bob.get("name"));
+    assertEquals(26, bob.get("age"));
+
+    db.close();
+    db = new ByteForceDB(TEST_DIR);
+    assertEquals(500, db.execute("SELECT * FROM users").getRows().size());
+  }
+
+  @Test
+  void testCopyFromCsv() throws IOException {
+    db.execute(
+        "CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT, score FLOAT, active BOOLEAN)");
+    Path csv = Path.of(TEST_DIR, "users.csv");
+    StringBuilder sb = new StringBuilder("name,id,active,score\n");
+    for (int i = 1; i <= 20000; i++) {
+      sb.append(i % 7 == 0 ? "\"Smith, J\"" : "user" + i).append(',').append(i).append(',');
+      sb.append(i % 2 == 0).append(',').append(i % 5 == 0 ? "" : i * 0.5).append("\r\n");
+    }
+    Files.writeString(csv, sb.toString());
+
+    ExecutionResult result = db.execute("COPY users FROM '" + csv + "'");
+    assertFalse(result.isError(), result.getMessage());
+    assertEquals(20000, result.getAffectedRows());
+
+    Map<String, Object> row = db.execute("SELECT * FROM users WHERE id = 14").getRows().get(0);
+    assertEquals("Smith, J", row.get("name"));
+    assertEquals(7.0, row.get("score"));
+    assertEquals(true, row.get("active"));
+    assertNull(db.execute("SELECT * FROM users WHERE id = 15").getRows().get(0).get("score"));
+
+    // A bad line rejects the whole file
+    Path bad = Path.of(TEST_DIR, "bad.csv");
+    Files.writeString(bad, "20001,a,1.0,true\n20002,b,oops,false\n");
+    ExecutionResult failed = db.execute("COPY users FROM '" + bad + "'");
+    assertTrue(failed.isError());
+    assertTrue(failed.getMessage().contains("Line 2"), failed.getMessage());
+    assertEquals(20000, db.execute("SELECT * FROM users").getRows().size());
+  }
+
+  @Test
+  void testCsvExportRoundTrip() throws IOException {
+    db.execute("CREATE TABLE notes (id INTEGER PRIMARY KEY, body TEXT, score FLOAT)");
+    PreparedQuery insert = db.prepare("INSERT INTO notes VALUES (?, ?, ?)");
+    String[] bodies = {null, "", "a, b", "say \"hi\"", "two\nlines", "crlf\r\nend", "plain"};
+    // Enough rows and text for the file to be loaded as several segments
+    String pad = "-".repeat(24);
+    db.execute("BEGIN");
+    for (int i = 0; i < 30000; i++) {
+      String body = bodies[i % bodies.length];
+      insert.execute(i, body != null && !body.isEmpty() ? body + " #" + i + pad : body, i * 0.5);
+    }
+    db.execute("COMMIT");
+
+    Path csv = Path.of(TEST_DIR, "notes.csv");
+    try (Cursor cursor = db.query("SELECT * FROM notes");
+        Writer writer = Files.newBufferedWriter(csv)) {
+      assertEquals(30000, CsvWriter.write(cursor, writer));
+    }
+    assertTrue(Files.size(csv) > 1 << 20);
+    db.execute("CREATE TABLE copy (id INTEGER PRIMARY KEY, body TEXT, score FLOAT)");
+    ExecutionResult result = db.execute("COPY copy FROM '" + csv + "'");
+    assertFalse(result.isError(), result.getMessage());
+    assertEquals(30000, result.getAffectedRows());
+
+    assertEquals(
+        sortedRows(db.execute("SELECT * FROM notes")),
+        sortedRows(db.execute("SELECT * FROM copy")));
+    assertNull(db.execute("SELECT * FROM copy WHERE id = 0").getRows().get(0).get("body"));
+    assertEquals("", db.execute("SELECT * FROM copy WHERE id = 1").getRows().get(0).get("body"));
+    assertEquals(
+        "two\nlines #4" + pad,
+        db.execute("SELECT * FROM copy WHERE id = 4").getRows().get(0).get("body"));
+  }
+
+  @Test
+  void testCursor() {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT, age INTEGER)");
+    List<List<Object>> batch = new ArrayList<>();
+    for (int i = 1; i <= 100; i++) {
+      batch.add(Arrays.asList(i, "user" + i, i % 3 == 0 ? null : i));
+    }
+    db.executeBatch("INSERT INTO users VALUES (?, ?, ?)", batch);
+
+    TransactionManager transactions = db.getStorage().getTransactions();
+    int count = 0;
+    try (Cursor cursor =
+        db.query("SELECT name, age FROM users WHERE id > ? LIMIT 10", List.of(50))) {
+      assertEquals(List.of("name", "age"), cursor.getColumns());
+      assertEquals(DataType.INTEGER, cursor.getColumnType(1));
+      assertEquals(1, transactions.getOpenSnapshotCount());
+
+      // Writes after the cursor opened are not seen
+      db.execute("DELETE FROM users WHERE id = 52");
+      while (cursor.next()) {
+        int id = 50 + (++count);
+        assertEquals("user" + id, cursor.getString(0));
+        int age = cursor.getInt("age");
+        assertEquals(id % 3 == 0, cursor.wasNull());
+        if (!cursor.wasNull()) assertEquals(id, age);
+      }
+      assertTrue(cursor.isClosed());
+    }
+    assertEquals(10, count);
+    assertEquals(0, transactions.getOpenSnapshotCount());
+
+    // Closing early releases the snapshot too
+    Cursor cursor = db.query("SELECT * FROM users");
+    assertTrue(cursor.next());
+    assertThrows(IllegalArgumentException.class, () -> cursor.getObject("missing"));
+    cursor.close();
+    assertEquals(0, transactions.getOpenSnapshotCount());
+    assertThrows(IllegalArgumentException.class, () -> db.query("DELETE FROM users"));
+  }
+
+  @Test
+  void testResultCache() {
+    db.close();
+    db = new ByteForceDB(TEST_DIR, ByteForceDB.DEFAULT_PLAN_CACHE_SIZE, 1024 * 1024);
+    ResultCache cache = db.getResultCache();
+    db.execute("CREATE TABLE tasks (id INTEGER PRIMARY KEY, title TEXT)");
+    db.execute("CREATE TABLE subtasks (sid INTEGER PRIMARY KEY, parent_id INTEGER)");
+    db.execute("INSERT INTO tasks VALUES (1, 'Write'), (2, 'Test')");
+    db.execute("INSERT INTO subtasks VALUES (10, 1)");
+
+    String join = "SELECT * FROM tasks LEFT JOIN subtasks ON id = parent_id";
+    assertEquals(2, db.execute(join).getRows().size());
+    assertEquals(0, cache.getHits());
+    assertEquals(
+        2,
+        db.execute("SELECT *  FROM tasks\n LEFT JOIN subtasks ON id = parent_id").getRows().size());
+    assertEquals(1, cache.getHits());
+
+    // Parameters are part of the key
+    assertEquals(
+        "Write",
+        db.execute("SELECT * FROM tasks WHERE id = ?", List.of(1)).getRows().get(0).get("title"));
+    assertEquals(
+        "Test",
+        db.execute("SELECT * FROM tasks WHERE id = ?", List.of(2)).getRows().get(0).get("title"));
+    assertEquals(1, cache.getHits());
+
+    // A committed write to either joined table invalidates the entry
+    db.execute("INSERT INTO subtasks VALUES (11, 2)");
+    assertEquals(2, db.execute(join).getRows().stream().filter(r -> r.get("sid") != null).count());
+    assertEquals(1, cache.getHits());
+
+    // Uncommitted writes are not visible to cached readers, and the cache is bypassed in a
+    // transaction
+    db.execute("BEGIN");
+    db.execute("DELETE FROM subtasks WHERE sid = 11");
+    assertEquals(1, db.execute(join).getRows().stream().filter(r -> r.get("sid") != null).count());
+    db.execute("ROLLBACK");
+    assertEquals(2, db.execute(join).getRows().stream().filter(r -> r.get("sid") != null).count());
+    assertEquals(2, cache.getHits());
+    assertTrue(cache.getUsedBytes() > 0 && cache.getUsedBytes() <= cache.getMaxBytes());
+
+    // Rows are the caller's to change, on a miss or a hit, without touching the cached entry
+    String byId = "SELECT * FROM tasks WHERE id = 2";
+    db.execute(byId).getRows().get(0).put("title", "changed");
+    long hits = cache.getHits();
+    Map<String, Object> hit = db.execute(byId).getRows().get(0);
+    assertEquals(hits + 1, cache.getHits());
+    assertEquals("Test", hit.get("title"));
+    hit.put("title", "changed");
+    assertEquals("Test", db.execute(byId).getRows().get(0).get("title"));
+  }
+
+  @Test
+  void testMaterializedView() {
+    db.execute("CREATE TABLE tasks (id INTEGER PRIMARY KEY, title TEXT, done BOOLEAN)");
+    db.execute("CREATE TABLE subtasks (sid INTEGER PRIMARY KEY, parent_id INTEGER, note TEXT)");
+    db.execute(
+        "INSERT INTO tasks VALUES (1, 'Write', FALSE), (2, 'Test', FALSE), (3, 'Ship', TRUE)");
+    db.execute("INSERT INTO subtasks VALUES (10, 1, 'draft'), (11, 1, 'edit')");
+
+    String query =
+        "SELECT id, title, note FROM tasks LEFT JOIN subtasks ON id = parent_id WHERE done = FALSE";
+    ExecutionResult created = db.execute("CREATE MATERIALIZED VIEW open_tasks AS " + query);
+    assertFalse(created.isError(), created.getMessage());
+    assertEquals(3, db.execute("SELECT * FROM open_tasks").getRows().size());
+    assertViewMatches(query);
+    // Changes find their join partners through indexes on both join columns
+    assertTrue(db.getStorage().getTable("tasks").getIndices().containsKey("id"));
+    assertTrue(db.getStorage().getTable("subtasks").getIndices().containsKey("parent_id"));
+
+    db.execute("INSERT INTO subtasks VALUES (12, 2, 'unit')");
+    assertViewMatches(query);
+    db.execute("UPDATE subtasks SET parent_id = 2 WHERE sid = 10");
+    assertViewMatches(query);
+    db.execute("DELETE FROM subtasks WHERE parent_id = 1");
+    assertViewMatches(query);
+    db.execute("UPDATE tasks SET done = TRUE WHERE id = 2");
+    assertViewMatches(query);
+    db.execute("INSERT INTO tasks VALUES (4, 'Plan', FALSE)");
+    db.execute("UPDATE tasks SET done = FALSE WHERE id = 3");
+    assertViewMatches(query);
+
+    // A rolled back write leaves the view untouched
+    db.execute("BEGIN");
+    db.execute("DELETE FROM tasks WHERE id = 4");
+    db.execute("ROLLBACK");
+    assertViewMatches(query);
+
+    assertTrue(db.execute("DELETE FROM open_tasks").isError());
+    db.close();
+    db = new ByteForceDB(TEST_DIR);
+    assertTrue(db.getStorage().getTable("open_tasks").isView());
+    db.execute("DELETE FROM tasks WHERE id = 1");
+    assertViewMatches(query);
+  }
+
+  @Test
+  void testConcurrentWritesToJoinedTables() throws Exception {
+    db.execute("CREATE TABLE tasks (id INTEGER PRIMARY KEY, title TEXT, done BOOLEAN)");
+    db.execute("CREATE TABLE subtasks (sid INTEGER PRIMARY KEY, parent_id INTEGER, note TEXT)");
+    String query =
+        "SELECT id, title, note FROM tasks LEFT JOIN subtasks ON id = parent_id WHERE done = FALSE";
+    db.execute("CREATE MATERIALIZED VIEW open_tasks AS " + query);
+
+    // Each writer's own table is one the other's view maintenance needs
+    int rounds = 20;
+    int perRound = 50;
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    CyclicBarrier start = new CyclicBarrier(2);
+    Future<?> tasks =
+        pool.submit(
+            () -> {
+              for (int r = 0; r < rounds; r++) {
+                List<List<Object>> rows = new ArrayList<>();
+                for (int i = 0; i < perRound; i++) {
+                  int id = r * perRound + i;
+                  rows.add(Arrays.asList(id, "task " + id, false));
+                }
+                start.await(30, TimeUnit.SECONDS);
+                ExecutionResult result =
+                    db.executeBatch("INSERT INTO tasks VALUES (?, ?, ?)", rows);
+                assertFalse(result.isError(), result.getMessage());
+              }
+              return null;
+            });
+    Future<?> subtasks =
+        pool.submit(
+            () -> {
+              for (int r = 0; r < rounds; r++) {
+                List<List<Object>> rows = new ArrayList<>();
+                for (int i = 0; i < perRound; i++) {
+                  int sid = r * perRound + i;
+                  rows.add(Arrays.asList(sid, sid, "note " + sid));
+                }
+                start.await(30, TimeUnit.SECONDS);
+                ExecutionResult result =
+                    db.executeBatch("INSERT INTO subtasks VALUES (?, ?, ?)", rows);
+                assertFalse(result.isError(), result.getMessage());
+              }
+              return null;
+            });
+    tasks.get();
+    subtasks.get();
+    pool.shutdown();
+
+    assertEquals(rounds * perRound, db.execute("SELECT * FROM open_tasks").getRows().size());
+    assertViewMatches(query);
+  }
+
+  @Test
+  void testMetrics() throws Exception {
+    Metrics metrics = db.getMetrics();
+    db.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, code INTEGER)");
+    db.execute("INSERT INTO items VALUES (1, 10), (2, 20), (3, 30), (4, 40)");
+    metrics.reset();
+
+    assertEquals(1, db.execute("SELECT * FROM items WHERE id = 2").getRows().size());
+    assertEquals(1, metrics.getIndexLookups());
+    assertEquals(1, metrics.getRowsScanned());
+    assertEquals(2, db.execute("SELECT * FROM items WHERE code > 20").getRows().size());
+    assertEquals(1, metrics.getFullScans());
+    assertEquals(5, metrics.getRowsScanned());
+    assertEquals(3, metrics.getRowsReturned());
+    assertTrue(metrics.getPhaseLatency(Metrics.Phase.FILTER).getCount() > 0);
+
+    long bytes = db.getStorage().getBytesWritten();
+    db.execute("UPDATE items SET code = 0 WHERE code < 30");
+    assertEquals(2, metrics.getRowsAffected());
+    assertTrue(db.getStorage().getBytesWritten() > bytes);
+    assertTrue(metrics.getPhaseLatency(Metrics.Phase.PERSIST).getCount() > 0);
+    assertTrue(metrics.getPhaseLatency(Metrics.Phase.PARSE).getCount() > 0);
+
+    assertTrue(db.execute("SELECT * FROM missing").isError());
+    assertTrue(db.execute("SELEC oops").isError());
+    assertEquals(2, metrics.getErrors());
+    assertEquals(4, metrics.getStatements());
+    assertEquals(3, metrics.getStatementLatencies().get("select").getCount());
+
+    ObjectName name =
+        new ObjectName(
+            "com.byteforce:type=Metrics,dir="
+                + ObjectName.quote(new File(TEST_DIR).getAbsolutePath()));
+    assertEquals(4L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Statements"));
+
+    // Buckets keep percentiles within an eighth of the true value
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100_000; i++) {
+      histogram.record(i * 1000L);
+    }
+    assertEquals(50_000_000, histogram.getPercentileNanos(50), 50_000_000 / 8.0);
+    assertEquals(99_900_000, histogram.getPercentileNanos(99.9), 99_900_000 / 8.0);
+    assertEquals(100_000_000, histogram.getMaxNanos());
+  }
+
+  @Test
+  void testExplainAnalyzeAndSlowQueryLog() throws IOException {
+    db.execute("CREATE TABLE customers (cid INTEGER PRIMARY KEY, name TEXT)");
+    db.execute("CREATE TABLE orders (oid INTEGER PRIMARY KEY, customer_id INTEGER, amount FLOAT)");
+    db.execute("INSERT INTO customers VALUES (1, 'Ann'), (2, 'Bob')");
+    db.execute("INSERT INTO orders VALUES (1, 1, 5.0), (2, 1, 15.0), (3, 2, 25.0), (4, 3, 35.0)");
+
+    ExecutionResult plan =
+        db.execute(
+            "EXPLAIN ANALYZE SELECT name, amount FROM orders JOIN customers ON customer_id = cid"
+                + " WHERE amount > 10");
+    assertFalse(plan.isError(), plan.getMessage());
+    List<Object> operators = new ArrayList<>();
+    List<Object> rows = new ArrayList<>();
+    for (Map<String, Object> row : plan.getRows()) {
+      operators.add(row.get("operator"));
+      rows.add(row.get("rows"));
+    }
+    assertEquals(
+        Arrays.asList(
+            "Project (name, amount)",
+            "-> Filter (amount > 10)",
+            "  -> Hash Join (customer_id = cid)",
+            "    -> Seq Scan on orders",
+            "    -> Seq Scan on customers",
+            "Planning",
+            "Total"),
+        operators);
+    assertEquals(Arrays.asList(2L, 2L, 3L, 4L, 2L, null, 2L), rows);
+
+    plan = db.execute("EXPLAIN ANALYZE SELECT * FROM orders WHERE oid = ?", Arrays.asList(3));
+    assertEquals("-> Index Lookup on orders (oid = ?)", plan.getRows().get(1).get("operator"));
+
+    // The statement really runs, and its commit shows up as persistence time
+    plan = db.execute("EXPLAIN ANALYZE DELETE FROM orders WHERE amount < 10");
+    assertEquals("Delete on orders", plan.getRows().get(0).get("operator"));
+    assertTrue(plan.getRows().stream().anyMatch(r -> "Persist".equals(r.get("operator"))));
+    assertEquals(3, db.execute("SELECT * FROM orders").getRows().size());
+
+    File log = new File(TEST_DIR, "slow.log");
+    db.enableSlowQueryLog(log.getPath(), 0);
+    db.execute("SELECT * FROM orders WHERE amount > 20");
+    db.disableSlowQueryLog();
+    List<String> lines = Files.readAllLines(log.toPath());
+    assertEquals(1, lines.size());
+    assertTrue(lines.get(0).contains("rows_examined=3 rows_returned=2"), lines.get(0));
+    assertTrue(lines.get(0).contains("plan=\"Filter (amount > 20) -> Seq Scan on orders\""));
+    assertTrue(lines.get(0).endsWith("sql=\"SELECT * FROM orders WHERE amount > 20\""));
+  }
+
+  @Test
+  void testWorkloadDriver() throws Exception {
+    db.execute("CREATE TABLE accounts (id INTEGER PRIMARY KEY, balance INTEGER)");
+    List<List<Object>> rows = new ArrayList<>();
+    for (int i = 1; i <= 200; i++) {
+      rows.add(Arrays.asList(i, 0));
+    }
+    db.executeBatch("INSERT INTO accounts (id, balance) VALUES (?, ?)", rows);
+
+    Workload.Options options =
+        Workload.Options.parse(
+            new String[] {"threads=4", "virtual=true", "seconds=1", "reads=80", "dist=zipf"});
+    Workload.Result result = new Workload(db, "accounts", options).run();
+    assertTrue(result.reads.getCount() > 0);
+    assertTrue(result.writes.getCount() > 0);
+    assertEquals(0, result.getErrors());
+    assertTrue(result.getThroughput() > 0);
+    assertTrue(result.reads.getPercentileNanos(99.9) >= result.reads.getPercentileNanos(50));
+
+    // Zipfian keys concentrate the updates on the lowest ids
+    long hot = 0;
+    long cold = 0;
+    for (Map<String, Object> row :
+        db.execute("SELECT * FROM accounts WHERE balance > 0").getRows()) {
+      int id = (Integer) row.get("id");
+      if (id <= 5) hot++;
+      if (id > 195) cold++;
+    }
+    assertTrue(hot > 0);
+    assertTrue(hot >= cold, hot + " vs " + cold);
+
+    assertThrows(
+        IllegalArgumentException.class, () -> Workload.Options.parse(new String[] {"reads=120"}));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new Workload(db, "missing", Workload.Options.parse(new String[0])));
+  }
+
+  @Test
+  void testNetworkServer() throws Exception {
+    try (ByteForceServer server = new ByteForceServer(db, 0)) {
+      assertTrue(server.getBindAddress().isLoopbackAddress());
+      server.start();
+      try (ByteForceClient client = ByteForceClient.connect("localhost", server.getPort());
+          ByteForceClient other = ByteForceClient.connect("localhost", server.getPort())) {
+        assertFalse(
+            client.execute("CREATE TABLE kv (k INTEGER PRIMARY KEY, v TEXT, f FLOAT)").isError());
+
+        ByteForceClient.Statement insert = client.prepare("INSERT INTO kv VALUES (?, ?, ?)");
+        assertEquals("insert", insert.getType());
+        assertEquals(1, insert.execute(1, "one", 1.5).getAffectedRows());
+        List<List<Object>> batch = new ArrayList<>();
+        for (int i = 2; i <= 100; i++) {
+          batch.add(Arrays.asList(i, "v" + i, null));
+        }
+        assertEquals(99, insert.executeBatch(batch).getAffectedRows());
+        insert.close();
+
+        // Rows stream back with their types intact
+        ExecutionResult rows = other.execute("SELECT k, v, f FROM kv WHERE k = ?", 1);
+        assertTrue(rows.isQuery());
+        assertEquals(Arrays.asList("k", "v", "f"), new ArrayList<>(rows.getRows().get(0).keySet()));
+        assertEquals(1, rows.getRows().get(0).get("k"));
+        assertEquals("one", rows.getRows().get(0).get("v"));
+        assertEquals(1.5, rows.getRows().get(0).get("f"));
+        assertEquals(100, other.execute("SELECT * FROM kv").getRows().size());
+
+        // Pipelined requests are answered in order; errors stay in their slot
+        List<ExecutionResult> results =
+            client.pipeline(
+                Arrays.asList(
+                    "SELECT * FROM kv WHERE k = 5", "SELEC oops", "DELETE FROM kv WHERE k > 50"));
+        assertEquals("v5", results.get(0).getRows().get(0).get("v"));
+        assertTrue(results.get(1).isError());
+        assertEquals(50, results.get(2).getAffectedRows());
+        assertThrows(IllegalArgumentException.class, () -> client.prepare("SELEC oops"));
+
+        // Each connection has its own session and transaction
+        client.execute("BEGIN");
+        client.execute("DELETE FROM kv WHERE k = 1");
+        assertEquals(1, other.execute("SELECT * FROM kv WHERE k = 1").getRows().size());
+        client.execute("ROLLBACK");
+        assertEquals(1, client.execute("SELECT * FROM kv WHERE k = 1").getRows().size());
+        assertEquals(2, server.getConnectionCount());
+      }
+    }
+  }
+
+  @Test
+  void testJdbcDriver() throws Exception {
+    String url = "jdbc:byteforce:" + TEST_DIR + "/jdbc";
+    try (Connection conn = DriverManager.getConnection(url);
+        Connection other = DriverManager.getConnection(url)) {
+      // Connections to one directory share the engine
+      assertSame(
+          conn.unwrap(ByteForceConnection.class).getDatabase(),
+          other.unwrap(ByteForceConnection.class).getDatabase());
+
+      try (Statement st = conn.createStatement()) {
+        st.executeUpdate("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT, price FLOAT)");
+      }
+      try (PreparedStatement insert = conn.prepareStatement("INSERT INTO items VALUES (?, ?, ?)")) {
+        for (int i = 1; i <= 50; i++) {
+          insert.setLong(1, i);
+          insert.setString(2, "item" + i);
+          if (i % 10 == 0) insert.setNull(3, Types.DOUBLE);
+          else insert.setDouble(3, i * 1.5);
+          insert.addBatch();
+        }
+        assertEquals(50, insert.executeBatch().length);
+
+        insert.setInt(1, 1);
+        insert.setString(2, "duplicate");
+        insert.setDouble(3, 0);
+        insert.addBatch();
+        assertThrows(BatchUpdateException.class, insert::executeBatch);
+      }
+
+      PreparedStatement byPrice =
+          conn.prepareStatement("SELECT id, name, price FROM items WHERE price > ?");
+      byPrice.setDouble(1, 70.0);
+      try (ResultSet rs = byPrice.executeQuery()) {
+        assertEquals(3, rs.getMetaData().getColumnCount());
+        assertEquals(Types.DOUBLE, rs.getMetaData().getColumnType(3));
+        int count = 0;
+        while (rs.next()) {
+          assertTrue(rs.getDouble("price") > 70.0);
+          assertEquals("item" + rs.getInt(1), rs.getString("name"));
+          count++;
+        }
+        assertEquals(3, count);
+      }
+      byPrice.close();
+      try (ResultSet rs =
+          other.createStatement().executeQuery("SELECT * FROM items WHERE id = 10")) {
+        assertTrue(rs.next());
+        assertEquals(0.0, rs.getDouble("price"));
+        assertTrue(rs.wasNull());
+        assertFalse(rs.next());
+      }
+
+      // The second prepare of the same SQL comes from the connection's statement cache
+      ByteForceConnection bf = conn.unwrap(ByteForceConnection.class);
+      long hits = bf.getStatementCacheHits();
+      conn.prepareStatement("SELECT id, name, price FROM items WHERE price > ?").close();
+      assertEquals(hits + 1, bf.getStatementCacheHits());
+
+      // Manual commit: changes stay invisible to other connections until commit
+      conn.setAutoCommit(false);
+      try (Statement st = conn.createStatement()) {
+        assertEquals(1, st.executeUpdate("DELETE FROM items WHERE id = 1"));
+      }
+      assertTrue(other.createStatement().executeQuery("SELECT * FROM items WHERE id = 1").next());
+      conn.rollback();
+      try (Statement st = conn.createStatement()) {
+        st.executeUpdate("DELETE FROM items WHERE id = 2");
+      }
+      conn.commit();
+      assertFalse(other.createStatement().executeQuery("SELECT * FROM items WHERE id = 2").next());
+      assertTrue(other.createStatement().executeQuery("SELECT * FROM items WHERE id = 1").next());
+
+      assertThrows(SQLException.class, () -> conn.prepareStatement("SELEC oops"));
+    }
+  }
+
+  @Test
+  void testAsyncExecutionAndRowPublisher() throws Exception {
+    db.execute("CREATE TABLE events (id INTEGER PRIMARY KEY, kind TEXT)");
+    List<CompletableFuture<ExecutionResult>> inserts = new ArrayList<>();
+    for (int i = 1; i <= 20; i++) {
+      inserts.add(db.executeAsync("INSERT INTO events VALUES (?, ?)", Arrays.asList(i, "k" + i)));
+    }
+    CompletableFuture.allOf(inserts.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+    for (CompletableFuture<ExecutionResult> insert : inserts) {
+      assertFalse(insert.get().isError(), insert.get().getMessage());
+    }
+    assertEquals(20, db.executeAsync("SELECT * FROM events").get().getRows().size());
+    assertTrue(db.executeAsync("SELEC oops").get().isError());
+
+    // The publisher only produces what the subscriber asked for
+    List<Map<String, Object>> received = new ArrayList<>();
+    CountDownLatch firstTwo = new CountDownLatch(2);
+    CountDownLatch completed = new CountDownLatch(1);
+    Flow.Subscription[] subscription = new Flow.Subscription[1];
+    db.publish("SELECT id FROM events")
+        .subscribe(
+            new Flow.Subscriber<Map<String, Object>>() {
+              @Override
+              public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+                s.request(2);
+              }
+
+              @Override
+              public void onNext(Map<String, Object> row) {
+                synchronized (received) {
+                  received.add(row);
+                }
+                firstTwo.countDown();
+              }
+
+              @Override
+              public void onError(Throwable t) {
+                fail(t);
+              }
+
+              @Override
+              public void onComplete() {
+                completed.countDown();
+              }
+            });
+    assertTrue(firstTwo.await(10, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    synchronized (received) {
+      assertEquals(2, received.size());
+      assertEquals(1, received.get(0).size());
+    }
+    assertEquals(1, completed.getCount());
+    subscription[0].request(Long.MAX_VALUE);
+    assertTrue(completed.await(10, TimeUnit.SECONDS));
+    assertEquals(20, received.size());
+
+    assertThrows(IllegalArgumentException.class, () -> db.publish("DELETE FROM events"));
+  }
+
+  @Test
+  void testHttpQueryEndpoint() throws Exception {
+    db.execute("CREATE TABLE notes (id INTEGER PRIMARY KEY, body TEXT, score FLOAT)");
+    QueryEndpoint api = new QueryEndpoint(db);
+    Service http = Service.ignite().port(0);
+    http.post("/query", api::query);
+    http.post("/batch", api::batch);
+    http.awaitInitialization();
+    try {
+      HttpClient client = HttpClient.newHttpClient();
+      String base = "http://localhost:" + http.port();
+
+      HttpResponse<String> batch =
+          post(
+              client,
+              base + "/batch",
+              "{\"sql\": \"INSERT INTO notes VALUES (?, ?, ?)\","
+                  + " \"params\": [[1, \"a\", 1.5], [2, \"b \\\"q\\\"\", 2.0], [3, null, 3.25]]}");
+      assertEquals(200, batch.statusCode(), batch.body());
+      assertTrue(batch.body().contains("\"affected_rows\":3"), batch.body());
+
+      HttpResponse<String> doc =
+          post(
+              client,
+              base + "/query",
+              "{\"sql\": \"SELECT id, body FROM notes WHERE id = ?\", \"params\": [2]}");
+      assertEquals(200, doc.statusCode());
+      assertEquals("{\"columns\":[\"id\",\"body\"],\"rows\":[[2,\"b \\\"q\\\"\"]]}", doc.body());
+
+      HttpResponse<String> lines =
+          post(client, base + "/query?format=ndjson", "{\"sql\": \"SELECT * FROM notes\"}");
+      assertTrue(
+          lines.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+      List<String> rows = lines.body().lines().toList();
+      assertEquals(3, rows.size());
+      assertTrue(rows.contains("{\"id\":3,\"body\":null,\"score\":3.25}"), rows.toString());
+
+      // Statement lists run in one transaction; a failure rolls them all back
+      HttpResponse<String> failed =
+          post(
+              client,
+              base + "/batch",
+              "{\"statements\": [{\"sql\": \"DELETE FROM notes WHERE id = ?\", \"params\": [1]},"
+                  + " {\"sql\": \"SELEC oops\"}]}");
+      assertEquals(400, failed.statusCode());
+      assertTrue(failed.body().startsWith("{\"error\":\"Statement 2:"), failed.body());
+      assertEquals(3, db.execute("SELECT * FROM notes").getRows().size());
+
+      assertEquals(400, post(client, base + "/query", "{\"sql\": 1}").statusCode());
+      assertEquals(400, post(client, base + "/query", "not json").statusCode());
+      HttpResponse<String> update =
+          post(client, base + "/query", "{\"sql\": \"DELETE FROM notes WHERE id = 3\"}");
+      assertTrue(update.body().contains("\"affected_rows\":1"), update.body());
+
+      // Reading server files needs an explicit opt-in
+      Path csv = Path.of(TEST_DIR, "notes.csv");
+      Files.writeString(csv, "4,d,4.0\n");
+      String copy = "COPY notes FROM '" + csv + "'";
+      assertEquals(403, post(client, base + "/query", "{\"sql\": \"" + copy + "\"}").statusCode());
+      assertEquals(
+          403,
+          post(client, base + "/query", "{\"sql\": \"EXPLAIN ANALYZE " + copy + "\"}")
+              .statusCode());
+      assertEquals(
+          403,
+          post(client, base + "/batch", "{\"statements\": [{\"sql\": \"" + copy + "\"}]}")
+              .statusCode());
+      assertEquals(2, db.execute("SELECT * FROM notes").getRows().size());
+    } finally {
+      http.stop();
+      http.awaitStop();
+    }
+  }
+
+  private static HttpResponse<String> post(HttpClient client, String url, String body)
+      throws Exception {
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create(url))
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+    return client.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  @Test
+  void testTextDictionaryEncoding() {
+    db.execute("CREATE TABLE jobs (id INTEGER PRIMARY KEY, status TEXT, title TEXT)");
+    List<List<Object>> rows = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      // Distinct String objects, as if each came from its own request
+      rows.add(Arrays.asList(i, new String(i % 2 == 0 ? "pending" : "completed"), "job " + i));
+    }
+    assertFalse(db.executeBatch("INSERT INTO jobs VALUES (?, ?, ?)", rows).isError());
+
+    Table jobs = db.getStorage().getTable("jobs");
+    assertEquals(2, jobs.getDictionary("status").size());
+    // Mostly unique values fall back to plain strings
+    assertNull(jobs.getDictionary("title"));
+    List<Map<String, Object>> stored = jobs.getRows();
+    assertSame(stored.get(0).get("status"), stored.get(2).get("status"));
+
+    assertEquals(300, db.execute("SELECT * FROM jobs WHERE status = 'pending'").getRows().size());
+    assertEquals(300, db.execute("SELECT * FROM jobs WHERE status != 'pending'").getRows().size());
+    assertEquals(0, db.execute("SELECT * FROM jobs WHERE status = 'archived'").getRows().size());
+    assertEquals(600, db.execute("SELECT * FROM jobs WHERE status != 'archived'").getRows().size());
+    ExecutionResult plan =
+        db.execute(
+            "EXPLAIN ANALYZE SELECT * FROM jobs WHERE status = ?", Arrays.asList("archived"));
+    assertEquals("-> Dictionary Miss on jobs (status = ?)", plan.getRows().get(1).get("operator"));
+
+    assertEquals(
+        1, db.execute("UPDATE jobs SET status = 'archived' WHERE id = 4").getAffectedRows());
+    assertEquals(299, db.execute("DELETE FROM jobs WHERE status = 'pending'").getAffectedRows());
+    assertEquals(0, db.execute("DELETE FROM jobs WHERE status = 'failed'").getAffectedRows());
+
+    // Shared values come back shared after a reload
+    db.close();
+    db = new ByteForceDB(TEST_DIR);
+    jobs = db.getStorage().getTable("jobs");
+    assertEquals(2, jobs.getDictionary("status").size());
+    stored = jobs.getRows();
+    assertSame(stored.get(0).get("status"), stored.get(1).get("status"));
+    assertEquals(1, db.execute("SELECT * FROM jobs WHERE status = 'archived'").getRows().size());
+    assertEquals(300, db.execute("SELECT * FROM jobs WHERE status = 'completed'").getRows().size());
+  }
+
+  @Test
+  void testOffHeapRowStorage() {
+    db.close();
+    db = new ByteForceDB(TEST_DIR, ByteForceDB.DEFAULT_PLAN_CACHE_SIZE, 0, RowStorage.OFF_HEAP);
+    db.execute(
+        "CREATE TABLE readings (id INTEGER PRIMARY KEY, sensor TEXT, value FLOAT, ok BOOLEAN,"
+            + " note TEXT)");
+    List<List<Object>> rows = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      Object value = i % 2 == 0 ? (Object) (i * 0.5) : (Object) i;
+      rows.add(Arrays.asList(i, "s" + i % 5, value, i % 3 == 0, i % 7 == 0 ? null : "n\u00e9" + i));
+    }
+    assertFalse(db.executeBatch("INSERT INTO readings VALUES (?, ?, ?, ?, ?)", rows).isError());
+
+    Table readings = db.getStorage().getTable("readings");
+    assertEquals(RowStorage.OFF_HEAP, readings.getRowStorage());
+    assertTrue(readings.getOffHeapBytes() > 0);
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("id", 42);
+    expected.put("sensor", "s2");
+    expected.put("value", 21.0);
+    expected.put("ok", true);
+    expected.put("note", null);
+    assertEquals(expected, db.execute("SELECT * FROM readings WHERE id = 42").getRows().get(0));
+    // Values keep the type they were inserted with
+    assertEquals(
+        43, db.execute("SELECT * FROM readings WHERE id = 43").getRows().get(0).get("value"));
+    assertEquals(
+        "n\u00e943",
+        db.execute("SELECT note FROM readings WHERE id = 43").getRows().get(0).get("note"));
+    assertEquals(400, db.execute("SELECT * FROM readings WHERE sensor = 's3'").getRows().size());
+    assertEquals(100, db.execute("SELECT * FROM readings WHERE value > 1800").getRows().size());
+
+    assertEquals(
+        400,
+        db.execute("UPDATE readings SET note = 'moved' WHERE sensor = 's1'").getAffectedRows());
+    assertEquals(400, db.execute("DELETE FROM readings WHERE sensor = 's4'").getAffectedRows());
+    db.getStorage().vacuum();
+    assertEquals(400, db.execute("SELECT * FROM readings WHERE note = 'moved'").getRows().size());
+
+    // The records survive a restart, into whichever storage the engine is opened with
+    for (RowStorage storage : new RowStorage[] {RowStorage.MAPPED, RowStorage.HEAP}) {
+      db.close();
+      db = new ByteForceDB(TEST_DIR, ByteForceDB.DEFAULT_PLAN_CACHE_SIZE, 0, storage);
+      assertEquals(storage, db.getStorage().getTable("readings").getRowStorage());
+      assertEquals(1600, db.execute("SELECT * FROM readings").getRows().size());
+      assertEquals(400, db.execute("SELECT * FROM readings WHERE note = 'moved'").getRows().size());
+      assertEquals(expected, db.execute("SELECT * FROM readings WHERE id = 42").getRows().get(0));
+    }
+    assertEquals(0, db.getStorage().getOffHeapBytes());
+    // Mapped chunk files are unlinked as soon as they are mapped
+    String[] mapped = new File(TEST_DIR, "mapped").list();
+    assertTrue(mapped == null || mapped.length == 0);
+  }
+
+  @Test
+  void testZoneMapBlockSkipping() {
+    db.execute("CREATE TABLE events (id INTEGER PRIMARY KEY, ts INTEGER, kind TEXT)");
+    List<List<Object>> rows = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      rows.add(Arrays.asList(i, i, i % 2 == 0 ? "click" : "view"));
+    }
+    assertFalse(db.executeBatch("INSERT INTO events VALUES (?, ?, ?)", rows).isError());
+
+    // Timestamps rise with the row order, so only the last block of 1024 rows can hold ts >= 4500
+    ExecutionResult plan = db.execute("EXPLAIN ANALYZE SELECT * FROM events WHERE ts >= 4500");
+    assertEquals(
+        "-> Seq Scan on events (zone map skipped 4 of 5 blocks)",
+        plan.getRows().get(1).get("operator"));
+    assertEquals(904L, plan.getRows().get(1).get("rows"));
+    assertEquals(500, db.execute("SELECT * FROM events WHERE ts >= 4500").getRows().size());
+    assertEquals(0, db.execute("SELECT * FROM events WHERE ts < 0").getRows().size());
+    assertEquals(1, db.execute("SELECT * FROM events WHERE ts = 2048").getRows().size());
+    // Unordered values span every block
+    assertEquals(2500, db.execute("SELECT * FROM events WHERE kind = 'view'").getRows().size());
+
+    // A write widens its block's zone, so the moved row is still found
+    assertEquals(1, db.execute("UPDATE events SET ts = 9999 WHERE id = 200").getAffectedRows());
+    assertEquals(1, db.execute("SELECT * FROM events WHERE ts > 5000").getRows().size());
+    plan = db.execute("EXPLAIN ANALYZE DELETE FROM events WHERE ts < 100");
+    assertEquals(
+        "  -> Seq Scan on events (zone map skipped 4 of 5 blocks)",
+        plan.getRows().get(2).get("operator"));
+    assertEquals(4900, db.execute("SELECT * FROM events").getRows().size());
+
+    // Zone maps are saved with the table and come back tight
+    db.close();
+    db = new ByteForceDB(TEST_DIR);
+    plan = db.execute("EXPLAIN ANALYZE SELECT * FROM events WHERE ts > 5000");
+    assertEquals(
+        "-> Seq Scan on events (zone map skipped 4 of 5 blocks)",
+        plan.getRows().get(1).get("operator"));
+    assertEquals(
+        200, db.execute("SELECT * FROM events WHERE ts > 5000").getRows().get(0).get("id"));
+    assertEquals(899, db.execute("SELECT * FROM events WHERE ts < 1000").getRows().size());
+  }
+
+  @Test
+  void testZoneMapWithNaN() {
+    db.execute("CREATE TABLE samples (id INTEGER PRIMARY KEY, v FLOAT)");
+    List<List<Object>> rows = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      rows.add(Arrays.asList(i, i == 0 ? Double.NaN : (double) i));
+    }
+    assertFalse(db.executeBatch("INSERT INTO samples VALUES (?, ?)", rows).isError());
+
+    // NaN leads the first block but fails every comparison except !=
+    assertEquals(1994, db.execute("SELECT * FROM samples WHERE v > 5").getRows().size());
+    assertEquals(5, db.execute("SELECT * FROM samples WHERE v < 6").getRows().size());
+    assertEquals(1999, db.execute("SELECT * FROM samples WHERE v != 5").getRows().size());
+    assertEquals(
+        0, db.execute("SELECT * FROM samples WHERE v > ?", List.of(Double.NaN)).getRows().size());
+    assertEquals(
+        2000,
+        db.execute("SELECT * FROM samples WHERE v != ?", List.of(Double.NaN)).getRows().size());
+  }
+
+  @Test
+  void testTablePartitioning() {
+    assertTrue(
+        db.execute(
+                "CREATE TABLE bad (id INTEGER PRIMARY KEY, region TEXT) PARTITION BY HASH(region)")
+            .isError());
+    assertTrue(
+        db.execute("CREATE TABLE bad (ts INTEGER) PARTITION BY RANGE(ts) (2000, 1000)").isError());
+
+    db.execute(
+        "CREATE TABLE orders (id INTEGER PRIMARY KEY, region TEXT, amount INTEGER)"
+            + " PARTITION BY HASH(id)");
+    db.execute(
+        "CREATE TABLE logs (ts INTEGER, msg TEXT) PARTITION BY RANGE(ts) (1000, 2000, 3000)");
+    List<List<Object>> orders = new ArrayList<>();
+    List<List<Object>> logs = new ArrayList<>();
+    for (int i = 0; i < 4000; i++) {
+      orders.add(Arrays.asList(i, i % 2 == 0 ? "east" : "west", i));
+      logs.add(Arrays.asList(i, "m" + i));
+    }
+    assertFalse(db.executeBatch("INSERT INTO orders VALUES (?, ?, ?)", orders).isError());
+    assertFalse(db.executeBatch("INSERT INTO logs VALUES (?, ?)", logs).isError());
+    assertTrue(db.execute("INSERT INTO orders VALUES (7, 'east', 0)").isError());
+    assertEquals(Set.of("logs", "orders"), Set.copyOf(db.getStorage().listTables()));
+
+    Table table = db.getStorage().getTable("logs");
+    assertTrue(table.isPartitioned());
+    assertEquals(4000, table.getRowCount());
+    for (Table partition : table.getPartitions()) {
+      assertEquals(1000, partition.getRowCount());
+    }
+    assertEquals(4, db.getStorage().getTable("orders").getPartitions().size());
+
+    for (Table partition : db.getStorage().getTable("orders").getPartitions()) {
+      assertTrue(partition.getRowCount() > 0);
+    }
+
+    // Range predicates on the partition column skip whole partitions, which are scanned in parallel
+    ExecutionResult plan = db.execute("EXPLAIN ANALYZE SELECT * FROM logs WHERE ts >= 2500");
+    assertEquals(
+        "Parallel Append on logs (2 of 4 partitions)", plan.getRows().get(0).get("operator"));
+    assertEquals(1500L, plan.getRows().get(0).get("rows"));
+    assertEquals("  -> Seq Scan on logs#2", plan.getRows().get(2).get("operator"));
+    assertEquals(1500, db.execute("SELECT * FROM logs WHERE ts >= 2500").getRows().size());
+    plan = db.execute("EXPLAIN ANALYZE SELECT * FROM orders WHERE id = 17");
+    assertEquals("Append on orders (1 of 4 partitions)", plan.getRows().get(0).get("operator"));
+    assertTrue(
+        ((String) plan.getRows().get(2).get("operator")).contains("Index Lookup on orders#"));
+    List<Map<String, Object>> west =
+        db.execute("SELECT id FROM orders WHERE region = 'west'").getRows();
+    assertEquals(2000, west.size());
+    assertTrue(west.stream().allMatch(r -> (Integer) r.get("id") % 2 == 1));
+
+    // Writers of different partitions do not wait for each other
+    try (Session session = db.openSession()) {
+      session.execute("BEGIN");
+      assertEquals(1, session.execute("DELETE FROM logs WHERE ts = 5").getAffectedRows());
+      assertFalse(db.execute("INSERT INTO logs VALUES (3999, 'late')").isError());
+      session.execute("COMMIT");
+    }
+
+    // Changing the partition column moves the row
+    assertEquals(9, db.execute("UPDATE logs SET ts = 3500 WHERE ts < 10").getAffectedRows());
+    assertEquals(990, table.getPartitions().get(0).getRowCount());
+    assertEquals(1010, table.getPartitions().get(3).getRowCount());
+    assertEquals(10, db.execute("SELECT * FROM logs WHERE ts = 3500").getRows().size());
+    plan = db.execute("EXPLAIN ANALYZE DELETE FROM logs WHERE ts >= 3000");
+    assertEquals("  -> Seq Scan on logs#3", plan.getRows().get(2).get("operator"));
+    assertEquals(990, db.execute("SELECT * FROM logs WHERE ts < 1000").getRows().size());
+
+    db.close();
+    db = new ByteForceDB(TEST_DIR);
+    table = db.getStorage().getTable("logs");
+    assertEquals("RANGE(ts) (1000, 2000, 3000)", table.getPartitioning().toString());
+    assertEquals(2990, table.getRowCount());
+    assertEquals(0, db.execute("SELECT * FROM logs WHERE ts >= 3000").getRows().size());
+    assertEquals(2000, db.execute("SELECT * FROM orders WHERE region = 'east'").getRows().size());
+    assertEquals(
+        "m17", db.execute("SELECT msg FROM logs WHERE ts = 17").getRows().get(0).get("msg"));
+  }
+
+  @Test
+  void testLogShippingReplica() throws Exception {
+    db.execute("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT, age INTEGER)");
+    db.execute("INSERT INTO users VALUES (1, 'Alice', 30), (2, 'Bob', 25)");
+    // Tables from before the log are shipped as a copy
+    db.enableReplicationLog(TEST_DIR + "/log");
+    int port = db.startLogShipping(0);
+
+    ByteForceDB tailing = new ByteForceDB(TEST_DIR + "/replica1");
+    ByteForceDB streamed = new ByteForceDB(TEST_DIR + "/replica2");
+    try {
+      tailing.startReplica(TEST_DIR + "/log");
+      streamed.startReplica("localhost", port);
+
+      db.execute("INSERT INTO users VALUES (3, 'Carol', 41)");
+      db.execute("UPDATE users SET age = 26 WHERE id = 2");
+      db.execute("CREATE INDEX idx_age ON users(age)");
+      db.execute("BEGIN");
+      db.execute("DELETE FROM users WHERE id = 1");
+      db.execute("ROLLBACK");
+      db.execute("CREATE TABLE logs (ts INTEGER, msg TEXT) PARTITION BY RANGE(ts) (100)");
+      List<List<Object>> batch = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        batch.add(Arrays.asList(i, "m" + i));
+      }
+      db.executeBatch("INSERT INTO logs VALUES (?, ?)", batch);
+      db.execute("CREATE MATERIALIZED VIEW adults AS SELECT name FROM users WHERE age > 28");
+      Path csv = Path.of(TEST_DIR, "more.csv");
+      Files.writeString(csv, "4,Dave,35\n5,Eve,22\n");
+      db.execute("COPY users FROM '" + csv + "'");
+      db.execute("DELETE FROM logs WHERE ts < 50");
+
+      long position = db.getReplicationLog().getPosition();
+      for (ByteForceDB replica : List.of(tailing, streamed)) {
+        assertTrue(replica.getReplica().awaitPosition(position, 10_000));
+        assertEquals(0, replica.getReplica().getLagBytes());
+        assertEquals(0, replica.getReplica().getLagMillis());
+        assertReplicaMatches(replica, "SELECT * FROM users");
+        assertReplicaMatches(replica, "SELECT * FROM logs");
+        assertReplicaMatches(replica, "SELECT * FROM adults");
+        assertEquals(2, replica.getStorage().getTable("logs").getPartitions().size());
+        assertTrue(replica.getStorage().getTable("users").getIndices().containsKey("age"));
+        ExecutionResult write = replica.execute("INSERT INTO users VALUES (9, 'Zed', 1)");
+        assertTrue(write.isError());
+        assertTrue(write.getMessage().contains("read-only replica"));
+      }
+      assertEquals(1, db.getShippedReplicaCount());
+
+      // A restarted replica resumes where it stopped
+      tailing.close();
+      db.execute("UPDATE users SET name = 'Alicia' WHERE id = 1");
+      tailing = new ByteForceDB(TEST_DIR + "/replica1");
+      assertEquals(5, tailing.execute("SELECT * FROM users").getRows().size());
+      tailing.startReplica(TEST_DIR + "/log");
+      assertTrue(tailing.getReplica().awaitPosition(db.getReplicationLog().getPosition(), 10_000));
+      assertReplicaMatches(tailing, "SELECT * FROM users");
+      assertReplicaMatches(tailing, "SELECT * FROM logs");
+
+      // A promoted replica takes writes of its own
+      streamed.stopReplica();
+      assertFalse(streamed.execute("INSERT INTO users VALUES (9, 'Zed', 1)").isError());
+      assertTrue(db.execute("SELECT * FROM users WHERE id = 9").getRows().isEmpty());
+    } finally {
+      tailing.close();
+      streamed.close();
+    }
+  }
+
+  @Test
+  void testReplicaRejectsForeignClasses() throws Exception {
+    // A well-formed frame whose payload is not a log entry
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(payload)) {
+      out.writeObject(new Date());
+    }
+    CRC32 crc = new CRC32();
+    crc.update(payload.toByteArray());
+    File logDir = new File(TEST_DIR, "log");
+    logDir.mkdirs();
+    try (DataOutputStream out =
+        new DataOutputStream(Files.newOutputStream(Path.of(TEST_DIR, "log", "replication.log")))) {
+      out.writeInt(payload.size());
+      out.writeInt((int) crc.getValue());
+      out.write(payload.toByteArray());
+    }
+
+    ByteForceDB replica = new ByteForceDB(TEST_DIR + "/replica");
+    try {
+      replica.startReplica(logDir.getPath());
+      assertFalse(replica.getReplica().awaitPosition(1, 10_000));
+      assertFalse(replica.getReplica().isRunning());
+      assertTrue(replica.getReplica().getError().contains("REJECTED"));
+      assertEquals(0, replica.getReplica().getAppliedEntries());
+    } finally {
+      replica.close();
+    }
+  }
+
+  @Test
+  void testSpillingHashJoin() {
+    db.execute("CREATE TABLE customers (cid INTEGER PRIMARY KEY, name TEXT, region TEXT)");
+    db.execute("CREATE TABLE orders (oid INTEGER PRIMARY KEY, customer_id INTEGER, amount FLOAT)");
+    List<List<Object>> batch = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      batch.add(Arrays.asList(i, "customer" + i, i % 7 == 0 ? null : "r" + i % 5));
+    }
+    db.executeBatch("INSERT INTO customers VALUES (?, ?, ?)", batch);
+    batch.clear();
+    // Ids from 3000 up have no customer, and every 500th order none at all
+    for (int i = 0; i < 6000; i++) {
+      batch.add(Arrays.asList(i, i % 500 == 0 ? null : i % 3100, i * 1.5));
+    }
+    db.executeBatch("INSERT INTO orders VALUES (?, ?, ?)", batch);
+
+    String inner = "SELECT * FROM orders JOIN customers ON customer_id = cid";
+    String left = "SELECT oid, name FROM orders LEFT JOIN customers ON customer_id = cid";
+    List<String> expectedInner = sortedRows(db.execute(inner));
+    List<String> expectedLeft = sortedRows(db.execute(left));
+    assertEquals(5889, expectedInner.size());
+    assertEquals(6000, expectedLeft.size());
+
+    db.setQueryMemoryLimit(16 * 1024);
+    assertEquals(expectedInner, sortedRows(db.execute(inner)));
+    assertEquals(expectedLeft, sortedRows(db.execute(left)));
+    assertEquals(expectedInner, sortedRows(db.execute(inner + " WHERE amount > 0")));
+    assertEquals(
+        expectedInner.stream().filter(r -> r.contains("region=r3")).count(),
+        db.execute(inner + " WHERE region = 'r3'").getRows().size());
+
+    ExecutionResult plan = db.execute("EXPLAIN ANALYZE " + inner);
+    String join = (String) plan.getRows().get(0).get("operator");
+    assertTrue(join.startsWith("Hash Join (customer_id = cid) (spilled "), join);
+    assertEquals(5889L, plan.getRows().get(0).get("rows"));
+    assertTrue(new File(TEST_DIR, "spill").isDirectory());
+
+    // A query that stops early, and a cursor closed halfway, leave no spill behind
+    assertEquals(5, db.execute(inner + " LIMIT 5").getRows().size());
+    try (Cursor cursor = db.query(left)) {
+      for (int i = 0; i < 10; i++) {
+        assertTrue(cursor.next());
+      }
+    }
+    assertEquals(0, new File(TEST_DIR, "spill").list().length);
+
+    // Conditions other than an equality of columns still join row by row
+    plan = db.execute("EXPLAIN ANALYZE SELECT * FROM orders JOIN customers ON oid < cid LIMIT 3");
+    assertEquals("-> Nested Loop Join (oid < cid)", plan.getRows().get(1).get("operator"));
+
+    assertThrows(IllegalArgumentException.class, () -> db.setQueryMemoryLimit(0));
+  }
+
+  @Test
+  void testCompiledQueries() {
+    db.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, price FLOAT, kind TEXT, ok BOOLEAN)");
+    db.execute("CREATE TABLE kinds (name TEXT, label TEXT)");
+    List<List<Object>> batch = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      Object price = i % 11 == 0 ? null : i % 2 == 0 ? (Object) (i / 2) : (Object) (i * 0.25);
+      batch.add(Arrays.asList(i, price, i % 13 == 0 ? null : "k" + i % 4, i % 3 == 0));
+    }
+    db.executeBatch("INSERT INTO items VALUES (?, ?, ?, ?)", batch);
+    db.execute(
+        "INSERT INTO kinds VALUES ('k0', 'zero'), ('k1', 'one'), ('k1', 'uno'), ('k9', 'x')");
+
+    // Each statement runs interpreted first, then compiled, and must give the same rows
+    String[] statements = {
+      "SELECT * FROM items WHERE id = ?",
+      "SELECT id, price FROM items WHERE price >= ?",
+      "SELECT id FROM items WHERE price != ?",
+      "SELECT id, kind FROM items WHERE kind = ?",
+      "SELECT id FROM items WHERE kind != ?",
+      "SELECT id FROM items WHERE kind < ?",
+      "SELECT id FROM items WHERE ok = ?",
+      "SELECT id FROM items WHERE price < id",
+      "SELECT id FROM items WHERE price = ? LIMIT 3",
+      "SELECT id, label FROM items JOIN kinds ON kind = name WHERE id < ?",
+      "SELECT * FROM items LEFT JOIN kinds ON kind = name WHERE price > ?",
+      "SELECT id FROM items WHERE kind = ?",
+    };
+    List<List<Object>> params =
+        Arrays.asList(
+            List.of(42),
+            List.of(500),
+            List.of(3),
+            List.of("k2"),
+            List.of("k1"),
+            List.of("k2"),
+            List.of(true),
+            List.of(),
+            List.of(10),
+            List.of(100),
+            List.of(990.0),
+            List.of("missing"));
+    for (int s = 0; s < statements.length; s++) {
+      String sql = statements[s];
+      List<Map<String, Object>> expected = db.execute(sql, params.get(s)).getRows();
+      assertFalse(expected.isEmpty() && s < 10, sql);
+      for (int i = 0; i < 20; i++) {
+        ExecutionResult result = db.execute(sql, params.get(s));
+        assertFalse(result.isError(), result.getMessage());
+        assertEquals(expected, result.getRows(), sql);
+      }
+    }
+    assertEquals(statements.length, db.getCompiledPlanCount());
+
+    // Prepared statements and cursors use the compiled plan, with fresh parameters
+    PreparedQuery lookup = db.prepare("SELECT id, kind FROM items WHERE id = ?");
+    for (int i = 0; i < 40; i++) {
+      List<Map<String, Object>> rows = lookup.execute(i).getRows();
+      assertEquals(1, rows.size());
+      assertEquals(i, rows.get(0).get("id"));
+    }
+    for (int i = 0; i < 20; i++) {
+      try (Cursor cursor = db.query("SELECT id, label FROM items JOIN kinds ON kind = name")) {
+        int count = 0;
+        while (cursor.next()) {
+          assertTrue(cursor.getString("label").length() > 0);
+          count++;
+        }
+        assertEquals(1383, count);
+      }
+    }
+
+    // Returned rows are copies; writes are seen by the next execution
+    String byId = "SELECT * FROM items WHERE id = ?";
+    db.execute(byId, List.of(42)).getRows().get(0).put("kind", "x");
+    assertEquals("k2", db.execute(byId, List.of(42)).getRows().get(0).get("kind"));
+    db.execute("UPDATE items SET kind = 'k7' WHERE id = 42");
+    assertEquals("k7", db.execute(byId, List.of(42)).getRows().get(0).get("kind"));
+
+    // Statements on partitioned tables or with other join conditions stay interpreted
+    int compiled = db.getCompiledPlanCount();
+    db.execute(
+        "CREATE TABLE parts (id INTEGER PRIMARY KEY, v INTEGER) PARTITION BY HASH(id) PARTITIONS 2");
+    for (int i = 0; i < 20; i++) {
+      db.execute("SELECT * FROM parts WHERE v = 1");
+      db.execute("SELECT id FROM items JOIN kinds ON id < price LIMIT 1");
+    }
+    assertEquals(compiled, db.getCompiledPlanCount());
+  }
+
+  private static List<String> sortedRows(ExecutionResult result) {
+    assertFalse(result.isError(), result.getMessage());
+    return result.getRows().stream().map(row -> new TreeMap<>(row).toString()).sorted().toList();
+  }
+
+  private void assertReplicaMatches(ByteForceDB replica, String query) {
+    Comparator<Map<String, Object>> order = Comparator.comparing(Object::toString);
+    List<Map<String, Object>> expected = new ArrayList<>(db.execute(query).getRows());
+    List<Map<String, Object>> actual = new ArrayList<>(replica.execute(query).getRows());
+    expected.sort(order);
+    actual.sort(order);
+    assertEquals(expected, actual);
+  }
+
+  private void assertViewMatches(String query) {
+    Comparator<Map<String, Object>> order = Comparator.comparing(Object::toString);
+    List<Map<String, Object>> expected = new ArrayList<>(db.execute(query).getRows());
+    List<Map<String, Object>> actual =
+        new ArrayList<>(db.execute("SELECT id, title, note FROM open_tasks").getRows());
+    expected.sort(order);
+    actual.sort(order);
+    assertEquals(expected, actual);
+  }
 }